@@ -36,6 +36,7 @@ import com.atrainingtracker.banalservice.sensor.MyAccumulatorSensor;
 import com.atrainingtracker.banalservice.sensor.MySensor;
 import com.atrainingtracker.banalservice.sensor.MySensorManager;
 import com.atrainingtracker.banalservice.sensor.SensorData;
+import com.atrainingtracker.banalservice.sensor.SensorSnapshot;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.banalservice.filters.FilterData;
@@ -127,6 +128,7 @@ public class BANALService
 
     public static final String SEARCHING_STOPPED_FOR_ONE_INTENT = "com.trainingtracker.banalservice.SEARCHING_STOPPED_FOR_ONE_INTENT";
     public static final String SEARCHING_FINISHED_SUCCESS = "com.trainingtracker.banalservcie.SEARCHING_FINISHED_SUCCESS";
+    public static final String RECEIVING_DATA_FOR_ONE_INTENT = "com.trainingtracker.banalservice.RECEIVING_DATA_FOR_ONE_INTENT";
 
     public static final String SEARCHING_STARTED_FOR_ALL_INTENT = "com.trainingtracker.banalservice.SEARCHING_STARTED_FOR_ALL_INTENT";
     public static final String SEARCHING_FINISHED_FOR_ALL_INTENT = "com.trainingtracker.banalservice.SEARCHING_FINISHED_FOR_ALL_INTENT";
@@ -214,6 +216,10 @@ public class BANALService
         return cFilterManager.getFilteredSensorData(filterData);
     }
 
+    protected static FilteredSensorData getFilteredSensorData(String filterHashKey) {
+        return cFilterManager.getFilteredSensorData(filterHashKey);
+    }
+
     protected static List<FilteredSensorData> getAllFilteredSensorData() {
         return cFilterManager.getAllFilteredSensorData();
     }
@@ -470,6 +476,13 @@ public class BANALService
         return sensorDataLinkedList;
     }
 
+    /**
+     * reads the values of all sensors (the best ones and all others) into the given snapshot without creating SensorData objects.
+     */
+    protected void updateSensorSnapshot(SensorSnapshot sensorSnapshot) {
+        sensorSnapshot.update(cSensorManager.getAllSensorsArray());
+    }
+
     protected List<SensorData> getAllSensorData()  // get the SensorData from all Sensors
     {
         LinkedList<SensorData> sensorDataLinkedList = new LinkedList<>();
@@ -563,6 +576,13 @@ public class BANALService
             return BANALService.this.getAllSensorData();
         }
 
+        /**
+         * same sensors as getAllSensorData() but reusing the given snapshot
+         */
+        public void updateSensorSnapshot(SensorSnapshot sensorSnapshot) {
+            BANALService.this.updateSensorSnapshot(sensorSnapshot);
+        }
+
         public List<SensorData> getAllButBestSensorData() {
             return BANALService.this.getAllButBestSensorData();
         }
@@ -575,6 +595,13 @@ public class BANALService
             return BANALService.getFilteredSensorData(filterData);
         }
 
+        /**
+         * same as getFilteredSensorData(FilterData) but with the hash key of the FilterData
+         */
+        public FilteredSensorData getFilteredSensorData(String filterHashKey) {
+            return BANALService.getFilteredSensorData(filterHashKey);
+        }
+
         public List<FilteredSensorData> getAllFilteredSensorData() {
             return BANALService.getAllFilteredSensorData();
         }
@@ -0,0 +1,316 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.banalservice;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single 1 Hz tick for the BANALService and the TrackerService.
+ * <p>
+ * All periodic tasks run on one thread, phase by phase in the order of {@link Phase}.
+ * So, within one tick, the sampler always sees the values that the clock and the derived devices calculated in the same tick,
+ * and the UI is notified only after the sample was taken.
+ * <p>
+ * The tick runs only while at least one task is registered.
+ * Tasks that need a higher rate (e.g. the sampler in the sub-second recording mode) are registered with {@link #registerSubTick(Runnable)}.
+ * They run SUB_TICKS_PER_TICK times per tick, on the full tick within the SAMPLER phase.
+ * As long as no such task is registered, the scheduler wakes up only once per second.
+ * <p>
+ * The scheduler measures the jitter of the ticks (how late a tick started) and the duration of each phase.
+ * <p>
+ * When the ticks fell behind (e.g. the device was suspended or a tick took too long), the missed ticks are not replayed.
+ * Replaying them would write several samples with the same time and count the same second several times.
+ * Instead, the scheduler continues with the latest due tick and counts the skipped ones.
+ */
+public final class TickScheduler {
+    private static final String TAG = "TickScheduler";
+    private static final boolean DEBUG = BANALService.getDebug(false);
+
+    public static final long TICK_PERIOD_ms = 1000;
+    public static final int SUB_TICKS_PER_TICK = 4;
+    public static final long SUB_TICK_PERIOD_ms = TICK_PERIOD_ms / SUB_TICKS_PER_TICK;
+    // log the statistics every minute
+    private static final int LOG_INTERVAL_TICKS = 60;
+
+    public enum Phase {
+        CLOCK,
+        DERIVED_DEVICES,
+        FILTERS,
+        SAMPLER,
+        NOTIFICATION
+    }
+
+    private static final TickScheduler cInstance = new TickScheduler();
+
+    private final EnumMap<Phase, List<Runnable>> mTasks = new EnumMap<>(Phase.class);
+    private final List<Runnable> mSubTickTasks = new CopyOnWriteArrayList<>();
+    private int mNumberOfTasks;
+    private ScheduledExecutorService mExecutor;
+
+    // the time of the sub tick 0 and the index of the next sub tick, the full ticks are the multiples of SUB_TICKS_PER_TICK
+    private long mStartTime_ns;
+    private long mNextSubTick;
+
+    // the statistics are written by the tick thread and reset when the tick starts
+    private volatile long mTicks;
+    private volatile long mMissedTicks;
+    private volatile long mSumJitter_us, mMaxJitter_us;
+    private final long[] mSumDuration_us = new long[Phase.values().length];
+    private final long[] mMaxDuration_us = new long[Phase.values().length];
+    private final long[] mDuration_us = new long[Phase.values().length];
+
+    private TickScheduler() {
+        for (Phase phase : Phase.values()) {
+            mTasks.put(phase, new CopyOnWriteArrayList<>());
+        }
+    }
+
+    @NonNull
+    public static TickScheduler getInstance() {
+        return cInstance;
+    }
+
+    /**
+     * adds a task that is called once per tick in the given phase.  Within a phase, the tasks are called in the order of registration.
+     * Registering the same task twice has no effect.
+     */
+    public synchronized void register(@NonNull Phase phase, @NonNull Runnable task) {
+        List<Runnable> tasks = mTasks.get(phase);
+        if (tasks.contains(task)) {
+            return;
+        }
+        tasks.add(task);
+        mNumberOfTasks++;
+        if (DEBUG) Log.i(TAG, "registered a task for " + phase + ", now " + mNumberOfTasks + " tasks");
+
+        if (mExecutor == null) {
+            start();
+        }
+    }
+
+    /**
+     * adds a task that is called SUB_TICKS_PER_TICK times per tick.  On the full tick, it is called in the SAMPLER phase before the other tasks of this phase.
+     * The scheduler switches to the sub ticks with the next full tick.
+     * Registering the same task twice has no effect.
+     */
+    public synchronized void registerSubTick(@NonNull Runnable task) {
+        if (mSubTickTasks.contains(task)) {
+            return;
+        }
+        mSubTickTasks.add(task);
+        mNumberOfTasks++;
+        if (DEBUG) Log.i(TAG, "registered a sub tick task, now " + mNumberOfTasks + " tasks");
+
+        if (mExecutor == null) {
+            start();
+        }
+    }
+
+    /**
+     * removes a task that was registered with {@link #register(Phase, Runnable)} or {@link #registerSubTick(Runnable)}
+     */
+    public synchronized void unregister(@NonNull Runnable task) {
+        for (List<Runnable> tasks : mTasks.values()) {
+            if (tasks.remove(task)) {
+                mNumberOfTasks--;
+            }
+        }
+        if (mSubTickTasks.remove(task)) {
+            mNumberOfTasks--;
+        }
+        if (DEBUG) Log.i(TAG, "unregistered a task, now " + mNumberOfTasks + " tasks");
+
+        if (mNumberOfTasks == 0 && mExecutor != null) {
+            stop();
+        }
+    }
+
+    public long getTicks() {
+        return mTicks;
+    }
+
+    /**
+     * @return the number of full ticks that were skipped because the scheduler fell behind
+     */
+    public long getMissedTicks() {
+        return mMissedTicks;
+    }
+
+    public double getMeanJitter_ms() {
+        long ticks = mTicks;
+        return ticks == 0 ? 0 : mSumJitter_us / 1000.0 / ticks;
+    }
+
+    public double getMaxJitter_ms() {
+        return mMaxJitter_us / 1000.0;
+    }
+
+    public synchronized double getMeanDuration_ms(@NonNull Phase phase) {
+        long ticks = mTicks;
+        return ticks == 0 ? 0 : mSumDuration_us[phase.ordinal()] / 1000.0 / ticks;
+    }
+
+    public synchronized double getMaxDuration_ms(@NonNull Phase phase) {
+        return mMaxDuration_us[phase.ordinal()] / 1000.0;
+    }
+
+    private void start() {
+        if (DEBUG) Log.i(TAG, "start");
+
+        mTicks = 0;
+        mMissedTicks = 0;
+        mSumJitter_us = 0;
+        mMaxJitter_us = 0;
+        for (int i = 0; i < mSumDuration_us.length; i++) {
+            mSumDuration_us[i] = 0;
+            mMaxDuration_us[i] = 0;
+        }
+
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        mStartTime_ns = SystemClock.elapsedRealtimeNanos() + TimeUnit.MILLISECONDS.toNanos(TICK_PERIOD_ms);
+        mNextSubTick = 0;
+        scheduleNext(mExecutor);
+    }
+
+    private void stop() {
+        if (DEBUG) Log.i(TAG, "stop after " + mTicks + " ticks");
+
+        // also removes the already scheduled next tick
+        mExecutor.shutdownNow();
+        mExecutor = null;
+    }
+
+    /**
+     * schedules the next sub tick when there are sub tick tasks, otherwise the next full tick.
+     * Instead of a fixed rate, the tick schedules itself, so the rate can change without rescheduling a running tick.
+     */
+    private synchronized void scheduleNext(@NonNull ScheduledExecutorService executor) {
+        // the scheduler might have been stopped (and maybe restarted) in the meantime
+        if (executor != mExecutor) {
+            return;
+        }
+
+        int step = mSubTickTasks.isEmpty() ? SUB_TICKS_PER_TICK : 1;
+        if (step == SUB_TICKS_PER_TICK && mNextSubTick % SUB_TICKS_PER_TICK != 0) {
+            mNextSubTick += SUB_TICKS_PER_TICK - mNextSubTick % SUB_TICKS_PER_TICK;
+        }
+        long delay_ns = getSubTickTime_ns(mNextSubTick) - SystemClock.elapsedRealtimeNanos();
+
+        // more than one step behind: skip to the latest due slot instead of running all the missed ones back to back
+        long stepsBehind = -delay_ns / TimeUnit.MILLISECONDS.toNanos(step * SUB_TICK_PERIOD_ms);
+        if (delay_ns < 0 && stepsBehind > 0) {
+            long skippedFrom = mNextSubTick;
+            mNextSubTick += stepsBehind * step;
+            // the number of full ticks (multiples of SUB_TICKS_PER_TICK) within [skippedFrom, mNextSubTick)
+            long missedTicks = Math.floorDiv(mNextSubTick + SUB_TICKS_PER_TICK - 1, SUB_TICKS_PER_TICK)
+                    - Math.floorDiv(skippedFrom + SUB_TICKS_PER_TICK - 1, SUB_TICKS_PER_TICK);
+            mMissedTicks += missedTicks;
+            if (DEBUG) Log.d(TAG, "fell behind, skipped " + missedTicks + " ticks");
+
+            delay_ns = getSubTickTime_ns(mNextSubTick) - SystemClock.elapsedRealtimeNanos();
+        }
+
+        long subTick = mNextSubTick;
+        executor.schedule(() -> tick(executor, subTick), Math.max(0, delay_ns), TimeUnit.NANOSECONDS);
+    }
+
+    private long getSubTickTime_ns(long subTick) {
+        return mStartTime_ns + TimeUnit.MILLISECONDS.toNanos(subTick * SUB_TICK_PERIOD_ms);
+    }
+
+    private void tick(@NonNull ScheduledExecutorService executor, long subTick) {
+        synchronized (this) {
+            // without sub tick tasks, scheduleNext() skips to the next full tick
+            mNextSubTick = subTick + 1;
+        }
+
+        if (subTick % SUB_TICKS_PER_TICK == 0) {
+            fullTick(subTick);
+        } else {
+            runSubTickTasks();
+        }
+
+        scheduleNext(executor);
+    }
+
+    private void runSubTickTasks() {
+        for (Runnable task : mSubTickTasks) {
+            // an exception would cancel all further ticks
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error in a sub tick task", e);
+            }
+        }
+    }
+
+    private void fullTick(long subTick) {
+        long tickStart_ns = SystemClock.elapsedRealtimeNanos();
+        long jitter_us = TimeUnit.NANOSECONDS.toMicros(tickStart_ns - mStartTime_ns) - TimeUnit.MILLISECONDS.toMicros(subTick * SUB_TICK_PERIOD_ms);
+
+        long phaseStart_ns = tickStart_ns;
+        for (Phase phase : Phase.values()) {
+            if (phase == Phase.SAMPLER) {
+                runSubTickTasks();
+            }
+            for (Runnable task : mTasks.get(phase)) {
+                // an exception would cancel all further ticks
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Error in a task of phase " + phase, e);
+                }
+            }
+            long phaseEnd_ns = SystemClock.elapsedRealtimeNanos();
+            mDuration_us[phase.ordinal()] = TimeUnit.NANOSECONDS.toMicros(phaseEnd_ns - phaseStart_ns);
+            phaseStart_ns = phaseEnd_ns;
+        }
+
+        synchronized (this) {
+            mTicks++;
+            mSumJitter_us += jitter_us;
+            mMaxJitter_us = Math.max(mMaxJitter_us, jitter_us);
+            for (int i = 0; i < mDuration_us.length; i++) {
+                mSumDuration_us[i] += mDuration_us[i];
+                mMaxDuration_us[i] = Math.max(mMaxDuration_us[i], mDuration_us[i]);
+            }
+        }
+
+        if (DEBUG && mTicks % LOG_INTERVAL_TICKS == 0) {
+            StringBuilder stringBuilder = new StringBuilder("ticks=" + mTicks + ", missed=" + mMissedTicks
+                    + ", jitter: mean=" + getMeanJitter_ms() + " ms, max=" + getMaxJitter_ms() + " ms");
+            for (Phase phase : Phase.values()) {
+                stringBuilder.append(", ").append(phase).append(": mean=").append(getMeanDuration_ms(phase))
+                        .append(" ms, max=").append(getMaxDuration_ms(phase)).append(" ms");
+            }
+            Log.d(TAG, stringBuilder.toString());
+        }
+    }
+}
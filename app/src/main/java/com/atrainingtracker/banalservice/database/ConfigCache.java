@@ -0,0 +1,145 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.banalservice.database;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.atrainingtracker.banalservice.BANALService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for the small configuration databases (sport types, tracking views, devices, and equipment).
+ * <p>
+ * The cache holds an immutable snapshot of the whole table(s) that is loaded on the first access.
+ * The database managers invalidate the cache after each write, the next access loads a new snapshot.
+ * Readers always see either the old or the new snapshot, never a partial update.
+ * A snapshot that was loaded while a write happened is returned but not kept.
+ * <p>
+ * Each cache counts its hits, loads, and invalidations.  All caches are available via getCaches().
+ */
+public final class ConfigCache<S> {
+    private static final String TAG = ConfigCache.class.getSimpleName();
+    private static final boolean DEBUG = BANALService.getDebug(false);
+
+    private static final List<ConfigCache<?>> cCaches = new CopyOnWriteArrayList<>();
+
+    public interface Loader<S> {
+        @NonNull
+        S load();
+    }
+
+    private final String mName;
+    private final Loader<S> mLoader;
+    private volatile S mSnapshot;
+    // incremented by each invalidation, a snapshot is only kept when there was no invalidation while loading
+    private final AtomicLong mGeneration = new AtomicLong();
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mLoads = new AtomicLong();
+
+    public ConfigCache(@NonNull String name, @NonNull Loader<S> loader) {
+        mName = name;
+        mLoader = loader;
+        cCaches.add(this);
+    }
+
+    @NonNull
+    public static List<ConfigCache<?>> getCaches() {
+        return Collections.unmodifiableList(cCaches);
+    }
+
+    /**
+     * @return the current snapshot, it is loaded when necessary
+     */
+    @NonNull
+    public S get() {
+        S snapshot = mSnapshot;
+        if (snapshot != null) {
+            mHits.incrementAndGet();
+            return snapshot;
+        }
+        return load();
+    }
+
+    /**
+     * must be called after each write to the underlying tables
+     */
+    public void invalidate() {
+        mGeneration.incrementAndGet();
+        mSnapshot = null;
+    }
+
+    private synchronized S load() {
+        S snapshot = mSnapshot;
+        if (snapshot != null) {  // loaded by another thread in the meantime
+            mHits.incrementAndGet();
+            return snapshot;
+        }
+
+        long generation = mGeneration.get();
+        snapshot = mLoader.load();
+        mLoads.incrementAndGet();
+        if (generation == mGeneration.get()) {
+            mSnapshot = snapshot;
+        }
+        if (DEBUG) Log.i(TAG, "loaded " + this);
+
+        return snapshot;
+    }
+
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    public long getHits() {
+        return mHits.get();
+    }
+
+    public long getLoads() {
+        return mLoads.get();
+    }
+
+    /**
+     * @return the number of invalidations, i.e., the number of writes that required a reload
+     */
+    public long getInvalidations() {
+        return mGeneration.get();
+    }
+
+    public double getHitRate() {
+        long hits = mHits.get();
+        long total = hits + mLoads.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return mName + ": hits=" + getHits() + ", loads=" + getLoads() + ", invalidations=" + getInvalidations()
+                + ", hit rate=" + String.format(Locale.US, "%.3f", getHitRate());
+    }
+}
@@ -45,9 +45,13 @@ import com.atrainingtracker.trainingtracker.TrainingApplication;
 import com.dsi.ant.plugins.antplus.pcc.defines.BatteryStatus;
 
 import java.text.DateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class DevicesDatabaseManager {
@@ -58,10 +62,13 @@ public class DevicesDatabaseManager {
     private static volatile DevicesDatabaseManager cInstance;
     private final DevicesDbHelper cDevicesDbHelper;
     private final Context mContext;
+    // the configuration of all devices.  The frequently changing columns (last active, battery) are not cached
+    private final ConfigCache<Devices> mCache;
 
     private DevicesDatabaseManager(@NonNull Context context) {
         this.mContext = context.getApplicationContext();
         this.cDevicesDbHelper = new DevicesDbHelper(mContext);
+        this.mCache = new ConfigCache<>("Devices", this::loadDevices);
     }
 
     @NonNull
@@ -335,6 +342,7 @@ public class DevicesDatabaseManager {
                 values.put(DevicesDbHelper.LAST_BATTERY_PERCENTAGE, batteryPercentage);
 
                 result = db.insert(DevicesDbHelper.DEVICES, null, values);
+                mCache.invalidate();
             } catch (SQLException e) {
                 Log.e(TAG, "Error while writing" + e);
                 result = -2;
@@ -389,6 +397,7 @@ public class DevicesDatabaseManager {
                 }
 
                 result = db.insert(DevicesDbHelper.DEVICES, null, values);
+                mCache.invalidate();
             } catch (SQLException e) {
                 Log.e(TAG, "Error while writing" + e);
                 result = -2;
@@ -405,72 +414,72 @@ public class DevicesDatabaseManager {
     public double getCalibrationFactor(long deviceID) {
         if (DEBUG) Log.d(TAG, "readCalibrationFactor");
 
-        double calibrationFactor = 1;
-
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = getCursor(db, deviceID, DevicesDbHelper.CALIBRATION_FACTOR);
-
-        if (cursor.getCount() > 0) {
-            cursor.moveToFirst();
-            calibrationFactor = cursor.getDouble(0);
-        } else {  // device not yet known (should never happen?) => get default calibration factor?
+        DeviceRow device = mCache.get().byId().get(deviceID);
+        if (device == null) {  // device not yet known (should never happen?)
             if (DEBUG) Log.d(TAG, "readCalibrationFactor: device is not yet known");
-            cursor = getCursor(db, deviceID, DevicesDbHelper.DEVICE_TYPE);
-            if (cursor.getCount() > 0) {
-                cursor.moveToFirst();
-                DeviceType deviceType = DeviceType.valueOf(cursor.getString(0));
-                calibrationFactor = deviceType.getDefaultCalibrationFactor();
-            }
+            return 1;
         }
-
-        cursor.close();
-
-        return calibrationFactor;
+        return device.calibrationFactor;
     }
 
     public boolean isPaired(long deviceID) {
-        boolean result = false;
-
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = getCursor(db, deviceID, DevicesDbHelper.PAIRED);
-        if (cursor.getCount() > 0) {
-            cursor.moveToFirst();
-            result = cursor.getLong(0) > 0;
-        }
-
-        cursor.close();
-
-        return result;
+        DeviceRow device = mCache.get().byId().get(deviceID);
+        return device != null && device.paired;
     }
 
+    @Nullable
     public DeviceType getDeviceType(long deviceId) {
-        return DeviceType.valueOf(getString(deviceId, DevicesDbHelper.DEVICE_TYPE));
+        DeviceRow device = mCache.get().byId().get(deviceId);
+        return device == null ? null : device.deviceType;
     }
 
     @Nullable
     public String getManufacturerName(long deviceId) {
-        return getString(deviceId, DevicesDbHelper.MANUFACTURER_NAME);
+        DeviceRow device = mCache.get().byId().get(deviceId);
+        return device == null ? null : device.manufacturerName;
     }
 
     @Nullable
     public String getDeviceName(long deviceId) {
-        return getString(deviceId, DevicesDbHelper.NAME);
+        DeviceRow device = mCache.get().byId().get(deviceId);
+        return device == null ? null : device.name;
     }
 
     public int getAntDeviceNumber(long deviceId) {
-        return getInt(deviceId, DevicesDbHelper.ANT_DEVICE_NUMBER);
+        DeviceRow device = mCache.get().byId().get(deviceId);
+        return device == null ? 0 : device.antDeviceNumber;
     }
 
     public String getBluetoothMACAddress(long deviceId) {
-        return getString(deviceId, DevicesDbHelper.BT_ADDRESS);
+        DeviceRow device = mCache.get().byId().get(deviceId);
+        return device == null ? null : device.btAddress;
     }
 
+    @Nullable
     public Protocol getProtocol(long deviceId) {
-        return Protocol.valueOf(getString(deviceId, DevicesDbHelper.PROTOCOL));
+        DeviceRow device = mCache.get().byId().get(deviceId);
+        return device == null ? null : device.protocol;
+    }
+
+    /**
+     * updates the columns of the device, e.g., the name, the pairing, or the calibration factor
+     */
+    public void updateDevice(long deviceId, @NonNull ContentValues values) {
+        getDatabase().update(DevicesDbHelper.DEVICES,
+                values,
+                DevicesDbHelper.C_ID + "=?",
+                new String[]{Long.toString(deviceId)});
+        mCache.invalidate();
+    }
+
+    @NonNull
+    public ConfigCache<?> getCache() {
+        return mCache;
     }
 
     public void setManufacturerName(long deviceId, String manufacturerName) {
         setString(deviceId, DevicesDbHelper.MANUFACTURER_NAME, manufacturerName);
+        mCache.invalidate();
     }
 
     public void setLastActive(long deviceId) {
@@ -499,24 +508,14 @@ public class DevicesDatabaseManager {
                     null,
                     values);
         }
+        mCache.invalidate();
     }
 
     public int getBikePowerSensorFlags(long deviceId) {
         if (DEBUG) Log.i(TAG, "getBikePowerSensorFlags: deviceId=" + deviceId);
 
-        int result = 0;
-
-        Cursor cursor = getDatabase().query(DevicesDbHelper.BIKE_POWER_SENSOR_FLAGS_TABLE,
-                null,
-                DevicesDbHelper.DEVICE_ID + "=?",
-                new String[]{deviceId + ""},
-                null, null, null);
-        if (cursor.moveToFirst()) {
-            result = cursor.getInt(cursor.getColumnIndex(DevicesDbHelper.BIKE_POWER_SENSOR_FLAGS));
-        }
-        cursor.close();
-
-        return result;
+        Integer flags = mCache.get().bikePowerSensorFlags().get(deviceId);
+        return flags == null ? 0 : flags;
     }
 
     @Nullable
@@ -536,23 +535,6 @@ public class DevicesDatabaseManager {
         return result;
     }
 
-    private int getInt(long deviceID, String key) {
-        if (DEBUG) Log.i(TAG, "getInt: deviceID=" + deviceID + ", key=" + key);
-
-        int result = 0;
-
-        // TODO: check list with allowed/valid keys?
-
-        Cursor cursor = getCursor(getDatabase(), deviceID, key);
-        if (cursor.getCount() > 0) {
-            cursor.moveToFirst();
-            result = cursor.getInt(0);
-        }
-        cursor.close();
-
-        return result;
-    }
-
     public List<NameAndBatteryPercentage> getCriticalBatteryDevices(int batteryPercentage) {
         LinkedList<NameAndBatteryPercentage> result = new LinkedList<>();
 
@@ -643,20 +625,46 @@ public class DevicesDatabaseManager {
     }
 
     protected long getSmartphoneDeviceId(DeviceType deviceType) {
-        Cursor cursor = getDatabase().query(DevicesDbHelper.DEVICES,
-                new String[]{DevicesDbHelper.C_ID},
-                DevicesDbHelper.PROTOCOL + "=? AND " + DevicesDbHelper.DEVICE_TYPE + "=?",
-                new String[]{Protocol.SMARTPHONE.name(), deviceType.name()},
-                null,
-                null,
-                null);
-        long deviceId = -1;
-        if (cursor.moveToFirst()) {
-            deviceId = cursor.getLong(cursor.getColumnIndex(DevicesDbHelper.C_ID));
+        Long deviceId = mCache.get().smartphoneDeviceIds().get(deviceType);
+        return deviceId == null ? -1 : deviceId;
+    }
+
+    @NonNull
+    private Devices loadDevices() {
+        SQLiteDatabase db = getDatabase();
+
+        Map<Long, DeviceRow> byId = new HashMap<>();
+        Map<DeviceType, Long> smartphoneDeviceIds = new EnumMap<>(DeviceType.class);
+        try (Cursor cursor = db.query(DevicesDbHelper.DEVICES,
+                new String[]{DevicesDbHelper.C_ID, DevicesDbHelper.PROTOCOL, DevicesDbHelper.DEVICE_TYPE, DevicesDbHelper.ANT_DEVICE_NUMBER,
+                        DevicesDbHelper.BT_ADDRESS, DevicesDbHelper.NAME, DevicesDbHelper.MANUFACTURER_NAME, DevicesDbHelper.PAIRED,
+                        DevicesDbHelper.CALIBRATION_FACTOR},
+                null, null,
+                null, null, DevicesDbHelper.C_ID)) {
+            while (cursor.moveToNext()) {
+                DeviceRow device = new DeviceRow(cursor);
+                byId.put(device.id, device);
+                if (device.protocol == Protocol.SMARTPHONE && device.deviceType != null
+                        && !smartphoneDeviceIds.containsKey(device.deviceType)) {
+                    smartphoneDeviceIds.put(device.deviceType, device.id);
+                }
+            }
+        }
+
+        Map<Long, Integer> bikePowerSensorFlags = new HashMap<>();
+        try (Cursor cursor = db.query(DevicesDbHelper.BIKE_POWER_SENSOR_FLAGS_TABLE,
+                new String[]{DevicesDbHelper.DEVICE_ID, DevicesDbHelper.BIKE_POWER_SENSOR_FLAGS},
+                null, null,
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                if (!bikePowerSensorFlags.containsKey(cursor.getLong(0))) {
+                    bikePowerSensorFlags.put(cursor.getLong(0), cursor.getInt(1));
+                }
+            }
         }
-        cursor.close();
 
-        return  deviceId;
+        return new Devices(Collections.unmodifiableMap(byId), Collections.unmodifiableMap(bikePowerSensorFlags),
+                Collections.unmodifiableMap(smartphoneDeviceIds));
     }
 
     public int deleteDevice(long deviceId) {
@@ -672,6 +680,7 @@ public class DevicesDatabaseManager {
             if (affectedRows == 0) {
                 if (DEBUG) Log.w(TAG, "deleteDevice: No device found with ID " + deviceId + " to delete.");
             }
+            mCache.invalidate();
         } catch (SQLException e) {
             Log.e(TAG, "Error while deleting device with ID " + deviceId, e);
             return -1; // Return -1 to indicate an error
@@ -681,6 +690,49 @@ public class DevicesDatabaseManager {
     }
 
 
+    private record Devices(Map<Long, DeviceRow> byId, Map<Long, Integer> bikePowerSensorFlags,
+                           Map<DeviceType, Long> smartphoneDeviceIds) {
+    }
+
+    private static final class DeviceRow {
+        final long id;
+        @Nullable
+        final Protocol protocol;
+        @Nullable
+        final DeviceType deviceType;
+        final int antDeviceNumber;
+        final String btAddress;
+        final String name;
+        final String manufacturerName;
+        final boolean paired;
+        final double calibrationFactor;
+
+        DeviceRow(@NonNull Cursor cursor) {
+            id = cursor.getLong(0);
+            protocol = parse(Protocol.class, cursor.getString(1));
+            deviceType = parse(DeviceType.class, cursor.getString(2));
+            antDeviceNumber = cursor.getInt(3);
+            btAddress = cursor.getString(4);
+            name = cursor.getString(5);
+            manufacturerName = cursor.getString(6);
+            paired = cursor.getLong(7) > 0;
+            calibrationFactor = cursor.getDouble(8);
+        }
+
+        @Nullable
+        private static <E extends Enum<E>> E parse(@NonNull Class<E> enumClass, @Nullable String name) {
+            if (name == null) {
+                return null;
+            }
+            try {
+                return Enum.valueOf(enumClass, name);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "unknown " + enumClass.getSimpleName() + ": " + name);
+                return null;
+            }
+        }
+    }
+
     public static class DeviceIdAndNameLists {
         public final LinkedList<Long> deviceIds;
         public final LinkedList<String> names;
@@ -30,14 +30,19 @@ import android.provider.BaseColumns;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.res.ResourcesCompat;
 
 import com.atrainingtracker.R;
 import com.atrainingtracker.banalservice.BSportType;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 public class SportTypeDatabaseManager {
 
@@ -48,10 +53,13 @@ public class SportTypeDatabaseManager {
     private static volatile SportTypeDatabaseManager cInstance;
     private final SportTypeDbHelper cDbHelper;
     private final Context mContext; // Store context for operations like getting drawables
+    // all sport types, the hot paths (e.g., the notification and the exports) only do map lookups
+    private final ConfigCache<SportTypes> mCache;
 
     private SportTypeDatabaseManager(@NonNull Context context) {
         this.mContext = context.getApplicationContext();
         this.cDbHelper = new SportTypeDbHelper(this.mContext);
+        this.mCache = new ConfigCache<>("SportTypes", this::loadSportTypes);
     }
 
     @NonNull
@@ -82,16 +90,10 @@ public class SportTypeDatabaseManager {
     public List<Long> getSportTypesIdList() {
         if (DEBUG) Log.i(TAG, "getSportTypesIdList");
 
-        LinkedList<Long> result = new LinkedList<>();
-
-        Cursor cursor = getDatabase().query(SportType.TABLE,
-                null,
-                null, null,
-                null, null, null);
-        while (cursor.moveToNext()) {
-            result.add(cursor.getLong(cursor.getColumnIndex(SportType.C_ID)));
+        List<Long> result = new LinkedList<>();
+        for (SportTypeRow row : mCache.get().rows()) {
+            result.add(row.id);
         }
-        cursor.close();
 
         return result;
     }
@@ -122,16 +124,10 @@ public class SportTypeDatabaseManager {
     public List<String> getSportTypesUiNameList() {
         if (DEBUG) Log.i(TAG, "getSportTypesUiNameList");
 
-        LinkedList<String> result = new LinkedList<>();
-
-        Cursor cursor = getDatabase().query(SportType.TABLE,
-                null,
-                null, null,
-                null, null, null);
-        while (cursor.moveToNext()) {
-            result.add(cursor.getString(cursor.getColumnIndex(SportType.UI_NAME)));
+        List<String> result = new LinkedList<>();
+        for (SportTypeRow row : mCache.get().rows()) {
+            result.add(row.uiName);
         }
-        cursor.close();
 
         return result;
     }
@@ -140,35 +136,17 @@ public class SportTypeDatabaseManager {
         if (DEBUG)
             Log.i(TAG, "getSportTypesIdList, bSportType=" + bSportType.name() + ", avgSpd=" + avgSpd);
 
-        List<Long> result = new LinkedList<>();
-
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = db.query(SportType.TABLE,
-                null,
-                SportType.BASE_SPORT_TYPE + "=? AND " + SportType.MIN_AVG_SPEED + "<=? AND " + SportType.MAX_AVG_SPEED + ">?",
-                new String[]{bSportType.name(), Double.toString(avgSpd), Double.toString(avgSpd)},
-                null, null, null);
-        if (cursor.getCount() == 0   // nothing was found for the UNKNOWN sport type
-                && bSportType == BSportType.UNKNOWN) {
-            cursor = db.query(SportType.TABLE,   // => query again, ignoring the basic sport type
-                    null,
-                    SportType.MIN_AVG_SPEED + "<=? AND " + SportType.MAX_AVG_SPEED + ">?",
-                    new String[]{Double.toString(avgSpd), Double.toString(avgSpd)},
-                    null, null, null);
+        List<SportTypeRow> rows = getRows(bSportType, avgSpd);
+        if (rows.isEmpty()) {
+            return getSportTypesIdList(bSportType);
         }
 
-        if (cursor.getCount() != 0) {
-            while (cursor.moveToNext()) {
-                if (DEBUG)
-                    Log.i(TAG, "adding " + cursor.getString(cursor.getColumnIndex(SportType.UI_NAME)));
-                result.add(cursor.getLong(cursor.getColumnIndex(SportType.C_ID)));
-            }
-        } else {
-            result = getSportTypesIdList(bSportType);
+        List<Long> result = new LinkedList<>();
+        for (SportTypeRow row : rows) {
+            if (DEBUG) Log.i(TAG, "adding " + row.uiName);
+            result.add(row.id);
         }
 
-        cursor.close();
-
         return result;
     }
 
@@ -176,33 +154,39 @@ public class SportTypeDatabaseManager {
         if (DEBUG)
             Log.i(TAG, "getSportTypesUiNameList, bSportType=" + bSportType.name() + ", avgSpd=" + avgSpd);
 
-        List<String> result = new LinkedList<>();
+        List<SportTypeRow> rows = getRows(bSportType, avgSpd);
+        if (rows.isEmpty()) {
+            return getSportTypesUiNameList(bSportType);
+        }
 
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = db.query(SportType.TABLE,
-                null,
-                SportType.BASE_SPORT_TYPE + "=? AND " + SportType.MIN_AVG_SPEED + "<=? AND " + SportType.MAX_AVG_SPEED + ">?",
-                new String[]{bSportType.name(), Double.toString(avgSpd), Double.toString(avgSpd)},
-                null, null, null);
-        if (cursor.getCount() == 0
-                && bSportType == BSportType.UNKNOWN) {  // nothing was found for the UNKNOWN sport type
-            // => query again, ignoring the basic sport type
-            cursor = db.query(SportType.TABLE,
-                    null,
-                    SportType.MIN_AVG_SPEED + "<=? AND " + SportType.MAX_AVG_SPEED + ">?",
-                    new String[]{Double.toString(avgSpd), Double.toString(avgSpd)},
-                    null, null, null);
+        List<String> result = new LinkedList<>();
+        for (SportTypeRow row : rows) {
+            result.add(row.uiName);
         }
 
-        if (cursor.getCount() != 0) {
-            while (cursor.moveToNext()) {
-                result.add(cursor.getString(cursor.getColumnIndex(SportType.UI_NAME)));
+        return result;
+    }
+
+    /**
+     * @return the sport types of the base sport type whose speed range contains the average speed.
+     * When nothing is found for the UNKNOWN sport type, the base sport type is ignored.
+     */
+    private List<SportTypeRow> getRows(BSportType bSportType, double avgSpd) {
+        List<SportTypeRow> allRows = mCache.get().rows();
+        List<SportTypeRow> result = new LinkedList<>();
+        for (SportTypeRow row : allRows) {
+            if (row.bSportTypeName.equals(bSportType.name()) && row.minSpeed <= avgSpd && row.maxSpeed > avgSpd) {
+                result.add(row);
             }
-        } else {
-            result = getSportTypesUiNameList(bSportType);
         }
 
-        cursor.close();
+        if (result.isEmpty() && bSportType == BSportType.UNKNOWN) {
+            for (SportTypeRow row : allRows) {
+                if (row.minSpeed <= avgSpd && row.maxSpeed > avgSpd) {
+                    result.add(row);
+                }
+            }
+        }
 
         return result;
     }
@@ -211,50 +195,32 @@ public class SportTypeDatabaseManager {
         if (DEBUG) Log.i(TAG, "getSportTypesIdList, bSportType=" + bSportType.name());
 
         List<Long> result = new LinkedList<>();
-
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = db.query(SportType.TABLE,
-                null,
-                SportType.BASE_SPORT_TYPE + "=?",
-                new String[]{bSportType.name()},
-                null, null, null);
-
-        if (cursor.getCount() != 0) {
-            while (cursor.moveToNext()) {
-                if (DEBUG)
-                    Log.i(TAG, "adding " + cursor.getString(cursor.getColumnIndex(SportType.UI_NAME)));
-                result.add(cursor.getLong(cursor.getColumnIndex(SportType.C_ID)));
+        for (SportTypeRow row : mCache.get().rows()) {
+            if (row.bSportTypeName.equals(bSportType.name())) {
+                if (DEBUG) Log.i(TAG, "adding " + row.uiName);
+                result.add(row.id);
             }
-        } else {
+        }
+        if (result.isEmpty()) {
             result.add(getSportTypeId(bSportType));
         }
 
-        cursor.close();
-
         return result;
     }
 
     public List<String> getSportTypesUiNameList(BSportType bSportType) {
         if (DEBUG) Log.i(TAG, "getSportTypesUiNameList, bSportType=" + bSportType.name());
 
-        LinkedList<String> result = new LinkedList<>();
-
-        Cursor cursor = getDatabase().query(SportType.TABLE,
-                null,
-                SportType.BASE_SPORT_TYPE + "=?",
-                new String[]{bSportType.name()},
-                null, null, null);
-
-        if (cursor.getCount() != 0) {
-            while (cursor.moveToNext()) {
-                result.add(cursor.getString(cursor.getColumnIndex(SportType.UI_NAME)));
+        List<String> result = new LinkedList<>();
+        for (SportTypeRow row : mCache.get().rows()) {
+            if (row.bSportTypeName.equals(bSportType.name())) {
+                result.add(row.uiName);
             }
-        } else {
+        }
+        if (result.isEmpty()) {
             result.add(getUIName(getSportTypeId(bSportType)));
         }
 
-        cursor.close();
-
         return result;
     }
 
@@ -262,127 +228,113 @@ public class SportTypeDatabaseManager {
     public BSportType getBSportType(long id) {
         if (DEBUG) Log.i(TAG, "getBsportType: id=" + id);
 
-        BSportType result = BSportType.UNKNOWN;
-        String bSportType = getString(id, SportType.BASE_SPORT_TYPE);
-        try {
-            result = BSportType.valueOf(bSportType);
-        } catch (Exception e) {
-        }
-
-        return result;
+        SportTypeRow row = getRow(id);
+        return row == null ? BSportType.UNKNOWN : row.bSportType;
     }
 
     public String getUIName(long id) {
-        return getString(id, SportType.UI_NAME);
+        SportTypeRow row = getRow(id);
+        return row == null ? null : row.uiName;
     }
 
     public String getGcName(long id) {
-        return getString(id, SportType.GOLDEN_CHEETAH_NAME);
+        SportTypeRow row = getRow(id);
+        return row == null ? null : row.gcName;
     }
 
     public String getStravaName(long id) {
-        return getString(id, SportType.STRAVA_NAME);
+        SportTypeRow row = getRow(id);
+        return row == null ? null : row.stravaName;
     }
 
     // public String toString() { TODO  }
     // public int    getUIId()              { return UIId;              }
 
     public String getTcxName(long id) {
-        return getString(id, SportType.TCX_NAME);
+        SportTypeRow row = getRow(id);
+        return row == null ? null : row.tcxName;
     }
 
     public String getRunkeeperName(long id) {
-        return getString(id, SportType.RUNKEEPER_NAME);
+        SportTypeRow row = getRow(id);
+        return row == null ? null : row.runkeeperName;
     }
 
     public String getTrainingPeaksName(long id) {
-        return getString(id, SportType.TRAINING_PEAKS_NAME);
+        SportTypeRow row = getRow(id);
+        return row == null ? null : row.trainingPeaksName;
     }
 
     public double getMinSpeed(long id) {
-        return getDouble(id, SportType.MIN_AVG_SPEED);
+        SportTypeRow row = getRow(id);
+        return row == null ? 0.0 : row.minSpeed;
     }
 
     public double getMaxSpeed(long id) {
-        return getDouble(id, SportType.MAX_AVG_SPEED);
+        SportTypeRow row = getRow(id);
+        return row == null ? 0.0 : row.maxSpeed;
     }
 
     public long getSportTypeIdFromUIName(String UIName) {
-        long result = -1;
-
-        Cursor cursor = getDatabase().query(SportType.TABLE,
-                null,
-                SportType.UI_NAME + "=?", new String[]{UIName},
-                null, null, null);
-        if (cursor.moveToNext()) {
-            result = cursor.getLong(cursor.getColumnIndex(SportType.C_ID));
+        for (SportTypeRow row : mCache.get().rows()) {
+            if (row.uiName != null && row.uiName.equals(UIName)) {
+                return row.id;
+            }
         }
 
-        return result;
+        return -1;
     }
 
-    private String getString(long id, String col) {
-        String result = null;
-
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = db.query(SportType.TABLE,
-                null,
-                SportType.C_ID + "=?",
-                new String[]{Long.toString(id)},
-                null, null, null);
-        if (cursor.moveToNext()) {
-            result = cursor.getString(cursor.getColumnIndex(col));
-        } else {  // try to find the corresponding row of the 'other' sport type
-            cursor = db.query(SportType.TABLE,
-                    null,
-                    SportType.C_ID + "=?",
-                    new String[]{Long.toString(1)},
-                    null, null, null);
-            if (cursor.moveToNext()) {
-                result = cursor.getString(cursor.getColumnIndex(col));
-            }
+    /**
+     * @return the sport type with the id or, when there is none, the 'other' sport type
+     */
+    @Nullable
+    private SportTypeRow getRow(long id) {
+        Map<Long, SportTypeRow> byId = mCache.get().byId();
+        SportTypeRow row = byId.get(id);
+        if (row == null) {  // try to find the corresponding row of the 'other' sport type
+            row = byId.get(getDefaultSportTypeId());
         }
+        return row;
+    }
 
-        return result;
+    public List<String> getSportTypesList() {
+        return getSportTypesUiNameList();
+    }
+
+    @NonNull
+    public ConfigCache<?> getCache() {
+        return mCache;
     }
 
-    private double getDouble(long id, String col) {
-        double result = 0.0;
+    @NonNull
+    private SportTypes loadSportTypes() {
+        List<SportTypeRow> rows = new ArrayList<>();
+        Map<Long, SportTypeRow> byId = new HashMap<>();
 
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = db.query(SportType.TABLE,
+        try (Cursor cursor = getDatabase().query(SportType.TABLE,
                 null,
-                SportType.C_ID + "=?",
-                new String[]{Long.toString(id)},
-                null, null, null);
-        if (cursor.moveToNext()) {
-            result = cursor.getDouble(cursor.getColumnIndex(col));
-        } else {  // try to find the corresponding row of the 'other' sport type
-            cursor = db.query(SportType.TABLE,
-                    null,
-                    SportType.C_ID + "=?",
-                    new String[]{Long.toString(1)},
-                    null, null, null);
-            if (cursor.moveToNext()) {
-                result = cursor.getDouble(cursor.getColumnIndex(col));
+                null, null,
+                null, null, SportType.C_ID)) {
+            while (cursor.moveToNext()) {
+                SportTypeRow row = new SportTypeRow(cursor);
+                rows.add(row);
+                byId.put(row.id, row);
             }
         }
 
-        return result;
+        return new SportTypes(Collections.unmodifiableList(rows), Collections.unmodifiableMap(byId));
     }
 
-    public List<String> getSportTypesList() {
-        List<String> result = new LinkedList<>();
-
-        Cursor cursor = getDatabase().query(SportType.TABLE,
-                null,
-                null, null,
-                null, null, null);
-        while (cursor.moveToNext()) {
-            result.add(cursor.getString(cursor.getColumnIndex(SportType.UI_NAME)));
-        }
+    public long insert(@NonNull ContentValues values) {
+        long id = getDatabase().insert(SportType.TABLE, null, values);
+        mCache.invalidate();
+        return id;
+    }
 
-        return result;
+    public void update(long id, @NonNull ContentValues values) {
+        getDatabase().update(SportType.TABLE, values, SportType.C_ID + "=?", new String[]{Long.toString(id)});
+        mCache.invalidate();
     }
 
     public static boolean canDelete(long id) {
@@ -397,6 +349,7 @@ public class SportTypeDatabaseManager {
         getDatabase().delete(SportType.TABLE,
                 SportType.C_ID + "=?",
                 new String[]{Long.toString(id)});
+        mCache.invalidate();
     }
 
     public static BSportType getBSportType(String ttSportTypeName) {
@@ -488,6 +441,42 @@ public class SportTypeDatabaseManager {
 
     }
 
+    private record SportTypes(List<SportTypeRow> rows, Map<Long, SportTypeRow> byId) {
+    }
+
+    private static final class SportTypeRow {
+        final long id;
+        final String uiName;
+        final String bSportTypeName;
+        final BSportType bSportType;
+        final String gcName;
+        final String tcxName;
+        final String stravaName;
+        final String runkeeperName;
+        final String trainingPeaksName;
+        final double minSpeed;
+        final double maxSpeed;
+
+        SportTypeRow(@NonNull Cursor cursor) {
+            id = cursor.getLong(cursor.getColumnIndexOrThrow(SportType.C_ID));
+            uiName = cursor.getString(cursor.getColumnIndexOrThrow(SportType.UI_NAME));
+            bSportTypeName = String.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(SportType.BASE_SPORT_TYPE)));
+            BSportType parsed = BSportType.UNKNOWN;
+            try {
+                parsed = BSportType.valueOf(bSportTypeName);
+            } catch (Exception e) {
+            }
+            bSportType = parsed;
+            gcName = cursor.getString(cursor.getColumnIndexOrThrow(SportType.GOLDEN_CHEETAH_NAME));
+            tcxName = cursor.getString(cursor.getColumnIndexOrThrow(SportType.TCX_NAME));
+            stravaName = cursor.getString(cursor.getColumnIndexOrThrow(SportType.STRAVA_NAME));
+            runkeeperName = cursor.getString(cursor.getColumnIndexOrThrow(SportType.RUNKEEPER_NAME));
+            trainingPeaksName = cursor.getString(cursor.getColumnIndexOrThrow(SportType.TRAINING_PEAKS_NAME));
+            minSpeed = cursor.getDouble(cursor.getColumnIndexOrThrow(SportType.MIN_AVG_SPEED));
+            maxSpeed = cursor.getDouble(cursor.getColumnIndexOrThrow(SportType.MAX_AVG_SPEED));
+        }
+    }
+
     // the columns of the table
     public static final class SportType {
         public static final String TABLE = "SportTypes";
@@ -23,6 +23,7 @@ import android.content.Intent;
 import android.util.Log;
 
 import com.atrainingtracker.banalservice.BANALService;
+import com.atrainingtracker.banalservice.TickScheduler;
 import com.atrainingtracker.banalservice.sensor.MyIntegerAccumulatorSensor;
 import com.atrainingtracker.banalservice.sensor.MySensor;
 import com.atrainingtracker.banalservice.sensor.MySensorManager;
@@ -33,8 +34,6 @@ import com.atrainingtracker.trainingtracker.TrainingApplication;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class ClockDevice extends MyDevice {
     private static final String TAG = "ClockDevice";
@@ -55,7 +54,8 @@ public class ClockDevice extends MyDevice {
     protected int mTotalTime, mActiveTime, mLapTime;
     protected int mLaps = BANALService.INIT_LAP_NR;
 
-    private Timer timer;
+    private final Runnable mClockTask = this::onClockTick;
+    private final Runnable mNewTimeEventTask = this::sendNewTimeEvent;
     private boolean timerRunning = false;
     private final DateFormat df = SimpleDateFormat.getTimeInstance();
 
@@ -117,16 +117,16 @@ public class ClockDevice extends MyDevice {
 
         // timer might be already running?
         if (!timerRunning) {
-            timer = new Timer();
-            timer.scheduleAtFixedRate(new ClockTimeTask(), 0, 1000);
+            // the time is updated first, but the others are only notified when all the other values of this tick are available
+            TickScheduler.getInstance().register(TickScheduler.Phase.CLOCK, mClockTask);
+            TickScheduler.getInstance().register(TickScheduler.Phase.NOTIFICATION, mNewTimeEventTask);
             timerRunning = true;
         }
     }
 
     private synchronized void stopTimer() {
-        timer.cancel();
-        timer.purge();
-        timer = null;
+        TickScheduler.getInstance().unregister(mClockTask);
+        TickScheduler.getInstance().unregister(mNewTimeEventTask);
         timerRunning = false;
     }
 
@@ -136,7 +136,7 @@ public class ClockDevice extends MyDevice {
         // Log.d(TAG, "shutDown");
         super.shutDown();
 
-        if (timer != null) {
+        if (timerRunning) {
             stopTimer();
         }
 
@@ -153,20 +153,19 @@ public class ClockDevice extends MyDevice {
         mLapTimeSensor_s.reset();
     }
 
-    private class ClockTimeTask extends TimerTask {
-        @Override
-        public void run() {
-            mTotalTimeSensor_s.increment(1);
-            mActiveTimeSensor_s.increment(1);
-            mLapTimeSensor_s.increment(1);
+    private void onClockTick() {
+        mTotalTimeSensor_s.increment(1);
+        mActiveTimeSensor_s.increment(1);
+        mLapTimeSensor_s.increment(1);
 
-            mTimeOfDaySensor.newValue(df.format(Calendar.getInstance().getTime()));
+        mTimeOfDaySensor.newValue(df.format(Calendar.getInstance().getTime()));
+    }
 
-            // send broadcast
-            if (DEBUG) Log.d(TAG, "sending new time event broadcast");
-            mContext.sendBroadcast(new Intent(BANALService.NEW_TIME_EVENT_INTENT)
-                    .setPackage(mContext.getPackageName()));
-        }
+    private void sendNewTimeEvent() {
+        // send broadcast
+        if (DEBUG) Log.d(TAG, "sending new time event broadcast");
+        mContext.sendBroadcast(new Intent(BANALService.NEW_TIME_EVENT_INTENT)
+                .setPackage(mContext.getPackageName()));
     }
 
 //    private final TimerTask timerClock = new TimerTask()
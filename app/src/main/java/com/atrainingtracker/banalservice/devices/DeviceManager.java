@@ -75,13 +75,15 @@ import java.util.Set;
 
 import static com.atrainingtracker.banalservice.BSportType.UNKNOWN;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 
 
 public class DeviceManager {
     private static final String TAG = "DeviceManager";
     private static final boolean DEBUG = BANALService.getDebug(false);
-    protected static MyRemoteDevice cMyRemoteDeviceCurrentlySearchingFor = null;
+    protected static volatile boolean cSearching = false;
     protected Context mContext;
     protected ClockDevice mClockDevice;
     protected SpeedAndLocationDevice mSpeedAndLocationDevice_GPS, mSpeedAndLocationDevice_GoogleFused, mSpeedAndLocationDevice_Network;
@@ -92,12 +94,12 @@ public class DeviceManager {
     // protected IntentFilter mRemoveDeviceFilter            = new IntentFilter(BANALService.REMOVE_DEVICE);
     // protected IntentFilter mCreateNewDeviceFilter    = new IntentFilter(BANALService.CREATE_NEW_DEVICE);
     protected IntentFilter mSearchingStoppedForOneFilter = new IntentFilter(BANALService.SEARCHING_STOPPED_FOR_ONE_INTENT);
+    protected IntentFilter mReceivingDataForOneFilter = new IntentFilter(BANALService.RECEIVING_DATA_FOR_ONE_INTENT);
     protected IntentFilter mStartSearchingForNewDevicesFilter = new IntentFilter(BANALService.START_SEARCHING_FOR_NEW_DEVICES_INTENT);
     protected IntentFilter mStopSearchingForNewDevicesFilter = new IntentFilter(BANALService.STOP_SEARCHING_FOR_NEW_DEVICES_INTENT);
     protected MySensorManager mSensorManager;
     protected Map<Long, MyRemoteDevice> mMyRemoteDevices = new HashMap<Long, MyRemoteDevice>();
-    protected Map<MyRemoteDevice, Integer> mMyRemoteDeviceTries = new HashMap<>();
-    protected LinkedList<MyRemoteDevice> mSearchQueue = new LinkedList<MyRemoteDevice>();
+    protected SearchScheduler mSearchScheduler;
     protected LinkedList<Long> mFoundDevices = new LinkedList<>();
     protected ANTSearchForNewDevicesEngineMultiDeviceSearch mAntAsyncSearchEngine = null;
     protected BTSearchForNewDevicesEngine mBTSearchForNewDevicesEngine = null;
@@ -112,34 +114,50 @@ public class DeviceManager {
     BANALService mBanalService = null;
     private final BroadcastReceiver mSearchingStoppedForOneReceiver = new BroadcastReceiver() {
         // it was observed that this might be called from Remote Devices that are currently tracking
-        // => not only from the device we are currently searching for
-        // thus, we must be a little bit careful here.
+        // => not only from the devices we are currently searching for
+        // thus, the SearchScheduler ignores the devices it did not start.
         public void onReceive(Context context, Intent intent) {
             boolean success = intent.getBooleanExtra(BANALService.SEARCHING_FINISHED_SUCCESS, false);
             long deviceID = intent.getLongExtra(BANALService.DEVICE_ID, -1);
             if (DEBUG)
                 Log.i(TAG, "finished searching for a remote device, success=" + success + ", deviceID=" + deviceID);
-            if (cMyRemoteDeviceCurrentlySearchingFor != null
-                    && cMyRemoteDeviceCurrentlySearchingFor.getDeviceId() == deviceID) {  // it is indeed the device that we are currently searching
-                if (!success) {                                                     // it was not found
-                    if (!mMyRemoteDeviceTries.containsKey(cMyRemoteDeviceCurrentlySearchingFor)        // device not in the list
-                            || mMyRemoteDeviceTries.get(cMyRemoteDeviceCurrentlySearchingFor) <= 1) {  // no longer try to search for this device
-                        if (DEBUG)
-                            Log.i(TAG, "max number of tries <= 1 -> give up searching for this device");
-                        cMyRemoteDeviceCurrentlySearchingFor.shutDown();                // so we shut it down
-                        mMyRemoteDevices.remove(deviceID);                              // and remove it
-                    } else {  // continue searching
-                        if (DEBUG)
-                            Log.i(TAG, "max number of tries > 1 -> give this device another chance");
-                        mMyRemoteDeviceTries.put(cMyRemoteDeviceCurrentlySearchingFor, mMyRemoteDeviceTries.get(cMyRemoteDeviceCurrentlySearchingFor) - 1);
-                        mSearchQueue.addLast(cMyRemoteDeviceCurrentlySearchingFor);
-                    }
-
-                }
-            } else {
-                Log.d(TAG, "WTF: a remote device we are not searching for stopped searching.");
+            MyRemoteDevice myRemoteDevice = mMyRemoteDevices.get(deviceID);
+            if (myRemoteDevice != null) {
+                mSearchScheduler.onSearchStopped(myRemoteDevice, success);
+            }
+            mSearchScheduler.schedule();
+        }
+    };
+    private final BroadcastReceiver mReceivingDataForOneReceiver = new BroadcastReceiver() {
+        public void onReceive(Context context, Intent intent) {
+            long deviceID = intent.getLongExtra(BANALService.DEVICE_ID, -1);
+            MyRemoteDevice myRemoteDevice = mMyRemoteDevices.get(deviceID);
+            if (myRemoteDevice != null) {
+                mSearchScheduler.onReceivingData(myRemoteDevice);
+                mSearchScheduler.schedule();
             }
-            searchForNextRemoteDevice();
+        }
+    };
+    private final SearchScheduler.Listener mSearchListener = new SearchScheduler.Listener() {
+        public boolean shouldSearch(@NonNull MyRemoteDevice myRemoteDevice) {
+            BSportType bSportType = mBanalService.getUserSelectedBSportType();
+
+            // TODO: We should always search for BSportType.UNKNOWN devices!
+            return !TrainingApplication.searchOnlyForSportSpecificDevices()                    // either, the sport type is ignored
+                    || bSportType == null || bSportType == UNKNOWN                              // or the sport type is not yet defined
+                    || bSportType == myRemoteDevice.getDeviceType().getSportType();             // or it is the correct sport type
+        }
+
+        public void onGiveUp(@NonNull MyRemoteDevice myRemoteDevice) {
+            myRemoteDevice.shutDown();                                  // so we shut it down
+            mMyRemoteDevices.remove(myRemoteDevice.getDeviceId());      // and remove it
+        }
+
+        public void onSearchingFinished() {
+            cSearching = false;
+            // finished searching, broadcast this
+            mContext.sendBroadcast(new Intent(BANALService.SEARCHING_FINISHED_FOR_ALL_INTENT)
+                    .setPackage(mContext.getPackageName()));
         }
     };
     private final BroadcastReceiver mPairingChangedReceiver = new BroadcastReceiver() {
@@ -256,6 +274,7 @@ public class DeviceManager {
         mBanalService = banalService;
 
         mDevicesDatabaseManager = DevicesDatabaseManager.getInstance(mContext);
+        mSearchScheduler = new SearchScheduler(mSearchListener);
 
         mSensorManager = mySensorManager;
 
@@ -299,12 +318,13 @@ public class DeviceManager {
 
         ContextCompat.registerReceiver(mContext, mPairingChangedReceiver, mPairingChangedFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
         ContextCompat.registerReceiver(mContext, mSearchingStoppedForOneReceiver, mSearchingStoppedForOneFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        ContextCompat.registerReceiver(mContext, mReceivingDataForOneReceiver, mReceivingDataForOneFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
         ContextCompat.registerReceiver(mContext, mStartSearchingForNewDevicesReceiver, mStartSearchingForNewDevicesFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
         ContextCompat.registerReceiver(mContext, mStopSearchingForNewDevicesReceiver, mStopSearchingForNewDevicesFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
     }
 
     public static boolean isSearchingForARemoteDevice() {
-        return cMyRemoteDeviceCurrentlySearchingFor != null;
+        return cSearching;
     }
 
     public void shutDown() {
@@ -314,13 +334,14 @@ public class DeviceManager {
             myDevice.shutDown();
         }
 
-        cMyRemoteDeviceCurrentlySearchingFor = null;
+        cSearching = false;
         mMyRemoteDevices = null;
-        mSearchQueue = null;
+        mSearchScheduler.clear();
         // TODO: also remove entries of the lists?
 
         mContext.unregisterReceiver(mPairingChangedReceiver);
         mContext.unregisterReceiver(mSearchingStoppedForOneReceiver);
+        mContext.unregisterReceiver(mReceivingDataForOneReceiver);
         // mContext.unregisterReceiver(mStartSearchingReceiver);
         mContext.unregisterReceiver(mStartSearchingForNewDevicesReceiver);
         mContext.unregisterReceiver(mStopSearchingForNewDevicesReceiver);
@@ -385,59 +406,40 @@ public class DeviceManager {
                 Log.d(TAG, "BUG: an unpaired device became unpaired");
             } else {
                 MyRemoteDevice myRemoteDevice = createRemoteDevice(deviceId);
-                if (myRemoteDevice != null) {
-                    mMyRemoteDeviceTries.put(myRemoteDevice, 1);   // 1 should be sufficient here.
+                if (myRemoteDevice != null) {   // already queued with a single try, 1 should be sufficient here.
                     if (!isSearchingForARemoteDevice()) {
-                        searchForNextRemoteDevice();
+                        startSearching();
+                    } else {
+                        mSearchScheduler.schedule();
                     }
                 }
             }
         }
     }
 
-    protected void searchForNextRemoteDevice() {
-        if (DEBUG) Log.d(TAG, "searchForNextRemoteDevice");
-
-        if (mSearchQueue.isEmpty()) {
-            if (DEBUG) Log.d(TAG, "empty search queue");
-            cMyRemoteDeviceCurrentlySearchingFor = null;
-            // finished searching, broadcast this
-            mContext.sendBroadcast(new Intent(BANALService.SEARCHING_FINISHED_FOR_ALL_INTENT)
-                    .setPackage(mContext.getPackageName()));
-        } else {
-            cMyRemoteDeviceCurrentlySearchingFor = mSearchQueue.pollFirst();
-            if (cMyRemoteDeviceCurrentlySearchingFor.isSearching()) {
-                // the device is still searching => probably something went wrong
-                Log.d(TAG, "BUG: should start searching for an already searching device");
-            } else if (cMyRemoteDeviceCurrentlySearchingFor.isReceivingData()) { // if the device is already receiving data, we do not have to search for it
-                if (DEBUG) Log.i(TAG, "device is already receiving data, so we continue");
-                searchForNextRemoteDevice();
-            } else {
+    protected void startSearching() {
+        cSearching = true;
+        mSearchScheduler.start();
+    }
 
-                BSportType bSportType = mBanalService.getUserSelectedBSportType();
-
-                // TODO: We should always search for BSportType.UNKNOWN devices!
-                if (!TrainingApplication.searchOnlyForSportSpecificDevices()                                       // either, the sport type is ignored
-                        || bSportType == null || bSportType == UNKNOWN                                              // or the sport type is not yet defined
-                        || bSportType == cMyRemoteDeviceCurrentlySearchingFor.getDeviceType().getSportType()) {     // or it is the correct sport type
-                    if (DEBUG)
-                        Log.i(TAG, "starting to search for the device at the head of the queue");
-                    cMyRemoteDeviceCurrentlySearchingFor.startSearching();                                          // then, we start searching for this device.
-                } else {
-                    if (DEBUG)
-                        Log.i(TAG, "Device type at the head of the search queue does not fit to the user selected sport type => this device will be ignored");
-                    searchForNextRemoteDevice();                                                                    // Otherwise, we search for the next device.
-                }
+    public String getNameOfSearchingDevice() {
+        StringBuilder names = new StringBuilder();
+        for (MyRemoteDevice myRemoteDevice : mSearchScheduler.getSearchingDevices()) {
+            if (names.length() > 0) {
+                names.append(", ");
             }
+            names.append(myRemoteDevice.getName());
         }
+        return names.length() == 0 ? null : names.toString();
     }
 
-    public MyRemoteDevice getCurrentlySearchingForRemoteDevice() {
-        return cMyRemoteDeviceCurrentlySearchingFor;
-    }
-
-    public String getNameOfSearchingDevice() {
-        return cMyRemoteDeviceCurrentlySearchingFor == null ? null : cMyRemoteDeviceCurrentlySearchingFor.getName();
+    /**
+     * @return the time from queueing the device for the search until it received data in milliseconds,
+     * or null when it did not yet receive data since the last search.
+     */
+    @Nullable
+    public Long getTimeToFirstData_ms(long deviceId) {
+        return mSearchScheduler.getTimeToFirstData_ms(deviceId);
     }
 
     public void startSearchForPairedDevices() {
@@ -464,19 +466,16 @@ public class DeviceManager {
         for (MyRemoteDevice myRemoteDevice : existingRemoteDevices) {
             if (DEBUG)
                 Log.i(TAG, "adding existing device with ID " + myRemoteDevice.getDeviceId() + " to the head of the search queue");
-            mSearchQueue.addFirst(myRemoteDevice);
+            mSearchScheduler.enqueue(myRemoteDevice, true);
         }
 
         // give all devices the same number of chances ...
-        mMyRemoteDeviceTries = new HashMap<>();
-        for (MyRemoteDevice myRemoteDevice : mSearchQueue) {
-            mMyRemoteDeviceTries.put(myRemoteDevice, TrainingApplication.getNumberOfSearchTries());
-        }
+        mSearchScheduler.setTries(TrainingApplication.getNumberOfSearchTries());
 
-        // now, start searching
+        // now, start searching, the protocols in parallel
         mContext.sendBroadcast(new Intent(BANALService.SEARCHING_STARTED_FOR_ALL_INTENT)
                 .setPackage(mContext.getPackageName()));
-        searchForNextRemoteDevice();
+        startSearching();
     }
 
     public BSportType getSportType() {
@@ -671,12 +670,10 @@ public class DeviceManager {
 
         MyRemoteDevice myRemoteDevice = mMyRemoteDevices.get(deviceId);
 
-        mSearchQueue.remove(myRemoteDevice);
-        if (cMyRemoteDeviceCurrentlySearchingFor == myRemoteDevice) {
-            searchForNextRemoteDevice();
-        }
+        mSearchScheduler.remove(myRemoteDevice);
         mMyRemoteDevices.remove(deviceId);
         myRemoteDevice.shutDown();
+        mSearchScheduler.schedule();
     }
 
     public MyRemoteDevice createNewANTDevice(long deviceID, DeviceType deviceType, int antDeviceNumber) {
@@ -728,7 +725,7 @@ public class DeviceManager {
 
         if (myANTDevice != null) {
             mMyRemoteDevices.put(deviceID, myANTDevice);
-            mSearchQueue.addFirst(myANTDevice);
+            mSearchScheduler.enqueue(myANTDevice, true);
         }
 
         return myANTDevice;
@@ -781,7 +778,7 @@ public class DeviceManager {
 
         if (myBTLEDevice != null) {
             mMyRemoteDevices.put(deviceID, myBTLEDevice);
-            mSearchQueue.addFirst(myBTLEDevice);
+            mSearchScheduler.enqueue(myBTLEDevice, true);
         }
 
         return myBTLEDevice;
@@ -37,6 +37,7 @@ import com.atrainingtracker.banalservice.sensor.SensorType;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
 
@@ -46,7 +47,8 @@ public abstract class MyDevice {
     private final IntentFilter resetAccumulatorsFilter = new IntentFilter(BANALService.RESET_ACCUMULATORS_INTENT);
     protected Context mContext;
     protected DeviceType mDeviceType;
-    protected EnumMap<SensorType, MySensor> mSensorMap = new EnumMap<SensorType, MySensor>(SensorType.class);
+    // copy-on-write: the map is replaced on every change, so it can be read and iterated from any thread without locking
+    protected volatile EnumMap<SensorType, MySensor> mSensorMap = new EnumMap<SensorType, MySensor>(SensorType.class);
     protected MySensorManager mMySensorManager;
     private final String TAG = "MyDevice";
     private boolean mSensorsRegistered = false;
@@ -113,18 +115,22 @@ public abstract class MyDevice {
 
     protected abstract void addSensors();
 
-    protected void addSensor(MySensor mySensor) {
+    protected synchronized void addSensor(MySensor mySensor) {
         if (DEBUG) {
             Log.d(TAG, "addSensor(" + mySensor.getSensorType().name() + ")");
         }
 
-        mSensorMap.put(mySensor.getSensorType(), mySensor);
+        EnumMap<SensorType, MySensor> sensorMap = new EnumMap<SensorType, MySensor>(mSensorMap);
+        sensorMap.put(mySensor.getSensorType(), mySensor);
+        mSensorMap = sensorMap;
     }
 
-    protected void removeSensor(SensorType sensorType) {
+    protected synchronized void removeSensor(SensorType sensorType) {
         if (DEBUG) Log.d(TAG, "removeSensor(" + sensorType.name() + ")");
 
-        mSensorMap.remove(sensorType);
+        EnumMap<SensorType, MySensor> sensorMap = new EnumMap<SensorType, MySensor>(mSensorMap);
+        sensorMap.remove(sensorType);
+        mSensorMap = sensorMap;
     }
 
     protected void registerSensors() {
@@ -235,7 +241,7 @@ public abstract class MyDevice {
      * returns the Sensors
      */
     public Collection<MySensor> getSensors() {
-        return mSensorMap.values();
+        return Collections.unmodifiableCollection(mSensorMap.values());
     }
 
     public int getNrOfSensors() {
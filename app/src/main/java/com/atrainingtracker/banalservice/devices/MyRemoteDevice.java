@@ -89,6 +89,16 @@ public abstract class MyRemoteDevice extends MyDevice {
         return mSearching;
     }
 
+    /**
+     * the sensors are registered when the device starts to receive data, so we also tell the DeviceManager
+     */
+    @Override
+    protected void registerSensors() {
+        super.registerSensors();
+        mContext.sendBroadcast(addSearchDetails(new Intent(BANALService.RECEIVING_DATA_FOR_ONE_INTENT))
+                .setPackage(mContext.getPackageName()));
+    }
+
     private Intent addSearchDetails(Intent intent) {
         intent.putExtra(BANALService.PROTOCOL, getProtocol().name());
         intent.putExtra(BANALService.DEVICE_TYPE, getDeviceType().name());
@@ -0,0 +1,288 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.banalservice.devices;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.banalservice.BANALService;
+import com.atrainingtracker.banalservice.Protocol;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searches for the paired remote devices.
+ * <p>
+ * Each protocol has its own queue, so ANT+ channel searches and Bluetooth LE scans run in parallel.
+ * Per protocol, at most getMaxConcurrentSearches() searches run at the same time.
+ * A device that is already receiving data is not searched, even when it is still in the queue.
+ * The time from adding a device to the queue until it receives data is kept as its time to first data.
+ * <p>
+ * All methods must be called from the main thread, i.e., from the broadcast receivers of the DeviceManager.
+ */
+class SearchScheduler {
+    private static final String TAG = "SearchScheduler";
+    private static final boolean DEBUG = BANALService.getDebug(false);
+
+    // ANT+ searches share the radio with the tracking channels, Bluetooth LE connection attempts are serialized by most stacks
+    protected static final int MAX_CONCURRENT_ANT_PLUS_SEARCHES = 4;
+    protected static final int MAX_CONCURRENT_BLUETOOTH_LE_SEARCHES = 2;
+
+    interface Listener {
+        /**
+         * @return false when the device should not be searched, e.g., because it does not fit to the sport type
+         */
+        boolean shouldSearch(@NonNull MyRemoteDevice myRemoteDevice);
+
+        /**
+         * called when the device was not found and there are no more tries left
+         */
+        void onGiveUp(@NonNull MyRemoteDevice myRemoteDevice);
+
+        /**
+         * called when the last search finished
+         */
+        void onSearchingFinished();
+    }
+
+    private final Listener mListener;
+    private final EnumMap<Protocol, LinkedList<MyRemoteDevice>> mQueues = new EnumMap<>(Protocol.class);
+    private final EnumMap<Protocol, List<MyRemoteDevice>> mSearches = new EnumMap<>(Protocol.class);
+    private final Map<MyRemoteDevice, Integer> mTries = new HashMap<>();
+    // the time when the device was added to the queue, removed when it receives data
+    private final Map<Long, Long> mQueuedTime_ms = new HashMap<>();
+    private final Map<Long, Long> mTimeToFirstData_ms = new HashMap<>();
+    private boolean mSearching = false;
+
+    SearchScheduler(@NonNull Listener listener) {
+        mListener = listener;
+    }
+
+    protected static int getMaxConcurrentSearches(@NonNull Protocol protocol) {
+        switch (protocol) {
+            case ANT_PLUS:
+                return MAX_CONCURRENT_ANT_PLUS_SEARCHES;
+            case BLUETOOTH_LE:
+                return MAX_CONCURRENT_BLUETOOTH_LE_SEARCHES;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * adds the device to the queue of its protocol, the search starts with the next call of schedule().
+     * A device that is already queued or searched is not added again.
+     */
+    void enqueue(@NonNull MyRemoteDevice myRemoteDevice, boolean first) {
+        Protocol protocol = myRemoteDevice.getProtocol();
+        LinkedList<MyRemoteDevice> queue = getQueue(protocol);
+        if (queue.contains(myRemoteDevice) || getSearches(protocol).contains(myRemoteDevice)) {
+            return;
+        }
+
+        if (first) {
+            queue.addFirst(myRemoteDevice);
+        } else {
+            queue.addLast(myRemoteDevice);
+        }
+        if (!mTries.containsKey(myRemoteDevice)) {
+            mTries.put(myRemoteDevice, 1);
+        }
+        if (!mQueuedTime_ms.containsKey(myRemoteDevice.getDeviceId())) {
+            mQueuedTime_ms.put(myRemoteDevice.getDeviceId(), SystemClock.elapsedRealtime());
+        }
+    }
+
+    /**
+     * gives all queued devices the same number of tries
+     */
+    void setTries(int tries) {
+        for (LinkedList<MyRemoteDevice> queue : mQueues.values()) {
+            for (MyRemoteDevice myRemoteDevice : queue) {
+                mTries.put(myRemoteDevice, tries);
+            }
+        }
+    }
+
+    /**
+     * starts a new search round.  The listener is notified when it is finished, even when there is nothing to search.
+     * The times to the first data of the previous round are forgotten.
+     */
+    void start() {
+        mTimeToFirstData_ms.clear();
+        mSearching = true;
+        schedule();
+    }
+
+    /**
+     * starts as many searches as allowed per protocol.  When nothing is left to search, the listener is notified once.
+     */
+    void schedule() {
+        for (Map.Entry<Protocol, LinkedList<MyRemoteDevice>> entry : mQueues.entrySet()) {
+            Protocol protocol = entry.getKey();
+            LinkedList<MyRemoteDevice> queue = entry.getValue();
+            List<MyRemoteDevice> searches = getSearches(protocol);
+
+            while (searches.size() < getMaxConcurrentSearches(protocol) && !queue.isEmpty()) {
+                MyRemoteDevice myRemoteDevice = queue.pollFirst();
+                if (myRemoteDevice.isSearching()) {
+                    // the device is still searching => probably something went wrong
+                    Log.d(TAG, "BUG: should start searching for an already searching device");
+                } else if (myRemoteDevice.isReceivingData()) {  // if the device is already receiving data, we do not have to search for it
+                    if (DEBUG) Log.i(TAG, myRemoteDevice.getName() + " is already receiving data");
+                    onReceivingData(myRemoteDevice);
+                } else if (!mListener.shouldSearch(myRemoteDevice)) {
+                    if (DEBUG) Log.i(TAG, myRemoteDevice.getName() + " will be ignored");
+                    mTries.remove(myRemoteDevice);
+                    mQueuedTime_ms.remove(myRemoteDevice.getDeviceId());
+                } else {
+                    if (DEBUG) Log.i(TAG, "starting to search for " + myRemoteDevice.getName());
+                    mSearching = true;
+                    searches.add(myRemoteDevice);
+                    myRemoteDevice.startSearching();
+                }
+            }
+        }
+
+        if (!isSearching() && mSearching) {
+            mSearching = false;
+            if (DEBUG) Log.i(TAG, "finished searching, times to first data: " + mTimeToFirstData_ms);
+            mListener.onSearchingFinished();
+        }
+    }
+
+    /**
+     * called when the search for a device stopped.  Without success, the device is queued again until there are no more tries left.
+     */
+    void onSearchStopped(@NonNull MyRemoteDevice myRemoteDevice, boolean success) {
+        if (!getSearches(myRemoteDevice.getProtocol()).remove(myRemoteDevice)) {
+            // e.g. a Bluetooth LE device that lost its connection searches on its own
+            if (DEBUG) Log.d(TAG, "a remote device we are not searching for stopped searching: " + myRemoteDevice.getName());
+            return;
+        }
+
+        if (success) {
+            mTries.remove(myRemoteDevice);
+        } else {
+            Integer tries = mTries.get(myRemoteDevice);
+            if (tries == null || tries <= 1) {  // no longer try to search for this device
+                if (DEBUG) Log.i(TAG, "max number of tries <= 1 -> give up searching for " + myRemoteDevice.getName());
+                mTries.remove(myRemoteDevice);
+                mQueuedTime_ms.remove(myRemoteDevice.getDeviceId());
+                mListener.onGiveUp(myRemoteDevice);
+            } else {
+                if (DEBUG) Log.i(TAG, "max number of tries > 1 -> give " + myRemoteDevice.getName() + " another chance");
+                mTries.put(myRemoteDevice, tries - 1);
+                getQueue(myRemoteDevice.getProtocol()).addLast(myRemoteDevice);
+            }
+        }
+    }
+
+    /**
+     * called when the device started to receive data.  A pending search for it is cancelled.
+     */
+    void onReceivingData(@NonNull MyRemoteDevice myRemoteDevice) {
+        if (getQueue(myRemoteDevice.getProtocol()).remove(myRemoteDevice)) {
+            if (DEBUG) Log.i(TAG, myRemoteDevice.getName() + " is receiving data, so the search is cancelled");
+            mTries.remove(myRemoteDevice);
+        }
+
+        Long queuedTime_ms = mQueuedTime_ms.remove(myRemoteDevice.getDeviceId());
+        if (queuedTime_ms != null) {
+            long timeToFirstData_ms = SystemClock.elapsedRealtime() - queuedTime_ms;
+            mTimeToFirstData_ms.put(myRemoteDevice.getDeviceId(), timeToFirstData_ms);
+            if (DEBUG) Log.i(TAG, "time to first data of " + myRemoteDevice.getName() + ": " + timeToFirstData_ms + " ms");
+        }
+    }
+
+    void remove(@NonNull MyRemoteDevice myRemoteDevice) {
+        getQueue(myRemoteDevice.getProtocol()).remove(myRemoteDevice);
+        getSearches(myRemoteDevice.getProtocol()).remove(myRemoteDevice);
+        mTries.remove(myRemoteDevice);
+        mQueuedTime_ms.remove(myRemoteDevice.getDeviceId());
+    }
+
+    void clear() {
+        mQueues.clear();
+        mSearches.clear();
+        mTries.clear();
+        mQueuedTime_ms.clear();
+        mTimeToFirstData_ms.clear();
+        mSearching = false;
+    }
+
+    boolean isSearching() {
+        for (List<MyRemoteDevice> searches : mSearches.values()) {
+            if (!searches.isEmpty()) {
+                return true;
+            }
+        }
+        for (LinkedList<MyRemoteDevice> queue : mQueues.values()) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NonNull
+    List<MyRemoteDevice> getSearchingDevices() {
+        List<MyRemoteDevice> result = new ArrayList<>();
+        for (List<MyRemoteDevice> searches : mSearches.values()) {
+            result.addAll(searches);
+        }
+        return result;
+    }
+
+    /**
+     * @return the time from queueing to the first data in milliseconds or null when the device did not yet receive data since the last start().
+     */
+    @Nullable
+    Long getTimeToFirstData_ms(long deviceId) {
+        return mTimeToFirstData_ms.get(deviceId);
+    }
+
+    @NonNull
+    private LinkedList<MyRemoteDevice> getQueue(@NonNull Protocol protocol) {
+        LinkedList<MyRemoteDevice> queue = mQueues.get(protocol);
+        if (queue == null) {
+            queue = new LinkedList<>();
+            mQueues.put(protocol, queue);
+        }
+        return queue;
+    }
+
+    @NonNull
+    private List<MyRemoteDevice> getSearches(@NonNull Protocol protocol) {
+        List<MyRemoteDevice> searches = mSearches.get(protocol);
+        if (searches == null) {
+            searches = new ArrayList<>();
+            mSearches.put(protocol, searches);
+        }
+        return searches;
+    }
+}
@@ -24,6 +24,7 @@ import android.content.Context;
 import android.util.Log;
 
 import com.atrainingtracker.banalservice.BANALService;
+import com.atrainingtracker.banalservice.TickScheduler;
 import com.atrainingtracker.banalservice.filters.FilterData;
 import com.atrainingtracker.banalservice.filters.FilterType;
 import com.atrainingtracker.banalservice.filters.FilteredSensorData;
@@ -32,10 +33,6 @@ import com.atrainingtracker.banalservice.sensor.MySensor;
 import com.atrainingtracker.banalservice.sensor.MySensorManager;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
 /**
  * a device to calculate the vertical speed, slope, ascent, and descent.
  */
@@ -45,7 +42,7 @@ public class VerticalSpeedAndSlopeDevice extends MyDevice {
     private static final String TAG = "VerticalSpeedAndSlopeDevice";
     private static final Boolean DEBUG = BANALService.getDebug(false);
 
-    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Runnable mCalculateMetricsTask = this::calculateMetrics;
 
     private MySensor<Integer> mVerticalSpeedSensor;
     private MySensor<Integer> mSlopeSensor;
@@ -71,7 +68,7 @@ public class VerticalSpeedAndSlopeDevice extends MyDevice {
 
         registerSensors();
 
-        mScheduler.scheduleWithFixedDelay(this::calculateMetrics, 1, 1, TimeUnit.SECONDS);
+        TickScheduler.getInstance().register(TickScheduler.Phase.DERIVED_DEVICES, mCalculateMetricsTask);
     }
 
     @Override
@@ -83,9 +80,7 @@ public class VerticalSpeedAndSlopeDevice extends MyDevice {
     public void shutDown() {
         super.shutDown();
 
-        if (mScheduler != null && !mScheduler.isShutdown()) {
-            mScheduler.shutdown();
-        }
+        TickScheduler.getInstance().unregister(mCalculateMetricsTask);
     }
 
     @Override
@@ -24,20 +24,15 @@ import android.content.Context;
 import android.util.Log;
 
 import com.atrainingtracker.banalservice.BANALService;
+import com.atrainingtracker.banalservice.TickScheduler;
 import com.atrainingtracker.banalservice.devices.DeviceType;
 import com.atrainingtracker.banalservice.sensor.MyDoubleAccumulatorSensor;
 import com.atrainingtracker.banalservice.sensor.MySensor;
 import com.atrainingtracker.banalservice.sensor.MySensorManager;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-
 public class BTLERunSpeedDevice extends MyBTLEDevice {
     private static final boolean DEBUG = BANALService.getDebug(false);
-    private final ScheduledExecutorService mScheduler = Executors.newScheduledThreadPool(1);
     protected MySensor<Integer> mCadenceSensor;
     protected MySensor<Double> mSpeedSensor;
     protected MySensor<Double> mPaceSensor;
@@ -60,7 +55,6 @@ public class BTLERunSpeedDevice extends MyBTLEDevice {
         }
     };
     //TODO: there might be a stride length sensor
-    private final ScheduledFuture mDistanceCalculatorHandle;
 
     /**
      * constructor
@@ -69,9 +63,7 @@ public class BTLERunSpeedDevice extends MyBTLEDevice {
         super(context, mySensorManager, DeviceType.RUN_SPEED, deviceID, address);
         if (DEBUG) Log.d(TAG, "creating BT run speed device");
 
-        mDistanceCalculatorHandle = mScheduler.scheduleAtFixedRate(distanceCalculator, 0, // initial delay
-                1, // sampling time
-                TimeUnit.SECONDS);
+        TickScheduler.getInstance().register(TickScheduler.Phase.DERIVED_DEVICES, distanceCalculator);
     }
 
     @Override
@@ -133,8 +125,6 @@ public class BTLERunSpeedDevice extends MyBTLEDevice {
     public void shutDown() {
         super.shutDown();
 
-        if (mDistanceCalculatorHandle != null) {
-            mDistanceCalculatorHandle.cancel(true);
-        }
+        TickScheduler.getInstance().unregister(distanceCalculator);
     }
 }
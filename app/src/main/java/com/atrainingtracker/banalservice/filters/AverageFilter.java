@@ -44,6 +44,7 @@ public class AverageFilter extends MyFilter<Number> {
         if (!TrainingApplication.isPaused()) {
             mAccumulatedValue += value.doubleValue();
             mNumberOfSamples++;
+            mSequenceNumber.incrementAndGet();
         }
     }
 
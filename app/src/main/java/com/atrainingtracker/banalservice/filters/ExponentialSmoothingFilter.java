@@ -58,6 +58,7 @@ public class ExponentialSmoothingFilter
     public synchronized void newValue(Number value) {
         if (!TrainingApplication.isPaused()) {
             mFilteredValue = mAlpha * value.doubleValue() + (1 - mAlpha) * mFilteredValue;
+            mSequenceNumber.incrementAndGet();
         }
     }
 }
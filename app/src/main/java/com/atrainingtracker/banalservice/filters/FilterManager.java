@@ -169,12 +169,15 @@ public class FilterManager {
 
 
     public FilteredSensorData getFilteredSensorData(FilterData filterData) {
-        String key = filterData.getHashKey();
-        if (myFilterMap.containsKey(key)) {
-            return myFilterMap.get(key).getFilteredSensorData();
-        } else {
-            return null;
-        }
+        return getFilteredSensorData(filterData.getHashKey());
+    }
+
+    /**
+     * @return the filtered value or null when the filter does not (yet) exist.  Cheaper than creating a FilterData for each call.
+     */
+    public FilteredSensorData getFilteredSensorData(String hashKey) {
+        MyFilter myFilter = myFilterMap.get(hashKey);
+        return myFilter == null ? null : myFilter.getFilteredSensorData();
     }
 
 
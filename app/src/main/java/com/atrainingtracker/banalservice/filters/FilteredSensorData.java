@@ -33,6 +33,16 @@ public class FilteredSensorData<T> extends SensorData<T> {
         mFilterConstant = filterConstant;
     }
 
+    /**
+     * the string value is formatted with the formatter of the sensor type when it is first requested
+     */
+    public FilteredSensorData(SensorType sensorType, T value, String deviceName, FilterType filterType, double filterConstant, long sequenceNumber) {
+        super(sensorType, value, deviceName, sequenceNumber);
+
+        mFilterType = filterType;
+        mFilterConstant = filterConstant;
+    }
+
     public FilterType getFilterType() {
         return mFilterType;
     }
@@ -40,6 +40,7 @@ public class InstantaneousFilter<T> extends MyFilter<T> {
     @Override
     public synchronized void newValue(T value) {
         mValue = value;
+        mSequenceNumber.incrementAndGet();
     }
 
     @Override
@@ -50,6 +50,7 @@ public class MaxValueFilter extends MyFilter<Number> {
         if (!TrainingApplication.isPaused()) {
             if (value != null && value.doubleValue() > mMaxValue.doubleValue()) {
                 mMaxValue = value;
+                mSequenceNumber.incrementAndGet();
             }
         }
     }
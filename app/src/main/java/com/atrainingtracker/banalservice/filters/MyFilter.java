@@ -21,11 +21,17 @@ package com.atrainingtracker.banalservice.filters;
 import com.atrainingtracker.banalservice.sensor.MySensor;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public abstract class MyFilter<T>
         implements MySensor.SensorListener<T> {
     private static final String TAG = MyFilter.class.getCanonicalName();
     protected String mDeviceName;
     protected SensorType mSensorType;
+    // incremented by the subclasses whenever the filtered value might have changed
+    protected final AtomicLong mSequenceNumber = new AtomicLong();
+    // the last FilteredSensorData, reused as long as the sequence number did not change
+    private volatile FilteredSensorData<T> mFilteredSensorData;
 
     public MyFilter(String deviceName, SensorType sensorType) {
         mDeviceName = deviceName;
@@ -38,10 +44,29 @@ public abstract class MyFilter<T>
 
     abstract double getFilterConstant();
 
-    public FilteredSensorData getFilteredSensorData() {
+    /**
+     * @return a number that changes whenever the filtered value might have changed.
+     * Thus, consumers like the tracking views can skip the filter when the sequence number is the same as before.
+     */
+    public long getSequenceNumber() {
+        return mSequenceNumber.get();
+    }
+
+    /**
+     * @return a snapshot of the filtered value.  The string value is only formatted when it is requested.
+     */
+    public FilteredSensorData<T> getFilteredSensorData() {
         // Log.i(TAG, "getFilteredSensorData(): " + getFilterType() + " " + mDeviceName + " " + mSensorType + ": " + getFilteredValue());
 
-        T filteredValue = getFilteredValue();
-        return new FilteredSensorData(mSensorType, filteredValue, mSensorType.getMyFormatter().format(filteredValue), mDeviceName, getFilterType(), getFilterConstant());
+        // when the value changes after reading the sequence number, the next call sees a new sequence number and reads it again
+        long sequenceNumber = getSequenceNumber();
+        FilteredSensorData<T> filteredSensorData = mFilteredSensorData;
+        if (filteredSensorData != null && filteredSensorData.getSequenceNumber() == sequenceNumber) {
+            return filteredSensorData;
+        }
+
+        filteredSensorData = new FilteredSensorData<>(mSensorType, getFilteredValue(), mDeviceName, getFilterType(), getFilterConstant(), sequenceNumber);
+        mFilteredSensorData = filteredSensorData;
+        return filteredSensorData;
     }
 }
@@ -22,21 +22,22 @@ import com.atrainingtracker.banalservice.BANALService;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
 
-import java.util.ArrayList;
-
+/**
+ * Moving average over the last size values.
+ * <p>
+ * The arithmetic is done by a {@link NumberedMovingAverage}, so adding a value does not allocate and getting the average is O(1).
+ */
 public class NumberedMovingAverageFilter
         extends MovingAverageFilter {
     private static final boolean DEBUG = BANALService.getDebug(false);
     private static final String TAG = NumberedMovingAverageFilter.class.getName();
 
-    protected int mSize;
-    protected int mIndex;
-    protected ArrayList<Number> mValues = new ArrayList<>();
+    protected final NumberedMovingAverage mNumberedMovingAverage;
 
     public NumberedMovingAverageFilter(String deviceName, SensorType sensorType, int size) {
         super(deviceName, sensorType);
 
-        mSize = size;
+        mNumberedMovingAverage = new NumberedMovingAverage(size);
     }
 
     @Override
@@ -46,27 +47,26 @@ public class NumberedMovingAverageFilter
 
     @Override
     public double getFilterConstant() {
-        return mSize;
+        return mNumberedMovingAverage.getSize();
     }
 
     @Override
     public synchronized void newValue(Number value) {
-        if (!TrainingApplication.isPaused()){
-            mValues.add(mIndex, value);
-            mIndex = (mIndex + 1) % mSize;
+        if (!TrainingApplication.isPaused() && value != null) {
+            newValue(value.doubleValue());
         }
     }
 
+    protected synchronized void newValue(double value) {
+        mNumberedMovingAverage.add(value);
+        mSequenceNumber.incrementAndGet();
+    }
+
     @Override
     public synchronized Number getFilteredValue() {
-        if (mValues.size() == 0) {
+        if (mNumberedMovingAverage.isEmpty()) {
             return null;
         }
-
-        double sum = 0;
-        for (Number value : mValues) {
-            sum += value.doubleValue();
-        }
-        return sum / mValues.size();
+        return mNumberedMovingAverage.getAverage();
     }
 }
@@ -24,19 +24,22 @@ import com.atrainingtracker.banalservice.BANALService;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
 
-import java.util.LinkedList;
-
+/**
+ * Moving average over the values of the last seconds.
+ * <p>
+ * The arithmetic is done by a {@link TimedMovingAverage}, so adding a value does not allocate and getting the average is O(1).
+ */
 public class TimedMovingAverageFilter
         extends MovingAverageFilter {
     private static final boolean DEBUG = BANALService.getDebug(false);
     private static final String TAG = TimedMovingAverageFilter.class.getName();
-    protected long mSeconds;
-    protected LinkedList<TimestampedValue> mTimestampedValues = new LinkedList<>();
+
+    protected final TimedMovingAverage mTimedMovingAverage;
 
     public TimedMovingAverageFilter(String deviceName, SensorType sensorType, long seconds) {
         super(deviceName, sensorType);
 
-        mSeconds = seconds;
+        mTimedMovingAverage = new TimedMovingAverage(seconds);
     }
 
     @Override
@@ -46,54 +49,55 @@ public class TimedMovingAverageFilter
 
     @Override
     public double getFilterConstant() {
-        return mSeconds;
+        return mTimedMovingAverage.getSeconds();
     }
 
     @Override
     public synchronized void newValue(Number value) {
         if (!TrainingApplication.isPaused()) {
-            long currentTimeMillis = System.currentTimeMillis();
-            mTimestampedValues.add(new TimestampedValue(currentTimeMillis, value));
-            if (DEBUG)
-                Log.i(TAG, "added a new value: timestamp=" + currentTimeMillis + ", value=" + value);
-
-            trimValues();
+            newValue(System.currentTimeMillis(), value == null ? 0 : value.doubleValue());
         }
     }
 
-    @Override
-    public synchronized Number getFilteredValue() {
-        if (mTimestampedValues.size() == 0) {
-            return null;
-        }
+    /**
+     * adds a value with the given timestamp.  The timestamps must not decrease.
+     */
+    protected synchronized void newValue(long timestamp, double value) {
+        if (DEBUG) Log.i(TAG, "added a new value: timestamp=" + timestamp + ", value=" + value);
+
+        mTimedMovingAverage.add(timestamp, value);
+        mSequenceNumber.incrementAndGet();
+    }
 
-        trimValues();
+    /**
+     * old values drop out of the average as time passes, so the values are trimmed first
+     */
+    @Override
+    public synchronized long getSequenceNumber() {
+        trimValues(System.currentTimeMillis());
+        return super.getSequenceNumber();
+    }
 
-        double sum = 0;
-        for (TimestampedValue timestampedValue : mTimestampedValues) {
-            sum += timestampedValue.value == null ? 0 : timestampedValue.value.doubleValue();
-        }
-        return sum / mTimestampedValues.size();
+    @Override
+    public synchronized Number getFilteredValue() {
+        return getFilteredValue(System.currentTimeMillis());
     }
 
-    protected void trimValues() {
-        long threshold = System.currentTimeMillis() - 1000 * mSeconds;
-        if (DEBUG) Log.i(TAG, "trimValues: mSeconds=" + mSeconds + ", threshold=" + threshold);
-        while (mTimestampedValues.peek() != null
-                && mTimestampedValues.peek().timestamp < threshold) {
-            if (DEBUG)
-                Log.i(TAG, "removing an element with timestamp=" + mTimestampedValues.peek().timestamp);
-            mTimestampedValues.poll();
+    protected synchronized Number getFilteredValue(long currentTimeMillis) {
+        if (mTimedMovingAverage.isEmpty()) {
+            return null;
         }
-    }
 
-    protected class TimestampedValue {
-        public long timestamp;
-        public Number value;
+        // when all values are trimmed, this is the same as the average of an empty list: there is simply no recent value
+        trimValues(currentTimeMillis);
+        return mTimedMovingAverage.getAverage();
+    }
 
-        public TimestampedValue(long timestamp, Number value) {
-            this.timestamp = timestamp;
-            this.value = value;
+    protected void trimValues(long currentTimeMillis) {
+        int removed = mTimedMovingAverage.trim(currentTimeMillis);
+        if (removed > 0) {
+            if (DEBUG) Log.i(TAG, "trimValues: removed " + removed + " values");
+            mSequenceNumber.incrementAndGet();
         }
     }
 }
@@ -20,12 +20,10 @@ package com.atrainingtracker.banalservice.fragments;
 
 import androidx.appcompat.app.AlertDialog;
 import android.app.Dialog;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.SQLException;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import androidx.fragment.app.DialogFragment;
 import android.text.Editable;
@@ -383,17 +381,9 @@ public class ConfigureFilterDialogFragment
 
         getValuesFromUI();
 
-        ContentValues values = new ContentValues();
-        values.put(TrackingViewsDbHelper.FILTER_TYPE, mFilterType.name());
-        values.put(TrackingViewsDbHelper.FILTER_CONSTANT, mFilterConstant);
-
         TrackingViewsDatabaseManager databaseManager = TrackingViewsDatabaseManager.getInstance(getContext());
-        SQLiteDatabase db = databaseManager.getDatabase();
         try {
-            db.update(TrackingViewsDbHelper.ROWS_TABLE,
-                    values,
-                    TrackingViewsDbHelper.ROW_ID + "=" + mRowId,
-                    null);
+            databaseManager.updateFilterOfRow(mRowId, mFilterType, mFilterConstant);
         } catch (SQLException e) {
             // TODO: use Toast?
             Log.e(TAG, "Error while writing" + e);
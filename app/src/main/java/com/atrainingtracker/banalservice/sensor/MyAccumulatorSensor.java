@@ -25,7 +25,7 @@ public abstract class MyAccumulatorSensor<N extends Number> extends MySensor<N>
     private static final String TAG = "MyAccumulatorSensor";
 
     Boolean mRespectPause;
-    protected N mInitialValue;  // necessary to manipulate the output that we get via getValue()...
+    protected volatile N mInitialValue;  // necessary to manipulate the output that we get via getValue()...
     protected N mZeroValue; // In almost all cases, this will be 0.  In some special cases, like a lap sensor, this will be 1.
 
     @Override
@@ -73,6 +73,7 @@ public abstract class MyAccumulatorSensor<N extends Number> extends MySensor<N>
 
     public final void setInitialValue(N value) {
         mInitialValue = value;
+        mSequenceNumber.incrementAndGet();
     }
 
     public final void reset() {
@@ -23,17 +23,29 @@ import android.util.Log;
 import com.atrainingtracker.banalservice.BANALService;
 import com.atrainingtracker.banalservice.devices.MyDevice;
 
-import java.util.LinkedList;
-
-
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sensor is written by the callback threads of the devices and read by the tracker, the filters, and the UI.
+ * <p>
+ * The value is published through a volatile field together with a sequence number, so readers get consistent values
+ * without locking.  The listeners are kept in a copy-on-write list, so they can be added and removed while a value is
+ * delivered.
+ */
 public class MySensor<T> {
     private static final String TAG = "MySensor";
     private static final boolean DEBUG = BANALService.getDebug(false);
     protected MyDevice mDevice;
     protected SensorType mSensorType;
-    protected T mValue = null;
-    protected boolean mActivated = true;
-    protected LinkedList<SensorListener> mSensorListeners = new LinkedList<>();
+    protected volatile T mValue = null;
+    protected volatile boolean mActivated = true;
+    protected final CopyOnWriteArrayList<SensorListener> mSensorListeners = new CopyOnWriteArrayList<>();
+    // incremented whenever a new value is published or the sensor is (de)activated
+    protected final AtomicLong mSequenceNumber = new AtomicLong();
+    // the last SensorData, reused as long as the value did not change
+    private volatile SensorData<T> mSensorData;
 
     public MySensor(MyDevice myDevice, SensorType sensorType) {
         mDevice = myDevice;
@@ -43,10 +55,12 @@ public class MySensor<T> {
 
     public void activateSensor() {
         mActivated = true;
+        mSequenceNumber.incrementAndGet();
     }
 
     public void deactivateSensor() {
         mActivated = false;
+        mSequenceNumber.incrementAndGet();
     }
 
     public void addSensorListener(SensorListener sensorListener) {
@@ -66,6 +80,7 @@ public class MySensor<T> {
         if (DEBUG) Log.i(TAG, "newValue for " + mDevice + ", " + mSensorType + ": " + value);
         if (mActivated) {
             mValue = value;
+            mSequenceNumber.incrementAndGet();
 
             // inform all the listeners
             for (SensorListener sensorListener : mSensorListeners) {
@@ -85,6 +100,14 @@ public class MySensor<T> {
         }
     }
 
+    /**
+     * @return a number that changes whenever the value returned by getValue() might have changed.
+     * Thus, consumers can skip the sensor when the sequence number is the same as before.
+     */
+    public long getSequenceNumber() {
+        return mSequenceNumber.get();
+    }
+
     public String getStringValue() {
         return mSensorType.getMyFormatter().format(getValue());
     }
@@ -105,8 +128,27 @@ public class MySensor<T> {
         return getDevice().getName();
     }
 
+    /**
+     * @return a snapshot of the current value.  The string value is only formatted when it is requested.
+     */
     public SensorData<T> getSensorData() {
-        return new SensorData<T>(getSensorType(), getValue(), getStringValue(), getDeviceName());
+        long sequenceNumber = getSequenceNumber();
+        T value = getValue();
+        String deviceName = getDeviceName();
+
+        // reuse the last snapshot when nothing changed.  Comparing the value itself keeps this correct even when the
+        // value changes between reading the sequence number and the value.
+        SensorData<T> sensorData = mSensorData;
+        if (sensorData != null
+                && sensorData.getSequenceNumber() == sequenceNumber
+                && sensorData.getValue() == value
+                && Objects.equals(sensorData.getDeviceName(), deviceName)) {
+            return sensorData;
+        }
+
+        sensorData = new SensorData<T>(getSensorType(), value, deviceName, sequenceNumber);
+        mSensorData = sensorData;
+        return sensorData;
     }
 
     public interface SensorListener<T> {
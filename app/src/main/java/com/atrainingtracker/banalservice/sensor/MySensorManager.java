@@ -30,11 +30,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MySensorManager extends MyDevice {
     public static final String EMPTY_GC_DATA = "-----------";
@@ -74,7 +74,7 @@ public class MySensorManager extends MyDevice {
     private static final boolean DEBUG = BANALService.getDebug(false);
     protected Map<SensorType, Object> mInitialValues = new HashMap<SensorType, Object>();
     protected StringBuilder mAccumulatedGCData = new StringBuilder(EMPTY_GC_DATA);
-    protected Set<SensorType> mAccumulatedSensorTypeSet = new HashSet<SensorType>();
+    protected Set<SensorType> mAccumulatedSensorTypeSet = ConcurrentHashMap.newKeySet();
     protected EnumMap<SensorType, LinkedList<DeviceType>> mDevicePriorityList
             = new EnumMap<SensorType, LinkedList<DeviceType>>(SensorType.class);
 
@@ -82,6 +82,9 @@ public class MySensorManager extends MyDevice {
             = new EnumMap<SensorType, EnumMap<DeviceType, LinkedList<MySensor>>>(SensorType.class);
 
 
+    // all sensors as array, rebuilt lazily after the sensors changed
+    private volatile MySensor[] mAllSensorsArray;
+
     protected MySensor<String> mSensorsSensor;
     protected MySensor<String> mAccumulatedSensorsSensor;
 
@@ -158,7 +161,9 @@ public class MySensorManager extends MyDevice {
         return mDevicePriorityList.get(sensorType);
     }
 
-    public void registerSensor(MySensor mySensor) {
+    // the devices (un)register their sensors from their callback threads, thus these methods are synchronized.
+    // Reading the (best) sensors via getSensor() does not require the lock since the sensor map is copy-on-write.
+    public synchronized void registerSensor(MySensor mySensor) {
         if (DEBUG) {
             Log.d(TAG, "registerSensor(" + mySensor.getSensorType() + ")");
         }
@@ -180,13 +185,14 @@ public class MySensorManager extends MyDevice {
         }
 
         mAllSensorsMapMap.get(sensorType).get(deviceType).addLast(mySensor);
+        mAllSensorsArray = null;
 
         setBestSensorForProxySensor(sensorType);
 
         if (newSensor) notifyNewSensor(mySensor);
     }
 
-    public List<MySensor> getAllButBestSensors() {
+    public synchronized List<MySensor> getAllButBestSensors() {
         LinkedList<MySensor> mySensorList = new LinkedList<>();
 
         for (SensorType sensorType : mAllSensorsMapMap.keySet()) {
@@ -208,6 +214,33 @@ public class MySensorManager extends MyDevice {
     }
 
 
+    /**
+     * @return the best sensors followed by all other sensors.  The array must not be modified.
+     * Unlike getAllSensors(), this does not allocate as long as the sensors do not change.
+     */
+    public MySensor[] getAllSensorsArray() {
+        MySensor[] allSensors = mAllSensorsArray;
+        if (allSensors == null) {
+            synchronized (this) {
+                allSensors = getAllSensors().toArray(new MySensor[0]);
+                mAllSensorsArray = allSensors;
+            }
+        }
+        return allSensors;
+    }
+
+    @Override
+    protected synchronized void addSensor(MySensor mySensor) {
+        super.addSensor(mySensor);
+        mAllSensorsArray = null;
+    }
+
+    @Override
+    protected synchronized void removeSensor(SensorType sensorType) {
+        super.removeSensor(sensorType);
+        mAllSensorsArray = null;
+    }
+
     public void registerSensors(Collection<MySensor> sensorCollection) {
         if (DEBUG) Log.d(TAG, "registerSensors");
 
@@ -216,7 +249,7 @@ public class MySensorManager extends MyDevice {
         }
     }
 
-    public void unregisterSensor(MySensor mySensor) {
+    public synchronized void unregisterSensor(MySensor mySensor) {
         if (DEBUG) Log.d(TAG, "unregisterSensor(" + mySensor.getSensorType() + ")");
 
         SensorType sensorType = mySensor.getSensorType();
@@ -227,6 +260,7 @@ public class MySensorManager extends MyDevice {
 
             boolean sensorRemoved = false;
             mAllSensorsMapMap.get(sensorType).get(deviceType).remove(mySensor);
+            mAllSensorsArray = null;
             MySensor newBestSensor = getBestSensor(sensorType);
             if (newBestSensor == null) {
                 if (DEBUG) Log.d(TAG, "newBestSensor == null => removeSensor");
@@ -259,7 +293,7 @@ public class MySensorManager extends MyDevice {
         }
     }
 
-    protected MySensor getBestSensor(SensorType sensorType) {
+    protected synchronized MySensor getBestSensor(SensorType sensorType) {
         MySensor bestSensor = null;
 
         Collection<DeviceType> priorityList = getPriorityList(sensorType);
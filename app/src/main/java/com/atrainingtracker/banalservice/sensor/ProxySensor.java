@@ -25,12 +25,13 @@ import com.atrainingtracker.banalservice.devices.MyDevice;
  */
 
 public class ProxySensor<T> extends MySensor<T> {
-    protected MySensor<T> mSourceSensor;
+    protected volatile MySensor<T> mSourceSensor;
     private final String TAG = "ProxySensor";
 
     public ProxySensor(MyDevice myDevice, SensorType sensorType, MySensor<T> sourceSensor) {
         super(myDevice, sensorType);
         mSourceSensor = sourceSensor;
+        mSequenceNumber.incrementAndGet();
     }
 
     @Override
@@ -48,6 +49,14 @@ public class ProxySensor<T> extends MySensor<T> {
         mSourceSensor.removeSensorListener(sensorListener);  // also remove this sensor listener from the source device
     }
 
+    /**
+     * the value changes when the source sensor publishes a new value or when the source sensor is replaced
+     */
+    @Override
+    public long getSequenceNumber() {
+        return (mSequenceNumber.get() << 40) + mSourceSensor.getSequenceNumber();
+    }
+
     @Override
     public String getDeviceName() {
         return null;
@@ -65,5 +74,7 @@ public class ProxySensor<T> extends MySensor<T> {
         }
 
         mSourceSensor = sourceSensor;
+        // the sequence number of the new source is unrelated to the one of the old source, so readers must notice the change
+        mSequenceNumber.incrementAndGet();
     }
 }
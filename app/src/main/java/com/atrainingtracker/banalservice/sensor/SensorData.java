@@ -27,14 +27,29 @@ public class SensorData<T> {
     public String mDeviceName;
     private final SensorType mSensorType;
     private final T mValue;
-    private final String mStringValue;
+    private final long mSequenceNumber;
+    // formatted lazily.  Formatting is idempotent, so a race only results in formatting twice
+    private volatile String mStringValue;
+    private volatile boolean mStringValueFormatted;
 
 
     public SensorData(SensorType sensorType, T value, String stringValue, String deviceName) {
         mSensorType = sensorType;
         mValue = value;
         mStringValue = stringValue;
+        mStringValueFormatted = true;
         mDeviceName = deviceName;
+        mSequenceNumber = 0;
+    }
+
+    /**
+     * the string value is formatted with the formatter of the sensor type when it is first requested
+     */
+    public SensorData(SensorType sensorType, T value, String deviceName, long sequenceNumber) {
+        mSensorType = sensorType;
+        mValue = value;
+        mDeviceName = deviceName;
+        mSequenceNumber = sequenceNumber;
     }
 
 
@@ -47,9 +62,20 @@ public class SensorData<T> {
     }
 
     public String getStringValue() {
+        if (!mStringValueFormatted) {
+            mStringValue = mSensorType.getMyFormatter().format(mValue);
+            mStringValueFormatted = true;
+        }
         return mStringValue;
     }
 
+    /**
+     * @return the sequence number of the sensor when this snapshot was taken
+     */
+    public long getSequenceNumber() {
+        return mSequenceNumber;
+    }
+
     public String getDeviceName() {
         return mDeviceName;
     }
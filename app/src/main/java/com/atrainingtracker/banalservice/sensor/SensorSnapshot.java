@@ -0,0 +1,208 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.banalservice.sensor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * A reusable snapshot of the values of many sensors.
+ * <p>
+ * Each combination of sensor type and device gets a column id when it is seen for the first time.  The ids are stable
+ * for the lifetime of the snapshot, even when a device disconnects and reconnects with new sensor objects.  Thus,
+ * consumers can keep per-column state (like the name of a database column) in plain arrays.
+ * <p>
+ * The values are stored in primitive arrays.  Once all sensors are known, updating the snapshot does not allocate.
+ * The snapshot itself is not thread safe, it is meant to be owned by a single consumer.
+ */
+public class SensorSnapshot {
+    private static final int INITIAL_CAPACITY = 64;
+    // no sensor has this sequence number, so the value of the column is read with the next update
+    private static final long NO_SEQUENCE_NUMBER = Long.MIN_VALUE;
+
+    // the schema
+    private int mColumnCount;
+    private SensorType[] mSensorTypes = new SensorType[INITIAL_CAPACITY];
+    private String[] mDeviceNames = new String[INITIAL_CAPACITY];
+    // weak, so the sensors of disconnected devices can be garbage collected
+    private final Map<MySensor, Integer> mSensor2Column = new WeakHashMap<>();
+    private final Map<SensorType, Map<String, Integer>> mColumnIds = new HashMap<>();
+
+    // the values
+    private double[] mDoubleValues = new double[INITIAL_CAPACITY];
+    private Object[] mValues = new Object[INITIAL_CAPACITY];
+    private long[] mSequenceNumbers = new long[INITIAL_CAPACITY];
+    // the number of the update in which the column was last seen.  Columns of vanished sensors are not valid.
+    private int[] mUpdateNr = new int[INITIAL_CAPACITY];
+    private int mCurrentUpdateNr;
+    private boolean mChanged;
+
+    /**
+     * reads the current values of the given sensors
+     */
+    public void update(@NonNull MySensor[] sensors) {
+        mCurrentUpdateNr++;
+        mChanged = false;
+
+        for (MySensor sensor : sensors) {
+            int column = getColumn(sensor);
+
+            long sequenceNumber = sensor.getSequenceNumber();
+            if (mUpdateNr[column] != mCurrentUpdateNr - 1 || mSequenceNumbers[column] != sequenceNumber) {
+                // the value might have changed
+                Object value = sensor.getValue();
+                mValues[column] = value;
+                mDoubleValues[column] = value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+                mSequenceNumbers[column] = sequenceNumber;
+                mChanged = true;
+            }
+            mUpdateNr[column] = mCurrentUpdateNr;
+        }
+    }
+
+    /**
+     * @return whether any value changed (or appeared) during the last update
+     */
+    public boolean hasChanged() {
+        return mChanged;
+    }
+
+    /**
+     * @return the number of columns, all column ids are smaller than this.
+     */
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    /**
+     * @return the column of the best sensor of the given type or -1 when this sensor was never seen
+     */
+    public int getColumn(@NonNull SensorType sensorType) {
+        return getColumn(sensorType, null);
+    }
+
+    public int getColumn(@NonNull SensorType sensorType, @Nullable String deviceName) {
+        Map<String, Integer> deviceName2Column = mColumnIds.get(sensorType);
+        Integer column = deviceName2Column == null ? null : deviceName2Column.get(deviceName);
+        return column == null ? -1 : column;
+    }
+
+    public SensorType getSensorType(int column) {
+        return mSensorTypes[column];
+    }
+
+    /**
+     * @return the name of the device or null for the best sensor of this type
+     */
+    @Nullable
+    public String getDeviceName(int column) {
+        return mDeviceNames[column];
+    }
+
+    /**
+     * @return whether the sensor of this column was part of the last update and had a value
+     */
+    public boolean hasValue(int column) {
+        return column >= 0 && mUpdateNr[column] == mCurrentUpdateNr && mValues[column] != null;
+    }
+
+    @Nullable
+    public Object getValue(int column) {
+        return hasValue(column) ? mValues[column] : null;
+    }
+
+    /**
+     * @return the value as double or NaN when there is no numerical value
+     */
+    public double getDouble(int column) {
+        return hasValue(column) ? mDoubleValues[column] : Double.NaN;
+    }
+
+    public int getInt(int column) {
+        return (int) getDouble(column);
+    }
+
+    /**
+     * @return the formatted value.  Note that this allocates, so it should only be used for string sensors or for display.
+     */
+    @Nullable
+    public String getStringValue(int column) {
+        return mSensorTypes[column].getMyFormatter().format(getValue(column));
+    }
+
+    private int getColumn(@NonNull MySensor sensor) {
+        Integer column = mSensor2Column.get(sensor);
+        if (column != null) {
+            return column;
+        }
+
+        // a new sensor object, maybe a reconnected device.  Thus, we first check for the same sensor type and device
+        SensorType sensorType = sensor.getSensorType();
+        String deviceName = sensor.getDeviceName();
+        int columnId = getColumn(sensorType, deviceName);
+        if (columnId < 0) {
+            columnId = addColumn(sensorType, deviceName);
+        } else {
+            // the sequence numbers of the new sensor start again at 0, so they might match the cached one of the old sensor
+            mSequenceNumbers[columnId] = NO_SEQUENCE_NUMBER;
+        }
+        mSensor2Column.put(sensor, columnId);
+        return columnId;
+    }
+
+    private int addColumn(@NonNull SensorType sensorType, @Nullable String deviceName) {
+        if (mColumnCount == mSensorTypes.length) {
+            int capacity = 2 * mColumnCount;
+            mSensorTypes = Arrays.copyOf(mSensorTypes, capacity);
+            mDeviceNames = Arrays.copyOf(mDeviceNames, capacity);
+            mDoubleValues = Arrays.copyOf(mDoubleValues, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+            mSequenceNumbers = Arrays.copyOf(mSequenceNumbers, capacity);
+            mUpdateNr = Arrays.copyOf(mUpdateNr, capacity);
+        }
+
+        int column = mColumnCount++;
+        mSensorTypes[column] = sensorType;
+        mDeviceNames[column] = deviceName;
+        mSequenceNumbers[column] = NO_SEQUENCE_NUMBER;
+        mColumnIds.computeIfAbsent(sensorType, key -> new HashMap<>()).put(deviceName, column);
+        return column;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder("SensorSnapshot{");
+        for (int column = 0; column < mColumnCount; column++) {
+            if (hasValue(column)) {
+                stringBuilder.append(mSensorTypes[column]);
+                if (mDeviceNames[column] != null) {
+                    stringBuilder.append(" (").append(mDeviceNames[column]).append(')');
+                }
+                stringBuilder.append('=').append(Objects.toString(mValues[column])).append(", ");
+            }
+        }
+        return stringBuilder.append('}').toString();
+    }
+}
@@ -270,11 +270,11 @@ class EditSportTypeDialog : DialogFragment() {
             }
         }
 
-        val db = SportTypeDatabaseManager.getInstance(safeContext).database
+        val sportTypeDatabaseManager = SportTypeDatabaseManager.getInstance(safeContext)
         if (sportTypeId < 0) { // create an entry
-            db.insert(SportType.TABLE, null, contentValues)
+            sportTypeDatabaseManager.insert(contentValues)
         } else {
-            db.update(SportType.TABLE, contentValues, "${SportType.C_ID}=?", arrayOf(sportTypeId.toString()))
+            sportTypeDatabaseManager.update(sportTypeId, contentValues)
         }
 
         // Send broadcast
@@ -271,12 +271,7 @@ class DeviceDataRepository private constructor(private val application: Applicat
             // update the device in the main device database
             val values = createContentValuesForUpdate(originalState, finalState)
             if (values.size() > 0) {
-                devicesDatabaseManager.database.update(
-                    DevicesDbHelper.DEVICES,
-                    values,
-                    "${DevicesDbHelper.C_ID} = ?",
-                    arrayOf(finalState.id.toString())
-                )
+                devicesDatabaseManager.updateDevice(finalState.id, values)
             }
 
             // update linked equipment when necessary
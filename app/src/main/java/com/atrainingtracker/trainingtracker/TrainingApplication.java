@@ -58,6 +58,13 @@ import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.trainingtracker.activities.MainActivityWithNavigation;
 import com.atrainingtracker.trainingtracker.exporter.FileFormat;
 import com.atrainingtracker.trainingtracker.helpers.CalcExtremaWorker;
+import com.atrainingtracker.trainingtracker.helpers.ExportArchiveWorker;
+import com.atrainingtracker.trainingtracker.helpers.GeoTileIndexWorker;
+import com.atrainingtracker.trainingtracker.helpers.MeanMaxWorker;
+import com.atrainingtracker.trainingtracker.helpers.SamplesMigrationWorker;
+import com.atrainingtracker.trainingtracker.helpers.TrackPyramidWorker;
+import com.atrainingtracker.trainingtracker.helpers.TrainingLoadWorker;
+import com.atrainingtracker.trainingtracker.tracker.SamplingPolicy;
 import com.atrainingtracker.trainingtracker.tracker.TrackerService;
 import com.atrainingtracker.trainingtracker.database.KnownLocationsDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.LapsDatabaseManager;
@@ -78,6 +85,7 @@ import com.atrainingtracker.trainingtracker.ui.aftermath.TrackOnMapAftermathActi
 import com.dropbox.core.json.JsonReadException;
 import com.dropbox.core.oauth.DbxCredential;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 
@@ -143,6 +151,8 @@ public class TrainingApplication extends Application {
     public static final String SP_EXPORT_TO_TCX = "exportToGarminTCX";
     public static final String SP_EXPORT_TO_GPX = "exportToGPX";
     public static final String SP_EXPORT_TO_GC_JSON = "exportToGCJson";
+    public static final String SP_EXPORT_TO_FIT = "exportToFIT";
+    public static final String SP_COMPRESS_EXPORTS = "compressExports";
     public static final String SP_CHECK_ANT_INSTALLATION = "checkANTInstallation";
     public static final String MIN_WALK_SPEED = "minWalkSpeed";
     public static final String MAX_WALK_SPEED = "maxWalkSpeed";
@@ -168,6 +178,15 @@ public class TrainingApplication extends Application {
     private static final String SP_PLAY_SERVICE_INSTALLATION_TRIES = "playServiceInstallationTries";
     private static final int MAX_PLAY_SERVICE_INSTALLATION_TRIES = 10;
     private static final int DEFAULT_NUMBER_OF_SEARCH_TRIES = 3;
+    // the samples are written in batches, so at most this window is lost when the app gets killed
+    private static final String SP_SAMPLES_FLUSH_INTERVAL = "samplesFlushInterval";
+    private static final int DEFAULT_SAMPLES_FLUSH_INTERVAL_s = 10;
+    private static final String SP_SAMPLES_FLUSH_MAX_ROWS = "samplesFlushMaxRows";
+    private static final int DEFAULT_SAMPLES_FLUSH_MAX_ROWS = 30;
+    // how often the samples are written, per basic sport type
+    public static final String SP_SAMPLING_POLICY_RUN = "samplingPolicyRun";
+    public static final String SP_SAMPLING_POLICY_BIKE = "samplingPolicyBike";
+    public static final String SP_SAMPLING_POLICY_OTHER = "samplingPolicyOther";
     private static final String SP_START_SEARCH_WHEN_APP_STARTS = "startSearchWhenAppStarts";
     private static final boolean START_SEARCH_WHEN_APP_STARTS_DEFAULT = true;
     private static final String SP_START_SEARCH_WHEN_TRACKING_STARTS = "startSearchWhenTrackingStarts";
@@ -187,6 +206,7 @@ public class TrainingApplication extends Application {
     private static final String SP_UPLOAD_STRAVA_HR = "uploadStravaHR";
     private static final String SP_UPLOAD_STRAVA_POWER = "uploadStravaPower";
     private static final String SP_UPLOAD_STRAVA_CADENCE = "uploadStravaCadence";
+    private static final String SP_UPLOAD_STRAVA_FIT = "uploadStravaFIT";
     private static final String SP_UPLOAD_RUNKEEPER_GPS = "uploadRunkeeperGPS";
     private static final String SP_UPLOAD_RUNKEEPER_ALTITUDE = "uploadRunkeeperAltitude";
     private static final String SP_UPLOAD_RUNKEEPER_HR = "uploadRunkeeperHR";
@@ -331,6 +351,41 @@ public class TrainingApplication extends Application {
         }
     }
 
+    public static int getSamplesFlushInterval_s() {
+        return getPositiveIntFromString(SP_SAMPLES_FLUSH_INTERVAL, DEFAULT_SAMPLES_FLUSH_INTERVAL_s);
+    }
+
+    public static int getSamplesFlushMaxRows() {
+        return getPositiveIntFromString(SP_SAMPLES_FLUSH_MAX_ROWS, DEFAULT_SAMPLES_FLUSH_MAX_ROWS);
+    }
+
+    @NonNull
+    public static SamplingPolicy getSamplingPolicy(@NonNull BSportType bSportType) {
+        String key = switch (bSportType) {
+            case RUN -> SP_SAMPLING_POLICY_RUN;
+            case BIKE -> SP_SAMPLING_POLICY_BIKE;
+            default -> SP_SAMPLING_POLICY_OTHER;
+        };
+        try {
+            return SamplingPolicy.valueOf(cSharedPreferences.getString(key, SamplingPolicy.FIXED_1HZ.name()));
+        } catch (IllegalArgumentException e) {
+            return SamplingPolicy.FIXED_1HZ;
+        }
+    }
+
+    private static int getPositiveIntFromString(String key, int defaultValue) {
+        String value = cSharedPreferences.getString(key, null);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value);
+            return result > 0 ? result : defaultValue;
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
     public static boolean startSearchWhenAppStarts() {
         return cSharedPreferences.getBoolean(SP_START_SEARCH_WHEN_APP_STARTS, START_SEARCH_WHEN_APP_STARTS_DEFAULT);
     }
@@ -611,6 +666,10 @@ public class TrainingApplication extends Application {
         return cSharedPreferences.getBoolean(SP_UPLOAD_STRAVA_CADENCE, true);
     }
 
+    public static boolean uploadStravaFIT() {
+        return cSharedPreferences.getBoolean(SP_UPLOAD_STRAVA_FIT, false);
+    }
+
     /*
      * Runkeeper helpers
      */
@@ -733,6 +792,14 @@ public class TrainingApplication extends Application {
         return cSharedPreferences.getBoolean(SP_EXPORT_TO_GC_JSON, false);
     }
 
+    public static boolean exportToFIT() {
+        return cSharedPreferences.getBoolean(SP_EXPORT_TO_FIT, false);
+    }
+
+    public static boolean compressExports() {
+        return cSharedPreferences.getBoolean(SP_COMPRESS_EXPORTS, false);
+    }
+
     public static void setExportToTCX(boolean value) {
         cSharedPreferences.edit().putBoolean(SP_EXPORT_TO_TCX, value).apply();
     }
@@ -749,6 +816,10 @@ public class TrainingApplication extends Application {
         cSharedPreferences.edit().putBoolean(SP_EXPORT_TO_GC_JSON, value).apply();
     }
 
+    public static void setExportToFIT(boolean value) {
+        cSharedPreferences.edit().putBoolean(SP_EXPORT_TO_FIT, value).apply();
+    }
+
     //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     public static boolean exportToFile(@NonNull FileFormat fileFormat) {
@@ -757,6 +828,7 @@ public class TrainingApplication extends Application {
             case GC -> exportToGCJson();
             case TCX -> exportToTCX();
             case GPX -> exportToGPX();
+            case FIT -> exportToFIT();
             case STRAVA -> uploadToStrava();
             /* case RUNKEEPER:
                 return uploadToRunKeeper(); */
@@ -877,6 +949,19 @@ public class TrainingApplication extends Application {
             stravaSegmentsHelper.getStarredStravaSegments(SportTypeDatabaseManager.getSportTypeId(BSportType.RUN));
         }
 
+        // convert the samples of old workouts into the columnar sample store
+        SamplesMigrationWorker.enqueue(this);
+        // and add them to the geo tile index
+        GeoTileIndexWorker.enqueue(this);
+        // and simplify their tracks for the maps
+        TrackPyramidWorker.enqueue(this);
+        // and calculate their mean-maximal curves
+        MeanMaxWorker.enqueue(this);
+        // and add their training load
+        TrainingLoadWorker.enqueue(this);
+        // compress the old exported files
+        ExportArchiveWorker.enqueue(this);
+
 
     }
 
@@ -1012,6 +1097,16 @@ public class TrainingApplication extends Application {
 
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (DEBUG) Log.i(TAG, "onTrimMemory: level=" + level);
+
+        if (trackOnMapHelper != null) {
+            trackOnMapHelper.onTrimMemory(level);
+        }
+    }
+
     @NonNull
     public Notification getSearchingAndTrackingNotification() {
         return mTrackingAndSearchingNotificationBuilder.build();
@@ -1168,11 +1263,16 @@ public class TrainingApplication extends Application {
 
         // Enqueue the work as UNIQUE work. This prevents it from being started twice.
         // If it's already running (e.g. due to a quick app restart), it will KEEP the existing one.
-        WorkManager.getInstance(getApplicationContext()).enqueueUniqueWork(
-                uniqueWorkName,
-                ExistingWorkPolicy.KEEP,
-                calcWorkRequest
-        );
+        // The mean-maximal curves and the training load are calculated right afterwards.
+        WorkManager.getInstance(getApplicationContext())
+                .beginUniqueWork(uniqueWorkName, ExistingWorkPolicy.KEEP, calcWorkRequest)
+                .then(Arrays.asList(MeanMaxWorker.createWorkRequest(), TrainingLoadWorker.createWorkRequest()))
+                .enqueue();
+
+        // also convert the samples of this workout, add it to the geo tile index, and simplify its tracks
+        SamplesMigrationWorker.enqueue(this);
+        GeoTileIndexWorker.enqueue(this);
+        TrackPyramidWorker.enqueue(this);
 
         // start EditWorkoutActivity
         startEditWorkoutActivity(mWorkoutID, true); // here, the EditWorkoutActivity shall show the details, extrema values and the map.
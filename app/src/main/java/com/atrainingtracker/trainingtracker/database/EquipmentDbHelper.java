@@ -30,11 +30,15 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.atrainingtracker.banalservice.BSportType;
+import com.atrainingtracker.banalservice.database.ConfigCache;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 // import com.google.common.collect.Sets;
@@ -72,6 +76,8 @@ public class EquipmentDbHelper extends SQLiteOpenHelper {
             // + C_ID          + " INTEGER PRIMARY KEY AUTOINCREMENT, "
             + EQUIPMENT_ID + " int,"
             + ANT_DEVICE_ID + " int)";
+    // the equipment and the links, shared by all instances of the helper
+    private static volatile ConfigCache<Equipment> cCache;
     private final Context mContext;
 
     // Constructor
@@ -81,6 +87,74 @@ public class EquipmentDbHelper extends SQLiteOpenHelper {
         mContext = context;
     }
 
+    @NonNull
+    public static ConfigCache<?> getCache(@NonNull Context context) {
+        return getEquipmentCache(context);
+    }
+
+    /**
+     * must be called after the equipment was changed without this class, e.g., by the synchronization with Strava
+     */
+    public static void invalidateCache() {
+        ConfigCache<Equipment> cache = cCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    @NonNull
+    private static ConfigCache<Equipment> getEquipmentCache(@NonNull Context context) {
+        if (cCache == null) {
+            synchronized (EquipmentDbHelper.class) {
+                if (cCache == null) {
+                    EquipmentDbHelper equipmentDbHelper = new EquipmentDbHelper(context.getApplicationContext());
+                    cCache = new ConfigCache<>("Equipment", equipmentDbHelper::loadEquipment);
+                }
+            }
+        }
+        return cCache;
+    }
+
+    @NonNull
+    private Equipment getSnapshot() {
+        return getEquipmentCache(mContext).get();
+    }
+
+    @NonNull
+    private Equipment loadEquipment() {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        List<EquipmentRow> rows = new ArrayList<>();
+        Map<Long, EquipmentRow> byId = new HashMap<>();
+        Map<String, Long> idByName = new HashMap<>();
+        try (Cursor cursor = db.query(EQUIPMENT,
+                new String[]{C_ID, NAME, SPORT_TYPE, FRAME_TYPE, STRAVA_ID},
+                null, null,
+                null, null, C_ID)) {
+            while (cursor.moveToNext()) {
+                EquipmentRow row = new EquipmentRow(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getInt(3), cursor.getString(4));
+                rows.add(row);
+                byId.put(row.id(), row);
+                if (row.name() != null && !idByName.containsKey(row.name())) {
+                    idByName.put(row.name(), row.id());
+                }
+            }
+        }
+
+        Map<Long, List<Long>> links = new HashMap<>();
+        try (Cursor cursor = db.query(LINKS,
+                new String[]{ANT_DEVICE_ID, EQUIPMENT_ID},
+                null, null,
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                links.computeIfAbsent(cursor.getLong(0), deviceId -> new ArrayList<>()).add(cursor.getLong(1));
+            }
+        }
+
+        return new Equipment(Collections.unmodifiableList(rows), Collections.unmodifiableMap(byId),
+                Collections.unmodifiableMap(idByName), Collections.unmodifiableMap(links));
+    }
+
     @NonNull
     public List<String> getLinkedEquipment(long workoutId) {
         if (DEBUG) Log.d(TAG, "getLinkedEquipment, workoutId=" + workoutId);
@@ -139,47 +213,15 @@ public class EquipmentDbHelper extends SQLiteOpenHelper {
 
         List<String> equipmentList = new LinkedList<>();
 
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor;
-        if (sportType == BSportType.UNKNOWN) {
-            cursor = db.query(EQUIPMENT,
-                    null,
-                    null,
-                    null,
-                    null,
-                    null,
-                    null);
-        }
-        else if (frameType == 0) {
-            cursor = db.query(EQUIPMENT,
-                    null,
-                    SPORT_TYPE + "=?",
-                    new String[]{sportType.name()},
-                    null,
-                    null,
-                    null);
-        }
-        else {
-            cursor = db.query(EQUIPMENT,
-                    null,
-                    FRAME_TYPE + "=? AND " + SPORT_TYPE + "=?",
-                    new String[]{Long.toString(frameType), sportType.name()},
-                    null,
-                    null,
-                    null);
-        }
-
-        if (cursor.moveToFirst()) {
-            do {
-                if (DEBUG)
-                    Log.d(TAG, "adding " + cursor.getString(cursor.getColumnIndex(NAME)) + " to equipment list");
+        for (EquipmentRow row : getSnapshot().rows()) {
+            if (sportType == BSportType.UNKNOWN
+                    || (sportType.name().equals(row.sportType()) && (frameType == 0 || frameType == row.frameType()))) {
+                if (DEBUG) Log.d(TAG, "adding " + row.name() + " to equipment list");
 
-                equipmentList.add(cursor.getString(cursor.getColumnIndex(NAME)));
-            } while (cursor.moveToNext());
+                equipmentList.add(row.name());
+            }
         }
 
-        cursor.close();
-
         return equipmentList;
     }
 
@@ -200,41 +242,21 @@ public class EquipmentDbHelper extends SQLiteOpenHelper {
 
         List<String> equipmentList = new LinkedList<>();
 
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor linkCursor = db.query(LINKS,
-                null,
-                ANT_DEVICE_ID + "=?",
-                new String[]{Long.toString(deviceId)},
-                null,
-                null,
-                null);
-
-        if (linkCursor.moveToFirst()) {
+        Equipment equipment = getSnapshot();
+        List<Long> equipmentIds = equipment.links().get(deviceId);
+        if (equipmentIds != null) {
             if (DEBUG) Log.d(TAG, "got some linked equipment");
-            do {
-                int equipmentId = linkCursor.getInt(linkCursor.getColumnIndex(EQUIPMENT_ID));
-
-                Cursor equipmentCursor = db.query(EQUIPMENT,
-                        null,
-                        C_ID + "=?",
-                        new String[]{Long.toString(equipmentId)},
-                        null,
-                        null,
-                        null);
-                if (equipmentCursor.moveToFirst()) {
-                    if (DEBUG)
-                        Log.d(TAG, "adding " + equipmentCursor.getString(equipmentCursor.getColumnIndex(NAME)));
-                    equipmentList.add(equipmentCursor.getString(equipmentCursor.getColumnIndex(NAME)));
+            for (long equipmentId : equipmentIds) {
+                EquipmentRow row = equipment.byId().get(equipmentId);
+                if (row != null) {
+                    if (DEBUG) Log.d(TAG, "adding " + row.name());
+                    equipmentList.add(row.name());
                 } else {
-                    Log.e(TAG, "ERROR: more than one name to one equipment id!");
+                    Log.e(TAG, "ERROR: no equipment for the linked equipment id " + equipmentId);
                 }
-                equipmentCursor.close();
-
-            } while (linkCursor.moveToNext());
+            }
         }
 
-        linkCursor.close();
-
         return equipmentList;
     }
 
@@ -259,6 +281,8 @@ public class EquipmentDbHelper extends SQLiteOpenHelper {
             db.insert(LINKS, null, values);
         }
 
+        invalidateCache();
+
         if (DEBUG) Log.d(TAG, "inserted");
     }
 
@@ -279,44 +303,32 @@ public class EquipmentDbHelper extends SQLiteOpenHelper {
     }
 
     public long getEquipmentId(@NonNull String equipmentName) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        return getEquipmentId(db, equipmentName);
+        Long equipmentId = getSnapshot().idByName().get(equipmentName);
+        if (equipmentId == null) {
+            Log.e(TAG, "ERROR: in getEquipmentId: no id to name: " + equipmentName);
+            return -1;
+        }
+        return equipmentId;
     }
 
     @Nullable
     public String getEquipmentNameFromId(int equipmentId) {
-        String equipmentName = null;
-
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(EQUIPMENT, null, C_ID + "=?", new String[]{Long.toString(equipmentId)}, null, null, null);
-
-        if (cursor.moveToFirst()) {
-            equipmentName = cursor.getString(cursor.getColumnIndex(NAME));
-        } else {
+        EquipmentRow row = getSnapshot().byId().get((long) equipmentId);
+        if (row == null) {
             Log.e(TAG, "ERROR: in getEquipmentFromId: no name for id: " + equipmentId);
+            return null;
         }
-
-        cursor.close();
-
-        return equipmentName;
+        return row.name();
     }
 
     @Nullable
     public String getStravaIdFromId(int equipmentId) {
-        String stravaId = null;
-
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(EQUIPMENT, null, C_ID + "=?", new String[]{Long.toString(equipmentId)}, null, null, null);
-
-        if (cursor.moveToFirst()) {
-            stravaId = cursor.getString(cursor.getColumnIndex(STRAVA_ID));
-        } else {
+        EquipmentRow row = getSnapshot().byId().get((long) equipmentId);
+        if (row == null) {
             Log.e(TAG, "ERROR: in getStravaIdFromId: no stravaId for id: " + equipmentId);
+            return null;
         }
-
-        cursor.close();
-
-        return stravaId;
+        return row.stravaId();
     }
 
     @Override
@@ -341,4 +353,11 @@ public class EquipmentDbHelper extends SQLiteOpenHelper {
 
     }
 
+    private record EquipmentRow(long id, String name, String sportType, int frameType, String stravaId) {
+    }
+
+    private record Equipment(List<EquipmentRow> rows, Map<Long, EquipmentRow> byId, Map<String, Long> idByName,
+                             Map<Long, List<Long>> links) {
+    }
+
 }
@@ -0,0 +1,101 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.banalservice.sensor.SensorType;
+
+/**
+ * Accumulates min, max, sum, count, start, and end of one sensor together with the positions where they occurred.
+ * <p>
+ * The accumulation itself is done by {@link SampleExtrema}, this class adds the sensor and the access via the ExtremaType.
+ */
+public class ExtremaAccumulator extends SampleExtrema {
+    public final SensorType sensorType;
+
+    public ExtremaAccumulator(@NonNull SensorType sensorType) {
+        this.sensorType = sensorType;
+    }
+
+    /**
+     * @return the value or null when there was no sample or the extremaType is not supported (e.g. MAX_LINE_DISTANCE)
+     */
+    @Nullable
+    public Double getValue(@NonNull ExtremaType extremaType) {
+        if (!hasValues()) {
+            return null;
+        }
+        return switch (extremaType) {
+            case MIN -> getMin();
+            case MAX -> getMax();
+            case AVG -> getAverage();
+            case START -> getStart();
+            case END -> getEnd();
+            default -> null;
+        };
+    }
+
+    @Nullable
+    public Double getLatitude(@NonNull ExtremaType extremaType) {
+        return toNullable(switch (extremaType) {
+            case MIN -> getMinLatitude();
+            case MAX -> getMaxLatitude();
+            case START -> getStartLatitude();
+            case END -> getEndLatitude();
+            default -> Double.NaN;
+        });
+    }
+
+    @Nullable
+    public Double getLongitude(@NonNull ExtremaType extremaType) {
+        return toNullable(switch (extremaType) {
+            case MIN -> getMinLongitude();
+            case MAX -> getMaxLongitude();
+            case START -> getStartLongitude();
+            case END -> getEndLongitude();
+            default -> Double.NaN;
+        });
+    }
+
+    /**
+     * @return the extrema value together with its position or null when there is no value.
+     */
+    @Nullable
+    public ExtremaValue getExtremaValue(@NonNull ExtremaType extremaType) {
+        Double value = getValue(extremaType);
+        if (value == null) {
+            return null;
+        }
+        return new ExtremaValue(sensorType, extremaType, value, getLatitude(extremaType), getLongitude(extremaType));
+    }
+
+    @Nullable
+    private static Double toNullable(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /**
+     * One row of the ExtremumValues table.  The position is null when unknown.
+     */
+    public record ExtremaValue(@NonNull SensorType sensorType, @NonNull ExtremaType extremaType, double value,
+                               @Nullable Double latitude, @Nullable Double longitude) {
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent spatial index over the samples of all workouts.
+ * <p>
+ * The world is divided into tiles of TILE_SIZE_DEG degrees.  For each tile, the index stores postings:
+ * the workout and the range of sample rows (positions of {@link WorkoutSamplesDatabaseManager#getSamplesCursor}) within this tile.
+ * Thus, location based queries only have to read the samples of the workouts that actually pass through the area.
+ * <p>
+ * Workouts are indexed once they are finished, see {@link com.atrainingtracker.trainingtracker.helpers.GeoTileIndexWorker}.
+ */
+public class GeoTileIndexDatabaseManager {
+    private static final String TAG = GeoTileIndexDatabaseManager.class.getName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    // about 1.1 km in north-south direction
+    protected static final double TILE_SIZE_DEG = 0.01;
+    // when a workout comes back to a tile within this number of samples, the posting is extended instead of creating a new one
+    protected static final int MAX_GAP_ROWS = 60;
+    // offsets to get positive and monotone keys
+    private static final int LAT_OFFSET = 20000;
+    private static final int LON_OFFSET = 50000;
+    private static final long LON_RANGE = 100000;
+
+    private static volatile GeoTileIndexDatabaseManager cInstance;
+    private final GeoTileIndexDbHelper cDbHelper;
+    private final Context mContext;
+
+    private GeoTileIndexDatabaseManager(@NonNull Context context) {
+        cDbHelper = new GeoTileIndexDbHelper(context.getApplicationContext());
+        mContext = context.getApplicationContext();
+    }
+
+    @NonNull
+    public static GeoTileIndexDatabaseManager getInstance(@NonNull Context context) {
+        if (cInstance == null) {
+            synchronized (GeoTileIndexDatabaseManager.class) {
+                if (cInstance == null) {
+                    cInstance = new GeoTileIndexDatabaseManager(context);
+                }
+            }
+        }
+        return cInstance;
+    }
+
+    public SQLiteDatabase getDatabase() {
+        return cDbHelper.getWritableDatabase();
+    }
+
+    /**
+     * (re)creates the postings of one workout
+     *
+     * @return the number of postings
+     */
+    public int indexWorkout(@NonNull String baseFileName) {
+        if (DEBUG) Log.i(TAG, "indexWorkout: " + baseFileName);
+
+        List<long[]> postings = new ArrayList<>();  // tileKey, firstRow, lastRow
+        Map<Long, long[]> openPostings = new HashMap<>();
+
+        try (Cursor cursor = WorkoutSamplesDatabaseManager.getInstance(mContext).getSamplesCursor(baseFileName,
+                new String[]{SensorType.LATITUDE.name(), SensorType.LONGITUDE.name()})) {
+            int latIndex = cursor.getColumnIndex(SensorType.LATITUDE.name());
+            int lonIndex = cursor.getColumnIndex(SensorType.LONGITUDE.name());
+
+            if (latIndex >= 0 && lonIndex >= 0) {
+                while (cursor.moveToNext()) {
+                    if (cursor.isNull(latIndex) || cursor.isNull(lonIndex)) {
+                        continue;
+                    }
+                    long row = cursor.getPosition();
+                    long tileKey = getTileKey(getTileIndex(cursor.getDouble(latIndex)), getTileIndex(cursor.getDouble(lonIndex)));
+
+                    long[] posting = openPostings.get(tileKey);
+                    if (posting != null && row - posting[2] <= MAX_GAP_ROWS) {
+                        posting[2] = row;
+                    } else {
+                        if (posting != null) {
+                            postings.add(posting);
+                        }
+                        openPostings.put(tileKey, new long[]{tileKey, row, row});
+                    }
+                }
+            }
+        }
+        postings.addAll(openPostings.values());
+
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            deleteWorkout(db, baseFileName);
+
+            ContentValues values = new ContentValues();
+            for (long[] posting : postings) {
+                values.put(GeoTileIndexDbHelper.TILE_KEY, posting[0]);
+                values.put(GeoTileIndexDbHelper.FILE_BASE_NAME, baseFileName);
+                values.put(GeoTileIndexDbHelper.FIRST_ROW, posting[1]);
+                values.put(GeoTileIndexDbHelper.LAST_ROW, posting[2]);
+                db.insert(GeoTileIndexDbHelper.TABLE_POSTINGS, null, values);
+            }
+
+            values.clear();
+            values.put(GeoTileIndexDbHelper.FILE_BASE_NAME, baseFileName);
+            db.insert(GeoTileIndexDbHelper.TABLE_INDEXED_WORKOUTS, null, values);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (DEBUG) Log.i(TAG, "indexed " + baseFileName + " with " + postings.size() + " postings");
+        return postings.size();
+    }
+
+    public void deleteWorkout(@NonNull String baseFileName) {
+        deleteWorkout(getDatabase(), baseFileName);
+    }
+
+    private static void deleteWorkout(@NonNull SQLiteDatabase db, @NonNull String baseFileName) {
+        db.delete(GeoTileIndexDbHelper.TABLE_POSTINGS, GeoTileIndexDbHelper.FILE_BASE_NAME + "=?", new String[]{baseFileName});
+        db.delete(GeoTileIndexDbHelper.TABLE_INDEXED_WORKOUTS, GeoTileIndexDbHelper.FILE_BASE_NAME + "=?", new String[]{baseFileName});
+    }
+
+    /**
+     * removes all postings, e.g., before rebuilding the index
+     */
+    public void clear() {
+        SQLiteDatabase db = getDatabase();
+        db.delete(GeoTileIndexDbHelper.TABLE_POSTINGS, null, null);
+        db.delete(GeoTileIndexDbHelper.TABLE_INDEXED_WORKOUTS, null, null);
+    }
+
+    @NonNull
+    public Set<String> getIndexedWorkouts() {
+        Set<String> baseFileNames = new HashSet<>();
+
+        try (Cursor cursor = getDatabase().query(GeoTileIndexDbHelper.TABLE_INDEXED_WORKOUTS,
+                new String[]{GeoTileIndexDbHelper.FILE_BASE_NAME},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                baseFileNames.add(cursor.getString(0));
+            }
+        }
+        return baseFileNames;
+    }
+
+    /**
+     * @return the sample ranges of all workouts that pass through the tiles touched by the given bounding box.
+     * The postings of neighbouring tiles overlap (they are extended by up to MAX_GAP_ROWS), so the ranges of each workout are merged:
+     * they are ascending and disjoint, every sample is contained at most once.
+     */
+    @NonNull
+    public Map<String, List<SampleRange>> getSampleRanges(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        Map<String, List<SampleRange>> result = new LinkedHashMap<>();
+
+        int minLonIndex = getTileIndex(minLongitude);
+        int maxLonIndex = getTileIndex(maxLongitude);
+
+        // within one row of tiles, the keys are consecutive.  So, we need one range per row
+        StringBuilder selection = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>();
+        for (int latIndex = getTileIndex(minLatitude); latIndex <= getTileIndex(maxLatitude); latIndex++) {
+            if (selection.length() > 0) {
+                selection.append(" OR ");
+            }
+            selection.append("(" + GeoTileIndexDbHelper.TILE_KEY + " BETWEEN ? AND ?)");
+            selectionArgs.add(Long.toString(getTileKey(latIndex, minLonIndex)));
+            selectionArgs.add(Long.toString(getTileKey(latIndex, maxLonIndex)));
+        }
+
+        try (Cursor cursor = getDatabase().query(GeoTileIndexDbHelper.TABLE_POSTINGS,
+                new String[]{GeoTileIndexDbHelper.FILE_BASE_NAME, GeoTileIndexDbHelper.FIRST_ROW, GeoTileIndexDbHelper.LAST_ROW},
+                selection.toString(),
+                selectionArgs.toArray(new String[0]),
+                null, null,
+                GeoTileIndexDbHelper.FILE_BASE_NAME + ", " + GeoTileIndexDbHelper.FIRST_ROW)) {
+            while (cursor.moveToNext()) {
+                String baseFileName = cursor.getString(0);
+                List<SampleRange> sampleRanges = result.get(baseFileName);
+                if (sampleRanges == null) {
+                    sampleRanges = new ArrayList<>();
+                    result.put(baseFileName, sampleRanges);
+                }
+                int firstRow = cursor.getInt(1);
+                int lastRow = cursor.getInt(2);
+
+                // the postings are sorted by the first row, so an overlapping or adjacent range can only be the previous one
+                int last = sampleRanges.size() - 1;
+                if (last >= 0 && firstRow <= sampleRanges.get(last).lastRow() + 1) {
+                    SampleRange previous = sampleRanges.get(last);
+                    sampleRanges.set(last, new SampleRange(previous.firstRow(), Math.max(previous.lastRow(), lastRow)));
+                } else {
+                    sampleRanges.add(new SampleRange(firstRow, lastRow));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    protected static int getTileIndex(double degrees) {
+        return (int) Math.floor(degrees / TILE_SIZE_DEG);
+    }
+
+    protected static long getTileKey(int latIndex, int lonIndex) {
+        return (latIndex + LAT_OFFSET) * LON_RANGE + (lonIndex + LON_OFFSET);
+    }
+
+    /**
+     * the positions of the first and last sample within a tile, both inclusive
+     */
+    public record SampleRange(int firstRow, int lastRow) {
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // finally, the database itself
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class GeoTileIndexDbHelper extends SQLiteOpenHelper {
+        public static final String DB_NAME = "GeoTileIndex.db";
+        public static final int DB_VERSION = 1;
+        public static final String TABLE_POSTINGS = "Postings";
+        public static final String TABLE_INDEXED_WORKOUTS = "IndexedWorkouts";
+        public static final String C_ID = BaseColumns._ID;
+        public static final String TILE_KEY = "tileKey";
+        public static final String FILE_BASE_NAME = "fileBaseName";
+        public static final String FIRST_ROW = "firstRow";
+        public static final String LAST_ROW = "lastRow";
+        protected static final String TAG = GeoTileIndexDbHelper.class.getName();
+        protected static final boolean DEBUG = TrainingApplication.getDebug(true);
+        protected static final String CREATE_TABLE_POSTINGS_V1 = "create table " + TABLE_POSTINGS + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + TILE_KEY + " int,"
+                + FILE_BASE_NAME + " text,"
+                + FIRST_ROW + " int,"
+                + LAST_ROW + " int)";
+        protected static final String CREATE_INDEX_TILE_KEY_V1 = "create index " + TABLE_POSTINGS + "_" + TILE_KEY
+                + " on " + TABLE_POSTINGS + " (" + TILE_KEY + ")";
+        protected static final String CREATE_INDEX_FILE_BASE_NAME_V1 = "create index " + TABLE_POSTINGS + "_" + FILE_BASE_NAME
+                + " on " + TABLE_POSTINGS + " (" + FILE_BASE_NAME + ")";
+        protected static final String CREATE_TABLE_INDEXED_WORKOUTS_V1 = "create table " + TABLE_INDEXED_WORKOUTS + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + FILE_BASE_NAME + " text unique)";
+
+        // Constructor
+        public GeoTileIndexDbHelper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+        }
+
+        // Called only once, first time the DB is created
+        @Override
+        public void onCreate(@NonNull SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_POSTINGS_V1);
+            db.execSQL(CREATE_INDEX_TILE_KEY_V1);
+            db.execSQL(CREATE_INDEX_FILE_BASE_NAME_V1);
+            db.execSQL(CREATE_TABLE_INDEXED_WORKOUTS_V1);
+            if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_POSTINGS_V1);
+        }
+
+        //Called whenever newVersion != oldVersion
+        @Override
+        public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+            // nothing to do yet.  Since this is only an index, it could simply be rebuilt.
+        }
+    }
+}
@@ -24,7 +24,6 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.location.Location;
 import android.provider.BaseColumns;
 import android.util.Log;
 
@@ -34,6 +33,7 @@ import androidx.annotation.Nullable;
 import com.atrainingtracker.banalservice.BANALService;
 import com.google.android.gms.maps.model.LatLng;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -45,6 +45,9 @@ public class KnownLocationsDatabaseManager {
     // --- Modern Singleton Pattern ---
     private static volatile KnownLocationsDatabaseManager cInstance;
     private final KnownLocationsDbHelper cDbHelper;
+    // lazily built index over all locations, null when it has to be (re)built
+    @Nullable
+    private volatile KnownLocationsIndex mIndex;
 
     // Private constructor
     private KnownLocationsDatabaseManager(@NonNull Context context) {
@@ -88,6 +91,7 @@ public class KnownLocationsDatabaseManager {
         } catch (SQLException e) {
             Log.e(TAG, "Error while writing" + e);
         }
+        invalidateIndex();
     }
 
     @Nullable
@@ -111,60 +115,101 @@ public class KnownLocationsDatabaseManager {
         } catch (SQLException e) {
             Log.e(TAG, "Error while writing" + e);
         }
+        invalidateIndex();
 
         return myLocation;
     }
 
     // public static Integer getStartAltitude(Context context, double latitude, double longitude)
+    /**
+     * @return the nearest known location whose radius contains latLng or null when there is none.
+     */
     @Nullable
     public MyLocation getMyLocation(@NonNull LatLng latLng) {
-        MyLocation myLocation = null;
+        return copy(getIndex().getNearest(latLng.latitude, latLng.longitude));
+    }
+
+    /**
+     * Resolves several positions at once, e.g., the start, max line distance, and end of a workout.
+     *
+     * @param latLngs the positions, might contain null
+     * @return for each position the nearest known location or null
+     */
+    @NonNull
+    public List<MyLocation> getMyLocations(@NonNull List<LatLng> latLngs) {
+        KnownLocationsIndex index = getIndex();
 
-        Location currentLocation = new Location("");
-        currentLocation.setLatitude(latLng.latitude);
-        currentLocation.setLongitude(latLng.longitude);
+        List<MyLocation> result = new ArrayList<>(latLngs.size());
+        for (LatLng latLng : latLngs) {
+            result.add(latLng == null ? null : copy(index.getNearest(latLng.latitude, latLng.longitude)));
+        }
+        return result;
+    }
 
-        Cursor cursor = getDatabase().query(KnownLocationsDbHelper.TABLE,
+    @NonNull
+    private KnownLocationsIndex getIndex() {
+        KnownLocationsIndex index = mIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = mIndex;
+                if (index == null) {
+                    index = new KnownLocationsIndex(getAllMyLocations());
+                    mIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    // synchronized, so that an index that is just built from the old data does not survive
+    private synchronized void invalidateIndex() {
+        mIndex = null;
+    }
+
+    @NonNull
+    private List<MyLocation> getAllMyLocations() {
+        List<MyLocation> myLocations = new ArrayList<>();
+
+        try (Cursor cursor = getDatabase().query(KnownLocationsDbHelper.TABLE,
                 null,
                 null,
                 null,
                 null,
                 null,
-                null);  // sorting
-
-        Location startLocation = new Location("");
-        double minDistance = Double.MAX_VALUE;
-        while (cursor.moveToNext()) {
-            int radius = cursor.getInt(cursor.getColumnIndex(KnownLocationsDbHelper.RADIUS));
-
-            startLocation.setLatitude(cursor.getDouble(cursor.getColumnIndex(KnownLocationsDbHelper.LATITUDE)));
-            startLocation.setLongitude(cursor.getDouble(cursor.getColumnIndex(KnownLocationsDbHelper.LONGITUDE)));
-            float distance = currentLocation.distanceTo(startLocation);
-            if (DEBUG) Log.d(TAG, "distance to current location:" + distance);
-
-            if (distance < radius) { // acceptable start location
-                if (distance < minDistance) {
-                    minDistance = distance;
-
-                    myLocation = new MyLocation(cursor.getLong(cursor.getColumnIndex(KnownLocationsDbHelper.C_ID)),
-                            cursor.getDouble(cursor.getColumnIndex(KnownLocationsDbHelper.LATITUDE)),
-                            cursor.getDouble(cursor.getColumnIndex(KnownLocationsDbHelper.LONGITUDE)),
-                            cursor.getString(cursor.getColumnIndex(KnownLocationsDbHelper.NAME)),
-                            cursor.getInt(cursor.getColumnIndex(KnownLocationsDbHelper.ALTITUDE)),
-                            cursor.getInt(cursor.getColumnIndex(KnownLocationsDbHelper.RADIUS)));
-                }
+                null)) {
+
+            int idIndex = cursor.getColumnIndex(KnownLocationsDbHelper.C_ID);
+            int latIndex = cursor.getColumnIndex(KnownLocationsDbHelper.LATITUDE);
+            int lonIndex = cursor.getColumnIndex(KnownLocationsDbHelper.LONGITUDE);
+            int nameIndex = cursor.getColumnIndex(KnownLocationsDbHelper.NAME);
+            int altitudeIndex = cursor.getColumnIndex(KnownLocationsDbHelper.ALTITUDE);
+            int radiusIndex = cursor.getColumnIndex(KnownLocationsDbHelper.RADIUS);
+            while (cursor.moveToNext()) {
+                myLocations.add(new MyLocation(cursor.getLong(idIndex),
+                        cursor.getDouble(latIndex),
+                        cursor.getDouble(lonIndex),
+                        cursor.getString(nameIndex),
+                        cursor.getInt(altitudeIndex),
+                        cursor.getInt(radiusIndex)));
             }
         }
+        if (DEBUG) Log.d(TAG, "indexed " + myLocations.size() + " locations");
 
-        cursor.close();
+        return myLocations;
+    }
 
-        return myLocation;
+    // the locations of the index are shared, so callers get their own copy
+    @Nullable
+    private static MyLocation copy(@Nullable MyLocation myLocation) {
+        return myLocation == null ? null : new MyLocation(myLocation.id, myLocation.latLng.latitude, myLocation.latLng.longitude,
+                myLocation.name, myLocation.altitude, myLocation.radius);
     }
 
     public void deleteId(long id) {
         getDatabase().delete(KnownLocationsDbHelper.TABLE,
                 KnownLocationsDbHelper.C_ID + "=?",
                 new String[]{id + ""});
+        invalidateIndex();
     }
 
     public void updateLocation(long id, @NonNull LatLng latLng) {
@@ -191,6 +236,7 @@ public class KnownLocationsDatabaseManager {
                 contentValues,
                 KnownLocationsDbHelper.C_ID + "=?",
                 new String[]{id + ""});
+        invalidateIndex();
     }
 
     @Nullable
@@ -0,0 +1,139 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.trainingtracker.database.KnownLocationsDatabaseManager.MyLocation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory grid index over the known locations.
+ * <p>
+ * The world is divided into cells of CELL_SIZE_DEG degrees.  Each location is added to all cells that are touched by its radius.
+ * Thus, a lookup only has to check the locations of the single cell that contains the query point.
+ * Locations with a huge radius would touch too many cells, so they are always checked.
+ * The longitude cells wrap around at 180 degrees, so a radius that crosses the antimeridian also touches the cells on the other side.
+ * <p>
+ * The index is immutable, a changed location requires a new index.
+ */
+class KnownLocationsIndex {
+    // about 1.1 km in north-south direction
+    protected static final double CELL_SIZE_DEG = 0.01;
+    protected static final int MAX_CELLS_PER_LOCATION = 1024;
+    // the number of cells around the globe in east-west direction
+    private static final int LONGITUDE_CELLS = (int) Math.round(360 / CELL_SIZE_DEG);
+    private static final double METERS_PER_DEGREE = 111320;
+
+    private final Map<Long, List<MyLocation>> mCells = new HashMap<>();
+    private final List<MyLocation> mHugeLocations = new ArrayList<>();
+    private final float[] mDistance = new float[1];
+
+    KnownLocationsIndex(@NonNull List<MyLocation> myLocations) {
+        for (MyLocation myLocation : myLocations) {
+            add(myLocation);
+        }
+    }
+
+    /**
+     * @return the nearest location whose radius contains the given position or null when there is none.
+     */
+    @Nullable
+    synchronized MyLocation getNearest(double latitude, double longitude) {
+        MyLocation nearest = null;
+        double minDistance = Double.MAX_VALUE;
+
+        List<MyLocation> cell = mCells.get(getKey(getCellIndex(latitude), getLongitudeCellIndex(getCellIndex(longitude))));
+        if (cell != null) {
+            for (MyLocation myLocation : cell) {
+                double distance = distanceTo(myLocation, latitude, longitude);
+                if (distance < myLocation.radius && distance < minDistance) {
+                    minDistance = distance;
+                    nearest = myLocation;
+                }
+            }
+        }
+        for (MyLocation myLocation : mHugeLocations) {
+            double distance = distanceTo(myLocation, latitude, longitude);
+            if (distance < myLocation.radius && distance < minDistance) {
+                minDistance = distance;
+                nearest = myLocation;
+            }
+        }
+
+        return nearest;
+    }
+
+    private void add(@NonNull MyLocation myLocation) {
+        double latitude = myLocation.latLng.latitude;
+        double longitude = myLocation.latLng.longitude;
+
+        // the bounding box of the radius in degrees.  Near the poles, we limit the longitude extent
+        double deltaLat = myLocation.radius / METERS_PER_DEGREE;
+        double deltaLon = myLocation.radius / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+
+        int minLatIndex = getCellIndex(latitude - deltaLat), maxLatIndex = getCellIndex(latitude + deltaLat);
+        int minLonIndex = getCellIndex(longitude - deltaLon), maxLonIndex = getCellIndex(longitude + deltaLon);
+
+        if ((long) (maxLatIndex - minLatIndex + 1) * (maxLonIndex - minLonIndex + 1) > MAX_CELLS_PER_LOCATION) {
+            mHugeLocations.add(myLocation);
+            return;
+        }
+
+        for (int latIndex = minLatIndex; latIndex <= maxLatIndex; latIndex++) {
+            for (int lonIndex = minLonIndex; lonIndex <= maxLonIndex; lonIndex++) {
+                long key = getKey(latIndex, getLongitudeCellIndex(lonIndex));
+                List<MyLocation> cell = mCells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<>(1);
+                    mCells.put(key, cell);
+                }
+                cell.add(myLocation);
+            }
+        }
+    }
+
+    private double distanceTo(@NonNull MyLocation myLocation, double latitude, double longitude) {
+        // same calculation as Location.distanceTo() but without creating Location objects
+        Location.distanceBetween(latitude, longitude, myLocation.latLng.latitude, myLocation.latLng.longitude, mDistance);
+        return mDistance[0];
+    }
+
+    private static int getCellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE_DEG);
+    }
+
+    /**
+     * @return the index of the cell wrapped into [0, LONGITUDE_CELLS), e.g. the cells east of 180 degrees are the ones east of -180 degrees
+     */
+    private static int getLongitudeCellIndex(int cellIndex) {
+        return Math.floorMod(cellIndex + LONGITUDE_CELLS / 2, LONGITUDE_CELLS);
+    }
+
+    private static long getKey(int latIndex, int lonIndex) {
+        return ((long) latIndex << 32) | (lonIndex & 0xFFFFFFFFL);
+    }
+}
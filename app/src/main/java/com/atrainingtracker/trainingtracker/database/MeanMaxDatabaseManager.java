@@ -0,0 +1,503 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent mean-maximal curves (see {@link MeanMaxCurve}) of the finished workouts together with their envelopes.
+ * <p>
+ * The curve of each workout and sensor is stored as a blob of floats.  Two envelopes are maintained incrementally when a workout is added:
+ * <ul>
+ * <li>the all-time envelope: the best value of each duration, simply the maximum of the old envelope and the new curve.</li>
+ * <li>the rolling envelope of the last ROLLING_WINDOW_DAYS: for each duration, the candidates that might become the best value
+ * when older ones leave the window.  A candidate is dropped as soon as a newer workout is at least as good.  So, the list stays short
+ * and the rolling envelope is the best candidate within the window.</li>
+ * </ul>
+ * Thus, neither the samples nor the curves of old workouts have to be read again.  Only when a workout is deleted, the envelopes are
+ * rebuilt from the stored curves.
+ * <p>
+ * The curves are created once the workout is finished, see {@link com.atrainingtracker.trainingtracker.helpers.MeanMaxWorker}.
+ */
+public class MeanMaxDatabaseManager {
+    private static final String TAG = MeanMaxDatabaseManager.class.getName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final SensorType[] SENSOR_TYPES = {SensorType.POWER, SensorType.HR, SensorType.SPEED_mps};
+    public static final int ROLLING_WINDOW_DAYS = 90;
+
+    private static volatile MeanMaxDatabaseManager cInstance;
+    private final MeanMaxDbHelper cDbHelper;
+    private final Context mContext;
+
+    private MeanMaxDatabaseManager(@NonNull Context context) {
+        cDbHelper = new MeanMaxDbHelper(context.getApplicationContext());
+        mContext = context.getApplicationContext();
+    }
+
+    @NonNull
+    public static MeanMaxDatabaseManager getInstance(@NonNull Context context) {
+        if (cInstance == null) {
+            synchronized (MeanMaxDatabaseManager.class) {
+                if (cInstance == null) {
+                    cInstance = new MeanMaxDatabaseManager(context);
+                }
+            }
+        }
+        return cInstance;
+    }
+
+    public SQLiteDatabase getDatabase() {
+        return cDbHelper.getWritableDatabase();
+    }
+
+    /**
+     * reads the samples of the workout, calculates the curves of all SENSOR_TYPES, and adds them to the envelopes.
+     * A workout that was already built is skipped.
+     *
+     * @return the number of curves, 0 when the workout has none of the sensors
+     */
+    public synchronized int buildCurves(@NonNull String baseFileName) {
+        if (DEBUG) Log.i(TAG, "buildCurves: " + baseFileName);
+
+        if (isBuilt(baseFileName)) {
+            return 0;
+        }
+
+        Map<SensorType, float[]> curves = new EnumMap<>(SensorType.class);
+        long startTime_ms = 0;
+        ResampledSamples samples = ResampledSamples.read(mContext, baseFileName, SENSOR_TYPES);
+        if (samples != null) {
+            startTime_ms = samples.startTime_ms;
+            for (Map.Entry<SensorType, double[]> entry : samples.values.entrySet()) {
+                curves.put(entry.getKey(), MeanMaxCurve.calculate(entry.getValue()));
+            }
+        }
+        if (DEBUG) Log.i(TAG, baseFileName + ": curves of " + curves.keySet());
+
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Map.Entry<SensorType, float[]> entry : curves.entrySet()) {
+                values.put(MeanMaxDbHelper.FILE_BASE_NAME, baseFileName);
+                values.put(MeanMaxDbHelper.SENSOR, entry.getKey().name());
+                values.put(MeanMaxDbHelper.START_TIME, startTime_ms);
+                values.put(MeanMaxDbHelper.CURVE, encode(entry.getValue()));
+                db.insert(MeanMaxDbHelper.TABLE_CURVES, null, values);
+
+                addToAllTimeEnvelope(db, entry.getKey(), entry.getValue(), baseFileName);
+                addToRollingCandidates(db, entry.getKey(), entry.getValue(), startTime_ms, baseFileName);
+            }
+
+            values.clear();
+            values.put(MeanMaxDbHelper.FILE_BASE_NAME, baseFileName);
+            db.insertWithOnConflict(MeanMaxDbHelper.TABLE_BUILT_WORKOUTS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return curves.size();
+    }
+
+    @NonNull
+    public Set<String> getBuiltWorkouts() {
+        Set<String> baseFileNames = new HashSet<>();
+
+        try (Cursor cursor = getDatabase().query(MeanMaxDbHelper.TABLE_BUILT_WORKOUTS,
+                new String[]{MeanMaxDbHelper.FILE_BASE_NAME},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                baseFileNames.add(cursor.getString(0));
+            }
+        }
+        return baseFileNames;
+    }
+
+    /**
+     * @return the curve of the workout or null when the workout has no values of this sensor or was not (yet) built
+     */
+    @Nullable
+    public float[] getCurve(@NonNull String baseFileName, @NonNull SensorType sensorType) {
+        try (Cursor cursor = getDatabase().query(MeanMaxDbHelper.TABLE_CURVES,
+                new String[]{MeanMaxDbHelper.CURVE},
+                MeanMaxDbHelper.FILE_BASE_NAME + "=? AND " + MeanMaxDbHelper.SENSOR + "=?",
+                new String[]{baseFileName, sensorType.name()},
+                null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return decode(cursor.getBlob(0));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the best values of all workouts, an empty curve when there is none
+     */
+    @NonNull
+    public float[] getAllTimeEnvelope(@NonNull SensorType sensorType) {
+        return readEnvelope(getDatabase().query(MeanMaxDbHelper.TABLE_ALL_TIME,
+                new String[]{MeanMaxDbHelper.DURATION_INDEX, MeanMaxDbHelper.VALUE},
+                MeanMaxDbHelper.SENSOR + "=?",
+                new String[]{sensorType.name()},
+                null, null, null));
+    }
+
+    /**
+     * @return the best values of the workouts of the last ROLLING_WINDOW_DAYS, an empty curve when there is none
+     */
+    @NonNull
+    public float[] getRollingEnvelope(@NonNull SensorType sensorType) {
+        return readEnvelope(getDatabase().query(MeanMaxDbHelper.TABLE_ROLLING_CANDIDATES,
+                new String[]{MeanMaxDbHelper.DURATION_INDEX, "MAX(" + MeanMaxDbHelper.VALUE + ")"},
+                MeanMaxDbHelper.SENSOR + "=? AND " + MeanMaxDbHelper.START_TIME + ">=?",
+                new String[]{sensorType.name(), Long.toString(getRollingWindowStart_ms())},
+                MeanMaxDbHelper.DURATION_INDEX, null, null));
+    }
+
+    /**
+     * removes the curves of the workout.  When it had curves, the envelopes are rebuilt from the remaining curves.
+     */
+    public synchronized void deleteWorkout(@NonNull String baseFileName) {
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            int deletedCurves = db.delete(MeanMaxDbHelper.TABLE_CURVES, MeanMaxDbHelper.FILE_BASE_NAME + "=?", new String[]{baseFileName});
+            db.delete(MeanMaxDbHelper.TABLE_BUILT_WORKOUTS, MeanMaxDbHelper.FILE_BASE_NAME + "=?", new String[]{baseFileName});
+            if (deletedCurves > 0) {
+                rebuildEnvelopes(db);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private boolean isBuilt(@NonNull String baseFileName) {
+        try (Cursor cursor = getDatabase().query(MeanMaxDbHelper.TABLE_BUILT_WORKOUTS,
+                new String[]{MeanMaxDbHelper.FILE_BASE_NAME},
+                MeanMaxDbHelper.FILE_BASE_NAME + "=?",
+                new String[]{baseFileName},
+                null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    private static void addToAllTimeEnvelope(@NonNull SQLiteDatabase db, @NonNull SensorType sensorType, @NonNull float[] curve, @NonNull String baseFileName) {
+        float[] envelope;
+        try (Cursor cursor = db.query(MeanMaxDbHelper.TABLE_ALL_TIME,
+                new String[]{MeanMaxDbHelper.DURATION_INDEX, MeanMaxDbHelper.VALUE},
+                MeanMaxDbHelper.SENSOR + "=?",
+                new String[]{sensorType.name()},
+                null, null, null)) {
+            envelope = readEnvelope(cursor);
+        }
+
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < curve.length; i++) {
+            if (i < envelope.length && curve[i] <= envelope[i]) {
+                continue;
+            }
+            values.put(MeanMaxDbHelper.SENSOR, sensorType.name());
+            values.put(MeanMaxDbHelper.DURATION_INDEX, i);
+            values.put(MeanMaxDbHelper.VALUE, curve[i]);
+            values.put(MeanMaxDbHelper.FILE_BASE_NAME, baseFileName);
+            db.insertWithOnConflict(MeanMaxDbHelper.TABLE_ALL_TIME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        }
+    }
+
+    private static void addToRollingCandidates(@NonNull SQLiteDatabase db, @NonNull SensorType sensorType, @NonNull float[] curve, long startTime_ms, @NonNull String baseFileName) {
+        long windowStart_ms = getRollingWindowStart_ms();
+        String sensor = sensorType.name();
+
+        // first, forget the candidates that left the window
+        db.delete(MeanMaxDbHelper.TABLE_ROLLING_CANDIDATES,
+                MeanMaxDbHelper.SENSOR + "=? AND " + MeanMaxDbHelper.START_TIME + "<?",
+                new String[]{sensor, Long.toString(windowStart_ms)});
+        if (startTime_ms < windowStart_ms) {
+            return;
+        }
+
+        // the values are bound as numbers: a string would be converted to a double that differs from the stored float
+        ContentValues values = new ContentValues();
+        try (SQLiteStatement betterNewerCandidates = db.compileStatement("SELECT COUNT(*) FROM " + MeanMaxDbHelper.TABLE_ROLLING_CANDIDATES
+                + " WHERE " + MeanMaxDbHelper.SENSOR + "=? AND " + MeanMaxDbHelper.DURATION_INDEX + "=? AND " + MeanMaxDbHelper.START_TIME + ">=? AND " + MeanMaxDbHelper.VALUE + ">=?")) {
+            for (int i = 0; i < curve.length; i++) {
+                double value = curve[i];
+
+                // a newer candidate that is at least as good stays longer within the window, so this one would never be the best
+                betterNewerCandidates.bindString(1, sensor);
+                betterNewerCandidates.bindLong(2, i);
+                betterNewerCandidates.bindLong(3, startTime_ms);
+                betterNewerCandidates.bindDouble(4, value);
+                if (betterNewerCandidates.simpleQueryForLong() > 0) {
+                    continue;
+                }
+
+                // and this one makes all older ones that are not better useless
+                db.execSQL("DELETE FROM " + MeanMaxDbHelper.TABLE_ROLLING_CANDIDATES
+                                + " WHERE " + MeanMaxDbHelper.SENSOR + "=? AND " + MeanMaxDbHelper.DURATION_INDEX + "=? AND " + MeanMaxDbHelper.START_TIME + "<=? AND " + MeanMaxDbHelper.VALUE + "<=?",
+                        new Object[]{sensor, i, startTime_ms, value});
+
+                values.put(MeanMaxDbHelper.SENSOR, sensor);
+                values.put(MeanMaxDbHelper.DURATION_INDEX, i);
+                values.put(MeanMaxDbHelper.START_TIME, startTime_ms);
+                values.put(MeanMaxDbHelper.VALUE, curve[i]);
+                values.put(MeanMaxDbHelper.FILE_BASE_NAME, baseFileName);
+                db.insert(MeanMaxDbHelper.TABLE_ROLLING_CANDIDATES, null, values);
+            }
+        }
+    }
+
+    /**
+     * recalculates both envelopes from the stored curves, from the newest to the oldest workout.
+     */
+    private static void rebuildEnvelopes(@NonNull SQLiteDatabase db) {
+        if (DEBUG) Log.i(TAG, "rebuildEnvelopes");
+
+        db.delete(MeanMaxDbHelper.TABLE_ALL_TIME, null, null);
+        db.delete(MeanMaxDbHelper.TABLE_ROLLING_CANDIDATES, null, null);
+
+        long windowStart_ms = getRollingWindowStart_ms();
+        Map<SensorType, float[]> allTimeEnvelopes = new EnumMap<>(SensorType.class);
+        Map<SensorType, List<String>> allTimeBaseFileNames = new EnumMap<>(SensorType.class);
+        // the best value of the newer workouts, a candidate has to be better
+        Map<SensorType, float[]> newerBest = new EnumMap<>(SensorType.class);
+
+        ContentValues values = new ContentValues();
+        try (Cursor cursor = db.query(MeanMaxDbHelper.TABLE_CURVES,
+                new String[]{MeanMaxDbHelper.FILE_BASE_NAME, MeanMaxDbHelper.SENSOR, MeanMaxDbHelper.START_TIME, MeanMaxDbHelper.CURVE},
+                null, null, null, null, MeanMaxDbHelper.START_TIME + " DESC")) {
+            while (cursor.moveToNext()) {
+                String baseFileName = cursor.getString(0);
+                SensorType sensorType;
+                try {
+                    sensorType = SensorType.valueOf(cursor.getString(1));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                long startTime_ms = cursor.getLong(2);
+                float[] curve = decode(cursor.getBlob(3));
+
+                float[] allTime = allTimeEnvelopes.get(sensorType);
+                List<String> names = allTimeBaseFileNames.get(sensorType);
+                if (allTime == null) {
+                    allTime = new float[0];
+                    names = new ArrayList<>();
+                    allTimeBaseFileNames.put(sensorType, names);
+                }
+                if (curve.length > allTime.length) {
+                    int oldLength = allTime.length;
+                    allTime = Arrays.copyOf(allTime, curve.length);
+                    Arrays.fill(allTime, oldLength, curve.length, Float.NEGATIVE_INFINITY);
+                }
+                for (int i = 0; i < curve.length; i++) {
+                    if (i >= names.size()) {
+                        names.add(baseFileName);
+                    }
+                    // for equal values, the newer workout is kept
+                    if (curve[i] > allTime[i]) {
+                        allTime[i] = curve[i];
+                        names.set(i, baseFileName);
+                    }
+                }
+                allTimeEnvelopes.put(sensorType, allTime);
+
+                if (startTime_ms < windowStart_ms) {
+                    continue;
+                }
+                float[] best = newerBest.get(sensorType);
+                if (best == null || curve.length > best.length) {
+                    int oldLength = best == null ? 0 : best.length;
+                    best = best == null ? new float[curve.length] : Arrays.copyOf(best, curve.length);
+                    Arrays.fill(best, oldLength, curve.length, Float.NEGATIVE_INFINITY);
+                    newerBest.put(sensorType, best);
+                }
+                for (int i = 0; i < curve.length; i++) {
+                    if (curve[i] > best[i]) {
+                        best[i] = curve[i];
+                        values.put(MeanMaxDbHelper.SENSOR, sensorType.name());
+                        values.put(MeanMaxDbHelper.DURATION_INDEX, i);
+                        values.put(MeanMaxDbHelper.START_TIME, startTime_ms);
+                        values.put(MeanMaxDbHelper.VALUE, curve[i]);
+                        values.put(MeanMaxDbHelper.FILE_BASE_NAME, baseFileName);
+                        db.insert(MeanMaxDbHelper.TABLE_ROLLING_CANDIDATES, null, values);
+                    }
+                }
+            }
+        }
+
+        values.clear();
+        for (Map.Entry<SensorType, float[]> entry : allTimeEnvelopes.entrySet()) {
+            float[] allTime = entry.getValue();
+            List<String> names = allTimeBaseFileNames.get(entry.getKey());
+            for (int i = 0; i < allTime.length; i++) {
+                values.put(MeanMaxDbHelper.SENSOR, entry.getKey().name());
+                values.put(MeanMaxDbHelper.DURATION_INDEX, i);
+                values.put(MeanMaxDbHelper.VALUE, allTime[i]);
+                values.put(MeanMaxDbHelper.FILE_BASE_NAME, names.get(i));
+                db.insert(MeanMaxDbHelper.TABLE_ALL_TIME, null, values);
+            }
+        }
+    }
+
+    private static long getRollingWindowStart_ms() {
+        return System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ROLLING_WINDOW_DAYS);
+    }
+
+    /**
+     * reads rows of duration index and value into a curve and closes the cursor
+     */
+    @NonNull
+    private static float[] readEnvelope(@NonNull Cursor cursor) {
+        try {
+            float[] envelope = new float[0];
+            while (cursor.moveToNext()) {
+                int index = cursor.getInt(0);
+                if (index >= envelope.length) {
+                    int oldLength = envelope.length;
+                    envelope = Arrays.copyOf(envelope, index + 1);
+                    Arrays.fill(envelope, oldLength, envelope.length, Float.NaN);
+                }
+                envelope[index] = cursor.getFloat(1);
+            }
+            return envelope;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @NonNull
+    private static byte[] encode(@NonNull float[] curve) {
+        ByteBuffer buffer = ByteBuffer.allocate(curve.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : curve) {
+            buffer.putFloat(value);
+        }
+        return buffer.array();
+    }
+
+    @NonNull
+    private static float[] decode(@NonNull byte[] blob) {
+        ByteBuffer buffer = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+        float[] curve = new float[blob.length / Float.BYTES];
+        for (int i = 0; i < curve.length; i++) {
+            curve[i] = buffer.getFloat();
+        }
+        return curve;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // finally, the database itself
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class MeanMaxDbHelper extends SQLiteOpenHelper {
+        public static final String DB_NAME = "MeanMax.db";
+        public static final int DB_VERSION = 1;
+        public static final String TABLE_CURVES = "Curves";
+        public static final String TABLE_ALL_TIME = "AllTimeEnvelope";
+        public static final String TABLE_ROLLING_CANDIDATES = "RollingCandidates";
+        public static final String TABLE_BUILT_WORKOUTS = "BuiltWorkouts";
+        public static final String C_ID = BaseColumns._ID;
+        public static final String FILE_BASE_NAME = "fileBaseName";
+        public static final String SENSOR = "sensor";
+        public static final String START_TIME = "startTime";
+        public static final String CURVE = "curve";
+        public static final String DURATION_INDEX = "durationIndex";
+        public static final String VALUE = "value";
+        protected static final String TAG = MeanMaxDbHelper.class.getName();
+        protected static final boolean DEBUG = TrainingApplication.getDebug(true);
+        protected static final String CREATE_TABLE_CURVES_V1 = "create table " + TABLE_CURVES + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + FILE_BASE_NAME + " text,"
+                + SENSOR + " text,"
+                + START_TIME + " int,"
+                + CURVE + " blob)";
+        protected static final String CREATE_INDEX_CURVES_V1 = "create index " + TABLE_CURVES + "_" + FILE_BASE_NAME
+                + " on " + TABLE_CURVES + " (" + FILE_BASE_NAME + ", " + SENSOR + ")";
+        protected static final String CREATE_TABLE_ALL_TIME_V1 = "create table " + TABLE_ALL_TIME + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SENSOR + " text,"
+                + DURATION_INDEX + " int,"
+                + VALUE + " real,"
+                + FILE_BASE_NAME + " text,"
+                + "unique (" + SENSOR + ", " + DURATION_INDEX + "))";
+        protected static final String CREATE_TABLE_ROLLING_CANDIDATES_V1 = "create table " + TABLE_ROLLING_CANDIDATES + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SENSOR + " text,"
+                + DURATION_INDEX + " int,"
+                + START_TIME + " int,"
+                + VALUE + " real,"
+                + FILE_BASE_NAME + " text)";
+        protected static final String CREATE_INDEX_ROLLING_CANDIDATES_V1 = "create index " + TABLE_ROLLING_CANDIDATES + "_" + SENSOR
+                + " on " + TABLE_ROLLING_CANDIDATES + " (" + SENSOR + ", " + DURATION_INDEX + ", " + START_TIME + ")";
+        protected static final String CREATE_TABLE_BUILT_WORKOUTS_V1 = "create table " + TABLE_BUILT_WORKOUTS + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + FILE_BASE_NAME + " text unique)";
+
+        // Constructor
+        public MeanMaxDbHelper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+        }
+
+        // Called only once, first time the DB is created
+        @Override
+        public void onCreate(@NonNull SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_CURVES_V1);
+            db.execSQL(CREATE_INDEX_CURVES_V1);
+            db.execSQL(CREATE_TABLE_ALL_TIME_V1);
+            db.execSQL(CREATE_TABLE_ROLLING_CANDIDATES_V1);
+            db.execSQL(CREATE_INDEX_ROLLING_CANDIDATES_V1);
+            db.execSQL(CREATE_TABLE_BUILT_WORKOUTS_V1);
+            if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_CURVES_V1);
+        }
+
+        //Called whenever newVersion != oldVersion
+        @Override
+        public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+            // nothing to do yet.  Since the curves are derived from the samples, they could simply be rebuilt.
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
+import com.atrainingtracker.trainingtracker.exporter.writer.SampleTimeFormat;
+
+import java.text.ParseException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The samples of some sensors of a workout, resampled to one value per second (see {@link MeanMaxCurve#resample}).
+ * The samples are not necessarily equidistant (see SamplingPolicy), so any analysis over durations should use these values.
+ */
+final class ResampledSamples {
+    final long startTime_ms;
+    // only the sensors with at least one value
+    final Map<SensorType, double[]> values;
+
+    private ResampledSamples(long startTime_ms, @NonNull Map<SensorType, double[]> values) {
+        this.startTime_ms = startTime_ms;
+        this.values = values;
+    }
+
+    /**
+     * @return the resampled values or null when the workout has no samples
+     */
+    @Nullable
+    static ResampledSamples read(@NonNull Context context, @NonNull String baseFileName, @NonNull SensorType[] sensorTypes) {
+        String[] columns = new String[sensorTypes.length + 1];
+        columns[0] = WorkoutSamplesDbHelper.TIME;
+        for (int i = 0; i < sensorTypes.length; i++) {
+            columns[i + 1] = sensorTypes[i].name();
+        }
+
+        try (Cursor cursor = WorkoutSamplesDatabaseManager.getInstance(context).getSamplesCursor(baseFileName, columns)) {
+            int timeIndex = cursor.getColumnIndex(WorkoutSamplesDbHelper.TIME);
+            if (timeIndex < 0) {
+                return null;
+            }
+            int[] indexes = new int[sensorTypes.length];
+            for (int i = 0; i < sensorTypes.length; i++) {
+                indexes[i] = cursor.getColumnIndex(sensorTypes[i].name());
+            }
+
+            // read all samples into primitive arrays
+            int capacity = Math.max(cursor.getCount(), 0);
+            long[] times_ms = new long[capacity];
+            double[][] values = new double[sensorTypes.length][capacity];
+            boolean[] hasValues = new boolean[sensorTypes.length];
+            int count = 0;
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(timeIndex)) {
+                    continue;
+                }
+                try {
+                    times_ms[count] = SampleTimeFormat.dbTime2EpochMillis(cursor.getString(timeIndex));
+                } catch (ParseException e) {
+                    continue;
+                }
+                // the samples must be ascending, this is not the case when the clock of the phone was set back
+                if (count > 0 && times_ms[count] < times_ms[count - 1]) {
+                    continue;
+                }
+                for (int i = 0; i < sensorTypes.length; i++) {
+                    if (indexes[i] >= 0 && !cursor.isNull(indexes[i])) {
+                        values[i][count] = cursor.getDouble(indexes[i]);
+                        hasValues[i] = true;
+                    } else {
+                        values[i][count] = Double.NaN;
+                    }
+                }
+                count++;
+            }
+
+            if (count == 0) {
+                return null;
+            }
+
+            Map<SensorType, double[]> resampled = new EnumMap<>(SensorType.class);
+            for (int i = 0; i < sensorTypes.length; i++) {
+                if (hasValues[i]) {
+                    resampled.put(sensorTypes[i], MeanMaxCurve.resample(times_ms, values[i], count, ExtremaAccumulator.MAX_HOLD_ms));
+                }
+            }
+            return new ResampledSamples(times_ms[0], resampled);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Persistent multi-resolution representation of the tracks of the finished workouts.
+ * <p>
+ * For each track (identified by the names of its latitude and longitude columns), the points are simplified with
+ * {@link TrackSimplifier} for several tolerances.  Each of these levels is stored as a blob of packed E7 coordinates.
+ * Thus, a map only reads the points that are visible at its zoom instead of all samples.
+ * <p>
+ * The levels are created once the workout is finished, see {@link com.atrainingtracker.trainingtracker.helpers.TrackPyramidWorker}.
+ */
+public class TrackPyramidDatabaseManager {
+    private static final String TAG = TrackPyramidDatabaseManager.class.getName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    // resolution of about 1 cm
+    private static final double E7 = 1e7;
+    private static final int BYTES_PER_POINT = 2 * Integer.BYTES;
+
+    private static volatile TrackPyramidDatabaseManager cInstance;
+    private final TrackPyramidDbHelper cDbHelper;
+    private final Context mContext;
+
+    private TrackPyramidDatabaseManager(@NonNull Context context) {
+        cDbHelper = new TrackPyramidDbHelper(context.getApplicationContext());
+        mContext = context.getApplicationContext();
+    }
+
+    @NonNull
+    public static TrackPyramidDatabaseManager getInstance(@NonNull Context context) {
+        if (cInstance == null) {
+            synchronized (TrackPyramidDatabaseManager.class) {
+                if (cInstance == null) {
+                    cInstance = new TrackPyramidDatabaseManager(context);
+                }
+            }
+        }
+        return cInstance;
+    }
+
+    public SQLiteDatabase getDatabase() {
+        return cDbHelper.getWritableDatabase();
+    }
+
+    /**
+     * reads the samples of one track and stores the simplified track for each tolerance.  Existing levels of this track are replaced.
+     *
+     * @return the number of valid points of the track
+     */
+    public int buildPyramid(@NonNull String baseFileName, @NonNull String latitudeName, @NonNull String longitudeName, @NonNull int[] tolerances_m) {
+        if (DEBUG) Log.i(TAG, "buildPyramid: " + baseFileName + ", " + latitudeName);
+
+        double[] track = readTrack(baseFileName, latitudeName, longitudeName);
+        float[] significance = TrackSimplifier.getSignificance(track);
+
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TrackPyramidDbHelper.TABLE_LEVELS,
+                    TrackPyramidDbHelper.FILE_BASE_NAME + "=? AND " + TrackPyramidDbHelper.TRACK + "=?",
+                    new String[]{baseFileName, latitudeName});
+
+            // for an empty track, no levels are stored
+            if (significance.length > 0) {
+                ContentValues values = new ContentValues();
+                for (int tolerance : tolerances_m) {
+                    double[] points = TrackSimplifier.simplify(track, significance, tolerance);
+                    values.put(TrackPyramidDbHelper.FILE_BASE_NAME, baseFileName);
+                    values.put(TrackPyramidDbHelper.TRACK, latitudeName);
+                    values.put(TrackPyramidDbHelper.TOLERANCE, tolerance);
+                    values.put(TrackPyramidDbHelper.NUMBER_OF_POINTS, points.length / 2);
+                    values.put(TrackPyramidDbHelper.POINTS, encode(points));
+                    db.insert(TrackPyramidDbHelper.TABLE_LEVELS, null, values);
+
+                    if (DEBUG) Log.i(TAG, "tolerance=" + tolerance + "m: " + points.length / 2 + " of " + significance.length + " points");
+                }
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return significance.length;
+    }
+
+    /**
+     * marks the workout as complete, so it is not processed again
+     */
+    public void setBuilt(@NonNull String baseFileName) {
+        ContentValues values = new ContentValues();
+        values.put(TrackPyramidDbHelper.FILE_BASE_NAME, baseFileName);
+        getDatabase().insertWithOnConflict(TrackPyramidDbHelper.TABLE_BUILT_WORKOUTS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    @NonNull
+    public Set<String> getBuiltWorkouts() {
+        Set<String> baseFileNames = new HashSet<>();
+
+        try (Cursor cursor = getDatabase().query(TrackPyramidDbHelper.TABLE_BUILT_WORKOUTS,
+                new String[]{TrackPyramidDbHelper.FILE_BASE_NAME},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                baseFileNames.add(cursor.getString(0));
+            }
+        }
+        return baseFileNames;
+    }
+
+    /**
+     * @return the packed points (latitude and longitude of the first point, latitude and longitude of the second point, ...) of the track
+     * simplified with the given tolerance or null when this level was not (yet) built.
+     */
+    @Nullable
+    public double[] getTrack(@NonNull String baseFileName, @NonNull String latitudeName, int tolerance_m) {
+        try (Cursor cursor = getDatabase().query(TrackPyramidDbHelper.TABLE_LEVELS,
+                new String[]{TrackPyramidDbHelper.POINTS},
+                TrackPyramidDbHelper.FILE_BASE_NAME + "=? AND " + TrackPyramidDbHelper.TRACK + "=? AND " + TrackPyramidDbHelper.TOLERANCE + "=?",
+                new String[]{baseFileName, latitudeName, Integer.toString(tolerance_m)},
+                null, null, null)) {
+            if (cursor.moveToFirst()) {
+                return decode(cursor.getBlob(0));
+            }
+        }
+        return null;
+    }
+
+    public void deleteWorkout(@NonNull String baseFileName) {
+        SQLiteDatabase db = getDatabase();
+        db.delete(TrackPyramidDbHelper.TABLE_LEVELS, TrackPyramidDbHelper.FILE_BASE_NAME + "=?", new String[]{baseFileName});
+        db.delete(TrackPyramidDbHelper.TABLE_BUILT_WORKOUTS, TrackPyramidDbHelper.FILE_BASE_NAME + "=?", new String[]{baseFileName});
+    }
+
+    @NonNull
+    private double[] readTrack(@NonNull String baseFileName, @NonNull String latitudeName, @NonNull String longitudeName) {
+        try (Cursor cursor = WorkoutSamplesDatabaseManager.getInstance(mContext).getSamplesCursor(baseFileName,
+                new String[]{latitudeName, longitudeName})) {
+            int latIndex = cursor.getColumnIndex(latitudeName);
+            int lonIndex = cursor.getColumnIndex(longitudeName);
+            if (latIndex < 0 || lonIndex < 0) {
+                return new double[0];
+            }
+
+            double[] track = new double[2 * Math.max(cursor.getCount(), 0)];
+            int size = 0;
+            while (cursor.moveToNext()) {
+                if (cursor.isNull(latIndex) || cursor.isNull(lonIndex)) {
+                    continue;
+                }
+                if (size + 2 > track.length) {
+                    double[] newTrack = new double[Math.max(2 * track.length, 64)];
+                    System.arraycopy(track, 0, newTrack, 0, size);
+                    track = newTrack;
+                }
+                track[size++] = cursor.getDouble(latIndex);
+                track[size++] = cursor.getDouble(lonIndex);
+            }
+
+            if (size == track.length) {
+                return track;
+            }
+            double[] result = new double[size];
+            System.arraycopy(track, 0, result, 0, size);
+            return result;
+        }
+    }
+
+    @NonNull
+    private static byte[] encode(@NonNull double[] points) {
+        ByteBuffer buffer = ByteBuffer.allocate(points.length / 2 * BYTES_PER_POINT).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : points) {
+            buffer.putInt((int) Math.round(value * E7));
+        }
+        return buffer.array();
+    }
+
+    @NonNull
+    private static double[] decode(@NonNull byte[] blob) {
+        ByteBuffer buffer = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+        double[] points = new double[blob.length / Integer.BYTES];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = buffer.getInt() / E7;
+        }
+        return points;
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // finally, the database itself
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class TrackPyramidDbHelper extends SQLiteOpenHelper {
+        public static final String DB_NAME = "TrackPyramid.db";
+        public static final int DB_VERSION = 1;
+        public static final String TABLE_LEVELS = "Levels";
+        public static final String TABLE_BUILT_WORKOUTS = "BuiltWorkouts";
+        public static final String C_ID = BaseColumns._ID;
+        public static final String FILE_BASE_NAME = "fileBaseName";
+        public static final String TRACK = "track";
+        public static final String TOLERANCE = "tolerance";
+        public static final String NUMBER_OF_POINTS = "numberOfPoints";
+        public static final String POINTS = "points";
+        protected static final String TAG = TrackPyramidDbHelper.class.getName();
+        protected static final boolean DEBUG = TrainingApplication.getDebug(true);
+        protected static final String CREATE_TABLE_LEVELS_V1 = "create table " + TABLE_LEVELS + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + FILE_BASE_NAME + " text,"
+                + TRACK + " text,"
+                + TOLERANCE + " int,"
+                + NUMBER_OF_POINTS + " int,"
+                + POINTS + " blob)";
+        protected static final String CREATE_INDEX_LEVELS_V1 = "create index " + TABLE_LEVELS + "_" + FILE_BASE_NAME
+                + " on " + TABLE_LEVELS + " (" + FILE_BASE_NAME + ", " + TRACK + ", " + TOLERANCE + ")";
+        protected static final String CREATE_TABLE_BUILT_WORKOUTS_V1 = "create table " + TABLE_BUILT_WORKOUTS + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + FILE_BASE_NAME + " text unique)";
+
+        // Constructor
+        public TrackPyramidDbHelper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+        }
+
+        // Called only once, first time the DB is created
+        @Override
+        public void onCreate(@NonNull SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_LEVELS_V1);
+            db.execSQL(CREATE_INDEX_LEVELS_V1);
+            db.execSQL(CREATE_TABLE_BUILT_WORKOUTS_V1);
+            if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_LEVELS_V1);
+        }
+
+        //Called whenever newVersion != oldVersion
+        @Override
+        public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+            // nothing to do yet.  Since the levels are derived from the samples, they could simply be rebuilt.
+        }
+    }
+}
@@ -32,15 +32,21 @@ import androidx.annotation.Nullable;
 import com.atrainingtracker.R;
 import com.atrainingtracker.banalservice.ActivityType;
 import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.banalservice.database.ConfigCache;
 import com.atrainingtracker.banalservice.database.DevicesDatabaseManager;
 import com.atrainingtracker.banalservice.filters.FilterData;
 import com.atrainingtracker.banalservice.filters.FilterType;
 import com.atrainingtracker.banalservice.helpers.HavePressureSensor;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 
 
@@ -51,9 +57,12 @@ public class TrackingViewsDatabaseManager {
     // singleton pattern
     private static volatile TrackingViewsDatabaseManager cInstance;
     private final TrackingViewsDbHelper cDbHelper;
+    // the views and their rows, read by the tracking screens several times per second
+    private final ConfigCache<TrackingViews> mCache;
 
     private TrackingViewsDatabaseManager(@NonNull Context context) {
         this.cDbHelper = new TrackingViewsDbHelper(context.getApplicationContext());
+        this.mCache = new ConfigCache<>("TrackingViews", this::loadTrackingViews);
     }
 
     @NonNull
@@ -72,6 +81,11 @@ public class TrackingViewsDatabaseManager {
         return cDbHelper.getWritableDatabase();
     }
 
+    @NonNull
+    public ConfigCache<?> getCache() {
+        return mCache;
+    }
+
 
 
     public void updateNameOfView(long viewId, String name) {
@@ -82,7 +96,7 @@ public class TrackingViewsDatabaseManager {
                 values,
                 TrackingViewsDbHelper.C_ID + "=?",
                 new String[]{viewId + ""});
-
+        mCache.invalidate();
     }
 
     public void updateSensorTypeOfRow(long rowId, @NonNull SensorType sensorType) {
@@ -95,6 +109,7 @@ public class TrackingViewsDatabaseManager {
                 values,
                 TrackingViewsDbHelper.ROW_ID + "=?",
                 new String[]{rowId + ""});
+        mCache.invalidate();
     }
 
 
@@ -110,6 +125,7 @@ public class TrackingViewsDatabaseManager {
                 values,
                 TrackingViewsDbHelper.ROW_ID + "=?",
                 new String[]{rowId + ""});
+        mCache.invalidate();
     }
 
     public void updateSourceDeviceIdOfRow(long rowId, long deviceId) {
@@ -120,6 +136,7 @@ public class TrackingViewsDatabaseManager {
                 values,
                 TrackingViewsDbHelper.ROW_ID + "=?",
                 new String[]{rowId + ""});
+        mCache.invalidate();
     }
 
     protected void updateBoolean(long viewId, String ID, boolean value) {
@@ -130,6 +147,7 @@ public class TrackingViewsDatabaseManager {
                 values,
                 TrackingViewsDbHelper.C_ID + "=?",
                 new String[]{viewId + ""});
+        mCache.invalidate();
     }
 
     public void updateSystemSetting(long viewId, boolean value) {
@@ -162,90 +180,29 @@ public class TrackingViewsDatabaseManager {
         getDatabase().delete(TrackingViewsDbHelper.ROWS_TABLE,
                 TrackingViewsDbHelper.ROW_ID + "=?",
                 new String[]{rowId + ""});
+        mCache.invalidate();
     }
 
     @Nullable
     public String getName(long viewId) {
-
-        String name = null;
-
-        Cursor cursor = getDatabase().query(TrackingViewsDbHelper.VIEWS_TABLE,
-                null,
-                TrackingViewsDbHelper.C_ID + "=?",
-                new String[]{viewId + ""},
-                null,
-                null,
-                null);
-
-        if (cursor.moveToFirst()) {
-            name = cursor.getString(cursor.getColumnIndex(TrackingViewsDbHelper.NAME));
-        }
-
-        cursor.close();
-
-        return name;
+        ViewRow view = mCache.get().views().get(viewId);
+        return view == null ? null : view.name;
     }
 
     @NonNull
     public ActivityType getActivityType(long viewId) {
-
-        ActivityType activityType = ActivityType.getDefaultActivityType();
-
-        Cursor cursor = getDatabase().query(TrackingViewsDbHelper.VIEWS_TABLE,
-                null,
-                TrackingViewsDbHelper.C_ID + "=?",
-                new String[]{viewId + ""},
-                null,
-                null,
-                null);
-
-        if (cursor.moveToFirst()) {
-            activityType = ActivityType.valueOf(cursor.getString(cursor.getColumnIndex(TrackingViewsDbHelper.ACTIVITY_TYPE)));
-        }
-
-        cursor.close();
-
-        return activityType;
+        ViewRow view = mCache.get().views().get(viewId);
+        return view == null || view.activityType == null ? ActivityType.getDefaultActivityType() : view.activityType;
     }
 
     public int getLayoutNr(long viewId) {
-        int layoutNr = -1;
-
-        Cursor cursor = getDatabase().query(TrackingViewsDbHelper.VIEWS_TABLE,
-                null,
-                TrackingViewsDbHelper.C_ID + "=?",
-                new String[]{viewId + ""},
-                null,
-                null,
-                null);
-
-        if (cursor.moveToFirst()) {
-            layoutNr = cursor.getInt(cursor.getColumnIndex(TrackingViewsDbHelper.LAYOUT_NR));
-        }
-
-        cursor.close();
-
-        return layoutNr;
+        ViewRow view = mCache.get().views().get(viewId);
+        return view == null ? -1 : view.layoutNr;
     }
 
     protected boolean getBoolean(long viewId, String ID) {
-        boolean result = false;
-
-        Cursor cursor = getDatabase().query(TrackingViewsDbHelper.VIEWS_TABLE,
-                null,
-                TrackingViewsDbHelper.C_ID + "=?",
-                new String[]{viewId + ""},
-                null,
-                null,
-                null);
-
-        if (cursor.moveToFirst()) {
-            result = (cursor.getInt(cursor.getColumnIndex(ID)) > 0);
-        }
-
-        cursor.close();
-
-        return result;
+        ViewRow view = mCache.get().views().get(viewId);
+        return view != null && view.getBoolean(ID);
     }
 
     public boolean fullscreen(long viewId) {
@@ -274,25 +231,20 @@ public class TrackingViewsDatabaseManager {
 
     @Nullable
     public  FilterInfo getFilterInfo(long rowId) {
-        FilterInfo filterInfo = null;
-
-        Cursor cursor = getDatabase().query(TrackingViewsDbHelper.ROWS_TABLE,
-                null,
-                TrackingViewsDbHelper.ROW_ID + "=?",
-                new String[]{rowId + ""},
-                null,
-                null,
-                null);
-
-        if (cursor.moveToFirst()) {
-            FilterType filterType = FilterType.valueOf(cursor.getString(cursor.getColumnIndex(TrackingViewsDbHelper.FILTER_TYPE)));
-            double filterConstant = cursor.getDouble(cursor.getColumnIndex(TrackingViewsDbHelper.FILTER_CONSTANT));
-            filterInfo = new FilterInfo(filterType, filterConstant);
-        }
+        ViewInfo viewInfo = mCache.get().rowsById().get(rowId);
+        return viewInfo == null ? null : new FilterInfo(viewInfo.filterType(), viewInfo.filterConstant());
+    }
 
-        cursor.close();
+    public void updateFilterOfRow(long rowId, @NonNull FilterType filterType, double filterConstant) {
+        ContentValues values = new ContentValues();
+        values.put(TrackingViewsDbHelper.FILTER_TYPE, filterType.name());
+        values.put(TrackingViewsDbHelper.FILTER_CONSTANT, filterConstant);
 
-        return filterInfo;
+        getDatabase().update(TrackingViewsDbHelper.ROWS_TABLE,
+                values,
+                TrackingViewsDbHelper.ROW_ID + "=?",
+                new String[]{rowId + ""});
+        mCache.invalidate();
     }
 
     public void ensureEntryForActivityTypeExists(Context context, @NonNull ActivityType activityType) {
@@ -307,6 +259,7 @@ public class TrackingViewsDatabaseManager {
         if (cursor.getCount() == 0) {
             TrackingViewsDbHelper dbHelper = new TrackingViewsDbHelper(context);
             dbHelper.addDefaultActivity(getDatabase(), activityType, 1);
+            mCache.invalidate();
         }
 
         cursor.close();
@@ -377,6 +330,7 @@ public class TrackingViewsDatabaseManager {
         values.put(TrackingViewsDbHelper.FILTER_CONSTANT, 1);
 
         long rowId = getDatabase().insert(TrackingViewsDbHelper.ROWS_TABLE, null, values);
+        mCache.invalidate();
 
         return new ViewInfo(viewId, rowId, maxRowNr + 1, 1, sensorType, textSize, 0, FilterType.INSTANTANEOUS, 1);
     }
@@ -404,6 +358,7 @@ public class TrackingViewsDatabaseManager {
         values.put(TrackingViewsDbHelper.FILTER_CONSTANT, 1);
 
         long rowId = getDatabase().insert(TrackingViewsDbHelper.ROWS_TABLE, null, values);
+        mCache.invalidate();
 
         return new ViewInfo(viewId, rowId, rowNr, maxColNr + 1, sensorType, textSize, 0, FilterType.INSTANTANEOUS, 1);
     }
@@ -431,6 +386,7 @@ public class TrackingViewsDatabaseManager {
         values.put(TrackingViewsDbHelper.FILTER_CONSTANT, 1);
 
         long rowId = getDatabase().insert(TrackingViewsDbHelper.ROWS_TABLE, null, values);
+        mCache.invalidate();
 
         return new ViewInfo(viewId, rowId, rowNr, 1, sensorType, textSize, 0, FilterType.INSTANTANEOUS, 1);
     }
@@ -444,6 +400,7 @@ public class TrackingViewsDatabaseManager {
                 contentValues,
                 TrackingViewsDbHelper.SOURCE_DEVICE_ID + "=?",
                 new String[]{sourceDeviceId + ""});
+        mCache.invalidate();
     }
 
     public void deleteView(long viewId) {
@@ -462,6 +419,7 @@ public class TrackingViewsDatabaseManager {
                 + " where " + TrackingViewsDbHelper.LAYOUT_NR + " > " + layoutNr;
         if (DEBUG) Log.i(TAG, "DeleteView viewId=" + viewId + "code: " + execsql);
         db.execSQL(execsql);
+        mCache.invalidate();
     }
 
     public void addEmptyView(long viewId, boolean addAfterLayout) {
@@ -491,6 +449,7 @@ public class TrackingViewsDatabaseManager {
         values.put(TrackingViewsDbHelper.SHOW_LAP_BUTTON, 1);
 
         db.insert(TrackingViewsDbHelper.VIEWS_TABLE, null, values);
+        mCache.invalidate();
     }
 
     public long addDefaultView(long viewId, @NonNull ActivityType activityType, boolean addAfterLayout) {
@@ -516,6 +475,7 @@ public class TrackingViewsDatabaseManager {
         if (DEBUG) Log.i(TAG, "executed SQL code");
 
         newViewId = cDbHelper.addDefaultActivity(db, activityType, newLayoutNr);
+        mCache.invalidate();
         if (DEBUG) Log.i(TAG, "finished adding new view");
 
         return newViewId;
@@ -526,29 +486,16 @@ public class TrackingViewsDatabaseManager {
     public TreeMap<Integer, TreeMap<Integer, ViewInfo>> getViewInfoMap(long viewId) {
         TreeMap<Integer, TreeMap<Integer, ViewInfo>> result = new TreeMap<>();
 
-        SQLiteDatabase db = getDatabase();
-        Cursor cursor = db.query(TrackingViewsDbHelper.ROWS_TABLE,
-                null,
-                TrackingViewsDbHelper.VIEW_ID + "=?",
-                new String[]{Long.toString(viewId)},
-                null, null, null);
-        while (cursor.moveToNext()) {
-            int rowId = cursor.getInt(cursor.getColumnIndex(TrackingViewsDbHelper.ROW_ID));
-            int rowNr = cursor.getInt(cursor.getColumnIndex(TrackingViewsDbHelper.ROW_NR));
-            int colNr = cursor.getInt(cursor.getColumnIndex(TrackingViewsDbHelper.COL_NR));
-            SensorType sensorType = SensorType.valueOf(cursor.getString(cursor.getColumnIndex(TrackingViewsDbHelper.SENSOR_TYPE)));
-            int textSize = cursor.getInt(cursor.getColumnIndex(TrackingViewsDbHelper.TEXT_SIZE));
-            int sourceDeviceId = cursor.getInt(cursor.getColumnIndex(TrackingViewsDbHelper.SOURCE_DEVICE_ID));
-            FilterType filterType = FilterType.valueOf(cursor.getString(cursor.getColumnIndex(TrackingViewsDbHelper.FILTER_TYPE)));
-            double filterConstant = cursor.getDouble(cursor.getColumnIndex(TrackingViewsDbHelper.FILTER_CONSTANT));
-
-            if (!result.containsKey(rowNr)) {
-                result.put(rowNr, new TreeMap<>());
-            }
+        List<ViewInfo> rows = mCache.get().rowsByViewId().get(viewId);
+        if (rows != null) {
+            for (ViewInfo viewInfo : rows) {
+                if (!result.containsKey(viewInfo.rowNr())) {
+                    result.put(viewInfo.rowNr(), new TreeMap<>());
+                }
 
-            result.get(rowNr).put(colNr, new ViewInfo(viewId, rowId, rowNr, colNr, sensorType, textSize, sourceDeviceId, filterType, filterConstant));
+                result.get(viewInfo.rowNr()).put(viewInfo.colNr(), viewInfo);
+            }
         }
-        cursor.close();
 
         return result;
     }
@@ -558,24 +505,115 @@ public class TrackingViewsDatabaseManager {
     public List<FilterData> getAllFilterData(DevicesDatabaseManager devicesDatabaseManager) {
         LinkedList<FilterData> result = new LinkedList<>();
 
+        // all rows are necessary, because the view and sport type and ... might change
+        for (ViewInfo viewInfo : mCache.get().rowsById().values()) {
+            String deviceName = devicesDatabaseManager.getDeviceName(viewInfo.sourceDeviceId());
+            result.add(new FilterData(deviceName, viewInfo.sensorType(), viewInfo.filterType(), viewInfo.filterConstant()));
+        }
+
+        return result;
+    }
+
+    @NonNull
+    private TrackingViews loadTrackingViews() {
         SQLiteDatabase db = getDatabase();
-        Cursor cursor = db.query(TrackingViewsDbHelper.ROWS_TABLE,  // get cursor with all rows.  This is necessary, because the view and sport type and ... might change
+
+        Map<Long, ViewRow> views = new HashMap<>();
+        try (Cursor cursor = db.query(TrackingViewsDbHelper.VIEWS_TABLE,
                 null,
                 null,
                 null,
-                null, null, null);
-        while (cursor.moveToNext()) {
-            SensorType sensorType = SensorType.valueOf(cursor.getString(cursor.getColumnIndex(TrackingViewsDbHelper.SENSOR_TYPE)));
-            int sourceDeviceId = cursor.getInt(cursor.getColumnIndex(TrackingViewsDbHelper.SOURCE_DEVICE_ID));
-            String deviceName = devicesDatabaseManager.getDeviceName(sourceDeviceId);
-            FilterType filterType = FilterType.valueOf(cursor.getString(cursor.getColumnIndex(TrackingViewsDbHelper.FILTER_TYPE)));
-            double filterConstant = cursor.getDouble(cursor.getColumnIndex(TrackingViewsDbHelper.FILTER_CONSTANT));
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                views.put(cursor.getLong(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.C_ID)), new ViewRow(cursor));
+            }
+        }
 
-            result.add(new FilterData(deviceName, sensorType, filterType, filterConstant));
+        Map<Long, List<ViewInfo>> rowsByViewId = new HashMap<>();
+        Map<Long, ViewInfo> rowsById = new LinkedHashMap<>();
+        try (Cursor cursor = db.query(TrackingViewsDbHelper.ROWS_TABLE,
+                null,
+                null,
+                null,
+                null, null, null)) {
+            while (cursor.moveToNext()) {
+                long viewId = cursor.getLong(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.VIEW_ID));
+                long rowId = cursor.getLong(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.ROW_ID));
+                int rowNr = cursor.getInt(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.ROW_NR));
+                int colNr = cursor.getInt(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.COL_NR));
+                SensorType sensorType = SensorType.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.SENSOR_TYPE)));
+                int textSize = cursor.getInt(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.TEXT_SIZE));
+                int sourceDeviceId = cursor.getInt(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.SOURCE_DEVICE_ID));
+                FilterType filterType = FilterType.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.FILTER_TYPE)));
+                double filterConstant = cursor.getDouble(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.FILTER_CONSTANT));
+
+                ViewInfo viewInfo = new ViewInfo(viewId, rowId, rowNr, colNr, sensorType, textSize, sourceDeviceId, filterType, filterConstant);
+                rowsById.put(rowId, viewInfo);
+                rowsByViewId.computeIfAbsent(viewId, id -> new ArrayList<>()).add(viewInfo);
+            }
         }
-        cursor.close();
 
-        return result;
+        return new TrackingViews(Collections.unmodifiableMap(views), Collections.unmodifiableMap(rowsByViewId),
+                Collections.unmodifiableMap(rowsById));
+    }
+
+    private record TrackingViews(Map<Long, ViewRow> views, Map<Long, List<ViewInfo>> rowsByViewId,
+                                 Map<Long, ViewInfo> rowsById) {
+    }
+
+    private static final class ViewRow {
+        final String name;
+        @Nullable
+        final ActivityType activityType;
+        final int layoutNr;
+        final boolean fullScreen;
+        final boolean systemSetting;
+        final boolean day;
+        final boolean night;
+        final boolean showMap;
+        final boolean showLapButton;
+
+        ViewRow(@NonNull Cursor cursor) {
+            name = cursor.getString(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.NAME));
+            activityType = parseActivityType(cursor.getString(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.ACTIVITY_TYPE)));
+            layoutNr = cursor.getInt(cursor.getColumnIndexOrThrow(TrackingViewsDbHelper.LAYOUT_NR));
+            fullScreen = getBoolean(cursor, TrackingViewsDbHelper.FULL_SCREEN);
+            systemSetting = getBoolean(cursor, TrackingViewsDbHelper.SYSTEM_SETTING);
+            day = getBoolean(cursor, TrackingViewsDbHelper.DAY);
+            night = getBoolean(cursor, TrackingViewsDbHelper.NIGHT);
+            showMap = getBoolean(cursor, TrackingViewsDbHelper.SHOW_MAP);
+            showLapButton = getBoolean(cursor, TrackingViewsDbHelper.SHOW_LAP_BUTTON);
+        }
+
+        boolean getBoolean(@NonNull String ID) {
+            return switch (ID) {
+                case TrackingViewsDbHelper.FULL_SCREEN -> fullScreen;
+                case TrackingViewsDbHelper.SYSTEM_SETTING -> systemSetting;
+                case TrackingViewsDbHelper.DAY -> day;
+                case TrackingViewsDbHelper.NIGHT -> night;
+                case TrackingViewsDbHelper.SHOW_MAP -> showMap;
+                case TrackingViewsDbHelper.SHOW_LAP_BUTTON -> showLapButton;
+                default -> false;
+            };
+        }
+
+        private static boolean getBoolean(@NonNull Cursor cursor, @NonNull String column) {
+            int index = cursor.getColumnIndex(column);
+            return index >= 0 && cursor.getInt(index) > 0;
+        }
+
+        @Nullable
+        private static ActivityType parseActivityType(@Nullable String name) {
+            if (name == null) {
+                return null;
+            }
+            try {
+                return ActivityType.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                Log.e(TAG, "unknown ActivityType: " + name);
+                return null;
+            }
+        }
     }
 
 
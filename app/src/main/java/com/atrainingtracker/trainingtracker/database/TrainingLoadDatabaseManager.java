@@ -0,0 +1,522 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.banalservice.BSportType;
+import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
+import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+import com.atrainingtracker.trainingtracker.settings.SettingsDataStore.ZoneType;
+import com.atrainingtracker.trainingtracker.settings.SettingsDataStoreJavaHelper;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Daily training load: time in the heart rate and power zones, training stress and the resulting fitness and fatigue.
+ * <p>
+ * The load of each workout is calculated once from its samples and added to the row of its day.  The fitness (CTL) and fatigue (ATL)
+ * are exponentially weighted averages of the daily stress, so adding or removing a workout only changes the rows from its day on.
+ * Thus, the dashboards simply read the rows of the DailyLoads table.  Days without a workout do not have a row, their fitness and
+ * fatigue follow from the previous row, see {@link #getFitness(long)}.
+ * <p>
+ * The stress of a workout is the TSS when there are power values and the (Edwards) TRIMP of the heart rate zones otherwise.
+ */
+public class TrainingLoadDatabaseManager {
+    private static final String TAG = TrainingLoadDatabaseManager.class.getName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final int ZONES = 5;
+    public static final int CTL_TIME_CONSTANT_days = 42;
+    public static final int ATL_TIME_CONSTANT_days = 7;
+    private static final int NORMALIZED_POWER_WINDOW_s = 30;
+    private static final SensorType[] SENSOR_TYPES = {SensorType.HR, SensorType.POWER};
+
+    private static volatile TrainingLoadDatabaseManager cInstance;
+    private final TrainingLoadDbHelper cDbHelper;
+    private final Context mContext;
+
+    private TrainingLoadDatabaseManager(@NonNull Context context) {
+        cDbHelper = new TrainingLoadDbHelper(context.getApplicationContext());
+        mContext = context.getApplicationContext();
+    }
+
+    @NonNull
+    public static TrainingLoadDatabaseManager getInstance(@NonNull Context context) {
+        if (cInstance == null) {
+            synchronized (TrainingLoadDatabaseManager.class) {
+                if (cInstance == null) {
+                    cInstance = new TrainingLoadDatabaseManager(context);
+                }
+            }
+        }
+        return cInstance;
+    }
+
+    public SQLiteDatabase getDatabase() {
+        return cDbHelper.getWritableDatabase();
+    }
+
+    /**
+     * the fitness and fatigue at the end of a day
+     */
+    public static class Fitness {
+        public final double ctl;
+        public final double atl;
+
+        Fitness(double ctl, double atl) {
+            this.ctl = ctl;
+            this.atl = atl;
+        }
+
+        /**
+         * @return the training stress balance, also known as form
+         */
+        public double getTsb() {
+            return ctl - atl;
+        }
+    }
+
+    /**
+     * calculates the load of the workout and adds it to its day.  A workout that was already added is skipped.
+     */
+    public synchronized void addWorkout(long workoutId) {
+        if (DEBUG) Log.i(TAG, "addWorkout: " + workoutId);
+
+        if (isAdded(workoutId)) {
+            return;
+        }
+
+        ContentValues load = calculateLoad(workoutId);
+        if (load == null) {
+            return;
+        }
+
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            db.insert(TrainingLoadDbHelper.TABLE_WORKOUT_LOADS, null, load);
+            long day = load.getAsLong(TrainingLoadDbHelper.DAY);
+            addToDay(db, day, load, 1);
+            updateFitness(db, day);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * removes the load of the workout from its day
+     */
+    public synchronized void deleteWorkout(long workoutId) {
+        if (DEBUG) Log.i(TAG, "deleteWorkout: " + workoutId);
+
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues load = null;
+            try (Cursor cursor = db.query(TrainingLoadDbHelper.TABLE_WORKOUT_LOADS,
+                    null,
+                    TrainingLoadDbHelper.WORKOUT_ID + "=?",
+                    new String[]{Long.toString(workoutId)},
+                    null, null, null)) {
+                if (cursor.moveToFirst()) {
+                    load = readLoad(cursor);
+                }
+            }
+            if (load != null) {
+                db.delete(TrainingLoadDbHelper.TABLE_WORKOUT_LOADS, TrainingLoadDbHelper.WORKOUT_ID + "=?", new String[]{Long.toString(workoutId)});
+                long day = load.getAsLong(TrainingLoadDbHelper.DAY);
+                addToDay(db, day, load, -1);
+                updateFitness(db, day);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * the zones depend on the sport, so the load is calculated again when the sport of the workout changed
+     */
+    public synchronized void updateSport(long workoutId, long sportId) {
+        try (Cursor cursor = getDatabase().query(TrainingLoadDbHelper.TABLE_WORKOUT_LOADS,
+                new String[]{TrainingLoadDbHelper.SPORT_ID},
+                TrainingLoadDbHelper.WORKOUT_ID + "=?",
+                new String[]{Long.toString(workoutId)},
+                null, null, null)) {
+            if (!cursor.moveToFirst() || cursor.getLong(0) == sportId) {
+                return;
+            }
+        }
+
+        if (DEBUG) Log.i(TAG, "updateSport: " + workoutId + " -> " + sportId);
+        deleteWorkout(workoutId);
+        addWorkout(workoutId);
+    }
+
+    @NonNull
+    public Set<Long> getAddedWorkouts() {
+        Set<Long> workoutIds = new HashSet<>();
+
+        try (Cursor cursor = getDatabase().query(TrainingLoadDbHelper.TABLE_WORKOUT_LOADS,
+                new String[]{TrainingLoadDbHelper.WORKOUT_ID},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                workoutIds.add(cursor.getLong(0));
+            }
+        }
+        return workoutIds;
+    }
+
+    /**
+     * @param fromDay the first day as days since the epoch (in the local time zone)
+     * @param toDay   the last day
+     * @return the rows of the days with a workout, ascending
+     */
+    @NonNull
+    public Cursor getDailyLoadsCursor(long fromDay, long toDay) {
+        return getDatabase().query(TrainingLoadDbHelper.TABLE_DAILY_LOADS,
+                null,
+                TrainingLoadDbHelper.DAY + " BETWEEN ? AND ?",
+                new String[]{Long.toString(fromDay), Long.toString(toDay)},
+                null, null, TrainingLoadDbHelper.DAY + " ASC");
+    }
+
+    /**
+     * @param day days since the epoch (in the local time zone)
+     */
+    @NonNull
+    public Fitness getFitness(long day) {
+        try (Cursor cursor = getDatabase().query(TrainingLoadDbHelper.TABLE_DAILY_LOADS,
+                new String[]{TrainingLoadDbHelper.DAY, TrainingLoadDbHelper.CTL, TrainingLoadDbHelper.ATL},
+                TrainingLoadDbHelper.DAY + "<=?",
+                new String[]{Long.toString(day)},
+                null, null, TrainingLoadDbHelper.DAY + " DESC", "1")) {
+            if (cursor.moveToFirst()) {
+                long restDays = day - cursor.getLong(0);
+                return new Fitness(cursor.getDouble(1) * decay(CTL_TIME_CONSTANT_days, restDays),
+                        cursor.getDouble(2) * decay(ATL_TIME_CONSTANT_days, restDays));
+            }
+        }
+        return new Fitness(0, 0);
+    }
+
+    private boolean isAdded(long workoutId) {
+        try (Cursor cursor = getDatabase().query(TrainingLoadDbHelper.TABLE_WORKOUT_LOADS,
+                new String[]{TrainingLoadDbHelper.WORKOUT_ID},
+                TrainingLoadDbHelper.WORKOUT_ID + "=?",
+                new String[]{Long.toString(workoutId)},
+                null, null, null)) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * @return the row of the WorkoutLoads table or null when the workout does not exist
+     */
+    @Nullable
+    private ContentValues calculateLoad(long workoutId) {
+        String baseFileName;
+        long sportId;
+        long day;
+        // the day of the start in the local time zone
+        try (Cursor cursor = WorkoutSummariesDatabaseManager.getInstance(mContext).getDatabase().query(WorkoutSummaries.TABLE,
+                new String[]{WorkoutSummaries.FILE_BASE_NAME, WorkoutSummaries.SPORT_ID,
+                        "CAST(julianday(date(" + WorkoutSummaries.TIME_START + ", 'localtime')) - 2440587.5 AS INTEGER)"},
+                WorkoutSummaries.C_ID + "=?",
+                new String[]{Long.toString(workoutId)},
+                null, null, null)) {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) {
+                return null;
+            }
+            baseFileName = cursor.getString(0);
+            sportId = cursor.getLong(1);
+            day = cursor.getLong(2);
+        }
+
+        BSportType bSportType = SportTypeDatabaseManager.getInstance(mContext).getBSportType(sportId);
+        ResampledSamples samples = ResampledSamples.read(mContext, baseFileName, SENSOR_TYPES);
+
+        long duration_s = 0;
+        long[] hrZones_s = new long[ZONES];
+        long[] powerZones_s = new long[ZONES];
+        double trimp = 0;
+        double tss = 0;
+        boolean hasPower = false;
+
+        if (samples != null) {
+            double[] hr = samples.values.get(SensorType.HR);
+            if (hr != null) {
+                duration_s = hr.length;
+                addTimeInZones(hr, getZoneMaxima(bSportType == BSportType.RUN ? ZoneType.HR_RUN : ZoneType.HR_BIKE), hrZones_s);
+                for (int zone = 0; zone < ZONES; zone++) {
+                    trimp += (zone + 1) * hrZones_s[zone] / 60.0;
+                }
+            }
+
+            double[] power = samples.values.get(SensorType.POWER);
+            if (power != null) {
+                hasPower = true;
+                duration_s = power.length;
+                int[] powerZoneMaxima = getZoneMaxima(ZoneType.PWR_BIKE);
+                addTimeInZones(power, powerZoneMaxima, powerZones_s);
+                // the maximum of zone 4 is the threshold (FTP)
+                tss = calculateTss(power, powerZoneMaxima[ZONES - 2]);
+            }
+        }
+
+        ContentValues load = new ContentValues();
+        load.put(TrainingLoadDbHelper.WORKOUT_ID, workoutId);
+        load.put(TrainingLoadDbHelper.FILE_BASE_NAME, baseFileName);
+        load.put(TrainingLoadDbHelper.SPORT_ID, sportId);
+        load.put(TrainingLoadDbHelper.DAY, day);
+        load.put(TrainingLoadDbHelper.DURATION_s, duration_s);
+        for (int zone = 0; zone < ZONES; zone++) {
+            load.put(TrainingLoadDbHelper.HR_ZONES_s[zone], hrZones_s[zone]);
+            load.put(TrainingLoadDbHelper.POWER_ZONES_s[zone], powerZones_s[zone]);
+        }
+        load.put(TrainingLoadDbHelper.TSS, tss);
+        load.put(TrainingLoadDbHelper.TRIMP, trimp);
+        load.put(TrainingLoadDbHelper.STRESS, hasPower ? tss : trimp);
+        if (DEBUG) Log.i(TAG, "load of " + baseFileName + ": " + load);
+        return load;
+    }
+
+    @NonNull
+    private int[] getZoneMaxima(@NonNull ZoneType zoneType) {
+        int[] zoneMaxima = new int[ZONES - 1];
+        for (int zone = 0; zone < ZONES - 1; zone++) {
+            zoneMaxima[zone] = SettingsDataStoreJavaHelper.getZoneMax(mContext, zoneType, zone + 1);
+        }
+        return zoneMaxima;
+    }
+
+    /**
+     * seconds without a value (0) are not counted
+     */
+    private static void addTimeInZones(@NonNull double[] values, @NonNull int[] zoneMaxima, @NonNull long[] zones_s) {
+        for (double value : values) {
+            if (value <= 0) {
+                continue;
+            }
+            int zone = 0;
+            while (zone < zoneMaxima.length && value > zoneMaxima[zone]) {
+                zone++;
+            }
+            zones_s[zone]++;
+        }
+    }
+
+    /**
+     * TSS = duration * NP * IF / (FTP * 3600) * 100 with the normalized power NP (the fourth-power mean of the 30 s averages)
+     * and the intensity factor IF = NP / FTP.
+     */
+    private static double calculateTss(@NonNull double[] power, int ftp) {
+        int n = power.length;
+        if (ftp <= 0 || n < NORMALIZED_POWER_WINDOW_s) {
+            return 0;
+        }
+
+        double windowSum = 0;
+        double sumOfFourthPowers = 0;
+        for (int i = 0; i < n; i++) {
+            windowSum += power[i];
+            if (i >= NORMALIZED_POWER_WINDOW_s) {
+                windowSum -= power[i - NORMALIZED_POWER_WINDOW_s];
+            }
+            if (i >= NORMALIZED_POWER_WINDOW_s - 1) {
+                double average = windowSum / NORMALIZED_POWER_WINDOW_s;
+                sumOfFourthPowers += average * average * average * average;
+            }
+        }
+        double normalizedPower = Math.pow(sumOfFourthPowers / (n - NORMALIZED_POWER_WINDOW_s + 1), 0.25);
+        double intensityFactor = normalizedPower / ftp;
+        return n * normalizedPower * intensityFactor / (ftp * 3600.0) * 100;
+    }
+
+    @NonNull
+    private static ContentValues readLoad(@NonNull Cursor cursor) {
+        ContentValues load = new ContentValues();
+        load.put(TrainingLoadDbHelper.DAY, cursor.getLong(cursor.getColumnIndexOrThrow(TrainingLoadDbHelper.DAY)));
+        for (String column : TrainingLoadDbHelper.SUMMED_COLUMNS) {
+            load.put(column, cursor.getDouble(cursor.getColumnIndexOrThrow(column)));
+        }
+        return load;
+    }
+
+    /**
+     * adds (sign = 1) or removes (sign = -1) the load of a workout to/from the row of the day.  A day without workouts is removed.
+     */
+    private static void addToDay(@NonNull SQLiteDatabase db, long day, @NonNull ContentValues load, int sign) {
+        StringBuilder update = new StringBuilder("update " + TrainingLoadDbHelper.TABLE_DAILY_LOADS + " set "
+                + TrainingLoadDbHelper.WORKOUTS + "=" + TrainingLoadDbHelper.WORKOUTS + "+" + sign);
+        Object[] args = new Object[TrainingLoadDbHelper.SUMMED_COLUMNS.length + 1];
+        for (int i = 0; i < TrainingLoadDbHelper.SUMMED_COLUMNS.length; i++) {
+            String column = TrainingLoadDbHelper.SUMMED_COLUMNS[i];
+            update.append(", ").append(column).append("=").append(column).append("+?");
+            args[i] = sign * load.getAsDouble(column);
+        }
+        update.append(" where ").append(TrainingLoadDbHelper.DAY).append("=?");
+        args[args.length - 1] = day;
+
+        if (sign > 0) {
+            ContentValues values = new ContentValues();
+            values.put(TrainingLoadDbHelper.DAY, day);
+            db.insertWithOnConflict(TrainingLoadDbHelper.TABLE_DAILY_LOADS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        }
+        db.execSQL(update.toString(), args);
+
+        db.delete(TrainingLoadDbHelper.TABLE_DAILY_LOADS,
+                TrainingLoadDbHelper.DAY + "=? AND " + TrainingLoadDbHelper.WORKOUTS + "<=0",
+                new String[]{Long.toString(day)});
+    }
+
+    /**
+     * recalculates the fitness and fatigue of the day and all later days, starting from the last day before
+     */
+    private static void updateFitness(@NonNull SQLiteDatabase db, long fromDay) {
+        long previousDay = fromDay - 1;
+        double ctl = 0, atl = 0;
+        try (Cursor cursor = db.query(TrainingLoadDbHelper.TABLE_DAILY_LOADS,
+                new String[]{TrainingLoadDbHelper.DAY, TrainingLoadDbHelper.CTL, TrainingLoadDbHelper.ATL},
+                TrainingLoadDbHelper.DAY + "<?",
+                new String[]{Long.toString(fromDay)},
+                null, null, TrainingLoadDbHelper.DAY + " DESC", "1")) {
+            if (cursor.moveToFirst()) {
+                previousDay = cursor.getLong(0);
+                ctl = cursor.getDouble(1);
+                atl = cursor.getDouble(2);
+            }
+        }
+
+        ContentValues values = new ContentValues();
+        try (Cursor cursor = db.query(TrainingLoadDbHelper.TABLE_DAILY_LOADS,
+                new String[]{TrainingLoadDbHelper.DAY, TrainingLoadDbHelper.STRESS},
+                TrainingLoadDbHelper.DAY + ">=?",
+                new String[]{Long.toString(fromDay)},
+                null, null, TrainingLoadDbHelper.DAY + " ASC")) {
+            while (cursor.moveToNext()) {
+                long day = cursor.getLong(0);
+                double stress = cursor.getDouble(1);
+                // the days in between without a workout only decay
+                ctl = ctl * decay(CTL_TIME_CONSTANT_days, day - previousDay) + stress / CTL_TIME_CONSTANT_days;
+                atl = atl * decay(ATL_TIME_CONSTANT_days, day - previousDay) + stress / ATL_TIME_CONSTANT_days;
+                previousDay = day;
+
+                values.put(TrainingLoadDbHelper.CTL, ctl);
+                values.put(TrainingLoadDbHelper.ATL, atl);
+                db.update(TrainingLoadDbHelper.TABLE_DAILY_LOADS, values, TrainingLoadDbHelper.DAY + "=?", new String[]{Long.toString(day)});
+            }
+        }
+    }
+
+    private static double decay(int timeConstant_days, long days) {
+        return Math.pow(1 - 1.0 / timeConstant_days, days);
+    }
+
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // finally, the database itself
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class TrainingLoadDbHelper extends SQLiteOpenHelper {
+        public static final String DB_NAME = "TrainingLoad.db";
+        public static final int DB_VERSION = 1;
+        public static final String TABLE_WORKOUT_LOADS = "WorkoutLoads";
+        public static final String TABLE_DAILY_LOADS = "DailyLoads";
+        public static final String C_ID = BaseColumns._ID;
+        public static final String WORKOUT_ID = "workoutId";
+        public static final String FILE_BASE_NAME = "fileBaseName";
+        public static final String SPORT_ID = "sportId";
+        public static final String DAY = "day";                       // days since the epoch in the local time zone
+        public static final String WORKOUTS = "workouts";
+        public static final String DURATION_s = "duration_s";
+        public static final String[] HR_ZONES_s = {"hrZone1_s", "hrZone2_s", "hrZone3_s", "hrZone4_s", "hrZone5_s"};
+        public static final String[] POWER_ZONES_s = {"powerZone1_s", "powerZone2_s", "powerZone3_s", "powerZone4_s", "powerZone5_s"};
+        public static final String TSS = "tss";
+        public static final String TRIMP = "trimp";
+        public static final String STRESS = "stress";
+        public static final String CTL = "ctl";
+        public static final String ATL = "atl";
+        // the columns of a day that are the sum of its workouts
+        protected static final String[] SUMMED_COLUMNS = {DURATION_s,
+                HR_ZONES_s[0], HR_ZONES_s[1], HR_ZONES_s[2], HR_ZONES_s[3], HR_ZONES_s[4],
+                POWER_ZONES_s[0], POWER_ZONES_s[1], POWER_ZONES_s[2], POWER_ZONES_s[3], POWER_ZONES_s[4],
+                TSS, TRIMP, STRESS};
+        protected static final String TAG = TrainingLoadDbHelper.class.getName();
+        protected static final boolean DEBUG = TrainingApplication.getDebug(true);
+        protected static final String CREATE_TABLE_WORKOUT_LOADS_V1 = "create table " + TABLE_WORKOUT_LOADS + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + WORKOUT_ID + " int unique,"
+                + FILE_BASE_NAME + " text,"
+                + SPORT_ID + " int,"
+                + DAY + " int,"
+                + makeSummedColumns() + ")";
+        protected static final String CREATE_TABLE_DAILY_LOADS_V1 = "create table " + TABLE_DAILY_LOADS + " ("
+                + C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + DAY + " int unique,"
+                + WORKOUTS + " int default 0,"
+                + makeSummedColumns() + ","
+                + CTL + " real default 0,"
+                + ATL + " real default 0)";
+
+        // Constructor
+        public TrainingLoadDbHelper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+        }
+
+        private static String makeSummedColumns() {
+            StringBuilder columns = new StringBuilder();
+            for (String column : SUMMED_COLUMNS) {
+                if (columns.length() > 0) {
+                    columns.append(",");
+                }
+                columns.append(column).append(" real default 0");
+            }
+            return columns.toString();
+        }
+
+        // Called only once, first time the DB is created
+        @Override
+        public void onCreate(@NonNull SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE_WORKOUT_LOADS_V1);
+            db.execSQL(CREATE_TABLE_DAILY_LOADS_V1);
+            if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_DAILY_LOADS_V1);
+        }
+
+        //Called whenever newVersion != oldVersion
+        @Override
+        public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+            // nothing to do yet
+        }
+    }
+}
@@ -54,6 +54,7 @@ public class WorkoutDeletionHelper {
         String fileBaseName = mSummariesManager.getBaseFileName(workoutId);
         mSamplesManager.deleteWorkout(fileBaseName);
         mExportStatusRepo.deleteWorkout(fileBaseName);
+        TrainingLoadDatabaseManager.getInstance(mContext).deleteWorkout(workoutId);
 
         return true;
     }
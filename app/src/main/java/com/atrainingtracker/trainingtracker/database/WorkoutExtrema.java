@@ -0,0 +1,235 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import android.content.ContentValues;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.trainingtracker.database.ExtremaAccumulator.ExtremaValue;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
+import com.atrainingtracker.trainingtracker.exporter.writer.SampleTimeFormat;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The extrema values of one workout: the accumulators of all sensors and the rules to derive the rows of the ExtremumValues table.
+ * <p>
+ * It is fed either live by the tracker with every sample or afterwards by one scan over the stored samples.
+ * Both ways result in the same rows.
+ */
+public class WorkoutExtrema {
+
+    public static final List<SensorType> IMPORTANT_SENSOR_TYPES = Collections.unmodifiableList(Arrays.asList(
+            SensorType.ALTITUDE,
+            SensorType.CADENCE,
+            SensorType.HR,
+            SensorType.PACE_spm,
+            SensorType.PEDAL_POWER_BALANCE,
+            SensorType.PEDAL_SMOOTHNESS_L,
+            SensorType.PEDAL_SMOOTHNESS_R,
+            SensorType.POWER,
+            SensorType.SPEED_mps,
+            SensorType.TEMPERATURE,
+            SensorType.TORQUE,
+            SensorType.TORQUE_EFFECTIVENESS_L,
+            SensorType.TORQUE_EFFECTIVENESS_R
+    ));
+
+    // the sensors for which min, mean, and max are calculated
+    private final Set<SensorType> mSensorTypes = EnumSet.noneOf(SensorType.class);
+    // the accumulators of all sensors that are read from the samples.  The pace is derived from the speed
+    private final Map<SensorType, ExtremaAccumulator> mAccumulators = new EnumMap<>(SensorType.class);
+
+    /**
+     * @param accumulatedSensorTypes the sensors of the workout.  When empty, all important sensors are used.
+     */
+    public WorkoutExtrema(@NonNull Collection<SensorType> accumulatedSensorTypes) {
+        // if there are no sensors stored (due to upgrading from DB version 3 to 4, we use all important sensors
+        if (accumulatedSensorTypes.isEmpty()) {
+            mSensorTypes.addAll(IMPORTANT_SENSOR_TYPES);
+        } else {
+            // otherwise, we use the intersection of the available ones and the important ones
+            mSensorTypes.addAll(accumulatedSensorTypes);
+            mSensorTypes.retainAll(IMPORTANT_SENSOR_TYPES);
+        }
+
+        for (SensorType sensorType : new SensorType[]{SensorType.LINE_DISTANCE_m, SensorType.LATITUDE, SensorType.LONGITUDE}) {
+            mAccumulators.put(sensorType, new ExtremaAccumulator(sensorType));
+        }
+        for (SensorType sensorType : mSensorTypes) {
+            SensorType scannedSensorType = sensorType == SensorType.PACE_spm ? SensorType.SPEED_mps : sensorType;
+            if (!mAccumulators.containsKey(scannedSensorType)) {
+                mAccumulators.put(scannedSensorType, new ExtremaAccumulator(scannedSensorType));
+            }
+        }
+    }
+
+    /**
+     * the extrema of all important sensors, used while tracking when the sensors of the workout are not yet known.
+     */
+    public WorkoutExtrema() {
+        this(Collections.emptyList());
+    }
+
+    @NonNull
+    public Collection<ExtremaAccumulator> getAccumulators() {
+        return mAccumulators.values();
+    }
+
+    /**
+     * adds one row of samples as it is written to the samples table.  Only the values of the best sensors are used.
+     * The time of the row is used to weight the averages.
+     */
+    public void addSample(@NonNull ContentValues samplingValues) {
+        long time_ms = ExtremaAccumulator.NO_TIME;
+        String dbTime = samplingValues.getAsString(WorkoutSamplesDbHelper.TIME);
+        if (dbTime != null) {
+            try {
+                time_ms = SampleTimeFormat.dbTime2EpochMillis(dbTime);
+            } catch (ParseException e) {
+                // then, the plain mean is used
+            }
+        }
+
+        double latitude = getDouble(samplingValues, SensorType.LATITUDE);
+        double longitude = getDouble(samplingValues, SensorType.LONGITUDE);
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            latitude = longitude = Double.NaN;
+        }
+
+        for (ExtremaAccumulator accumulator : mAccumulators.values()) {
+            double value = getDouble(samplingValues, accumulator.sensorType);
+            if (!Double.isNaN(value)) {
+                accumulator.add(value, time_ms, latitude, longitude);
+            }
+        }
+    }
+
+    /**
+     * adds the offset to all previous values of the sensor, e.g. when the altitude of the stored samples was corrected
+     */
+    public void addOffset(@NonNull SensorType sensorType, double offset) {
+        ExtremaAccumulator accumulator = mAccumulators.get(sensorType);
+        if (accumulator != null) {
+            accumulator.addOffset(offset);
+        }
+    }
+
+    /**
+     * @param distance_m    the total distance, used for the average speed
+     * @param timeActive_s  the active time, used for the average speed
+     * @return the rows of the ExtremumValues table
+     */
+    @NonNull
+    public List<ExtremaValue> getExtremaValues(@Nullable Double distance_m, @Nullable Integer timeActive_s) {
+        List<ExtremaValue> extremaValues = new ArrayList<>();
+
+        addExtremaValues(extremaValues, SensorType.LINE_DISTANCE_m, ExtremaType.MAX, ExtremaType.END);
+        addExtremaValues(extremaValues, SensorType.LATITUDE, ExtremaType.START, ExtremaType.END);
+        addExtremaValues(extremaValues, SensorType.LONGITUDE, ExtremaType.START, ExtremaType.END);
+        addMaxLineDistancePosition(extremaValues);
+
+        for (SensorType sensorType : mSensorTypes) {
+            if (sensorType == SensorType.PACE_spm) {
+                addPaceValues(extremaValues);
+            } else {
+                addExtremaValues(extremaValues, sensorType, ExtremaType.MIN, ExtremaType.MAX);
+            }
+        }
+        addAverageValues(extremaValues, distance_m, timeActive_s);
+
+        return extremaValues;
+    }
+
+    private void addExtremaValues(@NonNull List<ExtremaValue> extremaValues, @NonNull SensorType sensorType, @NonNull ExtremaType... extremaTypes) {
+        ExtremaAccumulator accumulator = mAccumulators.get(sensorType);
+        if (accumulator == null) {
+            return;
+        }
+        for (ExtremaType extremaType : extremaTypes) {
+            ExtremaValue extremaValue = accumulator.getExtremaValue(extremaType);
+            if (extremaValue != null) {
+                extremaValues.add(extremaValue);
+            }
+        }
+    }
+
+    /**
+     * the position of the max line distance is stored as LATITUDE and LONGITUDE with the extrema type MAX_LINE_DISTANCE
+     */
+    private void addMaxLineDistancePosition(@NonNull List<ExtremaValue> extremaValues) {
+        ExtremaAccumulator accumulator = mAccumulators.get(SensorType.LINE_DISTANCE_m);
+        Double latitude = accumulator.getLatitude(ExtremaType.MAX);
+        Double longitude = accumulator.getLongitude(ExtremaType.MAX);
+        if (latitude == null || longitude == null) {
+            return;
+        }
+
+        extremaValues.add(new ExtremaValue(SensorType.LATITUDE, ExtremaType.MAX_LINE_DISTANCE, latitude, latitude, longitude));
+        extremaValues.add(new ExtremaValue(SensorType.LONGITUDE, ExtremaType.MAX_LINE_DISTANCE, longitude, latitude, longitude));
+    }
+
+    /**
+     * the pace values are the inverse of the corresponding speed values
+     */
+    private void addPaceValues(@NonNull List<ExtremaValue> extremaValues) {
+        ExtremaAccumulator speedAccumulator = mAccumulators.get(SensorType.SPEED_mps);
+        for (ExtremaType extremaType : new ExtremaType[]{ExtremaType.MIN, ExtremaType.MAX}) {
+            ExtremaValue speed = speedAccumulator.getExtremaValue(extremaType);
+            if (speed != null) {
+                extremaValues.add(new ExtremaValue(SensorType.PACE_spm, extremaType, 1 / speed.value(), speed.latitude(), speed.longitude()));
+            }
+        }
+    }
+
+    /**
+     * the average speed (and thus the average pace) is calculated from the distance and the active time instead of the samples
+     */
+    private void addAverageValues(@NonNull List<ExtremaValue> extremaValues, @Nullable Double distance_m, @Nullable Integer timeActive_s) {
+        for (SensorType sensorType : mSensorTypes) {
+            if (sensorType == SensorType.SPEED_mps || sensorType == SensorType.PACE_spm) {
+                if (!mAccumulators.get(SensorType.SPEED_mps).hasValues() || distance_m == null || timeActive_s == null) {
+                    continue;
+                }
+                double avgSpeed = distance_m / timeActive_s;
+                double value = sensorType == SensorType.SPEED_mps ? avgSpeed : 1 / avgSpeed;
+                extremaValues.add(new ExtremaValue(sensorType, ExtremaType.AVG, value, null, null));
+            } else {
+                addExtremaValues(extremaValues, sensorType, ExtremaType.AVG);
+            }
+        }
+    }
+
+    private static double getDouble(@NonNull ContentValues samplingValues, @NonNull SensorType sensorType) {
+        Object value = samplingValues.get(sensorType.name());
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+}
@@ -20,6 +20,7 @@ package com.atrainingtracker.trainingtracker.database;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.location.Location;
@@ -32,18 +33,32 @@ import androidx.annotation.Nullable;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+import com.atrainingtracker.trainingtracker.database.columnar.ColumnarSampleStore;
+import com.atrainingtracker.trainingtracker.exporter.writer.SampleTimeFormat;
+import com.atrainingtracker.trainingtracker.segments.GeoMath;
 import com.google.android.gms.maps.model.LatLng;
 
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class WorkoutSamplesDatabaseManager {
     private static final String TAG = WorkoutSamplesDatabaseManager.class.getName();
     private static final boolean DEBUG = TrainingApplication.getDebug(true);
     private static volatile WorkoutSamplesDatabaseManager cInstance;
     private final WorkoutSamplesDbHelper cDbHelper;
+    private final Context mContext;
+    // report the progress every 1024 samples
+    private static final int PROGRESS_ROWS_MASK = 0x3FF;
 
     private WorkoutSamplesDatabaseManager(@NonNull Context context) {
         this.cDbHelper = new WorkoutSamplesDbHelper(context);
+        this.mContext = context.getApplicationContext();
     }
 
     @NonNull
@@ -65,6 +80,64 @@ public class WorkoutSamplesDatabaseManager {
         return cDbHelper.getWritableDatabase();
     }
 
+    /**
+     * Returns a cursor over the samples of a workout.
+     * When the workout is already converted to the columnar sample store, only the requested columns are read from its file.
+     * Otherwise, the sqlite table is queried.
+     * In both cases, requested columns that do not exist are not part of the cursor.
+     * When there are no samples at all, the cursor is empty.
+     *
+     * @param columns the columns to read or null for all columns
+     */
+    @NonNull
+    public Cursor getSamplesCursor(@NonNull String baseFileName, @Nullable String[] columns) {
+        Cursor cursor = ColumnarSampleStore.query(mContext, baseFileName, columns);
+        if (cursor != null) {
+            return cursor;
+        }
+
+        SQLiteDatabase db = getDatabase();
+        if (!existsTable(db, baseFileName)) {
+            // e.g. the columnar file could not be read after its table was dropped
+            Log.e(TAG, "there are no samples of " + baseFileName);
+            return new MatrixCursor(new String[]{WorkoutSamplesDbHelper.C_ID});
+        }
+        String table = getTableName(baseFileName);
+        return db.query(table, getExistingColumns(db, table, columns), null, null, null, null, null);
+    }
+
+    public boolean isColumnar(@NonNull String baseFileName) {
+        return ColumnarSampleStore.exists(mContext, baseFileName);
+    }
+
+    /**
+     * Drops the sqlite table of a workout that is converted to the columnar sample store, so the samples are not stored twice.
+     * All readers use {@link #getSamplesCursor}, so they read the columnar file afterwards.
+     *
+     * @return whether the table was dropped
+     */
+    public boolean dropConvertedTable(@NonNull String baseFileName) {
+        if (!isColumnar(baseFileName)) {
+            return false;
+        }
+
+        SQLiteDatabase db = getDatabase();
+        if (!existsTable(db, baseFileName)) {
+            return false;
+        }
+        db.execSQL("drop table if exists " + getTableName(baseFileName));
+        if (DEBUG) Log.i(TAG, "dropped the table of " + baseFileName);
+        return true;
+    }
+
+    /**
+     * releases the space of the dropped tables.  This rewrites the whole database, so it must not be called while tracking.
+     */
+    public void vacuum() {
+        if (DEBUG) Log.i(TAG, "vacuum " + WorkoutSamplesDbHelper.DB_NAME);
+        getDatabase().execSQL("VACUUM");
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // some high level helper methods
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -103,84 +176,164 @@ public class WorkoutSamplesDatabaseManager {
         }
 
 
-        // in all other cases, we let sqlite do the job
+        // in all other cases, we scan the samples
         Double extremaValue = null;
-        Cursor cursor = null;
-        SQLiteDatabase db = getDatabase();
-
-        // it might be possible that the corresponding sensor is not a column of the database, so we first check this
-        if (existsColumnInTable(db, getTableName(baseFileName), sensorType.name())) {
+        try (Cursor cursor = getSamplesCursor(baseFileName, new String[]{sensorType.name()})) {
+            // it might be possible that the corresponding sensor is not a column of the samples, so we first check this
+            int index = cursor.getColumnIndex(sensorType.name());
+            if (index >= 0) {
+
+                switch (extremaType) {
+                    case MAX:
+                    case AVG:
+                    case MIN:
+                        double min = Double.POSITIVE_INFINITY;
+                        double max = Double.NEGATIVE_INFINITY;
+                        double sum = 0;
+                        int count = 0;
+                        while (cursor.moveToNext()) {
+                            if (!cursor.isNull(index)) {
+                                double value = cursor.getDouble(index);
+                                min = Math.min(min, value);
+                                max = Math.max(max, value);
+                                sum += value;
+                                count++;
+                            }
+                        }
+                        if (count > 0) {
+                            extremaValue = extremaType == ExtremaType.MAX ? max : (extremaType == ExtremaType.MIN ? min : sum / count);
+                        }
+                        break;
+
+                    case START:
+                        while (cursor.moveToNext() && extremaValue == null) {
+                            if (!cursor.isNull(index)) {
+                                if (DEBUG) Log.i(TAG, "got start value");
+                                extremaValue = cursor.getDouble(index);
+                            }
+                        }
+                        break;
+
+                    case END:
+                        cursor.moveToLast();
+                        while (cursor.moveToPrevious() && extremaValue == null) {
+                            if (!cursor.isNull(index)) {
+                                if (DEBUG) Log.i(TAG, "got end location");
+                                extremaValue = cursor.getDouble(index);
+                            }
+                        }
+                        break;
+                }
+            }
+        }
 
-            switch (extremaType) {
-                case MAX:
-                case AVG:
-                case MIN:
-                    String[] columns = new String[]{extremaType.name() + "(" + sensorType.name() + ")"};
+        if (DEBUG) Log.i(TAG, "extremaValue: " + extremaValue);
+        return extremaValue;
+    }
 
-                    cursor = db.query(getTableName(baseFileName),
-                            columns,  // columns,
-                            null, // selection, (here something like MAX(?))
-                            null, // new String[] {sensorType.name()}, // selectionArgs,
-                            null, null, null); // groupBy, having, orderBy)
+    /**
+     * Feeds the values of several sensors together with their positions into the accumulators in one pass over the samples.
+     * Samples without a value of a sensor are ignored for this sensor.
+     * The time of the samples is handed over as well, so the averages are weighted by time.
+     *
+     * @param progressListener gets the fraction of the already processed samples, might be null
+     */
+    public void accumulateExtrema(@NonNull String baseFileName, @NonNull Collection<ExtremaAccumulator> accumulators, @Nullable ProgressListener progressListener) {
+        if (DEBUG) Log.i(TAG, "accumulateExtrema(" + baseFileName + ", " + accumulators.size() + " accumulators)");
+
+        Set<String> columnSet = new LinkedHashSet<>();
+        columnSet.add(WorkoutSamplesDbHelper.TIME);
+        columnSet.add(SensorType.LATITUDE.name());
+        columnSet.add(SensorType.LONGITUDE.name());
+        for (ExtremaAccumulator accumulator : accumulators) {
+            columnSet.add(accumulator.sensorType.name());
+        }
 
-                    cursor.moveToFirst();
-                    extremaValue = cursor.getDouble(0);
-                    break;
+        try (Cursor cursor = getSamplesCursor(baseFileName, columnSet.toArray(new String[0]))) {
+            // cache the indexes, -1 when the column does not exist
+            int timeIndex = cursor.getColumnIndex(WorkoutSamplesDbHelper.TIME);
+            int latIndex = cursor.getColumnIndex(SensorType.LATITUDE.name());
+            int lonIndex = cursor.getColumnIndex(SensorType.LONGITUDE.name());
+            ExtremaAccumulator[] accumulatorArray = new ExtremaAccumulator[accumulators.size()];
+            int[] indexes = new int[accumulators.size()];
+            int nrColumns = 0;
+            for (ExtremaAccumulator accumulator : accumulators) {
+                int index = cursor.getColumnIndex(accumulator.sensorType.name());
+                if (index >= 0) {
+                    accumulatorArray[nrColumns] = accumulator;
+                    indexes[nrColumns] = index;
+                    nrColumns++;
+                }
+            }
 
-                case START:
-                    cursor = db.query(getTableName(baseFileName),
-                            null,
-                            null,
-                            null,
-                            null,
-                            null,
-                            null);  // sorting?
-
-                    while (cursor.moveToNext() && extremaValue == null) {
-                        if (dataValid(cursor, sensorType.name())) {
-                            if (DEBUG) Log.i(TAG, "got start value");
-                            extremaValue = cursor.getDouble(cursor.getColumnIndex(sensorType.name()));
-                        }
+            int count = cursor.getCount();
+            int row = 0;
+            while (cursor.moveToNext()) {
+                long time_ms = ExtremaAccumulator.NO_TIME;
+                if (timeIndex >= 0 && !cursor.isNull(timeIndex)) {
+                    try {
+                        time_ms = SampleTimeFormat.dbTime2EpochMillis(cursor.getString(timeIndex));
+                    } catch (ParseException e) {
+                        // then, the plain mean is used
                     }
-                    break;
+                }
 
-                case END:
-                    cursor = db.query(getTableName(baseFileName),
-                            null,
-                            null,
-                            null,
-                            null,
-                            null,
-                            null);  // sorting?
-
-                    cursor.moveToLast();
-                    while (cursor.moveToPrevious() && extremaValue == null) {
-                        if (dataValid(cursor, sensorType.name())) {
-                            if (DEBUG) Log.i(TAG, "got end location");
-                            extremaValue = cursor.getDouble(cursor.getColumnIndex(sensorType.name()));
-                        }
+                double latitude = Double.NaN, longitude = Double.NaN;
+                if (latIndex >= 0 && lonIndex >= 0 && !cursor.isNull(latIndex) && !cursor.isNull(lonIndex)) {
+                    latitude = cursor.getDouble(latIndex);
+                    longitude = cursor.getDouble(lonIndex);
+                }
+
+                for (int i = 0; i < nrColumns; i++) {
+                    if (!cursor.isNull(indexes[i])) {
+                        accumulatorArray[i].add(cursor.getDouble(indexes[i]), time_ms, latitude, longitude);
                     }
-                    break;
-            }
-        }
+                }
 
-        if (cursor != null && !cursor.isClosed()) {
-            cursor.close();
+                row++;
+                if (progressListener != null && (row & PROGRESS_ROWS_MASK) == 0) {
+                    progressListener.onProgress((float) row / count);
+                }
+            }
         }
-
-        if (DEBUG) Log.i(TAG, "extremaValue: " + extremaValue);
-        return extremaValue;
     }
 
-    // since this method goes through all? samples, this might take long.
+    /**
+     * Calculates the average value of a sensor within a circle around a location over all workouts.
+     * The indexed workouts are only read within the sample ranges that pass through the area (see {@link GeoTileIndexDatabaseManager}).
+     * Workouts that are not yet indexed are scanned with a bounding box over all their samples.
+     */
     public double calcAverageAroundLocation(WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager, @NonNull LatLng center, double radius, @NonNull SensorType sensorType) {
-        // based on http://stackoverflow.com/questions/3695224/sqlite-getting-nearest-locations-with-latitude-and-longitude
+        double[] sumAndCount = sumAroundLocation(workoutSummariesDatabaseManager, center, radius, sensorType, true);
+        return sumAndCount[1] == 0 ? 0.0 : sumAndCount[0] / sumAndCount[1];
+    }
 
-        Location centerLocation = new Location("center");
-        centerLocation.setLatitude(center.latitude);
-        centerLocation.setLongitude(center.longitude);
+    /**
+     * only for debugging, since it scans all samples: compares the result of the indexed query with the full scan over all workouts.
+     * Tracks that cross a tile border are contained in the postings of several tiles, so a sample counted twice shows up here.
+     *
+     * @return true when both found the same samples
+     */
+    public boolean checkAverageAroundLocation(WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager, @NonNull LatLng center, double radius, @NonNull SensorType sensorType) {
+        double[] indexedSumAndCount = sumAroundLocation(workoutSummariesDatabaseManager, center, radius, sensorType, true);
+        double[] sumAndCount = sumAroundLocation(workoutSummariesDatabaseManager, center, radius, sensorType, false);
 
-        Location testLocation = new Location("test");
+        if (sumAndCount[1] != indexedSumAndCount[1] || Math.abs(sumAndCount[0] - indexedSumAndCount[0]) > 1e-6 * Math.max(1, Math.abs(sumAndCount[0]))) {
+            Log.e(TAG, "checkAverageAroundLocation: the indexed query found " + indexedSumAndCount[1] + " samples with the sum " + indexedSumAndCount[0]
+                    + ", the full scan " + sumAndCount[1] + " samples with the sum " + sumAndCount[0]);
+            return false;
+        }
+        Log.i(TAG, "checkAverageAroundLocation: the indexed query and the full scan both found " + sumAndCount[1] + " samples");
+        return true;
+    }
+
+    /**
+     * @param useIndex whether the indexed workouts are read via the geo tile index or scanned like all other workouts
+     * @return [0]: sum of the values, [1]: number of values
+     */
+    @NonNull
+    private double[] sumAroundLocation(WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager, @NonNull LatLng center, double radius, @NonNull SensorType sensorType, boolean useIndex) {
+        // based on http://stackoverflow.com/questions/3695224/sqlite-getting-nearest-locations-with-latitude-and-longitude
 
         // PointF center = new PointF(x, y);
         final double mult = 1; // mult = 1.1; is more reliable
@@ -189,70 +342,102 @@ public class WorkoutSamplesDatabaseManager {
         LatLng p3 = calculateDerivedPosition(center, mult * radius, 180);
         LatLng p4 = calculateDerivedPosition(center, mult * radius, 270);
 
-        // SQLiteDatabase db = getInstance().getOpenDatabase();
-        // Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table'", null);  TODO: seems to be not that simple!
+        // [0]: sum of the values, [1]: number of values
+        double[] sumAndCount = new double[2];
+        float[] distance = new float[1];
+        String[] columns = new String[]{SensorType.LATITUDE.name(), SensorType.LONGITUDE.name(), sensorType.name()};
 
-        double valueSum = 0.0;
-        int counter = 0;
-        double average = 0.0;
+        // first, the indexed workouts: only the sample ranges within the touched tiles
+        GeoTileIndexDatabaseManager geoTileIndexDatabaseManager = GeoTileIndexDatabaseManager.getInstance(mContext);
+        Set<String> indexedWorkouts = useIndex ? geoTileIndexDatabaseManager.getIndexedWorkouts() : Collections.emptySet();
+        Map<String, List<GeoTileIndexDatabaseManager.SampleRange>> sampleRanges = useIndex
+                ? geoTileIndexDatabaseManager.getSampleRanges(p3.latitude, p1.latitude, p4.longitude, p2.longitude)
+                : Collections.emptyMap();
+
+        for (Map.Entry<String, List<GeoTileIndexDatabaseManager.SampleRange>> entry : sampleRanges.entrySet()) {
+            if (DEBUG)
+                Log.i(TAG, "reading " + entry.getValue().size() + " sample ranges of " + entry.getKey());
 
+            try (Cursor samplesCursor = getSamplesCursor(entry.getKey(), columns)) {
+                for (GeoTileIndexDatabaseManager.SampleRange sampleRange : entry.getValue()) {
+                    if (!samplesCursor.moveToPosition(sampleRange.firstRow())) {
+                        continue;
+                    }
+                    do {
+                        accumulateAroundLocation(samplesCursor, center, radius, sensorType, sumAndCount, distance);
+                    } while (samplesCursor.getPosition() < sampleRange.lastRow() && samplesCursor.moveToNext());
+                }
+            }
+        }
+
+        // then, all other workouts
         SQLiteDatabase summariesDb = workoutSummariesDatabaseManager.getDatabase();
         Cursor summariesCursor = summariesDb.query(WorkoutSummaries.TABLE,
                 new String[]{WorkoutSummaries.FILE_BASE_NAME},
                 null, null,
                 null, null, null);
 
-
         while (summariesCursor.moveToNext()) {
             String name = summariesCursor.getString(0);
-            if (DEBUG) Log.i(TAG, "querying table: " + name);
-
-            SQLiteDatabase samplesDb = getDatabase();
-            Cursor samplesCursor = samplesDb.query(getTableName(name), // Table
-                    new String[]{SensorType.LATITUDE.name(), SensorType.LONGITUDE.name(), sensorType.name()}, // columns
-                    SensorType.LATITUDE.name() + " > ? AND " +
-                            SensorType.LATITUDE.name() + " < ? AND " +
-                            SensorType.LONGITUDE.name() + " > ? AND " +
-                            SensorType.LONGITUDE.name() + " < ?", // selection
-                    new String[]{Double.toString(p3.latitude), Double.toString(p1.latitude), Double.toString(p4.longitude), Double.toString(p2.longitude)},
-                    null, null, null);
+            if (indexedWorkouts.contains(name)) {
+                continue;
+            }
+            accumulateAroundLocationByBoundingBox(name, columns, p1, p2, p3, p4, center, radius, sensorType, sumAndCount, distance);
+        }
+        summariesCursor.close();
 
-            if (DEBUG)
-                Log.i(TAG, "got cursor with " + samplesCursor.getCount() + " entries for " + name);
+        return sumAndCount;
+    }
+
+    /**
+     * the query without the geo tile index: a bounding box over all samples of the workout
+     */
+    private void accumulateAroundLocationByBoundingBox(String name, @NonNull String[] columns, @NonNull LatLng p1, @NonNull LatLng p2, @NonNull LatLng p3, @NonNull LatLng p4,
+                                                       @NonNull LatLng center, double radius, @NonNull SensorType sensorType,
+                                                       @NonNull double[] sumAndCount, @NonNull float[] distance) {
+        if (DEBUG) Log.i(TAG, "scanning the samples of " + name);
 
-            // cache the indexes
+        try (Cursor samplesCursor = getSamplesCursor(name, columns)) {
             int latIndex = samplesCursor.getColumnIndex(SensorType.LATITUDE.name());
             int lonIndex = samplesCursor.getColumnIndex(SensorType.LONGITUDE.name());
-            int sensorIndex = samplesCursor.getColumnIndex(sensorType.name());
+            if (latIndex < 0 || lonIndex < 0) {
+                return;
+            }
 
             while (samplesCursor.moveToNext()) {
-                if (dataValid(samplesCursor, sensorType.name())
-                        && dataValid(samplesCursor, SensorType.LATITUDE.name())
-                        && dataValid(samplesCursor, SensorType.LONGITUDE.name())) {
-                    testLocation.setLatitude(samplesCursor.getDouble(latIndex));
-                    testLocation.setLongitude(samplesCursor.getDouble(lonIndex));
-
-                    if (centerLocation.distanceTo(testLocation) <= radius) {
-                        valueSum += samplesCursor.getDouble(sensorIndex);
-                        counter++;
-                    }
+                if (samplesCursor.isNull(latIndex) || samplesCursor.isNull(lonIndex)) {
+                    continue;
+                }
+                double latitude = samplesCursor.getDouble(latIndex);
+                double longitude = samplesCursor.getDouble(lonIndex);
+                if (latitude > p3.latitude && latitude < p1.latitude
+                        && longitude > p4.longitude && longitude < p2.longitude) {
+                    accumulateAroundLocation(samplesCursor, center, radius, sensorType, sumAndCount, distance);
                 }
             }
-            samplesCursor.close();
         }
-        summariesCursor.close();
+    }
 
-        if (counter != 0) {
-            average = valueSum / counter;
+    private static void accumulateAroundLocation(@NonNull Cursor samplesCursor, @NonNull LatLng center, double radius, @NonNull SensorType sensorType,
+                                                 @NonNull double[] sumAndCount, @NonNull float[] distance) {
+        if (dataValid(samplesCursor, sensorType.name())
+                && dataValid(samplesCursor, SensorType.LATITUDE.name())
+                && dataValid(samplesCursor, SensorType.LONGITUDE.name())) {
+            Location.distanceBetween(center.latitude, center.longitude,
+                    samplesCursor.getDouble(samplesCursor.getColumnIndex(SensorType.LATITUDE.name())),
+                    samplesCursor.getDouble(samplesCursor.getColumnIndex(SensorType.LONGITUDE.name())),
+                    distance);
+
+            if (distance[0] <= radius) {
+                sumAndCount[0] += samplesCursor.getDouble(samplesCursor.getColumnIndex(sensorType.name()));
+                sumAndCount[1]++;
+            }
         }
-
-        return average;
     }
 
     /**
      * Calculates the end-point from a given source at a given range (meters)
-     * and bearing (degrees). This methods uses simple geometry equations to
-     * calculate the end-point.
+     * and bearing (degrees), see {@link GeoMath#derivedPosition}.
      *
      * @param point   Point of origin
      * @param range   Range in meters
@@ -262,29 +447,8 @@ public class WorkoutSamplesDatabaseManager {
     @NonNull
     public static LatLng calculateDerivedPosition(@NonNull LatLng point,
                                                   double range, double bearing) {
-        double EarthRadius = 6371000; // m
-
-        double latA = Math.toRadians(point.latitude);
-        double lonA = Math.toRadians(point.longitude);
-        double angularDistance = range / EarthRadius;
-        double trueCourse = Math.toRadians(bearing);
-
-        double lat = Math.asin(
-                Math.sin(latA) * Math.cos(angularDistance) +
-                        Math.cos(latA) * Math.sin(angularDistance)
-                                * Math.cos(trueCourse));
-
-        double dlon = Math.atan2(
-                Math.sin(trueCourse) * Math.sin(angularDistance)
-                        * Math.cos(latA),
-                Math.cos(angularDistance) - Math.sin(latA) * Math.sin(lat));
-
-        double lon = ((lonA + dlon + Math.PI) % (Math.PI * 2)) - Math.PI;
-
-        lat = Math.toDegrees(lat);
-        lon = Math.toDegrees(lon);
-
-        return new LatLng(lat, lon);
+        double[] position = GeoMath.derivedPosition(point.latitude, point.longitude, range, bearing);
+        return new LatLng(position[0], position[1]);
     }
 
     @Nullable
@@ -303,62 +467,63 @@ public class WorkoutSamplesDatabaseManager {
         Double extremaValue = workoutSummariesDatabaseManager.getExtremaValue(workoutId, sensorType, extremaType);
         if (DEBUG) Log.i(TAG, "got " + extremaValue);
 
+        // since version 13 of the summaries db, the position is stored together with the extrema value
+        if (extremaValue != null) {
+            LatLng position = workoutSummariesDatabaseManager.getExtremaPosition(workoutId, sensorType, extremaType);
+            if (position != null) {
+                if (DEBUG) Log.i(TAG, "got the stored position for " + extremaType.name() + " of " + sensorType.name());
+                return new LatLngValue(position, extremaValue);
+            }
+        }
+
         // if there is an extrema value, we look for its location
         if (extremaValue != null) {
 
-            SQLiteDatabase samplesDb = getDatabase();
-            Cursor cursor = null;
+            try (Cursor cursor = getSamplesCursor(baseFileName, new String[]{SensorType.LATITUDE.name(), SensorType.LONGITUDE.name(), sensorType.name()})) {
+                int latIndex = cursor.getColumnIndex(SensorType.LATITUDE.name());
+                int lonIndex = cursor.getColumnIndex(SensorType.LONGITUDE.name());
+                int index = cursor.getColumnIndex(sensorType.name());
+
+                // depending on the extremaType, there are two alternative ways to find the corresponding row
+                int row = -1;
+                if (index >= 0) {
+                    double best = Double.NaN;
+                    while (cursor.moveToNext()) {
+                        if (cursor.isNull(index)) {
+                            continue;
+                        }
+                        double value = cursor.getDouble(index);
+                        boolean better;
+                        switch (extremaType) {
+                            case MIN:
+                            case MAX:
+                                // in previous versions, we searched for the stored extrema value but it failed for max of line_distance
+                                // probably due to problems with converting and storing doubles?
+                                better = Double.isNaN(best) || (extremaType == ExtremaType.MAX ? value > best : value < best);
+                                break;
+                            default:  // neither MIN nor MAX: search for the extrema value which should be already within the summariesDb
+                                better = Double.isNaN(best) || Math.abs(value - extremaValue) < Math.abs(best - extremaValue);
+                        }
+                        if (better) {
+                            best = value;
+                            row = cursor.getPosition();
+                        }
+                    }
+                }
 
-            // depending on the extremaType, there are two alternative ways to find the corresponding row
-            switch (extremaType) {
-                case MIN:
-                case MAX:
+                if (row >= 0 && latIndex >= 0 && lonIndex >= 0
+                        && cursor.moveToPosition(row)
+                        && !cursor.isNull(latIndex)
+                        && !cursor.isNull(lonIndex)) {
                     if (DEBUG)
-                        Log.i(TAG, "special case: MIN or MAX => find by 'sorting' and only picking the first row");
-                    // in previous versions, we used the 'default' code for this but it failed for max of line_distance
-                    // probably due to problems with converting and storing doubles?
-
-                    String orderBy = sensorType.name() + " " + ((extremaType == ExtremaType.MAX) ? "DESC" : "ASC");
-                    cursor = samplesDb.query(WorkoutSamplesDatabaseManager.getTableName(baseFileName), // table
-                            null, // columns
-                            null, // selection
-                            null, // selectionArgs
-                            null, // groupBy
-                            null, // having
-                            orderBy, // orderBy
-                            "1"); // limit: we only need the first one
-
-                    break;
-                default:  // neither MIN nor MAX
+                        Log.i(TAG, "got a valid location for " + extremaType.name() + " of " + sensorType.name());
+                    result = new LatLngValue(new LatLng(cursor.getDouble(latIndex), cursor.getDouble(lonIndex)), cursor.getDouble(index));
+                } else {
                     if (DEBUG)
-                        Log.i(TAG, "default case: search for the extrema value which should be already within the summariesDb");
-
-                    cursor = samplesDb.query(WorkoutSamplesDatabaseManager.getTableName(baseFileName), // table
-                            null, // columns
-                            sensorType.name() + "=?", // selection
-                            new String[]{extremaValue.toString()}, // selectionArgs
-                            null, // groupBy
-                            null, // having
-                            null, // orderBy
-                            "1"); // limit  TODO: might be increased in the future?
-            } // end of switch
-
-            if (cursor.moveToFirst()
-                    && !cursor.isNull(cursor.getColumnIndex(SensorType.LATITUDE.name()))
-                    && !cursor.isNull(cursor.getColumnIndex(SensorType.LONGITUDE.name()))) {
-                if (DEBUG)
-                    Log.i(TAG, "got a valid location for " + extremaType.name() + " of " + sensorType.name());
-                result = new LatLngValue(new LatLng(cursor.getDouble(cursor.getColumnIndex(SensorType.LATITUDE.name())),
-                        cursor.getDouble(cursor.getColumnIndex(SensorType.LONGITUDE.name()))),
-                        cursor.getDouble(cursor.getColumnIndex(sensorType.name())));
-            } else {
-                if (DEBUG)
-                    Log.d(TAG, "did not get a valid location for " + extremaType.name() + " of " + sensorType.name());
+                        Log.d(TAG, "did not get a valid location for " + extremaType.name() + " of " + sensorType.name());
+                }
             }
 
-            // clean up
-            cursor.close();
-
         } else {
             if (DEBUG)
                 Log.i(TAG, "there was no valid extrema value for " + extremaType.name() + " of " + sensorType.name());
@@ -386,24 +551,39 @@ public class WorkoutSamplesDatabaseManager {
 
     public void deleteWorkout(String baseFileName) {
         getDatabase().execSQL("drop table if exists " + getTableName(baseFileName));
+        ColumnarSampleStore.delete(mContext, baseFileName);
+        GeoTileIndexDatabaseManager.getInstance(mContext).deleteWorkout(baseFileName);
+        TrackPyramidDatabaseManager.getInstance(mContext).deleteWorkout(baseFileName);
+        MeanMaxDatabaseManager.getInstance(mContext).deleteWorkout(baseFileName);
     }
 
-    // stolen from http://stackoverflow.com/questions/4719594/checking-if-a-column-exists-in-an-application-database-in-android
-    private static boolean existsColumnInTable(@NonNull SQLiteDatabase inDatabase, String inTable, String columnToCheck) {
-        Cursor mCursor = null;
-        try {
-            // Query 1 row
-            mCursor = inDatabase.rawQuery("SELECT * FROM " + inTable + " LIMIT 0", null);
+    @Nullable
+    private static String[] getExistingColumns(@NonNull SQLiteDatabase db, String table, @Nullable String[] columns) {
+        if (columns == null) {
+            return null;
+        }
 
-            // getColumnIndex() gives us the index (0 to ...) of the column - otherwise we get a -1
-            return mCursor.getColumnIndex(columnToCheck) != -1;
+        List<String> existingColumns = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM " + table + " LIMIT 0", null)) {
+            for (String column : columns) {
+                if (cursor.getColumnIndex(column) != -1) {
+                    existingColumns.add(column);
+                }
+            }
+        }
+        if (existingColumns.isEmpty()) {  // we have to query at least one column
+            existingColumns.add(WorkoutSamplesDbHelper.C_ID);
+        }
+        return existingColumns.toArray(new String[0]);
+    }
 
-        } catch (Exception Exp) {
-            // Something went wrong. Missing the database? The table?
-            Log.d("... - existsColumnInTable", "When checking whether a column exists in the table, an error occurred: " + Exp.getMessage());
-            return false;
-        } finally {
-            if (mCursor != null) mCursor.close();
+    private static boolean existsTable(@NonNull SQLiteDatabase db, @NonNull String baseFileName) {
+        try (Cursor cursor = db.query("sqlite_master",
+                new String[]{"name"},
+                "type='table' AND name=?",
+                new String[]{baseFileName},
+                null, null, null)) {
+            return cursor.getCount() > 0;
         }
     }
 
@@ -451,6 +631,10 @@ public class WorkoutSamplesDatabaseManager {
     }
 
 
+    public interface ProgressListener {
+        void onProgress(float fraction);
+    }
+
     public static class LatLngValue {
         public final LatLng latLng;
         public final Double value;
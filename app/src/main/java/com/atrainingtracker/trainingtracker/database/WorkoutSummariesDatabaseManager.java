@@ -34,11 +34,13 @@ import com.atrainingtracker.R;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.ExtremaAccumulator.ExtremaValue;
 import com.atrainingtracker.trainingtracker.exporter.db.ExportStatusRepository;
 import com.google.android.gms.maps.model.LatLng;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -142,6 +144,48 @@ public class WorkoutSummariesDatabaseManager {
         );
     }
 
+    /**
+     * Keyset paging of the workout list: the next workouts after the given one, the newest first.
+     * Only the LIST_COLUMNS are queried.
+     *
+     * @param afterTimeStart the start time of the last workout of the previous page or null for the first page
+     * @param afterId        the id of the last workout of the previous page
+     */
+    public Cursor getWorkoutListCursor(@Nullable String afterTimeStart, long afterId, int limit) {
+        String selection = null;
+        String[] selectionArgs = null;
+        if (afterTimeStart != null) {
+            selection = WorkoutSummaries.TIME_START + "<? OR (" + WorkoutSummaries.TIME_START + "=? AND " + WorkoutSummaries.C_ID + "<?)";
+            selectionArgs = new String[]{afterTimeStart, afterTimeStart, Long.toString(afterId)};
+        }
+
+        return getDatabase().query(
+                WorkoutSummaries.TABLE,
+                WorkoutSummaries.LIST_COLUMNS,
+                selection, selectionArgs, null, null,
+                WorkoutSummaries.TIME_START + " DESC, " + WorkoutSummaries.C_ID + " DESC",
+                Integer.toString(limit)
+        );
+    }
+
+    /**
+     * @return the workout id, sensor type, extrema type, and value of all extrema values of the workouts
+     */
+    public Cursor getExtremaValuesCursor(@NonNull Collection<Long> workoutIds) {
+        StringBuilder ids = new StringBuilder();
+        for (long workoutId : workoutIds) {
+            if (ids.length() > 0) {
+                ids.append(",");
+            }
+            ids.append(workoutId);
+        }
+
+        return getDatabase().query(WorkoutSummaries.TABLE_EXTREMA_VALUES,
+                new String[]{WorkoutSummaries.WORKOUT_ID, WorkoutSummaries.SENSOR_TYPE, WorkoutSummaries.EXTREMA_TYPE, WorkoutSummaries.VALUE},
+                WorkoutSummaries.WORKOUT_ID + " IN (" + ids + ")",
+                null, null, null, null);
+    }
+
 
     @Nullable
     public String getBaseFileName(long workoutId) {
@@ -334,6 +378,58 @@ public class WorkoutSummariesDatabaseManager {
         return extremaValue;
     }
 
+    /**
+     * @return the stored position of the extremum or null when it is not known (e.g. calculated by an older version)
+     */
+    @Nullable
+    public LatLng getExtremaPosition(long workoutId, @NonNull SensorType sensorType, @NonNull ExtremaType extremaType) {
+        LatLng position = null;
+
+        try (Cursor cursor = getDatabase().query(WorkoutSummaries.TABLE_EXTREMA_VALUES,
+                new String[]{WorkoutSummaries.LATITUDE, WorkoutSummaries.LONGITUDE},
+                WorkoutSummaries.WORKOUT_ID + "=? AND " + WorkoutSummaries.SENSOR_TYPE + "=? AND " + WorkoutSummaries.EXTREMA_TYPE + "=?",
+                new String[]{Long.toString(workoutId), sensorType.name(), extremaType.name()},
+                null, null, null)) {
+
+            if (cursor.moveToFirst() && !cursor.isNull(0) && !cursor.isNull(1)) {
+                position = new LatLng(cursor.getDouble(0), cursor.getDouble(1));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Saves (inserts or replaces) all extrema values of a workout within one transaction.
+     */
+    public void saveExtremaValues(long workoutId, @NonNull Collection<ExtremaValue> extremaValues) {
+        if (DEBUG) Log.i(TAG, "saveExtremaValues: " + extremaValues.size() + " values for workoutId: " + workoutId);
+
+        String whereClause = WorkoutSummaries.WORKOUT_ID + "=? AND " + WorkoutSummaries.EXTREMA_TYPE + "=? AND " + WorkoutSummaries.SENSOR_TYPE + "=?";
+        ContentValues values = new ContentValues();
+
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            for (ExtremaValue extremaValue : extremaValues) {
+                values.clear();
+                values.put(WorkoutSummaries.WORKOUT_ID, workoutId);
+                values.put(WorkoutSummaries.EXTREMA_TYPE, extremaValue.extremaType().name());
+                values.put(WorkoutSummaries.SENSOR_TYPE, extremaValue.sensorType().name());
+                values.put(WorkoutSummaries.VALUE, extremaValue.value());
+                values.put(WorkoutSummaries.LATITUDE, extremaValue.latitude());
+                values.put(WorkoutSummaries.LONGITUDE, extremaValue.longitude());
+
+                String[] whereArgs = new String[]{Long.toString(workoutId), extremaValue.extremaType().name(), extremaValue.sensorType().name()};
+                if (db.update(WorkoutSummaries.TABLE_EXTREMA_VALUES, values, whereClause, whereArgs) == 0) {
+                    db.insert(WorkoutSummaries.TABLE_EXTREMA_VALUES, null, values);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
 
     /* currently unused code...
     // TODO: make sport specific?
@@ -733,7 +829,7 @@ public class WorkoutSummariesDatabaseManager {
         public static final String METHOD = "method";
         public static final String EQUIPMENT_ID = "equipmentId";
         public static final String DESCRIPTION = "description";
-        // public static final String SAMPLING_TIME = "samplingTime"; 2026-01: no longer supported/needed.  Will be always 1.
+        // public static final String SAMPLING_TIME = "samplingTime"; 2026-01: no longer supported/needed.  The samples are not necessarily equidistant (see SamplingPolicy), so the time column of the samples is used.
         public static final String B_SPORT = "Sport";                 // intentionally the same name.  This avoids creating a new column and leaving the old one unused when upgrading
         public static final String SPORT_ID = "sportId";
         // use WorkoutSummariesDatabaseManager.getStartTime to access this field
@@ -756,6 +852,8 @@ public class WorkoutSummariesDatabaseManager {
         public static final String EXTREMA_VALUES_CALCULATED = "extremumValuesCalculated";
         // new entries in version 6 of the DB
         public static final String SAMPLES_COLUMN_ID = "samplesColumnId";
+        // new entries in version 14 of the DB: the extrema values were already calculated while tracking
+        public static final String LIVE_EXTREMA_VALUES = "liveExtremumValues";
         // columns of the EXTREMA table
         public static final String WORKOUT_ID = "workoutID";
 
@@ -774,6 +872,9 @@ public class WorkoutSummariesDatabaseManager {
         public static final String EXTREMA_TYPE = "extremumType";
         public static final String SENSOR_TYPE = "sensorType";
         public static final String VALUE = "value";
+        // new entries in version 13 of the DB: the position where the extremum occurred
+        public static final String LATITUDE = "latitude";
+        public static final String LONGITUDE = "longitude";
         // columns of the WorkoutNamePattern table
         // public static final String SPORT // already defined
         public static final String START_LOCATION_NAME = "startLocationName";
@@ -786,6 +887,11 @@ public class WorkoutSummariesDatabaseManager {
         public static final String ADD_COUNTER = "addCounter";
         public static final String COUNTER = "counter";
         public static final String ADD_VIA = "addVia";
+
+        // the columns that are needed for the rows of the workout list
+        public static final String[] LIST_COLUMNS = {C_ID, FILE_BASE_NAME, WORKOUT_NAME, SPORT_ID, EQUIPMENT_ID,
+                TIME_START, TIME_ACTIVE_s, TIME_TOTAL_s, DISTANCE_TOTAL_m, SPEED_AVERAGE_mps, ASCENDING, DESCENDING,
+                COMMUTE, TRAINER, FINISHED, EXTREMA_VALUES_CALCULATED, DESCRIPTION, GOAL, METHOD};
         @Deprecated
         private static final String SPORT_OLD = "sport";
 
@@ -804,9 +910,12 @@ public class WorkoutSummariesDatabaseManager {
         // public static final int DB_VERSION = 9; // upgrade to Version 9 at 7. June 2016
         // public static final int DB_VERSION = 10; // upgrade to Version 10 at 8. June 2016
         // public static final int DB_VERSION = 11; // upgrade to Version 11 at 19. 01. 2017
-        public static final int DB_VERSION = 11; // upgrade to Version 12 at 22.01.2026
+        // public static final int DB_VERSION = 11; // upgrade to Version 12 at 22.01.2026
+        // public static final int DB_VERSION = 13; // upgrade to Version 13: positions of the extrema values
+        // public static final int DB_VERSION = 14; // upgrade to Version 14: extrema values calculated while tracking
+        public static final int DB_VERSION = 15; // upgrade to Version 15: indices for the paged workout list and the extrema values
 
-        protected static final String CREATE_TABLE_V12 = "create table " + WorkoutSummaries.TABLE + " ("
+        protected static final String CREATE_TABLE_V14 = "create table " + WorkoutSummaries.TABLE + " ("
                 + WorkoutSummaries.C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + WorkoutSummaries.WORKOUT_NAME + " text,"
                 + WorkoutSummaries.FILE_BASE_NAME + " text,"
@@ -833,7 +942,8 @@ public class WorkoutSummariesDatabaseManager {
                 + WorkoutSummaries.TRAINER + " int,"
                 + WorkoutSummaries.ASCENDING + " int,"
                 + WorkoutSummaries.DESCENDING + " int," // end of version 4
-                + WorkoutSummaries.EXTREMA_VALUES_CALCULATED + " int)";
+                + WorkoutSummaries.EXTREMA_VALUES_CALCULATED + " int," // end of version 12
+                + WorkoutSummaries.LIVE_EXTREMA_VALUES + " int)";
 
         protected static final String CREATE_TABLE_V11 = "create table " + WorkoutSummaries.TABLE + " ("
                 + WorkoutSummaries.C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -870,6 +980,19 @@ public class WorkoutSummariesDatabaseManager {
                 + WorkoutSummaries.SENSOR_TYPE + " text,"
                 + WorkoutSummaries.VALUE + " real," // end of version 5
                 + WorkoutSummaries.SAMPLES_COLUMN_ID + " int)";
+        protected static final String CREATE_TABLE_EXTREMA_VALUES_V13 = "create table " + WorkoutSummaries.TABLE_EXTREMA_VALUES + " ("
+                + WorkoutSummaries.C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + WorkoutSummaries.WORKOUT_ID + " int,"
+                + WorkoutSummaries.EXTREMA_TYPE + " text,"
+                + WorkoutSummaries.SENSOR_TYPE + " text,"
+                + WorkoutSummaries.VALUE + " real,"
+                + WorkoutSummaries.SAMPLES_COLUMN_ID + " int,"
+                + WorkoutSummaries.LATITUDE + " real,"
+                + WorkoutSummaries.LONGITUDE + " real)";
+        protected static final String CREATE_INDEX_TIME_START_V15 = "create index " + WorkoutSummaries.TABLE + "_" + WorkoutSummaries.TIME_START
+                + " on " + WorkoutSummaries.TABLE + " (" + WorkoutSummaries.TIME_START + ", " + WorkoutSummaries.C_ID + ")";
+        protected static final String CREATE_INDEX_EXTREMA_VALUES_V15 = "create index " + WorkoutSummaries.TABLE_EXTREMA_VALUES + "_" + WorkoutSummaries.WORKOUT_ID
+                + " on " + WorkoutSummaries.TABLE_EXTREMA_VALUES + " (" + WorkoutSummaries.WORKOUT_ID + ")";
         protected static final String CREATE_TABLE_ACCUMULATED_SENSORS_V6 = "create table " + WorkoutSummaries.TABLE_ACCUMULATED_SENSORS + " ("
                 + WorkoutSummaries.C_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + WorkoutSummaries.WORKOUT_ID + " int,"
@@ -908,12 +1031,16 @@ public class WorkoutSummariesDatabaseManager {
         @Override
         public void onCreate(@NonNull SQLiteDatabase db) {
 
-            db.execSQL(CREATE_TABLE_V12);
+            db.execSQL(CREATE_TABLE_V14);
             if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_V11);
 
-            // new in version 4:
-            db.execSQL(CREATE_TABLE_EXTREMA_VALUES_V6);
-            if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_EXTREMA_VALUES_V6);
+            // new in version 4, extended in version 13:
+            db.execSQL(CREATE_TABLE_EXTREMA_VALUES_V13);
+            if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_EXTREMA_VALUES_V13);
+
+            // new in version 15
+            db.execSQL(CREATE_INDEX_TIME_START_V15);
+            db.execSQL(CREATE_INDEX_EXTREMA_VALUES_V15);
 
             db.execSQL(CREATE_TABLE_ACCUMULATED_SENSORS_V6);
             if (DEBUG) Log.d(TAG, "onCreate sql: " + CREATE_TABLE_ACCUMULATED_SENSORS_V6);
@@ -1028,6 +1155,26 @@ public class WorkoutSummariesDatabaseManager {
                 // do nothing.  The removed rows does not matter.
             }
 
+            if (oldVersion < 13) {
+                Log.i(TAG, "upgrading to DB version 13");
+
+                addColumn(db, WorkoutSummaries.TABLE_EXTREMA_VALUES, WorkoutSummaries.LATITUDE, "real");
+                addColumn(db, WorkoutSummaries.TABLE_EXTREMA_VALUES, WorkoutSummaries.LONGITUDE, "real");
+            }
+
+            if (oldVersion < 14) {
+                Log.i(TAG, "upgrading to DB version 14");
+
+                addColumn(db, WorkoutSummaries.TABLE, WorkoutSummaries.LIVE_EXTREMA_VALUES, "int");
+            }
+
+            if (oldVersion < 15) {
+                Log.i(TAG, "upgrading to DB version 15");
+
+                db.execSQL(CREATE_INDEX_TIME_START_V15);
+                db.execSQL(CREATE_INDEX_EXTREMA_VALUES_V15);
+            }
+
         }
     }
 }
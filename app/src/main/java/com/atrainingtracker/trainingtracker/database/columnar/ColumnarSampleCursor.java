@@ -0,0 +1,417 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database.columnar;
+
+import android.database.AbstractCursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Read-only cursor over a columnar sample file.
+ * <p>
+ * Only the block headers are read when opening the cursor.
+ * When moving to a row, the block containing this row is decoded, but only the requested columns are read from the file.
+ * Since this is a regular {@link android.database.Cursor}, the existing readers of the samples can use it as is.
+ * The time column is returned as epoch millis by {@link #getLong(int)} and in the sqlite format by {@link #getString(int)}.
+ */
+public class ColumnarSampleCursor extends AbstractCursor {
+    private static final String TAG = ColumnarSampleCursor.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(false);
+
+    private final RandomAccessFile mFile;
+    private final List<Block> mBlocks = new ArrayList<>();
+    private final String[] mColumnNames;
+    private final int mCount;
+
+    // the decoded values of the current block
+    @Nullable
+    private Block mCurrentBlock = null;
+    private final DecodedColumn[] mDecodedColumns;
+
+    private final SimpleDateFormat mDbTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+    // for the samples that were recorded with sub-second sampling
+    private final SimpleDateFormat mDbTimeMillisFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+
+    /**
+     * @param columns the columns to read or null for all columns of the file
+     */
+    public ColumnarSampleCursor(@NonNull File file, @Nullable String[] columns) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        mDbTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mDbTimeMillisFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        if (mFile.length() < 5 || mFile.readInt() != ColumnarSampleWriter.MAGIC) {
+            mFile.close();
+            throw new IOException("not a columnar sample file: " + file);
+        }
+        mFile.readByte(); // the version, there is only one so far
+
+        // read the headers of all blocks
+        Set<String> availableColumns = new LinkedHashSet<>();
+        int count = 0;
+        long position = mFile.getFilePointer();
+        long fileLength = mFile.length();
+        while (position + 4 <= fileLength) {
+            mFile.seek(position);
+            int payloadLength = mFile.readInt();
+            long blockEnd = position + 4 + payloadLength;
+            if (payloadLength <= 0 || blockEnd > fileLength) {
+                Log.i(TAG, "ignoring incomplete block at the end of " + file);
+                break;
+            }
+
+            Block block = new Block(count, mFile.readInt());
+            int columnCount = mFile.readShort();
+            long dataPosition = 0;
+            List<ColumnInfo> columnInfos = new ArrayList<>(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                String name = mFile.readUTF();
+                ColumnEncoding encoding = ColumnEncoding.fromId(mFile.readByte());
+                int length = mFile.readInt();
+                columnInfos.add(new ColumnInfo(encoding, dataPosition, length));
+                block.columns.put(name, columnInfos.get(i));
+                dataPosition += length;
+                availableColumns.add(name);
+            }
+            // now, we know where the data of the columns starts
+            long dataStart = mFile.getFilePointer();
+            for (ColumnInfo columnInfo : columnInfos) {
+                columnInfo.position += dataStart;
+            }
+
+            mBlocks.add(block);
+            count += block.rowCount;
+            position = blockEnd;
+        }
+        mCount = count;
+
+        if (columns == null) {
+            mColumnNames = availableColumns.toArray(new String[0]);
+        } else {
+            // only the requested columns that are really available, others do not exist like in the sqlite tables
+            List<String> columnNames = new ArrayList<>();
+            for (String column : columns) {
+                if (availableColumns.contains(column)) {
+                    columnNames.add(column);
+                }
+            }
+            mColumnNames = columnNames.toArray(new String[0]);
+        }
+        mDecodedColumns = new DecodedColumn[mColumnNames.length];
+
+        if (DEBUG)
+            Log.i(TAG, "opened " + file + " with " + mBlocks.size() + " blocks, " + mCount + " rows, columns=" + Arrays.toString(mColumnNames));
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @NonNull
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        if (mCurrentBlock != null && mCurrentBlock.contains(newPosition)) {
+            return true;
+        }
+
+        // binary search for the block containing the new position
+        int low = 0, high = mBlocks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Block block = mBlocks.get(mid);
+            if (newPosition < block.firstRow) {
+                high = mid - 1;
+            } else if (newPosition >= block.firstRow + block.rowCount) {
+                low = mid + 1;
+            } else {
+                try {
+                    decodeBlock(block);
+                    return true;
+                } catch (IOException e) {
+                    Log.e(TAG, "failed to decode block starting at row " + block.firstRow, e);
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getType(int column) {
+        DecodedColumn decodedColumn = getDecodedColumn(column);
+        if (!decodedColumn.isPresent(getRow())) {
+            return FIELD_TYPE_NULL;
+        }
+        switch (decodedColumn.encoding) {
+            case LONG_DELTA:
+                return ColumnEncoding.isTimeColumn(mColumnNames[column]) ? FIELD_TYPE_STRING : FIELD_TYPE_INTEGER;
+            case STRING:
+                return FIELD_TYPE_STRING;
+            default:
+                return FIELD_TYPE_FLOAT;
+        }
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return !getDecodedColumn(column).isPresent(getRow());
+    }
+
+    @Nullable
+    @Override
+    public String getString(int column) {
+        DecodedColumn decodedColumn = getDecodedColumn(column);
+        int row = getRow();
+        if (!decodedColumn.isPresent(row)) {
+            return null;
+        }
+        switch (decodedColumn.encoding) {
+            case LONG_DELTA:
+                if (ColumnEncoding.isTimeColumn(mColumnNames[column])) {
+                    long time_ms = decodedColumn.longs[row];
+                    return (time_ms % 1000 == 0 ? mDbTimeFormat : mDbTimeMillisFormat).format(new Date(time_ms));
+                }
+                return Long.toString(decodedColumn.longs[row]);
+            case STRING:
+                return decodedColumn.strings[row];
+            default:
+                return Double.toString(decodedColumn.doubles[row]);
+        }
+    }
+
+    @Override
+    public long getLong(int column) {
+        DecodedColumn decodedColumn = getDecodedColumn(column);
+        int row = getRow();
+        if (!decodedColumn.isPresent(row)) {
+            return 0;
+        }
+        switch (decodedColumn.encoding) {
+            case LONG_DELTA:
+                return decodedColumn.longs[row];
+            case STRING:
+                try {
+                    return Long.parseLong(decodedColumn.strings[row]);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            default:
+                return (long) decodedColumn.doubles[row];
+        }
+    }
+
+    @Override
+    public double getDouble(int column) {
+        DecodedColumn decodedColumn = getDecodedColumn(column);
+        int row = getRow();
+        if (!decodedColumn.isPresent(row)) {
+            return 0;
+        }
+        switch (decodedColumn.encoding) {
+            case LONG_DELTA:
+                return decodedColumn.longs[row];
+            case STRING:
+                try {
+                    return Double.parseDouble(decodedColumn.strings[row]);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            default:
+                return decodedColumn.doubles[row];
+        }
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            Log.e(TAG, "failed to close the file", e);
+        }
+    }
+
+    // the row within the current block
+    private int getRow() {
+        checkPosition();
+        return getPosition() - mCurrentBlock.firstRow;
+    }
+
+    @NonNull
+    private DecodedColumn getDecodedColumn(int column) {
+        if (column < 0 || column >= mDecodedColumns.length) {
+            throw new IllegalArgumentException("invalid column index " + column);
+        }
+        return mDecodedColumns[column];
+    }
+
+    private void decodeBlock(@NonNull Block block) throws IOException {
+        for (int i = 0; i < mColumnNames.length; i++) {
+            ColumnInfo columnInfo = block.columns.get(mColumnNames[i]);
+            if (columnInfo == null) {
+                mDecodedColumns[i] = DecodedColumn.ABSENT;
+                continue;
+            }
+
+            byte[] data = new byte[columnInfo.length];
+            mFile.seek(columnInfo.position);
+            mFile.readFully(data);
+            mDecodedColumns[i] = DecodedColumn.decode(columnInfo.encoding, ByteBuffer.wrap(data), block.rowCount);
+        }
+        mCurrentBlock = block;
+    }
+
+    private static class Block {
+        final int firstRow;
+        final int rowCount;
+        final Map<String, ColumnInfo> columns = new HashMap<>();
+
+        Block(int firstRow, int rowCount) {
+            this.firstRow = firstRow;
+            this.rowCount = rowCount;
+        }
+
+        boolean contains(int position) {
+            return position >= firstRow && position < firstRow + rowCount;
+        }
+    }
+
+    private static class ColumnInfo {
+        final ColumnEncoding encoding;
+        long position;
+        final int length;
+
+        ColumnInfo(ColumnEncoding encoding, long position, int length) {
+            this.encoding = encoding;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    private static class DecodedColumn {
+        static final DecodedColumn ABSENT = new DecodedColumn(ColumnEncoding.LONG_DELTA, new boolean[0]);
+
+        final ColumnEncoding encoding;
+        final boolean[] present;
+        long[] longs;
+        double[] doubles;
+        String[] strings;
+
+        DecodedColumn(ColumnEncoding encoding, boolean[] present) {
+            this.encoding = encoding;
+            this.present = present;
+        }
+
+        boolean isPresent(int row) {
+            return row < present.length && present[row];
+        }
+
+        @NonNull
+        static DecodedColumn decode(@NonNull ColumnEncoding encoding, @NonNull ByteBuffer in, int rowCount) throws IOException {
+            boolean[] present = new boolean[rowCount];
+            byte[] bitmap = new byte[(rowCount + 7) / 8];
+            in.get(bitmap);
+            for (int row = 0; row < rowCount; row++) {
+                present[row] = (bitmap[row >> 3] & (1 << (row & 7))) != 0;
+            }
+
+            DecodedColumn result = new DecodedColumn(encoding, present);
+            long previous = 0;
+            switch (encoding) {
+                case LONG_DELTA:
+                    result.longs = new long[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        if (present[row]) {
+                            previous += ColumnEncoding.readVarLong(in);
+                            result.longs[row] = previous;
+                        }
+                    }
+                    break;
+                case MILLI_DELTA:
+                case DECI_MICRO_DELTA:
+                    result.doubles = new double[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        if (present[row]) {
+                            previous += ColumnEncoding.readVarLong(in);
+                            result.doubles[row] = encoding.fromFixedPoint(previous);
+                        }
+                    }
+                    break;
+                case DOUBLE:
+                    result.doubles = new double[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        if (present[row]) {
+                            result.doubles[row] = in.getDouble();
+                        }
+                    }
+                    break;
+                case STRING:
+                    result.strings = new String[rowCount];
+                    for (int row = 0; row < rowCount; row++) {
+                        if (present[row]) {
+                            result.strings[row] = ColumnEncoding.readUTF(in);
+                        }
+                    }
+                    break;
+            }
+            return result;
+        }
+    }
+}
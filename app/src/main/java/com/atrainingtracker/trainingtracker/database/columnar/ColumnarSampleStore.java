@@ -0,0 +1,158 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database.columnar;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
+import com.atrainingtracker.trainingtracker.exporter.writer.SampleTimeFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * Append-only columnar storage of the samples: one file per workout instead of one wide table within WorkoutSamples.db.
+ * <p>
+ * See {@link ColumnarSampleWriter} for the file format and {@link ColumnarSampleCursor} for reading.
+ */
+public class ColumnarSampleStore {
+    private static final String TAG = ColumnarSampleStore.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    private static final String DIRECTORY = "samples";
+    private static final String EXTENSION = ".ttcs";
+    private static final String TMP_EXTENSION = ".tmp";
+    protected static final int ROWS_PER_BLOCK = 1024;
+
+    @NonNull
+    public static File getFile(@NonNull Context context, @NonNull String baseFileName) {
+        File directory = new File(context.getFilesDir(), DIRECTORY);
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "could not create " + directory);
+        }
+        return new File(directory, baseFileName + EXTENSION);
+    }
+
+    public static boolean exists(@NonNull Context context, @NonNull String baseFileName) {
+        return getFile(context, baseFileName).exists();
+    }
+
+    public static void delete(@NonNull Context context, @NonNull String baseFileName) {
+        File file = getFile(context, baseFileName);
+        if (file.exists() && !file.delete()) {
+            Log.e(TAG, "could not delete " + file);
+        }
+    }
+
+    /**
+     * @param columns the columns to read or null for all columns
+     * @return a cursor over the samples or null when there is no (readable) columnar file for this workout.
+     */
+    @Nullable
+    public static Cursor query(@NonNull Context context, @NonNull String baseFileName, @Nullable String[] columns) {
+        File file = getFile(context, baseFileName);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new ColumnarSampleCursor(file, columns);
+        } catch (IOException e) {
+            Log.e(TAG, "could not open " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Converts the sqlite table of a workout into a columnar file.
+     * The file is first written to a temporary file, so an existing columnar file is always complete.
+     *
+     * @return the number of converted rows
+     */
+    public static int convertFromSQLite(@NonNull Context context, @NonNull SQLiteDatabase samplesDb, @NonNull String baseFileName) throws IOException {
+        if (DEBUG) Log.i(TAG, "convertFromSQLite: " + baseFileName);
+
+        File file = getFile(context, baseFileName);
+        File tmpFile = new File(file.getPath() + TMP_EXTENSION);
+        if (tmpFile.exists() && !tmpFile.delete()) {
+            throw new IOException("could not delete " + tmpFile);
+        }
+
+        int rows = 0;
+        ColumnarSampleWriter writer = new ColumnarSampleWriter(tmpFile);
+        try (Cursor cursor = samplesDb.query(WorkoutSamplesDatabaseManager.getTableName(baseFileName),
+                null, null, null, null, null, WorkoutSamplesDbHelper.C_ID)) {
+            String[] columnNames = cursor.getColumnNames();
+
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < columnNames.length; i++) {
+                    String column = columnNames[i];
+                    if (WorkoutSamplesDbHelper.C_ID.equals(column)) {
+                        continue;
+                    }
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            writer.putLong(column, cursor.getLong(i));
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            writer.putDouble(column, cursor.getDouble(i));
+                            break;
+                        case Cursor.FIELD_TYPE_STRING:
+                            if (ColumnEncoding.isTimeColumn(column)) {
+                                try {
+                                    writer.putLong(column, SampleTimeFormat.dbTime2EpochMillis(cursor.getString(i)));
+                                } catch (ParseException e) {
+                                    Log.i(TAG, "could not parse the time " + cursor.getString(i));
+                                }
+                            } else {
+                                writer.putString(column, cursor.getString(i));
+                            }
+                            break;
+                        default:  // NULL and BLOB
+                            break;
+                    }
+                }
+                writer.endRow();
+                rows++;
+
+                if (writer.getPendingRowCount() >= ROWS_PER_BLOCK) {
+                    writer.writeBlock();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("could not rename " + tmpFile + " to " + file);
+        }
+
+        if (DEBUG)
+            Log.i(TAG, "converted " + rows + " rows of " + baseFileName + ": " + file.length() + " bytes");
+        return rows;
+    }
+}
@@ -67,12 +67,14 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.zip.GZIPOutputStream;
 
 public abstract class BaseExporter {
     protected static final String PREFIX_NOT_FIRST = ",\n    ";
     protected static final String PREFIX_FIRST = "\n    ";
     private static final String TAG = "BaseExporter";
     private static final boolean DEBUG = TrainingApplication.getDebug(false);
+    private static final int GZIP_BUFFER_SIZE = 8192;
     @NonNull
     protected final Context mContext;
 
@@ -130,6 +132,18 @@ public abstract class BaseExporter {
      */
     @NonNull
     protected BufferedWriter getBufferedWriter(@NonNull String shortPath) throws IOException {
+        OutputStreamWriter outputStreamWriter = new OutputStreamWriter(getOutputStream(shortPath), StandardCharsets.UTF_8);
+        return new BufferedWriter(outputStreamWriter);
+    }
+
+    /**
+     * Gets a BufferedOutputStream for a binary file in the app's internal storage.
+     * @param shortPath The relative path of the file (e.g., "FIT/workout.fit").
+     * @return A BufferedOutputStream for the specified file.
+     * @throws IOException If the file cannot be created or opened.
+     */
+    @NonNull
+    protected BufferedOutputStream getOutputStream(@NonNull String shortPath) throws IOException {
         File file = new File(getBaseDirFile(mContext), shortPath);
 
         File parentDir = file.getParentFile();
@@ -140,8 +154,11 @@ public abstract class BaseExporter {
         }
 
         OutputStream outputStream = new FileOutputStream(file);
-        OutputStreamWriter outputStreamWriter = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
-        return new BufferedWriter(outputStreamWriter);
+        if (shortPath.endsWith(FileFormat.GZIP_FILE_ENDING)) {
+            // compressed while streaming, the whole file is never kept in memory
+            outputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+        }
+        return new BufferedOutputStream(outputStream);
     }
 
     @RequiresApi(api = Build.VERSION_CODES.Q)
@@ -158,7 +175,7 @@ public abstract class BaseExporter {
 
         ContentValues contentValues = new ContentValues();
         contentValues.put(MediaStore.MediaColumns.DISPLAY_NAME, fileToCopy.getName());
-        contentValues.put(MediaStore.MediaColumns.MIME_TYPE, "application/gpx+xml");
+        contentValues.put(MediaStore.MediaColumns.MIME_TYPE, exportInfo.getMimeType());
         contentValues.put(MediaStore.MediaColumns.RELATIVE_PATH, Environment.DIRECTORY_DOWNLOADS);
 
         Uri targetUri = resolver.insert(MediaStore.Downloads.EXTERNAL_CONTENT_URI, contentValues);
@@ -299,7 +316,7 @@ public abstract class BaseExporter {
 
 
 
-    protected static class ExportResult {
+    public static class ExportResult {
         private final boolean mSuccess;
         private final boolean mPleaseRetryWhenFailed;
         private final String mAnswer;
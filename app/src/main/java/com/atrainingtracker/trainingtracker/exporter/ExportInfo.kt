@@ -28,18 +28,31 @@ import java.io.File
 /**
  * A data class holding all necessary information for an export operation.
  * Can be serialized to and from JSON to be easily passed to background workers.
+ *
+ * The file ending is taken from the settings when the export is created and then kept,
+ * so that changing the settings does not change the file of a queued export.
  */
-data class ExportInfo(
+data class ExportInfo @JvmOverloads constructor(
     val fileBaseName: String,
     val fileFormat: FileFormat,
-    val exportType: ExportType
+    val exportType: ExportType,
+    val fileEnding: String = fileFormat.fileEnding
 ) {
 
     val shortPath: String
         get() = fileFormat.dirName + File.separator + fileName
 
     val fileName: String
-        get() = fileBaseName + fileFormat.fileEnding
+        get() = fileBaseName + fileEnding
+
+    /**
+     * The format of the content, e.g., TCX or FIT for a Strava upload.
+     */
+    val contentFileFormat: FileFormat
+        get() = FileFormat.getStandardFileFormat(fileEnding) ?: fileFormat
+
+    val mimeType: String
+        get() = if (fileEnding.endsWith(FileFormat.GZIP_FILE_ENDING)) GZIP_MIME_TYPE else contentFileFormat.mimeType
 
     override fun toString(): String {
         return "$exportType: $fileFormat: $fileBaseName"
@@ -56,6 +69,7 @@ data class ExportInfo(
             put(KEY_FILE_BASE_NAME, fileBaseName)
             put(KEY_FILE_FORMAT, fileFormat.name)
             put(KEY_EXPORT_TYPE, exportType.name)
+            put(KEY_FILE_ENDING, fileEnding)
         }.toString()
     }
 
@@ -64,6 +78,9 @@ data class ExportInfo(
         private const val KEY_FILE_BASE_NAME = "fileBaseName"
         private const val KEY_FILE_FORMAT = "fileFormat"
         private const val KEY_EXPORT_TYPE = "exportType"
+        private const val KEY_FILE_ENDING = "fileEnding"
+
+        private const val GZIP_MIME_TYPE = "application/gzip"
 
         /**
          * Deserializes a JSON string into an ExportInfo object.
@@ -79,8 +96,10 @@ data class ExportInfo(
             // Use valueOf() to safely convert string back to enum
             val fileFormat = FileFormat.valueOf(jsonObject.getString(KEY_FILE_FORMAT))
             val exportType = ExportType.valueOf(jsonObject.getString(KEY_EXPORT_TYPE))
+            // work requests that were queued by older versions do not contain the file ending
+            val fileEnding = if (jsonObject.has(KEY_FILE_ENDING)) jsonObject.getString(KEY_FILE_ENDING) else fileFormat.fileEnding
 
-            return ExportInfo(fileBaseName, fileFormat, exportType)
+            return ExportInfo(fileBaseName, fileFormat, exportType, fileEnding)
         }
     }
 }
\ No newline at end of file
@@ -35,6 +35,7 @@ import androidx.work.WorkManager;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.atrainingtracker.R;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
@@ -43,6 +44,7 @@ import com.atrainingtracker.trainingtracker.exporter.uploader.DropboxUploader;
 import com.atrainingtracker.trainingtracker.exporter.uploader.StravaUploader;
 import com.atrainingtracker.trainingtracker.exporter.writer.CSVFileWriter;
 import com.atrainingtracker.trainingtracker.exporter.writer.GCFileWriter;
+import com.atrainingtracker.trainingtracker.exporter.writer.FITFileWriter;
 import com.atrainingtracker.trainingtracker.exporter.writer.GPXFileWriter;
 import com.atrainingtracker.trainingtracker.exporter.writer.TCXFileWriter;
 
@@ -74,7 +76,8 @@ public class ExportManager {
                     case GC -> new GCFileWriter(context);
                     case TCX -> new TCXFileWriter(context);
                     case GPX -> new GPXFileWriter(context);
-                    case STRAVA -> new TCXFileWriter(context);
+                    case FIT -> new FITFileWriter(context);
+                    case STRAVA -> exportInfo.getContentFileFormat() == FileFormat.FIT ? new FITFileWriter(context) : new TCXFileWriter(context);
                     /* case RUNKEEPER:
                         return  new RunkeeperFileExporter(mContext);
                     /* case TRAINING_PEAKS:
@@ -183,11 +186,19 @@ public class ExportManager {
     public synchronized void exportWorkout(String fileBaseName) {
         if (DEBUG) Log.d(TAG, "exportWorkout: " + fileBaseName);
 
+        List<FileFormat> fileFormats = new ArrayList<>();
         for (FileFormat fileFormat : FileFormat.values()) {
             if (TrainingApplication.exportToFile(fileFormat) || TrainingApplication.exportViaEmail(fileFormat)) {
-                startFullExportProcess(fileBaseName, fileFormat);
+                fileFormats.add(fileFormat);
             }
         }
+
+        if (fileFormats.size() == 1) {
+            startFullExportProcess(fileBaseName, fileFormats.get(0));
+        } else if (fileFormats.size() > 1) {
+            // all files are written with a single scan over the samples
+            startMultiFormatExportProcess(fileBaseName, fileFormats);
+        }
     }
 
     /** method to trigger the ExportManager to export a specific workout and FileFormat
@@ -236,22 +247,9 @@ public class ExportManager {
             // update the export status
             updateStatus(fileExportInfo, ExportStatus.WAITING, null);
 
-            // create a empty list for the upload requests
+            // create a list for the upload requests
             List<OneTimeWorkRequest> uploadWorks = new ArrayList<>();
-
-            // Dropbox-Upload (when requested)
-            if (TrainingApplication.uploadToDropbox() && Arrays.asList(ExportType.DROPBOX.getExportToFileFormats()).contains(fileFormat)) {
-                ExportInfo dropboxExportInfo = new ExportInfo(fileBaseName, fileFormat, ExportType.DROPBOX);
-                uploadWorks.add(createWorkRequest(dropboxExportInfo));
-                updateStatus(dropboxExportInfo, ExportStatus.WAITING, null); // set state ot WAITING
-            }
-
-            // Community-Upload, (when requested)
-            if (TrainingApplication.uploadToCommunity(fileFormat)) {
-                ExportInfo communityExportInfo = new ExportInfo(fileBaseName, fileFormat, ExportType.COMMUNITY);
-                uploadWorks.add(createWorkRequest(communityExportInfo));
-                updateStatus(communityExportInfo, ExportStatus.WAITING, null); // set state ot WAITING
-            }
+            addUploadWorkRequests(uploadWorks, fileExportInfo);
 
             // create the queue and start.
             if (uploadWorks.isEmpty()) {
@@ -275,12 +273,88 @@ public class ExportManager {
 
             ContentValues values = new ContentValues();
             values.put(ExportStatusRepository.EXPORT_STATUS, ExportStatus.FINISHED_FAILED.name());
-            values.put(ExportStatusRepository.ANSWER, "Interner Fehler bei Job-Erstellung");  // TODO: Text
+            values.put(ExportStatusRepository.ANSWER, mContext.getString(R.string.export_job_creation_failed));
             mRepository.updateExportStatus(values, fileBaseName, null, fileFormat);   // note that exportType is set to null to update all.
             broadcastExportStatusChanged(mContext);
         }
     }
 
+    /**
+     * Exports to several file formats with one work request that scans the samples only once.
+     * The uploads are chained behind this request, each upload checks on its own whether its file was created.
+     */
+    private synchronized void startMultiFormatExportProcess(String fileBaseName, List<FileFormat> fileFormats) {
+        if (DEBUG) Log.d(TAG, "startMultiFormatExportProcess for " + fileBaseName + ", formats: " + fileFormats);
+
+        try {
+            OneTimeWorkRequest.Builder fileCreationWorkBuilder = new OneTimeWorkRequest.Builder(ExportWorker.class);
+            String[] exportInfosJson = new String[fileFormats.size()];
+            List<OneTimeWorkRequest> uploadWorks = new ArrayList<>();
+            for (int i = 0; i < fileFormats.size(); i++) {
+                ExportInfo fileExportInfo = new ExportInfo(fileBaseName, fileFormats.get(i), ExportType.FILE);
+                exportInfosJson[i] = fileExportInfo.toJson();
+                fileCreationWorkBuilder.addTag(fileExportInfo.toString());
+                updateStatus(fileExportInfo, ExportStatus.WAITING, null);
+
+                addUploadWorkRequests(uploadWorks, fileExportInfo);
+            }
+
+            OneTimeWorkRequest fileCreationWork = fileCreationWorkBuilder
+                    .setInputData(new Data.Builder()
+                            .putStringArray(ExportWorker.KEY_EXPORT_INFOS, exportInfosJson)
+                            .build())
+                    .build();
+
+            if (uploadWorks.isEmpty()) {
+                WorkManager.getInstance(mContext)
+                        .beginWith(fileCreationWork)
+                        .enqueue();
+            } else {
+                WorkManager.getInstance(mContext)
+                        .beginWith(fileCreationWork)
+                        .then(uploadWorks)
+                        .enqueue();
+            }
+
+            broadcastExportStatusChanged(mContext);
+
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not create WorkRequest due to JSONException", e);
+
+            ContentValues values = new ContentValues();
+            values.put(ExportStatusRepository.EXPORT_STATUS, ExportStatus.FINISHED_FAILED.name());
+            values.put(ExportStatusRepository.ANSWER, mContext.getString(R.string.export_job_creation_failed));
+            for (FileFormat fileFormat : fileFormats) {
+                mRepository.updateExportStatus(values, fileBaseName, null, fileFormat);   // note that exportType is set to null to update all.
+            }
+            broadcastExportStatusChanged(mContext);
+        }
+    }
+
+    /**
+     * adds the requested uploads of the exported file and sets their state to WAITING
+     */
+    private void addUploadWorkRequests(@NonNull List<OneTimeWorkRequest> uploadWorks, @NonNull ExportInfo fileExportInfo) throws JSONException {
+        String fileBaseName = fileExportInfo.getFileBaseName();
+        FileFormat fileFormat = fileExportInfo.getFileFormat();
+        // the uploads use the file ending of the export, even when the settings are changed in between
+        String fileEnding = fileExportInfo.getFileEnding();
+
+        // Dropbox-Upload (when requested)
+        if (TrainingApplication.uploadToDropbox() && Arrays.asList(ExportType.DROPBOX.getExportToFileFormats()).contains(fileFormat)) {
+            ExportInfo dropboxExportInfo = new ExportInfo(fileBaseName, fileFormat, ExportType.DROPBOX, fileEnding);
+            uploadWorks.add(createWorkRequest(dropboxExportInfo));
+            updateStatus(dropboxExportInfo, ExportStatus.WAITING, null); // set state ot WAITING
+        }
+
+        // Community-Upload, (when requested)
+        if (TrainingApplication.uploadToCommunity(fileFormat)) {
+            ExportInfo communityExportInfo = new ExportInfo(fileBaseName, fileFormat, ExportType.COMMUNITY, fileEnding);
+            uploadWorks.add(createWorkRequest(communityExportInfo));
+            updateStatus(communityExportInfo, ExportStatus.WAITING, null); // set state ot WAITING
+        }
+    }
+
     private void updateStatus(ExportInfo info, ExportStatus status, String answer) {
         ContentValues values = new ContentValues();
         values.put(ExportStatusRepository.EXPORT_STATUS, status.name());
@@ -13,16 +13,31 @@ import androidx.work.Data;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import com.atrainingtracker.R;
 import com.atrainingtracker.trainingtracker.exporter.db.ExportStatusRepository;
+import com.atrainingtracker.trainingtracker.exporter.writer.MultiFormatFileWriter;
 import com.atrainingtracker.trainingtracker.ui.components.export.ExportNotificationManager;
 
 import org.json.JSONException;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class ExportWorker extends Worker  {
     private static final String TAG = "ExportAndUploadWorker";
     private static final boolean DEBUG = com.atrainingtracker.trainingtracker.TrainingApplication.getDebug(true);
 
     public static final String KEY_EXPORT_INFO = "export-info";
+    // several FILE exports of the same workout that are written with a single scan over the samples
+    public static final String KEY_EXPORT_INFOS = "export-infos";
+    // output: statistics per format, the key is followed by the name of the FileFormat
+    public static final String KEY_BYTES_WRITTEN_PREFIX = "bytes-written-";
+    public static final String KEY_DURATION_MS_PREFIX = "duration-ms-";
+    // when retrying, the uploads have to wait, so we do not retry forever
+    private static final int MAX_RETRIES_OF_MULTI_FORMAT_EXPORT = 3;
+
     private ExportInfo mExportInfo;
     private BaseExporter mExporter;
 
@@ -42,6 +57,11 @@ public class ExportWorker extends Worker  {
     public Result doWork() {
         // Retrieve the parameters passed to the worker
         Data inputData = getInputData();
+        String[] exportInfosJson = inputData.getStringArray(KEY_EXPORT_INFOS);
+        if (exportInfosJson != null) {
+            return doMultiFormatExport(exportInfosJson);
+        }
+
         String exportInfoJson = inputData.getString(KEY_EXPORT_INFO);
 
         if (exportInfoJson == null) {
@@ -56,6 +76,17 @@ public class ExportWorker extends Worker  {
             return Result.failure();
         }
 
+        // an upload requires its file.  When the file could not be created, there is nothing to upload
+        if (mExportInfo.getExportType() != ExportType.FILE) {
+            ExportInfo fileExportInfo = new ExportInfo(mExportInfo.getFileBaseName(), mExportInfo.getFileFormat(), ExportType.FILE);
+            if (repository.getExportStatus(fileExportInfo) == ExportStatus.FINISHED_FAILED) {
+                informOthersFailed(getApplicationContext().getString(R.string.export_file_not_created));
+                return Result.failure();
+            }
+
+            mExportInfo = getExportInfoOfWrittenFile(mExportInfo, fileExportInfo);
+        }
+
         // now we can get the Exporter
         mExporter = ExportManager.getExporter(getApplicationContext(), mExportInfo);
 
@@ -76,11 +107,91 @@ public class ExportWorker extends Worker  {
     }
 
 
+    /**
+     * exports to all the given formats with a single scan over the samples
+     */
+    @SuppressLint("MissingPermission")
+    @NonNull
+    private Result doMultiFormatExport(@NonNull String[] exportInfosJson) {
+        List<ExportInfo> exportInfos = new ArrayList<>();
+        try {
+            for (String exportInfoJson : exportInfosJson) {
+                ExportInfo exportInfo = ExportInfo.fromJson(exportInfoJson);
+                // when retrying, the formats that were already successful are not exported again
+                if (repository.getExportStatus(exportInfo) != ExportStatus.FINISHED_SUCCESS) {
+                    exportInfos.add(exportInfo);
+                }
+            }
+        } catch (JSONException e) {
+            return Result.failure();
+        }
+        if (exportInfos.isEmpty()) {
+            return Result.success();
+        }
+
+        for (ExportInfo exportInfo : exportInfos) {
+            mExportInfo = exportInfo;
+            informOthersStarted();
+        }
+
+        Map<ExportInfo, MultiFormatFileWriter.FormatResult> results = new MultiFormatFileWriter(mContext)
+                .export(exportInfos.get(0).getFileBaseName(), exportInfos);
+
+        boolean shallRetry = false;
+        Data.Builder outputData = new Data.Builder();
+        for (Map.Entry<ExportInfo, MultiFormatFileWriter.FormatResult> entry : results.entrySet()) {
+            mExportInfo = entry.getKey();
+            BaseExporter.ExportResult result = entry.getValue().exportResult();
+            if (result.success()) {
+                informOthersSuccess(result.answer());
+            } else {
+                informOthersFailed(result.answer());
+                shallRetry |= result.shallRetry();
+            }
+
+            String fileFormat = mExportInfo.getFileFormat().name();
+            outputData.putLong(KEY_BYTES_WRITTEN_PREFIX + fileFormat, entry.getValue().bytesWritten());
+            outputData.putLong(KEY_DURATION_MS_PREFIX + fileFormat, entry.getValue().duration_ms());
+        }
+
+        // the uploads that depend on a failed format notice this on their own, so the others can continue
+        if (shallRetry && getRunAttemptCount() < MAX_RETRIES_OF_MULTI_FORMAT_EXPORT) {
+            return Result.retry();
+        }
+        return Result.success(outputData.build());
+    }
+
+    /**
+     * The upload uses the file ending that was stored when the file was written.  When this file does not exist
+     * (e.g., it was written by an older version or compressed afterwards), the file with the other ending is used.
+     */
+    @NonNull
+    private ExportInfo getExportInfoOfWrittenFile(@NonNull ExportInfo exportInfo, @NonNull ExportInfo fileExportInfo) {
+        String fileEnding = repository.getFileEnding(fileExportInfo);
+        if (fileEnding != null) {
+            exportInfo = new ExportInfo(exportInfo.getFileBaseName(), exportInfo.getFileFormat(), exportInfo.getExportType(), fileEnding);
+        }
+
+        if (!new File(BaseExporter.getBaseDirFile(mContext), exportInfo.getShortPath()).exists()) {
+            fileEnding = exportInfo.getFileEnding();
+            String otherFileEnding = fileEnding.endsWith(FileFormat.GZIP_FILE_ENDING)
+                    ? fileEnding.substring(0, fileEnding.length() - FileFormat.GZIP_FILE_ENDING.length())
+                    : fileEnding + FileFormat.GZIP_FILE_ENDING;
+            ExportInfo otherExportInfo = new ExportInfo(exportInfo.getFileBaseName(), exportInfo.getFileFormat(), exportInfo.getExportType(), otherFileEnding);
+            if (new File(BaseExporter.getBaseDirFile(mContext), otherExportInfo.getShortPath()).exists()) {
+                if (DEBUG) Log.i(TAG, "using " + otherExportInfo.getShortPath() + " instead of " + exportInfo.getShortPath());
+                return otherExportInfo;
+            }
+        }
+
+        return exportInfo;
+    }
+
     // some helpers to inform the ExportNotificationManager and the ExportStatusRepository
     private void informOthersStarted() {
         if (DEBUG) Log.i(TAG, "Export started: " + mExportInfo.toString());
 
-        updateStatus(ExportStatus.PROCESSING, "Export is being prepared...");  // TODO: Text?
+        updateStatus(ExportStatus.PROCESSING, getApplicationContext().getString(R.string.export_being_prepared));
         mExportNotificationManager.updateNotification(mExportInfo, false);
     }
 
@@ -112,6 +223,10 @@ public class ExportWorker extends Worker  {
         // create a ContentValues object to hold the new data.
         ContentValues values = new ContentValues();
         values.put(ExportStatusRepository.EXPORT_STATUS, status.name());
+        if (status == ExportStatus.FINISHED_SUCCESS && mExportInfo.getExportType() == ExportType.FILE) {
+            // the uploads and later accesses use the file as it was written, independent of the settings
+            values.put(ExportStatusRepository.FILE_ENDING, mExportInfo.getFileEnding());
+        }
 
         if (answer != null) {
             values.put(ExportStatusRepository.ANSWER, answer);
@@ -18,34 +18,49 @@
 
 package com.atrainingtracker.trainingtracker.exporter;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.atrainingtracker.R;
+import com.atrainingtracker.trainingtracker.TrainingApplication;
 
 public enum FileFormat {
-    //             Dir              ending   UI name                FileExporter                     Uploader
-    CSV("CSV", ".csv", R.string.CSV),//                 new CSVFileExporter(),           null),
-    GC("GC", ".json", R.string.GC),// new GCFileExporter(),            null),
-    TCX("TCX", ".tcx", R.string.TCX),//                 new TCXFileExporter(),           null),
-    GPX("GPX", ".gpx", R.string.GPX),//                 new GPXFileExporter(),           null),
+    //             Dir              ending   MIME type                          UI name                FileExporter                     Uploader
+    CSV("CSV", ".csv", "text/csv", R.string.CSV),//                 new CSVFileExporter(),           null),
+    GC("GC", ".json", "application/json", R.string.GC),// new GCFileExporter(),            null),
+    TCX("TCX", ".tcx", "application/vnd.garmin.tcx+xml", R.string.TCX),//                 new TCXFileExporter(),           null),
+    GPX("GPX", ".gpx", "application/gpx+xml", R.string.GPX),//                 new GPXFileExporter(),           null),
+    FIT("FIT", ".fit", "application/vnd.ant.fit", R.string.FIT),
 
     // not the best solution but should work.
-    STRAVA("Strava", ".tcx", R.string.Strava); //              new TCXFileExporter(),           new StravaUploader()),
+    STRAVA("Strava", ".tcx", "application/vnd.garmin.tcx+xml", R.string.Strava) { //              new TCXFileExporter(),           new StravaUploader()),
+        // depending on the settings, the upload to Strava is a TCX or a FIT file
+        @Override
+        public String getFileEnding() {
+            return TrainingApplication.uploadStravaFIT() ? FIT.getFileEnding() : super.getFileEnding();
+        }
+    };
     // RUNKEEPER("RunKeeper", ".json", R.string.Runkeeper),//           new RunkeeperFileExporter(),     new RunkeeperUploader()),
     // TRAINING_PEAKS("TrainingPeaks", ".tcx", R.string.TrainingPeaks);//       new TrainingPeaksFileExporter(), new TrainingPeaksUploader());
     // TRAINING_PEAKS("TrainingPeaks", ".pwx",  "TrainingPeaks");//       new TrainingPeaksFileExporter(), new TrainingPeaksUploader());
 
-    public static final FileFormat[] STANDARD_FILE_FORMATS = new FileFormat[]{CSV, GC, TCX, GPX};
+    public static final FileFormat[] STANDARD_FILE_FORMATS = new FileFormat[]{CSV, GC, TCX, GPX, FIT};
     public static final FileFormat[] ONLINE_COMMUNITIES = new FileFormat[]{STRAVA /*, RUNKEEPER, TRAINING_PEAKS*/};
 
+    public static final String GZIP_FILE_ENDING = ".gz";
+
     private final String mDirName;
     private final String mFileEnding;
+    private final String mMimeType;
     private final int mUiNameId;
     // private final BaseExporter mFileExporter;
     // private final BaseExporter mUploader;
 
-    FileFormat(String dirName, String fileEnding, int uiNameId)//, BaseExporter fileExporter, BaseExporter uploader)
+    FileFormat(String dirName, String fileEnding, String mimeType, int uiNameId)//, BaseExporter fileExporter, BaseExporter uploader)
     {
         mDirName = dirName;
         mFileEnding = fileEnding;
+        mMimeType = mimeType;
         mUiNameId = uiNameId;
         // mFileExporter = fileExporter;
         // mUploader     = uploader;
@@ -55,10 +70,46 @@ public enum FileFormat {
         return mDirName;
     }
 
+    /**
+     * @return the file ending of a new export including ".gz" when the exports are compressed.
+     * As this depends on the current settings, each export keeps its ending in the {@link ExportInfo}.
+     */
     public String getFileEnding() {
+        return isCompressed(mFileEnding) ? mFileEnding + GZIP_FILE_ENDING : mFileEnding;
+    }
+
+    /**
+     * @return the default file ending without the compression
+     */
+    public String getPlainFileEnding() {
         return mFileEnding;
     }
 
+    public String getMimeType() {
+        return mMimeType;
+    }
+
+    /**
+     * @return the standard file format of a file with the given ending (with or without ".gz") or null when there is none
+     */
+    @Nullable
+    public static FileFormat getStandardFileFormat(@NonNull String fileEnding) {
+        if (fileEnding.endsWith(GZIP_FILE_ENDING)) {
+            fileEnding = fileEnding.substring(0, fileEnding.length() - GZIP_FILE_ENDING.length());
+        }
+        for (FileFormat fileFormat : STANDARD_FILE_FORMATS) {
+            if (fileFormat.mFileEnding.equals(fileEnding)) {
+                return fileFormat;
+            }
+        }
+        return null;
+    }
+
+    // FIT files are patched after writing them, so they can not be compressed while streaming.  And they are small anyway.
+    private static boolean isCompressed(String plainFileEnding) {
+        return TrainingApplication.compressExports() && !FIT.mFileEnding.equals(plainFileEnding);
+    }
+
     public int getUiNameId() {
         return mUiNameId;
     }
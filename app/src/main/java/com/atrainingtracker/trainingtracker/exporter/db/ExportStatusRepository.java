@@ -36,6 +36,7 @@ public class ExportStatusRepository {
     public static final String TYPE = "Type";
     public static final String EXPORT_STATUS = "Progress"; // TODO: rename to ExportStatus???
     public static final String ANSWER = "Answer";
+    public static final String FILE_ENDING = "FileEnding";  // the ending of the written file, only for the FILE exports
 
     private ExportStatusRepository(Context context) {
         mDbHelper = ExportStatusDbHelper.getInstance(context);
@@ -226,6 +227,50 @@ public class ExportStatusRepository {
         return exportAnswer;
     }
 
+    /**
+     * @return the ending of the file that was written for the export or null when it is not known (e.g., exported by an older version)
+     */
+    public synchronized String getFileEnding(@NonNull ExportInfo exportInfo) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        if (db == null) {
+            Log.e(TAG, "Database is null, cannot get the file ending for " + exportInfo + " will return null");
+            return null;
+        }
+
+        String fileEnding = null;
+
+        Cursor cursor = db.query(ExportStatusDbHelper.TABLE,
+                new String[]{FILE_ENDING},
+                WorkoutSummaries.FILE_BASE_NAME + "=? AND " + TYPE + "=? AND " + FORMAT + "=?",
+                new String[]{exportInfo.getFileBaseName(), exportInfo.getExportType().name(), exportInfo.getFileFormat().name()},
+                null,
+                null,
+                null);
+        if (cursor.getCount() > 0) {
+            cursor.moveToFirst();
+            fileEnding = cursor.getString(cursor.getColumnIndex(FILE_ENDING));
+        }
+        cursor.close();
+
+        return fileEnding;
+    }
+
+    /**
+     * appends the compression to the stored file ending of the exported file with the given name.
+     */
+    public synchronized void fileCompressed(@NonNull FileFormat fileFormat, @NonNull String fileName, @NonNull String compressionEnding) {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        if (db == null) {
+            Log.e(TAG, "Database is null, cannot update the file ending of " + fileName);
+            return;
+        }
+
+        db.execSQL("UPDATE " + ExportStatusDbHelper.TABLE
+                        + " SET " + FILE_ENDING + " = " + FILE_ENDING + " || ?"
+                        + " WHERE " + TYPE + " = ? AND " + FORMAT + " = ? AND " + WorkoutSummaries.FILE_BASE_NAME + " || " + FILE_ENDING + " = ?",
+                new Object[]{compressionEnding, ExportType.FILE.name(), fileFormat.name(), fileName});
+    }
+
     public synchronized void deleteWorkout(String baseFileName) {
         SQLiteDatabase db = mDbHelper.getWritableDatabase();
         if (db == null) {
@@ -238,7 +283,7 @@ public class ExportStatusRepository {
 
     protected static class ExportStatusDbHelper extends SQLiteOpenHelper {
         public static final String DB_NAME = "ExportStatus.db";
-        public static final int DB_VERSION = 1;
+        public static final int DB_VERSION = 2;
         static final String TAG = "ExportStatusDbHelper";
         static final String TABLE = "ExportManager";
         static final String C_ID = BaseColumns._ID;
@@ -252,7 +297,8 @@ public class ExportStatusRepository {
 
                 + EXPORT_STATUS + " text, "
                 // + RETRIES + " int, "  // no longer necessary
-                + ANSWER + " text)";
+                + ANSWER + " text, "
+                + FILE_ENDING + " text)";
 
         private static ExportStatusDbHelper sInstance;
 
@@ -283,6 +329,13 @@ public class ExportStatusRepository {
         //Called whenever newVersion != oldVersion
         @Override
         public void onUpgrade(@NonNull SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion == 1 && newVersion == 2) {
+                // the file ending of the older exports stays unknown
+                db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + FILE_ENDING + " text");
+                if (DEBUG) Log.d(TAG, "onUpgraded: added " + FILE_ENDING);
+                return;
+            }
+
             // TODO: alter table instead of deleting!
 
             db.execSQL("drop table if exists " + TABLE);
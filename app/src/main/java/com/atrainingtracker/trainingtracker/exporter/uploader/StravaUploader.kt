@@ -41,7 +41,6 @@ class StravaUploader(context: Context) : BaseExporter(context) {
         private const val ERROR = "error"
         private const val STATUS = "status"
         private const val DATA_TYPE = "data_type"
-        private const val TCX = "tcx"
         private const val FILE = "file"
 
         // Update fields
@@ -62,6 +61,13 @@ class StravaUploader(context: Context) : BaseExporter(context) {
     private val client = OkHttpClient()
 
 
+    /**
+     * Strava accepts tcx, gpx, and fit files as well as their gzipped versions.  So, the data type is simply the file ending, e.g., "tcx.gz".
+     */
+    private fun getDataType(exportInfo: ExportInfo, file: File): String {
+        return file.name.removePrefix(exportInfo.fileBaseName).removePrefix(".")
+    }
+
     override fun doExport(exportInfo: ExportInfo): ExportResult {
         if (DEBUG) Log.d(TAG, "doExport: ${exportInfo.fileBaseName}")
 
@@ -73,7 +79,7 @@ class StravaUploader(context: Context) : BaseExporter(context) {
         // 1. Build Multipart Request
         val requestBody = MultipartBody.Builder()
             .setType(MultipartBody.Companion.FORM)
-            .addFormDataPart(DATA_TYPE, TCX)
+            .addFormDataPart(DATA_TYPE, getDataType(exportInfo, file))
             .addFormDataPart(
                 FILE,
                 file.name,
@@ -21,7 +21,6 @@ package com.atrainingtracker.trainingtracker.exporter.writer;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.CursorIndexOutOfBoundsException;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Build;
 import android.util.Log;
 
@@ -30,8 +29,6 @@ import androidx.annotation.NonNull;
 import com.atrainingtracker.banalservice.BSportType;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
-import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
-import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
 import com.atrainingtracker.trainingtracker.exporter.BaseExporter;
 import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
 import com.atrainingtracker.trainingtracker.exporter.ExportType;
@@ -58,32 +55,28 @@ public abstract class BaseFileWriter extends BaseExporter {
 
 
     protected void getHeaderData(@NonNull ExportInfo exportInfo) {
-        WorkoutSummariesDatabaseManager databaseManager = WorkoutSummariesDatabaseManager.getInstance(mContext);
-        SQLiteDatabase db = databaseManager.getDatabase();
-
-        Cursor cursor = db.query(WorkoutSummaries.TABLE,
-                null,
-                WorkoutSummaries.FILE_BASE_NAME + "=?",
-                new String[]{exportInfo.getFileBaseName()},
-                null,
-                null,
-                null);
-        cursor.moveToFirst();
+        WorkoutExportData workoutExportData = WorkoutExportData.read(mContext, exportInfo.getFileBaseName());
+        if (workoutExportData == null) {
+            throw new CursorIndexOutOfBoundsException("no workout " + exportInfo.getFileBaseName());
+        }
+        getHeaderData(exportInfo, workoutExportData);
+    }
 
+    /**
+     * copies the header data from the (shared) workout data and decides which data is written
+     */
+    protected void getHeaderData(@NonNull ExportInfo exportInfo, @NonNull WorkoutExportData workoutExportData) {
         // get the data for the header
-        startTime = myGet(cursor, WorkoutSummaries.TIME_START, "");
-        totalTime = myGet(cursor, WorkoutSummaries.TIME_TOTAL_s, "0");
-        data = myGet(cursor, WorkoutSummaries.GC_DATA, "--------");
-        goal = myGet(cursor, WorkoutSummaries.GOAL, "");
-        method = myGet(cursor, WorkoutSummaries.METHOD, "");
-        totalDistance = myGet(cursor, WorkoutSummaries.DISTANCE_TOTAL_m, "0");
-        description = myGet(cursor, WorkoutSummaries.DESCRIPTION, "");
-        workoutID = cursor.getLong(cursor.getColumnIndex(WorkoutSummaries.C_ID));
-        sportTypeId = cursor.getLong(cursor.getColumnIndex(WorkoutSummaries.SPORT_ID));
-        indoorTrainerSession = cursor.getInt(cursor.getColumnIndex(WorkoutSummaries.TRAINER)) > 0;
-
-        // now, that we have all the data, we close the mCursor
-        cursor.close();
+        startTime = workoutExportData.startTime;
+        totalTime = workoutExportData.totalTime;
+        data = workoutExportData.data;
+        goal = workoutExportData.goal;
+        method = workoutExportData.method;
+        totalDistance = workoutExportData.totalDistance;
+        description = workoutExportData.description;
+        workoutID = workoutExportData.workoutID;
+        sportTypeId = workoutExportData.sportTypeId;
+        indoorTrainerSession = workoutExportData.indoorTrainerSession;
 
         haveDistance = data.indexOf('D') > 0;
         haveSpeed = data.indexOf('S') > 0;
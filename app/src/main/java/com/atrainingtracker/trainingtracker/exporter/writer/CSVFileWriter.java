@@ -20,8 +20,6 @@ package com.atrainingtracker.trainingtracker.exporter.writer;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
-import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -29,9 +27,6 @@ import androidx.annotation.NonNull;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.sensor.SensorValueType;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
-import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
-import com.atrainingtracker.trainingtracker.exporter.BaseExporter;
-import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -44,7 +39,7 @@ import java.util.regex.Pattern;
 
 import au.com.bytecode.opencsv.CSVWriter;
 
-public class CSVFileWriter extends BaseExporter {
+public class CSVFileWriter extends StreamingFileWriter {
     private static final String TAG = "CSVFileExporter";
     private static final boolean DEBUG = TrainingApplication.getDebug(false);
 
@@ -53,29 +48,18 @@ public class CSVFileWriter extends BaseExporter {
     }
 
 
-    @Override
-    protected void onFinished(@NonNull ExportInfo exportInfo) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            copyFileToDownloads(exportInfo);
-        }
-    }
+    // the state while streaming
+    private CSVWriter mCSVWriter;
+    private int[] mColumnIndices;
+    private SensorValueType[] mColumnTypes;
+    private String[] mColumnStrings;
 
-    @NonNull
     @Override
-    public ExportResult doExport(@NonNull ExportInfo exportInfo)
-            throws IOException {
-        if (DEBUG) Log.d(TAG, "exportToFile: " + exportInfo.getFileBaseName());
-
-        WorkoutSamplesDatabaseManager databaseManager = WorkoutSamplesDatabaseManager.getInstance(mContext);
-        SQLiteDatabase db = databaseManager.getDatabase();
-        Cursor cursor = db.query(WorkoutSamplesDatabaseManager.getTableName(exportInfo.getFileBaseName()),
-                null,
-                null,
-                null,
-                null,
-                null,
-                null);  // sorting
+    protected void writeHeader(@NonNull SampleRowReader sampleRowReader) {
+        if (DEBUG) Log.d(TAG, "exportToFile: " + mExportInfo.getFileBaseName());
 
+        // we export all columns, so we directly use the cursor
+        Cursor cursor = sampleRowReader.getCursor();
 
         // get column names, and sort them.  But only the ones with the source
         String[] columnNames = cursor.getColumnNames();
@@ -114,54 +98,63 @@ public class CSVFileWriter extends BaseExporter {
         // and finally, append them to the sorted list
         sortedNames.addAll(unsortedNames);
 
+        // the column indices and types in the order of the csv file, so we do not have to look them up for every row
+        mColumnIndices = new int[sortedNames.size()];
+        mColumnTypes = new SensorValueType[sortedNames.size()];
+        int csvIndex = 0;
+        for (String columnName : sortedNames) {
+            mColumnIndices[csvIndex] = cursor.getColumnIndex(columnName);
+            mColumnTypes[csvIndex] = columnName2Type.get(columnName);
+            csvIndex++;
+        }
+        mColumnStrings = new String[cursor.getColumnCount()];
 
         // now, we are ready to write to CSV
-
-        CSVWriter csvWrite = new CSVWriter(getBufferedWriter(exportInfo.getShortPath()));
+        mCSVWriter = new CSVWriter(mBufferedWriter);
 
         // first of all: header with column names
-        csvWrite.writeNext(sortedNames.toArray(new String[sortedNames.size()]));
-
-        String[] columnString = new String[cursor.getColumnCount()];
-
-        int lines = cursor.getCount();
-        int count = 0;
-        int csvIndex = 0;
+        mCSVWriter.writeNext(sortedNames.toArray(new String[sortedNames.size()]));
+    }
 
-        while (cursor.moveToNext()) {
-            csvIndex = 0;
-
-            for (String columnName : sortedNames) {
-                int columnIndex = cursor.getColumnIndex(columnName);
-
-                // previously, we simply had
-                // columnString[columnIndex] = cursor.getString(columnIndex);
-                // but this leads to problems because double values might be written with only 3 or 4 digits after the point
-                if (cursor.isNull(columnIndex)) {
-                    columnString[csvIndex] = "";
-                } else {
-                    switch (columnName2Type.get(columnName)) {
-                        case DOUBLE:
-                            columnString[csvIndex] = Double.toString(cursor.getDouble(columnIndex));
-                            break;
-                        case INTEGER:
-                            columnString[csvIndex] = Integer.toString(cursor.getInt(columnIndex));
-                            break;
-                        case STRING:
-                        default:
-                            columnString[csvIndex] = cursor.getString(columnIndex);
-                            break;
-                    }
+    @Override
+    protected void writeSample(@NonNull SampleRowReader sampleRowReader) {
+        Cursor cursor = sampleRowReader.getCursor();
+        for (int csvIndex = 0; csvIndex < mColumnIndices.length; csvIndex++) {
+            int columnIndex = mColumnIndices[csvIndex];
+
+            // previously, we simply had
+            // columnString[columnIndex] = cursor.getString(columnIndex);
+            // but this leads to problems because double values might be written with only 3 or 4 digits after the point
+            if (cursor.isNull(columnIndex)) {
+                mColumnStrings[csvIndex] = "";
+            } else {
+                switch (mColumnTypes[csvIndex]) {
+                    case DOUBLE:
+                        mColumnStrings[csvIndex] = Double.toString(cursor.getDouble(columnIndex));
+                        break;
+                    case INTEGER:
+                        mColumnStrings[csvIndex] = Integer.toString(cursor.getInt(columnIndex));
+                        break;
+                    case STRING:
+                    default:
+                        mColumnStrings[csvIndex] = cursor.getString(columnIndex);
+                        break;
                 }
-
-                csvIndex++;
             }
-            csvWrite.writeNext(columnString);
         }
-        csvWrite.close();
-        cursor.close();
+        mCSVWriter.writeNext(mColumnStrings);
+    }
 
-        return new ExportResult(true, false, "Successfully exported to CSV");
+    @Override
+    protected void writeTail() throws IOException {
+        // flushes the CSVWriter, the file itself is closed by the StreamingFileWriter
+        mCSVWriter.flush();
+    }
+
+    @NonNull
+    @Override
+    protected String getSuccessMessage() {
+        return "Successfully exported to CSV";
     }
 
 }
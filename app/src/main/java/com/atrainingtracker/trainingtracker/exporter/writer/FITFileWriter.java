@@ -0,0 +1,392 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.atrainingtracker.banalservice.BANALService;
+import com.atrainingtracker.banalservice.BSportType;
+import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
+import com.atrainingtracker.banalservice.sensor.SensorType;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.ParseException;
+
+/**
+ * Writes the workout as binary FIT activity file.
+ * <p>
+ * All definition messages are written once in the header, so every sample results in one compact record message.
+ * The header contains the size of the data and the file ends with a CRC over all bytes.  Both are only known at the end,
+ * so closeFile() patches the header and appends the CRC.  The binary encoding itself is done by the {@link FitEncoder}.
+ */
+public class FITFileWriter extends StreamingFileWriter {
+    private static final String TAG = "FITFileWriter";
+    private static final boolean DEBUG = false;
+
+    // the local message types, all defined once in the header
+    private static final int LOCAL_FILE_ID = 0;
+    private static final int LOCAL_RECORD = 1;
+    private static final int LOCAL_LAP = 2;
+    private static final int LOCAL_SESSION = 3;
+    private static final int LOCAL_ACTIVITY = 4;
+
+    // the global message numbers
+    private static final int MESG_FILE_ID = 0;
+    private static final int MESG_SESSION = 18;
+    private static final int MESG_LAP = 19;
+    private static final int MESG_RECORD = 20;
+    private static final int MESG_ACTIVITY = 34;
+
+    // the common field numbers
+    private static final int FIELD_TIMESTAMP = 253;
+    private static final int FIELD_MESSAGE_INDEX = 254;
+
+    // enum values of the profile
+    private static final int FILE_TYPE_ACTIVITY = 4;
+    private static final int MANUFACTURER_DEVELOPMENT = 255;
+    private static final int EVENT_SESSION = 8;
+    private static final int EVENT_LAP = 9;
+    private static final int EVENT_ACTIVITY = 26;
+    private static final int EVENT_TYPE_STOP = 1;
+    private static final int SPORT_GENERIC = 0;
+    private static final int SPORT_RUNNING = 1;
+    private static final int SPORT_CYCLING = 2;
+    private static final int SUB_SPORT_GENERIC = 0;
+    private static final int SUB_SPORT_TREADMILL = 1;
+    private static final int SUB_SPORT_INDOOR_CYCLING = 6;
+
+    public FITFileWriter(@NonNull Context context) {
+        super(context);
+    }
+
+    // the state while streaming
+    private BufferedOutputStream mOutputStream;
+    private File mFile;
+    private boolean mComplete;
+    private FitEncoder mEncoder;
+
+    private long mStartTime, mLastTimestamp, mLapStartTime;
+    private long mPrevLineLap;
+    private int mNumLaps;
+    // which fields are part of the record message
+    private boolean mWriteGeo, mWriteAltitude, mWriteDistance, mWriteSpeed, mWriteHR, mWriteCadence, mWritePower;
+
+    @Override
+    protected void openFile(@NonNull String shortPath) throws IOException {
+        mFile = new File(getBaseDirFile(mContext), shortPath);
+        mOutputStream = getOutputStream(shortPath);
+        mComplete = false;
+        mEncoder = new FitEncoder();
+
+        // a placeholder for the header, the data size is not yet known
+        mOutputStream.write(new byte[FitEncoder.HEADER_SIZE]);
+    }
+
+    @Override
+    protected void closeFile() throws IOException {
+        if (mOutputStream == null) {
+            return;
+        }
+        try {
+            mOutputStream.close();
+        } finally {
+            mOutputStream = null;
+        }
+
+        if (mComplete) {
+            finishFile();
+        }
+    }
+
+    @Override
+    protected void writeHeader(@NonNull SampleRowReader sampleRowReader) throws IOException, ParseException {
+        if (DEBUG) Log.d(TAG, "exportToFile");
+
+        mStartTime = SampleTimeFormat.dbTime2FitTime(startTime);
+        mLastTimestamp = mStartTime;
+        mLapStartTime = mStartTime;
+        mPrevLineLap = BANALService.INIT_LAP_NR - 1;
+        mNumLaps = 0;
+
+        // same rules as for TCX: no location data for (indoor) trainer sessions
+        mWriteGeo = !indoorTrainerSession && haveGeo && sampleRowReader.hasColumn(SensorType.LATITUDE) && sampleRowReader.hasColumn(SensorType.LONGITUDE);
+        mWriteAltitude = haveAltitude && sampleRowReader.hasColumn(SensorType.ALTITUDE);
+        mWriteDistance = haveDistance && sampleRowReader.hasColumn(SensorType.DISTANCE_m);
+        mWriteSpeed = haveSpeed && sampleRowReader.hasColumn(SensorType.SPEED_mps);
+        mWriteHR = haveHR && sampleRowReader.hasColumn(SensorType.HR);
+        mWriteCadence = haveCadence && sampleRowReader.hasColumn(SensorType.CADENCE);
+        mWritePower = havePower && sampleRowReader.hasColumn(SensorType.POWER);
+
+        // file id
+        mEncoder.startDefinition(LOCAL_FILE_ID, MESG_FILE_ID, 5);
+        mEncoder.addField(0, 1, FitEncoder.ENUM);      // type
+        mEncoder.addField(1, 2, FitEncoder.UINT16);    // manufacturer
+        mEncoder.addField(2, 2, FitEncoder.UINT16);    // product
+        mEncoder.addField(3, 4, FitEncoder.UINT32Z);   // serial number
+        mEncoder.addField(4, 4, FitEncoder.UINT32);    // time created
+        mEncoder.writeMessage(mOutputStream);
+
+        mEncoder.startData(LOCAL_FILE_ID);
+        mEncoder.putUInt8(FILE_TYPE_ACTIVITY);
+        mEncoder.putUInt16(MANUFACTURER_DEVELOPMENT);
+        mEncoder.putUInt16(0);
+        mEncoder.putUInt32(workoutID);
+        mEncoder.putUInt32(mStartTime);
+        mEncoder.writeMessage(mOutputStream);
+
+        // record, only with the fields that are available
+        int numFields = 1;
+        numFields += mWriteGeo ? 2 : 0;
+        numFields += mWriteAltitude ? 1 : 0;
+        numFields += mWriteDistance ? 1 : 0;
+        numFields += mWriteSpeed ? 1 : 0;
+        numFields += mWriteHR ? 1 : 0;
+        numFields += mWriteCadence ? 1 : 0;
+        numFields += mWritePower ? 1 : 0;
+        mEncoder.startDefinition(LOCAL_RECORD, MESG_RECORD, numFields);
+        mEncoder.addField(FIELD_TIMESTAMP, 4, FitEncoder.UINT32);
+        if (mWriteGeo) {
+            mEncoder.addField(0, 4, FitEncoder.SINT32);  // position lat
+            mEncoder.addField(1, 4, FitEncoder.SINT32);  // position long
+        }
+        if (mWriteAltitude) {
+            mEncoder.addField(2, 2, FitEncoder.UINT16);
+        }
+        if (mWriteDistance) {
+            mEncoder.addField(5, 4, FitEncoder.UINT32);
+        }
+        if (mWriteSpeed) {
+            mEncoder.addField(6, 2, FitEncoder.UINT16);
+        }
+        if (mWriteHR) {
+            mEncoder.addField(3, 1, FitEncoder.UINT8);
+        }
+        if (mWriteCadence) {
+            mEncoder.addField(4, 1, FitEncoder.UINT8);
+        }
+        if (mWritePower) {
+            mEncoder.addField(7, 2, FitEncoder.UINT16);
+        }
+        mEncoder.writeMessage(mOutputStream);
+
+        // lap
+        mEncoder.startDefinition(LOCAL_LAP, MESG_LAP, 8);
+        mEncoder.addField(FIELD_TIMESTAMP, 4, FitEncoder.UINT32);
+        mEncoder.addField(FIELD_MESSAGE_INDEX, 2, FitEncoder.UINT16);
+        mEncoder.addField(0, 1, FitEncoder.ENUM);      // event
+        mEncoder.addField(1, 1, FitEncoder.ENUM);      // event type
+        mEncoder.addField(2, 4, FitEncoder.UINT32);    // start time
+        mEncoder.addField(7, 4, FitEncoder.UINT32);    // total elapsed time
+        mEncoder.addField(8, 4, FitEncoder.UINT32);    // total timer time
+        mEncoder.addField(9, 4, FitEncoder.UINT32);    // total distance
+        mEncoder.writeMessage(mOutputStream);
+
+        // session
+        mEncoder.startDefinition(LOCAL_SESSION, MESG_SESSION, 10);
+        mEncoder.addField(FIELD_TIMESTAMP, 4, FitEncoder.UINT32);
+        mEncoder.addField(0, 1, FitEncoder.ENUM);      // event
+        mEncoder.addField(1, 1, FitEncoder.ENUM);      // event type
+        mEncoder.addField(2, 4, FitEncoder.UINT32);    // start time
+        mEncoder.addField(5, 1, FitEncoder.ENUM);      // sport
+        mEncoder.addField(6, 1, FitEncoder.ENUM);      // sub sport
+        mEncoder.addField(7, 4, FitEncoder.UINT32);    // total elapsed time
+        mEncoder.addField(8, 4, FitEncoder.UINT32);    // total timer time
+        mEncoder.addField(9, 4, FitEncoder.UINT32);    // total distance
+        mEncoder.addField(26, 2, FitEncoder.UINT16);   // num laps
+        mEncoder.writeMessage(mOutputStream);
+
+        // activity
+        mEncoder.startDefinition(LOCAL_ACTIVITY, MESG_ACTIVITY, 5);
+        mEncoder.addField(FIELD_TIMESTAMP, 4, FitEncoder.UINT32);
+        mEncoder.addField(0, 4, FitEncoder.UINT32);    // total timer time
+        mEncoder.addField(1, 2, FitEncoder.UINT16);    // num sessions
+        mEncoder.addField(3, 1, FitEncoder.ENUM);      // event
+        mEncoder.addField(4, 1, FitEncoder.ENUM);      // event type
+        mEncoder.writeMessage(mOutputStream);
+    }
+
+    @Override
+    protected void writeSample(@NonNull SampleRowReader sampleRowReader) throws IOException, ParseException {
+        long timestamp = sampleRowReader.getFitTime();
+
+        int lap = sampleRowReader.getInt(SensorType.LAP_NR);
+        // the FIT timestamps have a resolution of one second, so only the first record of each second is written for sub-second samples
+        if (timestamp == mLastTimestamp && lap == mPrevLineLap) {
+            return;
+        }
+        if (mPrevLineLap != lap) { // new lap
+            if (mPrevLineLap >= BANALService.INIT_LAP_NR) { // finish previous lap
+                writeLap((int) mPrevLineLap);
+            }
+            mLapStartTime = timestamp;
+        }
+        mPrevLineLap = lap;
+        mLastTimestamp = timestamp;
+
+        mEncoder.startData(LOCAL_RECORD);
+        mEncoder.putUInt32(timestamp);
+        if (mWriteGeo) {
+            if (sampleRowReader.isValid(SensorType.LATITUDE) && sampleRowReader.isValid(SensorType.LONGITUDE)) {
+                mEncoder.putUInt32(Math.round(sampleRowReader.getDouble(SensorType.LATITUDE) * FitEncoder.SEMICIRCLES_PER_DEGREE));
+                mEncoder.putUInt32(Math.round(sampleRowReader.getDouble(SensorType.LONGITUDE) * FitEncoder.SEMICIRCLES_PER_DEGREE));
+            } else {
+                mEncoder.putUInt32(0x7FFFFFFF);
+                mEncoder.putUInt32(0x7FFFFFFF);
+            }
+        }
+        if (mWriteAltitude) {
+            mEncoder.putUInt16(sampleRowReader.isValid(SensorType.ALTITUDE) ? FitEncoder.scale(sampleRowReader.getDouble(SensorType.ALTITUDE), 5, 500, 0xFFFE) : 0xFFFF);
+        }
+        if (mWriteDistance) {
+            mEncoder.putUInt32(sampleRowReader.isValid(SensorType.DISTANCE_m) ? FitEncoder.scale(sampleRowReader.getDouble(SensorType.DISTANCE_m), 100, 0, 0xFFFFFFFEL) : 0xFFFFFFFFL);
+        }
+        if (mWriteSpeed) {
+            mEncoder.putUInt16(sampleRowReader.isValid(SensorType.SPEED_mps) ? FitEncoder.scale(sampleRowReader.getDouble(SensorType.SPEED_mps), 1000, 0, 0xFFFE) : 0xFFFF);
+        }
+        if (mWriteHR) {
+            mEncoder.putUInt8(sampleRowReader.isValid(SensorType.HR) ? FitEncoder.scale(sampleRowReader.getDouble(SensorType.HR), 1, 0, 0xFE) : 0xFF);
+        }
+        if (mWriteCadence) {
+            mEncoder.putUInt8(sampleRowReader.isValid(SensorType.CADENCE) ? FitEncoder.scale(sampleRowReader.getDouble(SensorType.CADENCE), 1, 0, 0xFE) : 0xFF);
+        }
+        if (mWritePower) {
+            mEncoder.putUInt16(sampleRowReader.isValid(SensorType.POWER) ? FitEncoder.scale(sampleRowReader.getDouble(SensorType.POWER), 1, 0, 0xFFFE) : 0xFFFF);
+        }
+        mEncoder.writeMessage(mOutputStream);
+    }
+
+    @Override
+    protected void writeTail() throws IOException {
+        if (mPrevLineLap >= BANALService.INIT_LAP_NR) {
+            writeLap((int) mPrevLineLap);
+        }
+
+        long totalTime_ms = seconds2ms(totalTime);
+
+        mEncoder.startData(LOCAL_SESSION);
+        mEncoder.putUInt32(mLastTimestamp);
+        mEncoder.putUInt8(EVENT_SESSION);
+        mEncoder.putUInt8(EVENT_TYPE_STOP);
+        mEncoder.putUInt32(mStartTime);
+        BSportType bSportType = SportTypeDatabaseManager.getInstance(mContext).getBSportType(sportTypeId);
+        mEncoder.putUInt8(getSport(bSportType));
+        mEncoder.putUInt8(getSubSport(bSportType));
+        mEncoder.putUInt32(totalTime_ms);
+        mEncoder.putUInt32(totalTime_ms);
+        mEncoder.putUInt32(meters2cm(totalDistance));
+        mEncoder.putUInt16(mNumLaps);
+        mEncoder.writeMessage(mOutputStream);
+
+        mEncoder.startData(LOCAL_ACTIVITY);
+        mEncoder.putUInt32(mLastTimestamp);
+        mEncoder.putUInt32(totalTime_ms);
+        mEncoder.putUInt16(1);
+        mEncoder.putUInt8(EVENT_ACTIVITY);
+        mEncoder.putUInt8(EVENT_TYPE_STOP);
+        mEncoder.writeMessage(mOutputStream);
+
+        mComplete = true;
+    }
+
+    @NonNull
+    @Override
+    protected String getSuccessMessage() {
+        return "Successfully exported to FIT File";
+    }
+
+    private void writeLap(int lap) throws IOException {
+        long lapTime_ms = seconds2ms(mWorkoutExportData.getLapTotalTime(lap));
+
+        mEncoder.startData(LOCAL_LAP);
+        mEncoder.putUInt32(mLastTimestamp);
+        mEncoder.putUInt16(mNumLaps);
+        mEncoder.putUInt8(EVENT_LAP);
+        mEncoder.putUInt8(EVENT_TYPE_STOP);
+        mEncoder.putUInt32(mLapStartTime);
+        mEncoder.putUInt32(lapTime_ms);
+        mEncoder.putUInt32(lapTime_ms);
+        mEncoder.putUInt32(meters2cm(mWorkoutExportData.getLapTotalDistance(lap)));
+        mEncoder.writeMessage(mOutputStream);
+
+        mNumLaps++;
+    }
+
+    private static int getSport(@NonNull BSportType bSportType) {
+        return switch (bSportType) {
+            case RUN -> SPORT_RUNNING;
+            case BIKE -> SPORT_CYCLING;
+            default -> SPORT_GENERIC;
+        };
+    }
+
+    private int getSubSport(@NonNull BSportType bSportType) {
+        if (!indoorTrainerSession) {
+            return SUB_SPORT_GENERIC;
+        }
+        return switch (bSportType) {
+            case RUN -> SUB_SPORT_TREADMILL;
+            case BIKE -> SUB_SPORT_INDOOR_CYCLING;
+            default -> SUB_SPORT_GENERIC;
+        };
+    }
+
+    /**
+     * writes the header with the now known data size and appends the CRC over the whole file
+     */
+    private void finishFile() throws IOException {
+        byte[] header = FitEncoder.createHeader(mEncoder.getDataSize());
+
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.write(header);
+
+            // the CRC of the data, the header is already known
+            int crc = FitEncoder.updateCrc(0, header, 0, FitEncoder.HEADER_SIZE);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = file.read(buffer)) > 0) {
+                crc = FitEncoder.updateCrc(crc, buffer, 0, read);
+            }
+            file.write(crc & 0xFF);
+            file.write((crc >> 8) & 0xFF);
+        }
+    }
+
+    private static long seconds2ms(@NonNull String seconds) {
+        try {
+            return Math.max(0, Math.round(Double.parseDouble(seconds) * 1000));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long meters2cm(@NonNull String meters) {
+        try {
+            return Math.max(0, Math.round(Double.parseDouble(meters) * 100));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -19,8 +19,6 @@
 package com.atrainingtracker.trainingtracker.exporter.writer;
 
 import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -28,190 +26,165 @@ import androidx.annotation.NonNull;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
-import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
-import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Locale;
 
-public class GCFileWriter extends BaseFileWriter {
+public class GCFileWriter extends StreamingFileWriter {
     protected static final boolean WRITE_ONLY_ON_NEW_GEO_DATA = true;
     private static final String TAG = "GCFileExporter";
     private static final boolean DEBUG = false;
-    // DateFormats to convert from Db style dates to Strava style dates
-    protected static final SimpleDateFormat msdfFromDb = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-    protected static final SimpleDateFormat msdfToGC = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss", Locale.US);
+
+    private static final String FORMAT_qq = "    \"%s\":\"%s\",\n";
+    private static final String FORMAT_q = "    \"%s\":%s,\n";
+
+    private static final String RIDE = "RIDE";
+    private static final String STARTTIME = "STARTTIME";
+    private static final String RECINTSECS = "RECINTSECS";
+    private static final String DEVICETYPE = "DEVICETYPE";
+    private static final String IDENTIFIER = "IDENTIFIER";
+    private static final String SAMPLES = "SAMPLES";
+    private static final String TAGS = "TAGS";
+    private static final String DATA = "Data";
+    private static final String SPORT = "Sport";
+    private static final String WORKOUT_CODE = "Workout Code";
+    private static final String SECS = "SECS";
+    private static final String KM = "KM";
+    private static final String KPH = "KPH";
+    private static final String WATTS = "WATTS";
+    private static final String HR = "HR";
+    private static final String CAD = "CAD";
+    private static final String NM = "NM";
+    private static final String ALT = "ALT";
+    private static final String LAT = "LAT";
+    private static final String LON = "LON";
+    private static final String LRBALANCE = "LRBALANCE";
+    private static final String LTE = "LTE";
+    private static final String RTE = "RTE";
+    private static final String LPS = "LPS";
+    private static final String RPS = "RPS";
 
     public GCFileWriter(@NonNull Context context) {
         super(context);
     }
 
-    @NonNull
-    protected static String dbTime2GCTime(@NonNull String dbTime) throws ParseException {
-        return msdfToGC.format(msdfFromDb.parse(dbTime));
-    }
+    // the state while streaming
+    private boolean mIsFirst;
+    private double mLatitude, mLongitude;
 
-    @NonNull
     @Override
-    protected ExportResult doExport(@NonNull ExportInfo exportInfo)
-            throws IOException, IllegalArgumentException, JSONException, ParseException {
+    protected void writeHeader(@NonNull SampleRowReader sampleRowReader) throws IOException, JSONException, ParseException {
         if (DEBUG) Log.d(TAG, "exportWorkoutToFile");
 
-        final String FORMAT_qq = "    \"%s\":\"%s\",\n";
-        final String FORMAT_q = "    \"%s\":%s,\n";
-
-        final String RIDE = "RIDE";
-        final String STARTTIME = "STARTTIME";
-        final String RECINTSECS = "RECINTSECS";
-        final String DEVICETYPE = "DEVICETYPE";
-        final String IDENTIFIER = "IDENTIFIER";
-        final String SAMPLES = "SAMPLES";
-        final String TAGS = "TAGS";
-        final String DATA = "Data";
-        final String SPORT = "Sport";
-        final String WORKOUT_CODE = "Workout Code";
-        final String SECS = "SECS";
-        final String KM = "KM";
-        final String KPH = "KPH";
-        final String WATTS = "WATTS";
-        final String HR = "HR";
-        final String CAD = "CAD";
-        final String NM = "NM";
-        final String ALT = "ALT";
-        final String LAT = "LAT";
-        final String LON = "LON";
-        final String LRBALANCE = "LRBALANCE";
-        final String LTE = "LTE";
-        final String RTE = "RTE";
-        final String LPS = "LPS";
-        final String RPS = "RPS";
-
-        getHeaderData(exportInfo);
-
-        BufferedWriter bufferedWriter = getBufferedWriter(exportInfo.getShortPath());
-
         //TODO: use constants and String.format()
         // write the header data to the file
-        bufferedWriter.write("{\n");
-        bufferedWriter.write("  \"RIDE\":{\n");
-        bufferedWriter.write(String.format(FORMAT_qq, STARTTIME, dbTime2GCTime(startTime) + " UTC"));
-        bufferedWriter.write(String.format(FORMAT_q, RECINTSECS, 1));
-        bufferedWriter.write(String.format(FORMAT_qq, DEVICETYPE, TrainingApplication.getAppName()));
-        bufferedWriter.write(String.format(FORMAT_qq, IDENTIFIER, ""));
-        bufferedWriter.write(String.format(FORMAT_q, TAGS, (new JSONObject())
+        mBufferedWriter.write("{\n");
+        mBufferedWriter.write("  \"RIDE\":{\n");
+        mBufferedWriter.write(String.format(FORMAT_qq, STARTTIME, SampleTimeFormat.dbTime2GCTime(startTime) + " UTC"));
+        mBufferedWriter.write(String.format(FORMAT_q, RECINTSECS, 1));
+        mBufferedWriter.write(String.format(FORMAT_qq, DEVICETYPE, TrainingApplication.getAppName()));
+        mBufferedWriter.write(String.format(FORMAT_qq, IDENTIFIER, ""));
+        mBufferedWriter.write(String.format(FORMAT_q, TAGS, (new JSONObject())
                 .put(DATA, data)
                 .put(SPORT, SportTypeDatabaseManager.getInstance(mContext).getGcName(sportTypeId))
                 .put(WORKOUT_CODE, goal + " " + method)));
 
-        bufferedWriter.write("        \"SAMPLES\":[\n");
-
-        WorkoutSamplesDatabaseManager databaseManager = WorkoutSamplesDatabaseManager.getInstance(mContext);
-        SQLiteDatabase db = databaseManager.getDatabase();
-        Cursor cursor = db.query(WorkoutSamplesDatabaseManager.getTableName(exportInfo.getFileBaseName()),
-                null,
-                null,
-                null,
-                null,
-                null,
-                null);
-
-        int lines = cursor.getCount();
-        int count = 0;
-
-        JSONObject sample;
-        boolean isFirst = true;
-
-        double latitude = 0.0;
-        double longitude = 0.0;
-        double latitudeOld;
-        double longitudeOld;
-
-        while (cursor.moveToNext()) {
-            if (dataValid(cursor, SensorType.TIME_TOTAL.name())) {
-
-                sample = new JSONObject();
-
-                sample.put(SECS, cursor.getInt(cursor.getColumnIndexOrThrow(SensorType.TIME_TOTAL.name())));
-
-                // TODO: loop over ???
-                // TODO Locale should be US if , is used as separator
-                if (haveDistance && dataValid(cursor, SensorType.DISTANCE_m.name())) {
-                    sample.put(KM, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.DISTANCE_m.name())) / 1000));
-                }
-
-                if (haveSpeed && dataValid(cursor, SensorType.SPEED_mps.name())) {
-                    sample.put(KPH, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.SPEED_mps.name())) * 3.6));
-                }
-
-                if (havePower && dataValid(cursor, SensorType.POWER.name())) {
-                    sample.put(WATTS, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.POWER.name()))));
-                }
-                if (havePower && dataValid(cursor, SensorType.PEDAL_POWER_BALANCE.name())) {
-                    sample.put(LRBALANCE, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.PEDAL_POWER_BALANCE.name()))));
-                }
-                if (havePower && dataValid(cursor, SensorType.TORQUE_EFFECTIVENESS_L.name())) {
-                    sample.put(LTE, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.TORQUE_EFFECTIVENESS_L.name()))));
-                }
-                if (havePower && dataValid(cursor, SensorType.TORQUE_EFFECTIVENESS_R.name())) {
-                    sample.put(RTE, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.TORQUE_EFFECTIVENESS_R.name()))));
-                }
-                if (havePower && dataValid(cursor, SensorType.PEDAL_SMOOTHNESS_L.name())) {
-                    sample.put(LPS, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.PEDAL_SMOOTHNESS_L.name()))));
-                }
-                if (havePower && dataValid(cursor, SensorType.PEDAL_SMOOTHNESS_R.name())) {
-                    sample.put(RPS, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.PEDAL_SMOOTHNESS_R.name()))));
-                }
-
-                if (haveHR && dataValid(cursor, SensorType.HR.name())) {
-                    sample.put(HR, cursor.getInt(cursor.getColumnIndexOrThrow(SensorType.HR.name())));
-                }
-
-                if (haveCadence && dataValid(cursor, SensorType.CADENCE.name())) {
-                    sample.put(CAD, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.CADENCE.name()))));
-                }
-
-                if (haveTorque & dataValid(cursor, SensorType.TORQUE.name())) {
-                    sample.put(NM, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.TORQUE.name()))));
-                }
-
-                if (haveAltitude && dataValid(cursor, SensorType.ALTITUDE.name())) {
-                    sample.put(ALT, String.format(Locale.getDefault(), "%.3f", cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.ALTITUDE.name()))));
-                }
-
-                // we do not write location data when it was an (indoor) trainer session
-                if (!indoorTrainerSession && haveGeo && dataValid(cursor, SensorType.LATITUDE.name()) && dataValid(cursor, SensorType.LATITUDE.name())) {
-                    latitudeOld = latitude;
-                    longitudeOld = longitude;
-                    latitude = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.LATITUDE.name()));
-                    longitude = cursor.getFloat(cursor.getColumnIndexOrThrow(SensorType.LONGITUDE.name()));
-                    if (WRITE_ONLY_ON_NEW_GEO_DATA && latitude == latitudeOld && longitude == longitudeOld) {
-                        // do nothing
-                    } else {
-                        sample.put(LAT, latitude);
-                        sample.put(LON, longitude);
-                    }
-                }
-
-                bufferedWriter.write(getSamplePrefix(isFirst) + sample);
-                isFirst = false;
+        mBufferedWriter.write("        \"SAMPLES\":[\n");
+
+        mIsFirst = true;
+        mLatitude = 0.0;
+        mLongitude = 0.0;
+    }
+
+    @Override
+    protected void writeSample(@NonNull SampleRowReader sampleRowReader) throws IOException, JSONException, ParseException {
+        if (!sampleRowReader.isValid(SensorType.TIME_TOTAL)) {
+            return;
+        }
+
+        JSONObject sample = new JSONObject();
+
+        // with sub-second sampling, the seconds have a fraction.  Otherwise, they are written as integer as before
+        double secs = sampleRowReader.getElapsedTime_s();
+        if (secs == Math.rint(secs)) {
+            sample.put(SECS, (int) secs);
+        } else {
+            sample.put(SECS, secs);
+        }
+
+        // TODO Locale should be US if , is used as separator
+        if (haveDistance && sampleRowReader.isValid(SensorType.DISTANCE_m)) {
+            sample.put(KM, String.format(Locale.getDefault(), "%.3f", sampleRowReader.getDouble(SensorType.DISTANCE_m) / 1000));
+        }
+
+        if (haveSpeed && sampleRowReader.isValid(SensorType.SPEED_mps)) {
+            sample.put(KPH, String.format(Locale.getDefault(), "%.3f", sampleRowReader.getDouble(SensorType.SPEED_mps) * 3.6));
+        }
+
+        if (havePower) {
+            putValue(sample, sampleRowReader, WATTS, SensorType.POWER);
+            putValue(sample, sampleRowReader, LRBALANCE, SensorType.PEDAL_POWER_BALANCE);
+            putValue(sample, sampleRowReader, LTE, SensorType.TORQUE_EFFECTIVENESS_L);
+            putValue(sample, sampleRowReader, RTE, SensorType.TORQUE_EFFECTIVENESS_R);
+            putValue(sample, sampleRowReader, LPS, SensorType.PEDAL_SMOOTHNESS_L);
+            putValue(sample, sampleRowReader, RPS, SensorType.PEDAL_SMOOTHNESS_R);
+        }
+
+        if (haveHR && sampleRowReader.isValid(SensorType.HR)) {
+            sample.put(HR, sampleRowReader.getInt(SensorType.HR));
+        }
+
+        if (haveCadence) {
+            putValue(sample, sampleRowReader, CAD, SensorType.CADENCE);
+        }
+
+        if (haveTorque) {
+            putValue(sample, sampleRowReader, NM, SensorType.TORQUE);
+        }
+
+        if (haveAltitude) {
+            putValue(sample, sampleRowReader, ALT, SensorType.ALTITUDE);
+        }
+
+        // we do not write location data when it was an (indoor) trainer session
+        if (!indoorTrainerSession && haveGeo && sampleRowReader.isValid(SensorType.LATITUDE) && sampleRowReader.isValid(SensorType.LATITUDE)) {
+            double latitudeOld = mLatitude;
+            double longitudeOld = mLongitude;
+            mLatitude = sampleRowReader.getDouble(SensorType.LATITUDE);
+            mLongitude = sampleRowReader.getFloat(SensorType.LONGITUDE);
+            if (WRITE_ONLY_ON_NEW_GEO_DATA && mLatitude == latitudeOld && mLongitude == longitudeOld) {
+                // do nothing
+            } else {
+                sample.put(LAT, mLatitude);
+                sample.put(LON, mLongitude);
             }
         }
 
-        bufferedWriter.write("\n        ]\n");
-        bufferedWriter.write("    }\n");
-        bufferedWriter.write("}\n");
-        bufferedWriter.close();
+        mBufferedWriter.write(getSamplePrefix(mIsFirst) + sample);
+        mIsFirst = false;
+    }
 
-        cursor.close();
+    private static void putValue(@NonNull JSONObject sample, @NonNull SampleRowReader sampleRowReader, @NonNull String key, @NonNull SensorType sensorType) throws JSONException {
+        if (sampleRowReader.isValid(sensorType)) {
+            sample.put(key, String.format(Locale.getDefault(), "%.3f", sampleRowReader.getDouble(sensorType)));
+        }
+    }
 
-        return new ExportResult(true, false, "Successfully exported to GC File");
+    @Override
+    protected void writeTail() throws IOException {
+        mBufferedWriter.write("\n        ]\n");
+        mBufferedWriter.write("    }\n");
+        mBufferedWriter.write("}\n");
+    }
 
+    @NonNull
+    @Override
+    protected String getSuccessMessage() {
+        return "Successfully exported to GC File";
     }
 
 }
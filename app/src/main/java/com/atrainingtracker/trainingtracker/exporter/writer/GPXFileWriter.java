@@ -19,8 +19,6 @@
 package com.atrainingtracker.trainingtracker.exporter.writer;
 
 import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -29,157 +27,101 @@ import com.atrainingtracker.banalservice.BANALService;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.helpers.HavePressureSensor;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
-import com.atrainingtracker.trainingtracker.database.LapsDatabaseManager;
-import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
-import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
-import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
 
 
-public class GPXFileWriter extends BaseFileWriter {
+public class GPXFileWriter extends StreamingFileWriter {
     protected static final boolean WRITE_ONLY_ON_NEW_GEO_DATA = true;
     private static final String TAG = "GPXFileExporter";
     private static final boolean DEBUG = false;
-    // DateFormats to convert from Db style dates to XML style dates
-    protected static final SimpleDateFormat msdfFromDb = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-    protected static final SimpleDateFormat msdfToXML = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
 
     public GPXFileWriter(@NonNull Context context) {
         super(context);
     }
 
-    // convert from "2012-03-29 16:23:05" to "2012-03-29T16:23:05Z"
-    @NonNull
-    protected static String dbTime2XMLTime(@NonNull String dbTime) throws ParseException {
-        return msdfToXML.format(msdfFromDb.parse(dbTime)) + "Z";
-    }
+    // the state while streaming
+    private double mLatitude, mLongitude;
+    private long mPrevLineLap;
+    private final Trackpoint mTrackpoint = new Trackpoint();
 
-    @NonNull
     @Override
-    protected ExportResult doExport(@NonNull ExportInfo exportInfo)
-            throws IOException, ParseException {
+    protected void writeHeader(@NonNull SampleRowReader sampleRowReader) throws IOException, ParseException {
         if (DEBUG) Log.d(TAG, "exportToFile");
 
-        getHeaderData(exportInfo);
-
-        BufferedWriter bufferedWriter = getBufferedWriter(exportInfo.getShortPath());
-
-
         // write the header data to the file
-        bufferedWriter.write("<?xml version=\"1.0\"?>\n");
+        mBufferedWriter.write("<?xml version=\"1.0\"?>\n");
         String name = TrainingApplication.getAppName();
         if (HavePressureSensor.havePressureSensor(mContext)) {
             name += " with barometer";
         } // add "with barometer" when a barometer was/is available, see Strava API Documentations
-        bufferedWriter.write("<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" creator=\"" + name + "\" version=\"1.1\" "
+        mBufferedWriter.write("<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" creator=\"" + name + "\" version=\"1.1\" "
                 + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
                 + "xsi:schemaLocation=\"http://www.topografix.com/GPX/1/1 http://www.topografix.com/GPX/1/1/gpx.xsd\"> \n");
 
-        bufferedWriter.write(" <metadata>\n");
-        bufferedWriter.write("  <time>" + dbTime2XMLTime(startTime) + "</time>\n");
-        bufferedWriter.write(" </metadata>\n");
-        bufferedWriter.write(" <trk>\n");
-        bufferedWriter.write("  <name>" + startTime + "</name>\n");
-
-        WorkoutSamplesDatabaseManager databaseManager = WorkoutSamplesDatabaseManager.getInstance(mContext);
-        SQLiteDatabase db = databaseManager.getDatabase();
-        Cursor cursor = db.query(WorkoutSamplesDatabaseManager.getTableName(exportInfo.getFileBaseName()),
-                null,
-                null,
-                null,
-                null,
-                null,
-                null);
-
-        double altitude;
-        double latitude = 0.0;
-        double longitude = 0.0;
-        double latitudeOld;
-        double longitudeOld;
-
-        long prevLineLap = BANALService.INIT_LAP_NR - 1;
-
-        int lines = cursor.getCount();
-
-        int count = 0;
-        while (cursor.moveToNext()) {
-
-            int lap = cursor.getInt(cursor.getColumnIndexOrThrow(SensorType.LAP_NR.name()));
-            if (prevLineLap != lap) { // new lap
-
-                if (lap != BANALService.INIT_LAP_NR) { // finish previous lap
-                    bufferedWriter.write("  </trkseg>\n");
-                }
-
-                // get the lap data
-                SQLiteDatabase lapDb = LapsDatabaseManager.getInstance(mContext).getDatabase();
-
-                Cursor lapCursor = lapDb.query(LapsDatabaseManager.Laps.TABLE,
-                        null,
-                        LapsDatabaseManager.Laps.WORKOUT_ID + "=? AND " + LapsDatabaseManager.Laps.LAP_NR + "=?",
-                        new String[]{workoutID + "", lap + ""},
-                        null,
-                        null,
-                        null);
-                if (DEBUG)
-                    Log.d(TAG, "getting lap data: workoutID: " + workoutID + ", lapNr: " + lap + " found: "
-                            + lapCursor.getCount() + ", " + lapCursor.getColumnCount());
+        mBufferedWriter.write(" <metadata>\n");
+        mBufferedWriter.write("  <time>" + SampleTimeFormat.dbTime2XMLTime(startTime) + "</time>\n");
+        mBufferedWriter.write(" </metadata>\n");
+        mBufferedWriter.write(" <trk>\n");
+        mBufferedWriter.write("  <name>" + startTime + "</name>\n");
 
-                lapCursor.moveToFirst();
-
-                // get the data for the lap
-                totalTime = myGet(lapCursor, LapsDatabaseManager.Laps.TIME_TOTAL_s, "0");
-                totalDistance = myGet(lapCursor, LapsDatabaseManager.Laps.DISTANCE_TOTAL_m, "0");
-
-                lapCursor.close();
+        mLatitude = 0.0;
+        mLongitude = 0.0;
+        mPrevLineLap = BANALService.INIT_LAP_NR - 1;
+    }
 
-                bufferedWriter.write("  <trkseg>\n");
+    @Override
+    protected void writeSample(@NonNull SampleRowReader sampleRowReader) throws IOException, ParseException {
+        int lap = sampleRowReader.getInt(SensorType.LAP_NR);
+        if (mPrevLineLap != lap) { // new lap
 
+            if (lap != BANALService.INIT_LAP_NR) { // finish previous lap
+                mBufferedWriter.write("  </trkseg>\n");
             }
-            prevLineLap = lap;
 
+            // get the data for the lap
+            totalTime = mWorkoutExportData.getLapTotalTime(lap);
+            totalDistance = mWorkoutExportData.getLapTotalDistance(lap);
 
-            // TODO: extensions with atemp, hr, cadence, distance, hr, temp as described on http://strava.github.io/api/v3/uploads/
-            if (haveGeo && dataValid(cursor, SensorType.LATITUDE.name()) && dataValid(cursor, SensorType.LONGITUDE.name())) {
-                latitudeOld = latitude;
-                longitudeOld = longitude;
-                latitude = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.LATITUDE.name()));
-                longitude = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.LONGITUDE.name()));
+            mBufferedWriter.write("  <trkseg>\n");
 
-                if (WRITE_ONLY_ON_NEW_GEO_DATA && latitude == latitudeOld && longitude == longitudeOld) {
-                    // do nothing
-                } else {
-                    bufferedWriter.write("   <trkpt lat=\"" + latitude + "\" lon=\"" + longitude + "\">\n");
-
-                    if (haveAltitude && dataValid(cursor, SensorType.ALTITUDE.name())) {
-                        altitude = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.ALTITUDE.name()));
-                        bufferedWriter.write("    <ele>" + altitude + "</ele>\n");
-                    }
-
-                    bufferedWriter.write("    <time>"
-                            + dbTime2XMLTime(cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSamplesDbHelper.TIME)))
-                            + "</time>\n");
-
-                    bufferedWriter.write("   </trkpt>\n");
+        }
+        mPrevLineLap = lap;
+
+
+        // TODO: extensions with atemp, hr, cadence, distance, hr, temp as described on http://strava.github.io/api/v3/uploads/
+        if (haveGeo && sampleRowReader.isValid(SensorType.LATITUDE) && sampleRowReader.isValid(SensorType.LONGITUDE)) {
+            double latitudeOld = mLatitude;
+            double longitudeOld = mLongitude;
+            mLatitude = sampleRowReader.getDouble(SensorType.LATITUDE);
+            mLongitude = sampleRowReader.getDouble(SensorType.LONGITUDE);
+
+            if (!(WRITE_ONLY_ON_NEW_GEO_DATA && mLatitude == latitudeOld && mLongitude == longitudeOld)) {
+                mTrackpoint.clear();
+                mTrackpoint.time = sampleRowReader.getXMLTime();
+                mTrackpoint.latitude = mLatitude;
+                mTrackpoint.longitude = mLongitude;
+                if (haveAltitude && sampleRowReader.isValid(SensorType.ALTITUDE)) {
+                    mTrackpoint.altitude_m = sampleRowReader.getDouble(SensorType.ALTITUDE);
                 }
+                TrackpointFormat.GPX.write(mBufferedWriter, mTrackpoint);
             }
         }
+    }
 
+    @Override
+    protected void writeTail() throws IOException {
         // now the tail
-        bufferedWriter.write("  </trkseg>\n");
-        bufferedWriter.write(" </trk>\n");
-        bufferedWriter.write("</gpx>\n");
-
-        bufferedWriter.close();
-
-        cursor.close();
+        mBufferedWriter.write("  </trkseg>\n");
+        mBufferedWriter.write(" </trk>\n");
+        mBufferedWriter.write("</gpx>\n");
+    }
 
-        return new ExportResult(true, false, "Successfully exported to GPX File");
+    @NonNull
+    @Override
+    protected String getSuccessMessage() {
+        return "Successfully exported to GPX File";
     }
 
 }
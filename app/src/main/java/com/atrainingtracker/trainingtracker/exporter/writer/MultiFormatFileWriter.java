@@ -0,0 +1,161 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.exporter.BaseExporter;
+import com.atrainingtracker.trainingtracker.exporter.BaseExporter.ExportResult;
+import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
+import com.atrainingtracker.trainingtracker.exporter.ExportManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports one workout to several file formats with a single scan over the samples.
+ * <p>
+ * All streaming writers get the rows of the same cursor.  When one writer fails, only this writer is dropped,
+ * the others continue.  Formats without a streaming writer are exported on their own afterwards.
+ */
+public class MultiFormatFileWriter {
+    private static final String TAG = "MultiFormatFileWriter";
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    private final Context mContext;
+
+    public MultiFormatFileWriter(@NonNull Context context) {
+        mContext = context;
+    }
+
+    /**
+     * The result of one format together with some statistics.
+     * The duration is the time spent in the writer, reading the samples is not included.
+     */
+    public record FormatResult(@NonNull ExportResult exportResult, long bytesWritten, long duration_ms) {
+    }
+
+    /**
+     * @param exportInfos the FILE exports of one workout
+     * @return the results of all given exportInfos
+     */
+    @NonNull
+    public Map<ExportInfo, FormatResult> export(@NonNull String fileBaseName, @NonNull List<ExportInfo> exportInfos) {
+        Map<ExportInfo, FormatResult> results = new LinkedHashMap<>();
+
+        // the writers that can be fed row by row
+        List<ExportInfo> streamingExportInfos = new ArrayList<>();
+        List<StreamingFileWriter> writers = new ArrayList<>();
+        for (ExportInfo exportInfo : exportInfos) {
+            BaseExporter exporter = ExportManager.getExporter(mContext, exportInfo);
+            if (exporter instanceof StreamingFileWriter) {
+                streamingExportInfos.add(exportInfo);
+                writers.add((StreamingFileWriter) exporter);
+            } else {
+                // e.g. not yet implemented
+                long start = System.nanoTime();
+                ExportResult exportResult = exporter.export(exportInfo);
+                results.put(exportInfo, new FormatResult(exportResult, 0, (System.nanoTime() - start) / 1000000));
+            }
+        }
+        if (writers.isEmpty()) {
+            return results;
+        }
+
+        WorkoutExportData workoutExportData = WorkoutExportData.read(mContext, fileBaseName);
+        if (workoutExportData == null) {
+            for (ExportInfo exportInfo : streamingExportInfos) {
+                results.put(exportInfo, new FormatResult(new ExportResult(false, false, "Could not find the workout " + fileBaseName), 0, 0));
+            }
+            return results;
+        }
+
+        long start = System.nanoTime();
+        int rows = 0;
+        try (Cursor cursor = StreamingFileWriter.querySamples(mContext, fileBaseName)) {
+            SampleRowReader sampleRowReader = new SampleRowReader(cursor);
+            for (int i = 0; i < writers.size(); i++) {
+                try {
+                    writers.get(i).begin(streamingExportInfos.get(i), workoutExportData, sampleRowReader);
+                } catch (Exception e) {
+                    failed(writers, i, e, results);
+                }
+            }
+
+            while (sampleRowReader.moveToNext()) {
+                rows++;
+                for (int i = 0; i < writers.size(); i++) {
+                    StreamingFileWriter writer = writers.get(i);
+                    if (writer == null) {
+                        continue;
+                    }
+                    try {
+                        writer.sample(sampleRowReader);
+                    } catch (Exception e) {
+                        failed(writers, i, e, results);
+                    }
+                }
+            }
+
+            for (int i = 0; i < writers.size(); i++) {
+                StreamingFileWriter writer = writers.get(i);
+                if (writer == null) {
+                    continue;
+                }
+                ExportInfo exportInfo = writer.mExportInfo;
+                try {
+                    ExportResult exportResult = writer.end();
+                    writer.finished();
+                    results.put(exportInfo, new FormatResult(exportResult, writer.getBytesWritten(), writer.getDuration_ms()));
+                    if (DEBUG) Log.i(TAG, exportInfo + ": " + writer.getBytesWritten() + " bytes in " + writer.getDuration_ms() + " ms");
+                } catch (Exception e) {
+                    failed(writers, i, e, results);
+                }
+            }
+        } catch (RuntimeException e) {
+            // e.g. the samples table does not exist.  All remaining writers failed
+            for (int i = 0; i < writers.size(); i++) {
+                if (writers.get(i) != null) {
+                    failed(writers, i, e, results);
+                }
+            }
+        }
+
+        if (DEBUG) Log.i(TAG, "exported " + rows + " samples to " + exportInfos.size() + " formats in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        return results;
+    }
+
+    private static void failed(@NonNull List<StreamingFileWriter> writers, int index, @NonNull Exception e, @NonNull Map<ExportInfo, FormatResult> results) {
+        StreamingFileWriter writer = writers.get(index);
+        Log.e(TAG, "exporting " + writer.mExportInfo + " failed", e);
+
+        writer.close();
+        // same as BaseExporter.export(): when something went wrong, we can try again later
+        results.put(writer.mExportInfo, new FormatResult(new ExportResult(false, true, e.getMessage()), 0, writer.getDuration_ms()));
+        writers.set(index, null);
+    }
+}
@@ -20,7 +20,6 @@ package com.atrainingtracker.trainingtracker.exporter.writer;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -28,6 +27,7 @@ import androidx.annotation.NonNull;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
 import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
 
@@ -37,18 +37,12 @@ import org.json.JSONObject;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
 
 
 public class RunkeeperFileWriter extends BaseFileWriter {
     protected static final boolean WRITE_ONLY_ON_NEW_GEO_DATA = true;
     private static final String TAG = "RunkeeperFileExporter";
     private static final boolean DEBUG = true;
-    // DateFormats to convert from Db style dates to XML style dates
-    protected static final SimpleDateFormat msdfFromDb = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-    protected static final SimpleDateFormat msdfToRK = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss", Locale.US);
-    // Sat, 1 Jan 2011 00:00:00
 
     public RunkeeperFileWriter(@NonNull Context context) {
         super(context);
@@ -56,7 +50,15 @@ public class RunkeeperFileWriter extends BaseFileWriter {
 
     @NonNull
     protected static String dbTime2RunkeeperTime(@NonNull String dbTime) throws ParseException {
-        return msdfToRK.format(msdfFromDb.parse(dbTime));
+        return SampleTimeFormat.dbTime2RKTime(dbTime);
+    }
+
+    /**
+     * the TIME_TOTAL of the current row, with a fraction for sub-second samples
+     */
+    protected static double getElapsedTime_s(@NonNull Cursor cursor, @NonNull ElapsedTime elapsedTime) throws ParseException {
+        return elapsedTime.getElapsedTime_s(cursor.getInt(cursor.getColumnIndexOrThrow(SensorType.TIME_TOTAL.name())),
+                cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSamplesDbHelper.TIME)));
     }
 
     @NonNull
@@ -107,15 +109,8 @@ public class RunkeeperFileWriter extends BaseFileWriter {
         bufferedWriter.write(String.format(FORMAT_q, DURATION, totalTime)); // double, in seconds
         bufferedWriter.write(String.format(FORMAT_qq, NOTES, description));  // or something else?
 
-        WorkoutSamplesDatabaseManager databaseManager = WorkoutSamplesDatabaseManager.getInstance(mContext);
-        SQLiteDatabase db = databaseManager.getDatabase();
-        Cursor cursor = db.query(WorkoutSamplesDatabaseManager.getTableName(exportInfo.getFileBaseName()),
-                null,
-                null,
-                null,
-                null,
-                null,
-                null);
+        // from the columnar store when the workout was already converted
+        Cursor cursor = WorkoutSamplesDatabaseManager.getInstance(mContext).getSamplesCursor(exportInfo.getFileBaseName(), null);
 
         int lines = cursor.getCount();
         int count = 0;
@@ -128,12 +123,13 @@ public class RunkeeperFileWriter extends BaseFileWriter {
         // first, write the heart rate
         if (haveHR) {
             bufferedWriter.write("  \"heart_rate\": [");
+            ElapsedTime elapsedTime = new ElapsedTime();
             while (cursor.moveToNext()) {
                 if (dataValid(cursor, SensorType.HR.name())) {
                     dataPointsHR++;
 
                     sample = new JSONObject();
-                    sample.put(TIMESTAMP, cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.TIME_TOTAL.name())));
+                    sample.put(TIMESTAMP, getElapsedTime_s(cursor, elapsedTime));
                     sample.put(HEART_RATE, Math.round(cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.HR.name()))));
                     bufferedWriter.write(getSamplePrefix(isFirst) + sample);
 
@@ -156,6 +152,7 @@ public class RunkeeperFileWriter extends BaseFileWriter {
             double longitudeOld;
 
             int dataPointsPos = 0;
+            ElapsedTime elapsedTime = new ElapsedTime();
 
             cursor.moveToFirst();
             cursor.moveToPrevious();
@@ -176,7 +173,7 @@ public class RunkeeperFileWriter extends BaseFileWriter {
 
                         sample = new JSONObject();
 
-                        sample.put(TIMESTAMP, cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.TIME_TOTAL.name())));
+                        sample.put(TIMESTAMP, getElapsedTime_s(cursor, elapsedTime));
                         sample.put(LATITUDE, latitude);
                         sample.put(LONGITUDE, longitude);
                         sample.put(ALTITUDE, cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.ALTITUDE.name())));
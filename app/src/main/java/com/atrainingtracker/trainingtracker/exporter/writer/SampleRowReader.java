@@ -0,0 +1,143 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
+
+import java.text.ParseException;
+
+/**
+ * Reads the rows of the samples cursor for all streaming file writers.
+ * <p>
+ * The column indices of all sensors are looked up once.  The converted time stamps are cached per row,
+ * so when several writers share one scan over the samples, each conversion is only done once per row.
+ */
+public final class SampleRowReader {
+    private final Cursor mCursor;
+    // SensorType.ordinal() -> column index, -1 when there is no such column
+    private final int[] mColumnIndices = new int[SensorType.values().length];
+    private final int mTimeIndex;
+
+    // the cached values of the current row
+    private String mDbTime, mXMLTime;
+    private long mFitTime;
+    private boolean mHaveFitTime;
+    private double mElapsedTime_s;
+    private boolean mHaveElapsedTime;
+    private final ElapsedTime mElapsedTime = new ElapsedTime();
+
+    public SampleRowReader(@NonNull Cursor cursor) {
+        mCursor = cursor;
+        for (SensorType sensorType : SensorType.values()) {
+            mColumnIndices[sensorType.ordinal()] = cursor.getColumnIndex(sensorType.name());
+        }
+        mTimeIndex = cursor.getColumnIndexOrThrow(WorkoutSamplesDbHelper.TIME);
+    }
+
+    /**
+     * moves to the next row and forgets the cached values of the previous one
+     */
+    public boolean moveToNext() {
+        mDbTime = null;
+        mXMLTime = null;
+        mHaveFitTime = false;
+        mHaveElapsedTime = false;
+        return mCursor.moveToNext();
+    }
+
+    /**
+     * the underlying cursor, e.g., for writers that export all columns
+     */
+    @NonNull
+    public Cursor getCursor() {
+        return mCursor;
+    }
+
+    public boolean hasColumn(@NonNull SensorType sensorType) {
+        return mColumnIndices[sensorType.ordinal()] >= 0;
+    }
+
+    /**
+     * @return true when there is such a column and it is not null in the current row
+     */
+    public boolean isValid(@NonNull SensorType sensorType) {
+        int columnIndex = mColumnIndices[sensorType.ordinal()];
+        return columnIndex >= 0 && !mCursor.isNull(columnIndex);
+    }
+
+    public double getDouble(@NonNull SensorType sensorType) {
+        return mCursor.getDouble(mColumnIndices[sensorType.ordinal()]);
+    }
+
+    public float getFloat(@NonNull SensorType sensorType) {
+        return mCursor.getFloat(mColumnIndices[sensorType.ordinal()]);
+    }
+
+    public int getInt(@NonNull SensorType sensorType) {
+        return mCursor.getInt(mColumnIndices[sensorType.ordinal()]);
+    }
+
+    @NonNull
+    public String getDbTime() {
+        if (mDbTime == null) {
+            mDbTime = mCursor.getString(mTimeIndex);
+        }
+        return mDbTime;
+    }
+
+    /**
+     * @return the time of the row as "2012-03-29T16:23:05Z" or with the fraction "2012-03-29T16:23:05.250Z" for sub-second samples
+     */
+    @NonNull
+    public String getXMLTime() throws ParseException {
+        if (mXMLTime == null) {
+            mXMLTime = SampleTimeFormat.dbTime2XMLTime(getDbTime());
+        }
+        return mXMLTime;
+    }
+
+    /**
+     * @return the time of the row in seconds since the FIT epoch
+     */
+    public long getFitTime() throws ParseException {
+        if (!mHaveFitTime) {
+            mFitTime = SampleTimeFormat.dbTime2FitTime(getDbTime());
+            mHaveFitTime = true;
+        }
+        return mFitTime;
+    }
+
+    /**
+     * @return the TIME_TOTAL of the row in seconds, with a fraction for the rows of sub-second sampling.
+     * Must be called for every row with a valid TIME_TOTAL, in the order of the rows.
+     */
+    public double getElapsedTime_s() throws ParseException {
+        if (!mHaveElapsedTime) {
+            mElapsedTime_s = mElapsedTime.getElapsedTime_s(getInt(SensorType.TIME_TOTAL), getDbTime());
+            mHaveElapsedTime = true;
+        }
+        return mElapsedTime_s;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
+import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
+
+import org.json.JSONException;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * A file writer that gets the samples row by row, so that one scan over the samples can feed several writers.
+ * <p>
+ * The writer is driven by begin(), writeSample() for every row of the samples cursor, and end().
+ * Exporting a single format (doExport()) simply drives these methods with its own cursor,
+ * the MultiFormatFileWriter drives several writers with one shared cursor.
+ * The rows are read via a SampleRowReader, so the column indices and the converted time stamps are shared by all writers.
+ */
+public abstract class StreamingFileWriter extends BaseFileWriter {
+    private static final String TAG = "StreamingFileWriter";
+    private static final boolean DEBUG = TrainingApplication.getDebug(false);
+
+    protected BufferedWriter mBufferedWriter;
+    protected ExportInfo mExportInfo;
+    protected WorkoutExportData mWorkoutExportData;
+
+    // some statistics
+    private long mDuration_ns;
+
+    public StreamingFileWriter(@NonNull Context context) {
+        super(context);
+    }
+
+    /**
+     * @return a cursor over all samples of the workout, the same for all streaming writers.
+     * The samples are read from the columnar store when the workout was already converted.
+     */
+    @NonNull
+    static Cursor querySamples(@NonNull Context context, @NonNull String fileBaseName) {
+        return WorkoutSamplesDatabaseManager.getInstance(context).getSamplesCursor(fileBaseName, null);
+    }
+
+    @NonNull
+    @Override
+    protected final ExportResult doExport(@NonNull ExportInfo exportInfo)
+            throws IOException, JSONException, ParseException {
+        if (DEBUG) Log.d(TAG, "doExport: " + exportInfo);
+
+        WorkoutExportData workoutExportData = WorkoutExportData.read(mContext, exportInfo.getFileBaseName());
+        if (workoutExportData == null) {
+            return new ExportResult(false, false, "Could not find the workout " + exportInfo.getFileBaseName());
+        }
+
+        try (Cursor cursor = querySamples(mContext, exportInfo.getFileBaseName())) {
+            SampleRowReader sampleRowReader = new SampleRowReader(cursor);
+            begin(exportInfo, workoutExportData, sampleRowReader);
+            try {
+                while (sampleRowReader.moveToNext()) {
+                    sample(sampleRowReader);
+                }
+                return end();
+            } finally {
+                close();
+            }
+        }
+    }
+
+    /**
+     * opens the file and writes the header
+     */
+    final void begin(@NonNull ExportInfo exportInfo, @NonNull WorkoutExportData workoutExportData, @NonNull SampleRowReader sampleRowReader)
+            throws IOException, JSONException, ParseException {
+        long start = System.nanoTime();
+
+        mExportInfo = exportInfo;
+        mWorkoutExportData = workoutExportData;
+        getHeaderData(exportInfo, workoutExportData);
+        openFile(exportInfo.getShortPath());
+        writeHeader(sampleRowReader);
+
+        mDuration_ns += System.nanoTime() - start;
+    }
+
+    final void sample(@NonNull SampleRowReader sampleRowReader) throws IOException, JSONException, ParseException {
+        long start = System.nanoTime();
+        writeSample(sampleRowReader);
+        mDuration_ns += System.nanoTime() - start;
+    }
+
+    /**
+     * writes the tail and closes the file
+     */
+    @NonNull
+    final ExportResult end() throws IOException {
+        long start = System.nanoTime();
+        writeTail();
+        closeFile();
+        mDuration_ns += System.nanoTime() - start;
+
+        if (DEBUG) Log.d(TAG, mExportInfo + ": " + getBytesWritten() + " bytes in " + getDuration_ms() + " ms");
+
+        return new ExportResult(true, false, getSuccessMessage());
+    }
+
+    /**
+     * same as BaseExporter.export() does after a successful export, e.g., copying the file to the downloads
+     */
+    final void finished() {
+        onFinished(mExportInfo);
+    }
+
+    /**
+     * closes the file when the export was aborted
+     */
+    final void close() {
+        try {
+            closeFile();
+        } catch (IOException e) {
+            Log.e(TAG, "could not close the file of " + mExportInfo, e);
+        }
+    }
+
+    /**
+     * opens the file for the text formats.  Binary formats override this together with closeFile().
+     */
+    protected void openFile(@NonNull String shortPath) throws IOException {
+        mBufferedWriter = getBufferedWriter(shortPath);
+    }
+
+    /**
+     * called after writeTail() and when the export was aborted, so it must be safe to call it twice.
+     */
+    protected void closeFile() throws IOException {
+        if (mBufferedWriter != null) {
+            try {
+                mBufferedWriter.close();
+            } finally {
+                mBufferedWriter = null;
+            }
+        }
+    }
+
+    /**
+     * @return the time spent in this writer, not including reading the samples
+     */
+    public long getDuration_ms() {
+        return mDuration_ns / 1000000;
+    }
+
+    /**
+     * @return the size of the written file
+     */
+    public long getBytesWritten() {
+        return new File(getBaseDirFile(mContext), mExportInfo.getShortPath()).length();
+    }
+
+    /**
+     * called once before the first sample. The cursor is not yet positioned on a row, only its columns are available.
+     */
+    protected abstract void writeHeader(@NonNull SampleRowReader sampleRowReader) throws IOException, JSONException, ParseException;
+
+    /**
+     * called for every row of the samples
+     */
+    protected abstract void writeSample(@NonNull SampleRowReader sampleRowReader) throws IOException, JSONException, ParseException;
+
+    protected abstract void writeTail() throws IOException;
+
+    @NonNull
+    protected abstract String getSuccessMessage();
+}
@@ -19,8 +19,6 @@
 package com.atrainingtracker.trainingtracker.exporter.writer;
 
 import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -30,242 +28,156 @@ import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.banalservice.helpers.HavePressureSensor;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
-import com.atrainingtracker.trainingtracker.database.LapsDatabaseManager;
-import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
-import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
-import com.atrainingtracker.trainingtracker.exporter.ExportInfo;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
 
 
-public class TCXFileWriter extends BaseFileWriter {
+public class TCXFileWriter extends StreamingFileWriter {
     protected static final boolean WRITE_ONLY_ON_NEW_GEO_DATA = true;
     private static final String TAG = "TCXFileExporter";
     private static final boolean DEBUG = false;
-    // DateFormats to convert from Db style dates to XML style dates
-    protected static final SimpleDateFormat msdfFromDb = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
-    protected static final SimpleDateFormat msdfToXML = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
 
     public TCXFileWriter(@NonNull Context context) {
         super(context);
     }
 
-    // convert from "2012-03-29 16:23:05" to "2012-03-29T16:23:05Z"
-    @NonNull
-    protected static String dbTime2XMLTime(@NonNull String dbTime) throws ParseException {
-        return msdfToXML.format(msdfFromDb.parse(dbTime)) + "Z";
-    }
+    // the state while streaming
+    private double mLatitude, mLongitude;
+    private long mPrevLineLap;
+    private final Trackpoint mTrackpoint = new Trackpoint();
 
-    @NonNull
     @Override
-    protected ExportResult doExport(@NonNull ExportInfo exportInfo)
-            throws IOException, ParseException {
+    protected void writeHeader(@NonNull SampleRowReader sampleRowReader) throws IOException, ParseException {
         if (DEBUG) Log.d(TAG, "exportToFile");
 
-        getHeaderData(exportInfo);
-
-        BufferedWriter bufferedWriter = getBufferedWriter(exportInfo.getShortPath());
-
         // write the header data to the file
-        bufferedWriter.write("<?xml version=\"1.0\"?>\n");
-        bufferedWriter.write("<TrainingCenterDatabase xmlns=\"http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://www.garmin.com/xmlschemas/ActivityExtension/v2 http://www.garmin.com/xmlschemas/ActivityExtensionv2.xsd http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2 http://www.garmin.com/xmlschemas/TrainingCenterDatabasev2.xsd\">\n");
-        bufferedWriter.write("  <Activities>\n");
-        bufferedWriter.write("    <Activity Sport=\"" + SportTypeDatabaseManager.getInstance(mContext).getTcxName(sportTypeId) + "\">\n");
-        bufferedWriter.write("      <Id>" + dbTime2XMLTime(startTime) + "</Id>\n");
-
-        SQLiteDatabase db = WorkoutSamplesDatabaseManager.getInstance(mContext).getDatabase();
-        Cursor cursor = db.query(WorkoutSamplesDatabaseManager.getTableName(exportInfo.getFileBaseName()),
-                null,
-                null,
-                null,
-                null,
-                null,
-                null);
-
-        int hr;
-        double distance, speed, power, cadence, altitude;
-        double latitude = 0.0;
-        double longitude = 0.0;
-        double latitudeOld;
-        double longitudeOld;
-
-        long prevLineLap = BANALService.INIT_LAP_NR - 1;
-
-        int lines = cursor.getCount();
-
-        int count = 0;
-        while (cursor.moveToNext()) {
-
-            // TODO: avoid writing laps with zero distance and time and ...
-
-            int lap = cursor.getInt(cursor.getColumnIndexOrThrow(SensorType.LAP_NR.name()));
-            if (prevLineLap != lap) { // new lap
-
-                if (lap != BANALService.INIT_LAP_NR) { // finish previous lap
-                    bufferedWriter.write("        </Track>\n");
-                    bufferedWriter.write("      </Lap>\n");
-                }
-
-                // get the lap data
-                SQLiteDatabase lapDb = LapsDatabaseManager.getInstance(mContext).getDatabase();
-
-                Cursor lapCursor = lapDb.query(LapsDatabaseManager.Laps.TABLE,
-                        null,
-                        LapsDatabaseManager.Laps.WORKOUT_ID + "=? AND " + LapsDatabaseManager.Laps.LAP_NR + "=?",
-                        new String[]{workoutID + "", lap + ""},
-                        null,
-                        null,
-                        null);
-                if (DEBUG)
-                    Log.d(TAG, "getting lap data: workoutID: " + workoutID + ", lapNr: " + lap + " found: "
-                            + lapCursor.getCount() + ", " + lapCursor.getColumnCount());
-
-                lapCursor.moveToFirst();
+        mBufferedWriter.write("<?xml version=\"1.0\"?>\n");
+        mBufferedWriter.write("<TrainingCenterDatabase xmlns=\"http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://www.garmin.com/xmlschemas/ActivityExtension/v2 http://www.garmin.com/xmlschemas/ActivityExtensionv2.xsd http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2 http://www.garmin.com/xmlschemas/TrainingCenterDatabasev2.xsd\">\n");
+        mBufferedWriter.write("  <Activities>\n");
+        mBufferedWriter.write("    <Activity Sport=\"" + SportTypeDatabaseManager.getInstance(mContext).getTcxName(sportTypeId) + "\">\n");
+        mBufferedWriter.write("      <Id>" + SampleTimeFormat.dbTime2XMLTime(startTime) + "</Id>\n");
+
+        mLatitude = 0.0;
+        mLongitude = 0.0;
+        mPrevLineLap = BANALService.INIT_LAP_NR - 1;
+    }
 
-                // get the data for the lap
-                totalTime = myGet(lapCursor, LapsDatabaseManager.Laps.TIME_TOTAL_s, "0");
-                totalDistance = myGet(lapCursor, LapsDatabaseManager.Laps.DISTANCE_TOTAL_m, "0");
+    @Override
+    protected void writeSample(@NonNull SampleRowReader sampleRowReader) throws IOException, ParseException {
+        // TODO: avoid writing laps with zero distance and time and ...
 
-                lapCursor.close();
+        String time = sampleRowReader.getXMLTime();
 
-                // write the lap data
-                bufferedWriter.write("      <Lap StartTime=\"" + dbTime2XMLTime(cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSamplesDbHelper.TIME))) + "\">\n");
-                bufferedWriter.write("        <TotalTimeSeconds>" + totalTime + "</TotalTimeSeconds>\n");
-                bufferedWriter.write("        <DistanceMeters>" + totalDistance + "</DistanceMeters>\n");
-                // bufferedWriter.write("        <Calories>" + 0 + "</Calories>\n");    // TODO
-                // bufferedWriter.write("        <Intensity>Active</Intensity>\n"); // TODO: meaning???
-                // bufferedWriter.write("        <TriggerMethod>Manual</TriggerMethod>\n"); // TODO: meaning?
-                bufferedWriter.write("        <Track>\n");
+        int lap = sampleRowReader.getInt(SensorType.LAP_NR);
+        if (mPrevLineLap != lap) { // new lap
 
+            if (lap != BANALService.INIT_LAP_NR) { // finish previous lap
+                mBufferedWriter.write("        </Track>\n");
+                mBufferedWriter.write("      </Lap>\n");
             }
-            prevLineLap = lap;
 
-            bufferedWriter.write("          <Trackpoint>\n");
-            bufferedWriter.write("            <Time>"
-                    + dbTime2XMLTime(cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSamplesDbHelper.TIME)))
-                    + "</Time>\n");
+            // get the data for the lap
+            totalTime = mWorkoutExportData.getLapTotalTime(lap);
+            totalDistance = mWorkoutExportData.getLapTotalDistance(lap);
 
-            // we do not write location data when it was a (indoor) trainer session
-            if (!indoorTrainerSession && haveGeo && dataValid(cursor, SensorType.LATITUDE.name()) && dataValid(cursor, SensorType.LONGITUDE.name())) {
-                latitudeOld = latitude;
-                longitudeOld = longitude;
-                latitude = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.LATITUDE.name()));
-                longitude = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.LONGITUDE.name()));
+            // write the lap data
+            mBufferedWriter.write("      <Lap StartTime=\"" + time + "\">\n");
+            mBufferedWriter.write("        <TotalTimeSeconds>" + totalTime + "</TotalTimeSeconds>\n");
+            mBufferedWriter.write("        <DistanceMeters>" + totalDistance + "</DistanceMeters>\n");
+            // mBufferedWriter.write("        <Calories>" + 0 + "</Calories>\n");    // TODO
+            // mBufferedWriter.write("        <Intensity>Active</Intensity>\n"); // TODO: meaning???
+            // mBufferedWriter.write("        <TriggerMethod>Manual</TriggerMethod>\n"); // TODO: meaning?
+            mBufferedWriter.write("        <Track>\n");
 
-                if (WRITE_ONLY_ON_NEW_GEO_DATA && latitude == latitudeOld && longitude == longitudeOld) {
-                    // do nothing
-                } else {
-                    bufferedWriter.write("            <Position>\n");
-                    bufferedWriter.write("              <LatitudeDegrees>" +
-                            latitude + "</LatitudeDegrees>\n");
-                    bufferedWriter.write("              <LongitudeDegrees>" +
-                            longitude + "</LongitudeDegrees>\n");
-                    bufferedWriter.write("            </Position>\n");
-                }
-            }
+        }
+        mPrevLineLap = lap;
 
-            if (haveAltitude && dataValid(cursor, SensorType.ALTITUDE.name())) {
-                altitude = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.ALTITUDE.name()));
-                bufferedWriter.write("            <AltitudeMeters>" +
-                        altitude + "</AltitudeMeters>\n");
-            }
+        mTrackpoint.clear();
+        mTrackpoint.time = time;
 
-            if (haveDistance && dataValid(cursor, SensorType.DISTANCE_m.name())) {
-                distance = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.DISTANCE_m.name()));
-                bufferedWriter.write("            <DistanceMeters>" +
-                        distance + "</DistanceMeters>\n");
-            }
+        // we do not write location data when it was a (indoor) trainer session
+        if (!indoorTrainerSession && haveGeo && sampleRowReader.isValid(SensorType.LATITUDE) && sampleRowReader.isValid(SensorType.LONGITUDE)) {
+            double latitudeOld = mLatitude;
+            double longitudeOld = mLongitude;
+            mLatitude = sampleRowReader.getDouble(SensorType.LATITUDE);
+            mLongitude = sampleRowReader.getDouble(SensorType.LONGITUDE);
 
-            if (haveHR && dataValid(cursor, SensorType.HR.name())) {
-                bufferedWriter.write("            <HeartRateBpm xsi:type=\"HeartRateInBeatsPerMinute_t\">\n");
-                hr = cursor.getInt(cursor.getColumnIndexOrThrow(SensorType.HR.name()));
-                bufferedWriter.write("              <Value>" +
-                        hr + "</Value>\n");
-                bufferedWriter.write("            </HeartRateBpm>\n");
+            if (!(WRITE_ONLY_ON_NEW_GEO_DATA && mLatitude == latitudeOld && mLongitude == longitudeOld)) {
+                mTrackpoint.latitude = mLatitude;
+                mTrackpoint.longitude = mLongitude;
             }
+        }
 
-            if (haveBikeCadence && dataValid(cursor, SensorType.CADENCE.name())) {
-                cadence = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.CADENCE.name()));
-                bufferedWriter.write("            <Cadence>" +
-                        cadence + "</Cadence>\n");
-            }
-
-            if ((haveSpeed || havePower || haveRunCadence)
-                    && (dataValid(cursor, SensorType.SPEED_mps.name())
-                    || dataValid(cursor, SensorType.POWER.name())
-                    || dataValid(cursor, SensorType.CADENCE.name()))) {
-                bufferedWriter.write("            <Extensions>\n");
-                bufferedWriter.write("              <TPX xmlns=\"http://www.garmin.com/xmlschemas/ActivityExtension/v2\">\n");
-                if (haveSpeed && dataValid(cursor, SensorType.SPEED_mps.name())) {
-                    speed = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.SPEED_mps.name()));
-                    bufferedWriter.write("            <Speed>" +
-                            speed + "</Speed>\n");
-                }
-
-                if (havePower && dataValid(cursor, SensorType.POWER.name())) {
-                    power = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.POWER.name()));
-                    bufferedWriter.write("            <Watts>" +
-                            power + "</Watts>\n");
-                }
-
-                if (haveRunCadence && dataValid(cursor, SensorType.CADENCE.name())) {
-                    cadence = cursor.getDouble(cursor.getColumnIndexOrThrow(SensorType.CADENCE.name()));
-                    bufferedWriter.write("            <RunCadence>" +
-                            cadence + "</RunCadence>\n");
-                }
-
-
-                bufferedWriter.write("              </TPX>\n");
-                bufferedWriter.write("            </Extensions>\n");
-            }
-            bufferedWriter.write("          </Trackpoint>\n");
+        if (haveAltitude && sampleRowReader.isValid(SensorType.ALTITUDE)) {
+            mTrackpoint.altitude_m = sampleRowReader.getDouble(SensorType.ALTITUDE);
+        }
+        if (haveDistance && sampleRowReader.isValid(SensorType.DISTANCE_m)) {
+            mTrackpoint.distance_m = sampleRowReader.getDouble(SensorType.DISTANCE_m);
+        }
+        if (haveHR && sampleRowReader.isValid(SensorType.HR)) {
+            mTrackpoint.hr = sampleRowReader.getInt(SensorType.HR);
+        }
+        if (haveBikeCadence && sampleRowReader.isValid(SensorType.CADENCE)) {
+            mTrackpoint.bikeCadence = sampleRowReader.getDouble(SensorType.CADENCE);
         }
+        if (haveSpeed && sampleRowReader.isValid(SensorType.SPEED_mps)) {
+            mTrackpoint.speed_mps = sampleRowReader.getDouble(SensorType.SPEED_mps);
+        }
+        if (havePower && sampleRowReader.isValid(SensorType.POWER)) {
+            mTrackpoint.power = sampleRowReader.getDouble(SensorType.POWER);
+        }
+        if (haveRunCadence && sampleRowReader.isValid(SensorType.CADENCE)) {
+            mTrackpoint.runCadence = sampleRowReader.getDouble(SensorType.CADENCE);
+        }
+
+        TrackpointFormat.TCX.write(mBufferedWriter, mTrackpoint);
+    }
 
+    @Override
+    protected void writeTail() throws IOException {
         // now the tail
-        bufferedWriter.write("        </Track>\n");
-        bufferedWriter.write("      </Lap>\n");
-        bufferedWriter.write("    </Activity>\n");
-        bufferedWriter.write("  </Activities>\n");
-        bufferedWriter.write("  <Creator xsi:type=\"Device_t\">\n");
-        bufferedWriter.write("    <Name>" + android.os.Build.MANUFACTURER + " " + android.os.Build.MODEL + "</Name>\n");
-//        bufferedWriter.write("        <UnitId>0</UnitId>\n");
-//        bufferedWriter.write("        <ProductID>0</ProductID>\n");
-//        bufferedWriter.write("        <Version>\n");
-//        bufferedWriter.write("            <VersionMajor>" + TrainingApplication.getVersionMajor() + "</VersionMajor>\n");
-//        bufferedWriter.write("            <VersionMinor>" + TrainingApplication.getVersionMinor() + "</VersionMinor>\n");
-//        bufferedWriter.write("            <BuildMajor>0</BuildMajor>\n");
-//        bufferedWriter.write("            <BuildMinor>0</BuildMinor>\n");
-//        bufferedWriter.write("        </Version>\n");
-        bufferedWriter.write("  </Creator>\n");
-        bufferedWriter.write("  <Author xsi:type=\"Application_t\">\n");
+        mBufferedWriter.write("        </Track>\n");
+        mBufferedWriter.write("      </Lap>\n");
+        mBufferedWriter.write("    </Activity>\n");
+        mBufferedWriter.write("  </Activities>\n");
+        mBufferedWriter.write("  <Creator xsi:type=\"Device_t\">\n");
+        mBufferedWriter.write("    <Name>" + android.os.Build.MANUFACTURER + " " + android.os.Build.MODEL + "</Name>\n");
+//        mBufferedWriter.write("        <UnitId>0</UnitId>\n");
+//        mBufferedWriter.write("        <ProductID>0</ProductID>\n");
+//        mBufferedWriter.write("        <Version>\n");
+//        mBufferedWriter.write("            <VersionMajor>" + TrainingApplication.getVersionMajor() + "</VersionMajor>\n");
+//        mBufferedWriter.write("            <VersionMinor>" + TrainingApplication.getVersionMinor() + "</VersionMinor>\n");
+//        mBufferedWriter.write("            <BuildMajor>0</BuildMajor>\n");
+//        mBufferedWriter.write("            <BuildMinor>0</BuildMinor>\n");
+//        mBufferedWriter.write("        </Version>\n");
+        mBufferedWriter.write("  </Creator>\n");
+        mBufferedWriter.write("  <Author xsi:type=\"Application_t\">\n");
         String name = TrainingApplication.getAppName();
         if (HavePressureSensor.havePressureSensor(mContext)) {
             name += " with barometer";
         } // add "with barometer" when a barometer was/is available, see Strava API Documentations
-        bufferedWriter.write("    <Name>" + name + "</Name>\n");
-//        bufferedWriter.write("        <Build>\n");
-//        bufferedWriter.write("            <Version>\n");
-//        bufferedWriter.write("                <VersionMajor>" + TrainingApplication.getVersionMajor() + "</VersionMajor>\n");
-//        bufferedWriter.write("                <VersionMinor>" + TrainingApplication.getVersionMinor() + "</VersionMinor>\n");
-//        bufferedWriter.write("                <BuildMajor>0</BuildMajor>\n");
-//        bufferedWriter.write("                <BuildMinor>0</BuildMinor>\n");
-//        bufferedWriter.write("            </Version>\n");
-//        bufferedWriter.write("            <Type>Beta</Type>\n");
-//        bufferedWriter.write("        </Build>\n");
-//        bufferedWriter.write("        <LangID>en</LangID>\n");  // TODO: change LangID when necessary!
-//        bufferedWriter.write("        <PartNumber>0</PartNumber>\n");
-        bufferedWriter.write("  </Author>\n");
-        bufferedWriter.write("</TrainingCenterDatabase>\n");
-
-        bufferedWriter.close();
+        mBufferedWriter.write("    <Name>" + name + "</Name>\n");
+//        mBufferedWriter.write("        <Build>\n");
+//        mBufferedWriter.write("            <Version>\n");
+//        mBufferedWriter.write("                <VersionMajor>" + TrainingApplication.getVersionMajor() + "</VersionMajor>\n");
+//        mBufferedWriter.write("                <VersionMinor>" + TrainingApplication.getVersionMinor() + "</VersionMinor>\n");
+//        mBufferedWriter.write("                <BuildMajor>0</BuildMajor>\n");
+//        mBufferedWriter.write("                <BuildMinor>0</BuildMinor>\n");
+//        mBufferedWriter.write("            </Version>\n");
+//        mBufferedWriter.write("            <Type>Beta</Type>\n");
+//        mBufferedWriter.write("        </Build>\n");
+//        mBufferedWriter.write("        <LangID>en</LangID>\n");  // TODO: change LangID when necessary!
+//        mBufferedWriter.write("        <PartNumber>0</PartNumber>\n");
+        mBufferedWriter.write("  </Author>\n");
+        mBufferedWriter.write("</TrainingCenterDatabase>\n");
 
-        cursor.close();
+    }
 
-        return new ExportResult(true, false, "Successfully exported to TCX File");
+    @NonNull
+    @Override
+    protected String getSuccessMessage() {
+        return "Successfully exported to TCX File";
     }
 
 }
@@ -0,0 +1,126 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.LapsDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.LapsDatabaseManager.Laps;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The data of a workout that all file writers need: the summary (header) data and the data of all laps.
+ * It is read once per export, so exporting to several formats does not repeat these lookups.
+ */
+public final class WorkoutExportData {
+    private static final String TAG = "WorkoutExportData";
+    private static final boolean DEBUG = TrainingApplication.getDebug(false);
+
+    final String startTime, totalTime, data, goal, method, totalDistance, description;
+    final long workoutID, sportTypeId;
+    final boolean indoorTrainerSession;
+
+    // lapNr -> {totalTime, totalDistance}
+    private final Map<Integer, String[]> mLaps = new HashMap<>();
+
+    private WorkoutExportData(@NonNull Cursor summaryCursor) {
+        startTime = get(summaryCursor, WorkoutSummaries.TIME_START, "");
+        totalTime = get(summaryCursor, WorkoutSummaries.TIME_TOTAL_s, "0");
+        data = get(summaryCursor, WorkoutSummaries.GC_DATA, "--------");
+        goal = get(summaryCursor, WorkoutSummaries.GOAL, "");
+        method = get(summaryCursor, WorkoutSummaries.METHOD, "");
+        totalDistance = get(summaryCursor, WorkoutSummaries.DISTANCE_TOTAL_m, "0");
+        description = get(summaryCursor, WorkoutSummaries.DESCRIPTION, "");
+        workoutID = summaryCursor.getLong(summaryCursor.getColumnIndex(WorkoutSummaries.C_ID));
+        sportTypeId = summaryCursor.getLong(summaryCursor.getColumnIndex(WorkoutSummaries.SPORT_ID));
+        indoorTrainerSession = summaryCursor.getInt(summaryCursor.getColumnIndex(WorkoutSummaries.TRAINER)) > 0;
+    }
+
+    /**
+     * reads the summary of the workout and all its laps
+     *
+     * @return null when there is no such workout
+     */
+    @Nullable
+    public static WorkoutExportData read(@NonNull Context context, @NonNull String fileBaseName) {
+        SQLiteDatabase db = WorkoutSummariesDatabaseManager.getInstance(context).getDatabase();
+
+        WorkoutExportData workoutExportData;
+        try (Cursor cursor = db.query(WorkoutSummaries.TABLE,
+                null,
+                WorkoutSummaries.FILE_BASE_NAME + "=?",
+                new String[]{fileBaseName},
+                null,
+                null,
+                null)) {
+            if (!cursor.moveToFirst()) {
+                Log.e(TAG, "no summary for " + fileBaseName);
+                return null;
+            }
+            workoutExportData = new WorkoutExportData(cursor);
+        }
+
+        SQLiteDatabase lapDb = LapsDatabaseManager.getInstance(context).getDatabase();
+        try (Cursor lapCursor = lapDb.query(Laps.TABLE,
+                new String[]{Laps.LAP_NR, Laps.TIME_TOTAL_s, Laps.DISTANCE_TOTAL_m},
+                Laps.WORKOUT_ID + "=?",
+                new String[]{Long.toString(workoutExportData.workoutID)},
+                null,
+                null,
+                null)) {
+            while (lapCursor.moveToNext()) {
+                workoutExportData.mLaps.put(lapCursor.getInt(0), new String[]{
+                        get(lapCursor, Laps.TIME_TOTAL_s, "0"),
+                        get(lapCursor, Laps.DISTANCE_TOTAL_m, "0")});
+            }
+        }
+        if (DEBUG) Log.d(TAG, "read " + workoutExportData.mLaps.size() + " laps of workout " + workoutExportData.workoutID);
+
+        return workoutExportData;
+    }
+
+    @NonNull
+    String getLapTotalTime(int lapNr) {
+        String[] lap = mLaps.get(lapNr);
+        return lap == null ? "0" : lap[0];
+    }
+
+    @NonNull
+    String getLapTotalDistance(int lapNr) {
+        String[] lap = mLaps.get(lapNr);
+        return lap == null ? "0" : lap[1];
+    }
+
+    @NonNull
+    private static String get(@NonNull Cursor cursor, @NonNull String name, @NonNull String defaultValue) {
+        String value = cursor.getString(cursor.getColumnIndexOrThrow(name));
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+}
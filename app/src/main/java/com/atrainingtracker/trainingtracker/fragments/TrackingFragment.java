@@ -44,7 +44,6 @@ import android.widget.TextView;
 import com.atrainingtracker.R;
 import com.atrainingtracker.banalservice.ActivityType;
 import com.atrainingtracker.banalservice.BANALService;
-import com.atrainingtracker.banalservice.BSportType;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.database.DevicesDatabaseManager;
 import com.atrainingtracker.banalservice.filters.FilterData;
@@ -59,9 +58,12 @@ import com.atrainingtracker.trainingtracker.dialogs.EditFieldDialog;
 import com.atrainingtracker.trainingtracker.fragments.mapFragments.TrackOnMapTrackingAndFollowingFragment;
 import com.atrainingtracker.trainingtracker.fragments.mapFragments.TrackOnMapTrackingFragment;
 import com.atrainingtracker.trainingtracker.settings.SettingsDataStore;
+import com.atrainingtracker.trainingtracker.settings.ZoneModel;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.atrainingtracker.trainingtracker.dialogs.EditFieldDialog.TRACKING_VIEW_CHANGED_INTENT;
 
@@ -72,6 +74,9 @@ public class TrackingFragment extends BaseTrackingFragment {
     private static final String MODE = "MODE";
     private static final String ACTIVITY_TYPE = "ACTIVITY_TYPE";
     private static final int TEXT_SIZE_TITLE = 15;
+    // sequence numbers of the fields that were not yet displayed and of the filters that do not (yet) exist
+    private static final long NOT_YET_DISPLAYED = Long.MIN_VALUE;
+    private static final long NO_FILTER = -1;
     private final IntentFilter mNewTimeEventFilter = new IntentFilter(BANALService.NEW_TIME_EVENT_INTENT);
     private final IntentFilter mTrackingViewChangedFilter = new IntentFilter(TRACKING_VIEW_CHANGED_INTENT);
     @NonNull
@@ -81,9 +86,12 @@ public class TrackingFragment extends BaseTrackingFragment {
     // protected EnumMap<SensorType, HashMap<String, String>> mSensorValueMap = new EnumMap<SensorType, HashMap<String, String>>(SensorType.class); // maps (SensorType, DeviceName) -> value
 
     // protected List<TvSensorType> mLTvSensorType;  // contains all the TvSensorTypes
+    // only the filters of the fields of this view are read, and a field is only redrawn when its text or zone changed
     @NonNull
-    protected HashMap<String, TvSensorType> mHashMapTextViews = new HashMap<>(); // HashMap<String, TvSensorType>   for the TextViews and SensorType
-    protected final HashMap<String, String> mHashMapValues = new HashMap<>();     // HashMap<String, String>     for the values
+    protected List<SensorField> mSensorFields = new ArrayList<>();
+    @Nullable
+    protected ZoneModel mZoneModel;
+    protected final int[] mZoneColors = new int[ZoneModel.ZONES];
     protected LinearLayout mLLSensors;
     protected FrameLayout mMapContainer;
     protected Button mButtonLap;
@@ -91,13 +99,23 @@ public class TrackingFragment extends BaseTrackingFragment {
     protected ActivityType mActivityType;
     protected LayoutInflater mLayoutInflater;
 
+    // the statistics of the display updates of all tracking views
+    private static final AtomicLong cDisplayUpdates = new AtomicLong();
+    private static final AtomicLong cDisplayUpdateTime_ns = new AtomicLong();
+    private static final AtomicLong cMaxDisplayUpdateTime_ns = new AtomicLong();
+    private static final AtomicLong cFieldsChecked = new AtomicLong();
+    private static final AtomicLong cFieldsUpdated = new AtomicLong();
+
     // protected String mUnitSpeed, mUnitPace, mUnitDistance;
     @Nullable
     protected TrackOnMapTrackingFragment mTrackOnMapTrackingFragment = null;
     final BroadcastReceiver mNewTimeEventReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            doDisplayUpdate();
+            // the pager resumes only the visible view, the others need not be updated
+            if (isResumed()) {
+                doDisplayUpdate();
+            }
         }
     };
     final BroadcastReceiver mTrackingViewChangedReceiver = new BroadcastReceiver() {
@@ -186,6 +204,13 @@ public class TrackingFragment extends BaseTrackingFragment {
         if (mode != null) {
             mMode = Mode.valueOf(mode);
         }
+
+        mZoneModel = ZoneModel.getInstance(requireContext());
+        mZoneColors[0] = ContextCompat.getColor(requireContext(), R.color.zone_1);
+        mZoneColors[1] = ContextCompat.getColor(requireContext(), R.color.zone_2);
+        mZoneColors[2] = ContextCompat.getColor(requireContext(), R.color.zone_3);
+        mZoneColors[3] = ContextCompat.getColor(requireContext(), R.color.zone_4);
+        mZoneColors[4] = ContextCompat.getColor(requireContext(), R.color.zone_5);
     }
 
     @Override
@@ -268,6 +293,9 @@ public class TrackingFragment extends BaseTrackingFragment {
         if (trackingViewsDatabaseManager.day(mViewId))   { forceDay();   }
         if (trackingViewsDatabaseManager.night(mViewId)) { forceNight(); }
         if (trackingViewsDatabaseManager.systemSettings(mViewId)) { followSystem(); }
+
+        // the values were not updated while this view was not visible
+        doDisplayUpdate();
     }
 
 
@@ -353,7 +381,7 @@ public class TrackingFragment extends BaseTrackingFragment {
         TreeMap<Integer, TreeMap<Integer, TrackingViewsDatabaseManager.ViewInfo>> viewInfoMap = trackingViewsDatabaseManager.getViewInfoMap(mViewId);
 
         mLLSensors.removeAllViews();
-        mHashMapTextViews = new HashMap<>();
+        mSensorFields = new ArrayList<>();
 
         for (int rowNr : viewInfoMap.keySet()) {
             if (DEBUG) Log.i(TAG, "adding rowNr=" + rowNr);
@@ -432,9 +460,9 @@ public class TrackingFragment extends BaseTrackingFragment {
             tv.setGravity(Gravity.CENTER_HORIZONTAL);
             llField.addView(tv);
 
-            // finally, add this TextView to the Map
-            mHashMapTextViews.put((new FilterData(deviceName, sensorType, viewInfo.filterType(), viewInfo.filterConstant())).getHashKey(),
-                    new TvSensorType(tv, sensorType));
+            // finally, add this TextView to the fields
+            String hashKey = new FilterData(deviceName, sensorType, viewInfo.filterType(), viewInfo.filterConstant()).getHashKey();
+            mSensorFields.add(new SensorField(tv, sensorType, hashKey, ZoneModel.getZoneType(sensorType, mActivityType.getSportType())));
         }
     }
 
@@ -447,144 +475,137 @@ public class TrackingFragment extends BaseTrackingFragment {
     public void doDisplayUpdate() {
         if (DEBUG) Log.d(TAG, "doDisplayUpdate for " + mViewId);
 
-        if (mMode == Mode.PREVIEW || getSensorData()) {
-
-            for (String hashKey : mHashMapTextViews.keySet()) {
+        BANALService.BANALServiceComm banalServiceComm = mGetBanalServiceIf == null ? null : mGetBanalServiceIf.getBanalServiceComm();
+        if (mMode != Mode.PREVIEW && banalServiceComm == null) {
+            if (DEBUG) Log.i(TAG, "no Connection to BANALService");
+            return;
+        }
 
-                TvSensorType tvSensorType = mHashMapTextViews.get(hashKey);
+        long start = System.nanoTime();
+        boolean showUnits = TrainingApplication.showUnits() && getActivity() != null;
+        int updatedFields = 0;
 
-                // get the value
-                String value = null;
-                if (mHashMapValues.containsKey(hashKey)) {
-                    value = mHashMapValues.get(hashKey);
-                }
+        for (SensorField sensorField : mSensorFields) {
+            FilteredSensorData filteredSensorData = banalServiceComm == null ? null : banalServiceComm.getFilteredSensorData(sensorField.hashKey);
 
-                // check if there was a valid value
-                if (value == null) {
-                    // if (DEBUG) Log.d(TAG, "value==null for " + getString(sensorType.getShortNameId()));
-                    if (getActivity() != null) {
-                        value = getString(R.string.NoData);
-                        if (DEBUG) Log.i(TAG, ":-( no valid value for " + hashKey);
-                    }
-                    else {
-                        value = "--";
-                        Log.i(TAG, "WTF: no value for " + hashKey + " but no Activity");
-                    }
-                } else {
-                    // remove/delete the current value (necessary when a sensor is removed)
-                    mHashMapValues.put(hashKey, null);
+            // nothing to do when the filtered value did not change since the last update
+            long sequenceNumber = filteredSensorData == null ? NO_FILTER : filteredSensorData.getSequenceNumber();
+            if (sequenceNumber == sensorField.sequenceNumber && sensorField.showUnits == showUnits) {
+                continue;
+            }
+            sensorField.sequenceNumber = sequenceNumber;
+            sensorField.showUnits = showUnits;
+
+            // get the value and check if it is valid
+            String value = filteredSensorData == null ? null : filteredSensorData.getStringValue();
+            if (value == null) {
+                if (getActivity() != null) {
+                    value = getString(R.string.NoData);
+                    if (DEBUG) Log.i(TAG, ":-( no valid value for " + sensorField.hashKey);
                 }
-                if (DEBUG) Log.i(TAG, "displayUpdate for " + hashKey + ": " + value);
-
-                // now, display it
-                if (TrainingApplication.showUnits() && getActivity() != null) {
-                    String units = getString(MyHelper.getUnitsId(tvSensorType.sensorType));
-                    tvSensorType.textView.setText(getString(R.string.value_unit_string_string, value, units));
-                } else {
-                    tvSensorType.textView.setText(value);
+                else {
+                    value = "--";
+                    Log.i(TAG, "WTF: no value for " + sensorField.hashKey + " but no Activity");
                 }
+            }
+            if (DEBUG) Log.i(TAG, "displayUpdate for " + sensorField.hashKey + ": " + value);
+
+            // now, display it when it changed
+            String text = showUnits ? getString(R.string.value_unit_string_string, value, getString(MyHelper.getUnitsId(sensorField.sensorType))) : value;
+            boolean updated = false;
+            if (!text.equals(sensorField.text)) {
+                sensorField.textView.setText(text);
+                sensorField.text = text;
+                updated = true;
+            }
 
-                // Set background color depending on the Zone
-                setZoneBasedBackgroundColor(tvSensorType, value);
+            // Set background color depending on the Zone
+            Object numericValue = filteredSensorData == null ? null : filteredSensorData.getValue();
+            if (numericValue instanceof Number number && setZoneBasedBackgroundColor(sensorField, number)) {
+                updated = true;
+            }
 
+            if (updated) {
+                updatedFields++;
             }
         }
+
+        long duration_ns = System.nanoTime() - start;
+        cDisplayUpdates.incrementAndGet();
+        cDisplayUpdateTime_ns.addAndGet(duration_ns);
+        cMaxDisplayUpdateTime_ns.accumulateAndGet(duration_ns, Math::max);
+        cFieldsChecked.addAndGet(mSensorFields.size());
+        cFieldsUpdated.addAndGet(updatedFields);
+        if (DEBUG) Log.d(TAG, "updated " + updatedFields + " of " + mSensorFields.size() + " fields in " + duration_ns / 1000 + " us");
     }
 
 
     /**
-     * Parses the value and sets the background color of the sensor text view
-     * based on the zones defined in Settings.
+     * Sets the background color of the sensor text view based on the zones defined in Settings.
+     * The numeric value is classified by the zone model that holds the limits in memory.
+     *
+     * @return whether the zone and thus the color changed
      */
-    protected void setZoneBasedBackgroundColor(@NonNull TvSensorType tvSensorType, @Nullable String valueStr) {
-        // 1. Initial Checks: If no context or invalid data, return transparent
-        if (getContext() == null || valueStr == null || valueStr.equals("--") || valueStr.equals(getString(R.string.NoData))) {
-            return;
-        }
-
-        // 2. Parse the numeric value
-        double currentVal;
-        try {
-            currentVal = Double.parseDouble(valueStr);
-        } catch (NumberFormatException e) {
-            return;
-        }
-
-        // 3. Determine Zone Type based on Sensor and ActivityType
-        SettingsDataStore.ZoneType zoneType = getZoneType(tvSensorType);
-
+    protected boolean setZoneBasedBackgroundColor(@NonNull SensorField sensorField, @NonNull Number value) {
         // Simply return if this sensor/activity combo doesn't support zones,
-        if (zoneType == null) {
-            return;
+        if (mZoneModel == null || sensorField.zoneType == null) {
+            return false;
         }
 
-        // 4. Get Zone Limits using the Java Helper
-        Context context = getContext();
-        int z1Max = com.atrainingtracker.trainingtracker.settings.SettingsDataStoreJavaHelper.getZoneMax(context, zoneType, 1);
-        int z2Max = com.atrainingtracker.trainingtracker.settings.SettingsDataStoreJavaHelper.getZoneMax(context, zoneType, 2);
-        int z3Max = com.atrainingtracker.trainingtracker.settings.SettingsDataStoreJavaHelper.getZoneMax(context, zoneType, 3);
-        int z4Max = com.atrainingtracker.trainingtracker.settings.SettingsDataStoreJavaHelper.getZoneMax(context, zoneType, 4);
-
-        // 5. Determine the Color
-        int color;
-        if (currentVal <= z1Max) {
-            color = ContextCompat.getColor(context, R.color.zone_1);
-        } else if (currentVal <= z2Max) {
-            color = ContextCompat.getColor(context, R.color.zone_2);
-        } else if (currentVal <= z3Max) {
-            color = ContextCompat.getColor(context, R.color.zone_3);
-        } else if (currentVal <= z4Max) {
-            color = ContextCompat.getColor(context, R.color.zone_4);
-        } else {
-            // Zone 5 (Anaerobic)
-            color = ContextCompat.getColor(context, R.color.zone_5);
+        int zone = mZoneModel.getZone(sensorField.zoneType, value.doubleValue());
+        if (zone == sensorField.zone) {
+            return false;
         }
-
-        // Finally, set the background color
-        tvSensorType.textView.setBackgroundColor(color);
+        sensorField.textView.setBackgroundColor(mZoneColors[zone - 1]);
+        sensorField.zone = zone;
+        return true;
     }
 
-    @Nullable
-    private SettingsDataStore.ZoneType getZoneType(@NonNull TvSensorType tvSensorType) {
-        SettingsDataStore.ZoneType zoneType = null;
-
-        if (tvSensorType.sensorType == SensorType.HR) {
-            if (mActivityType.getSportType() == BSportType.RUN) {
-                zoneType = SettingsDataStore.ZoneType.HR_RUN;
-            } else if (mActivityType.getSportType() == BSportType.BIKE) {
-                zoneType = SettingsDataStore.ZoneType.HR_BIKE;
-            }
-        } else if (tvSensorType.sensorType == SensorType.POWER) {
-            if (mActivityType.getSportType() == BSportType.BIKE) {
-                zoneType = SettingsDataStore.ZoneType.PWR_BIKE;
-            }
-        }
-        return zoneType;
+    /**
+     * @return the statistics of the display updates of all tracking views since the start of the app
+     */
+    @NonNull
+    public static DisplayUpdateStats getDisplayUpdateStats() {
+        return new DisplayUpdateStats(cDisplayUpdates.get(), cDisplayUpdateTime_ns.get(), cMaxDisplayUpdateTime_ns.get(),
+                cFieldsChecked.get(), cFieldsUpdated.get());
     }
 
 
-    protected boolean getSensorData() {
-        if (DEBUG) Log.d(TAG, "getSensorData for " + mViewId);
-
-        if (mGetBanalServiceIf != null & mGetBanalServiceIf.getBanalServiceComm() != null) {
-            // for (SensorData sensorData : mGetBanalServiceIf.getBanalServiceComm().getBestSensorData()) {
-            for (FilteredSensorData filteredSensorData : mGetBanalServiceIf.getBanalServiceComm().getAllFilteredSensorData()) {
-                if (DEBUG) {
-                    Log.d(TAG, "getSensorData for " + filteredSensorData.getFilterData().getHashKey() + ": " + filteredSensorData.getStringValue());
-                }
+    public enum Mode {TRACKING, PREVIEW}
 
-                mHashMapValues.put(filteredSensorData.getFilterData().getHashKey(), filteredSensorData.getStringValue());
-            }
-            return true;
-        } else {
-            if (DEBUG) Log.i(TAG, "no Connection to BANALService");
-            return false;
+    /**
+     * a field of the view together with what is currently displayed
+     */
+    protected static final class SensorField {
+        final TextView textView;
+        final SensorType sensorType;
+        final String hashKey;
+        @Nullable
+        final SettingsDataStore.ZoneType zoneType;
+
+        long sequenceNumber = NOT_YET_DISPLAYED;
+        boolean showUnits;
+        @Nullable
+        String text;
+        int zone;
+
+        SensorField(TextView textView, SensorType sensorType, String hashKey, @Nullable SettingsDataStore.ZoneType zoneType) {
+            this.textView = textView;
+            this.sensorType = sensorType;
+            this.hashKey = hashKey;
+            this.zoneType = zoneType;
         }
     }
 
+    public record DisplayUpdateStats(long displayUpdates, long displayUpdateTime_ns, long maxDisplayUpdateTime_ns,
+                                     long fieldsChecked, long fieldsUpdated) {
 
-    public enum Mode {TRACKING, PREVIEW}
+        public double getAverageDisplayUpdateTime_ms() {
+            return displayUpdates == 0 ? 0 : displayUpdateTime_ns / 1e6 / displayUpdates;
+        }
 
-    protected record TvSensorType(TextView textView, SensorType sensorType) {
+        public double getAverageFieldsUpdated() {
+            return displayUpdates == 0 ? 0 : (double) fieldsUpdated / displayUpdates;
+        }
     }
 }
\ No newline at end of file
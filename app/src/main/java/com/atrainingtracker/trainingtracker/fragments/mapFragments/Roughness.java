@@ -18,18 +18,55 @@
 
 package com.atrainingtracker.trainingtracker.fragments.mapFragments;
 
+import java.util.Arrays;
+
 /**
  * Created by rainer on 06.10.16.
  */
 
 public enum Roughness {
-    ALL(1),
-    MEDIUM(30);
-    // ROUGH(5*60);
+    // every sample
+    ALL(1, 0),
+    // the other levels are simplified with the given tolerance when the workout is finished, see TrackPyramidDatabaseManager.
+    // Before, every stepSize-th sample is used.
+    FINE(1, 2),
+    MEDIUM(30, 10),
+    ROUGH(60, 40),
+    COARSE(120, 160);
+
+    // about the circumference of the earth divided by the 256 pixels of a tile at zoom 0
+    private static final double METERS_PER_PIXEL_AT_ZOOM_0 = 156543.03;
 
     public final int stepSize;
+    public final int tolerance_m;
 
-    Roughness(int stepSize) {
+    Roughness(int stepSize, int tolerance_m) {
         this.stepSize = stepSize;
+        this.tolerance_m = tolerance_m;
+    }
+
+    /**
+     * @return the tolerances of all levels that are simplified
+     */
+    public static int[] getTolerances() {
+        return Arrays.stream(values())
+                .mapToInt(roughness -> roughness.tolerance_m)
+                .filter(tolerance -> tolerance > 0)
+                .toArray();
+    }
+
+    /**
+     * @return the coarsest level whose deviation from the samples is less than one pixel on a map with the given zoom at the given latitude
+     */
+    public static Roughness forZoom(float zoom, double latitude) {
+        double metersPerPixel = METERS_PER_PIXEL_AT_ZOOM_0 * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoom);
+
+        Roughness result = FINE;
+        for (Roughness roughness : values()) {
+            if (roughness.tolerance_m > result.tolerance_m && roughness.tolerance_m <= metersPerPixel) {
+                result = roughness;
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.fragments.mapFragments;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.trainingtracker.fragments.mapFragments.TrackOnMapHelper.TrackData;
+import com.atrainingtracker.trainingtracker.fragments.mapFragments.TrackOnMapHelper.TrackType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of the tracks shown on the maps, bounded by the (estimated) number of bytes of the tracks.
+ * <p>
+ * In contrast to android.util.LruCache, a lookup with {@link #peek} does not count as a hit or miss.
+ * This is used when looking for any available level of a track, so the statistics are not distorted.
+ */
+public class TrackCache {
+    // about the key, the TrackData, the LatLngBounds, and the array header
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+    private static final int MAX_SIZE_FRACTION_OF_HEAP = 16;
+
+    private final LinkedHashMap<Key, TrackData> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxSize;
+    private long mSize;
+    private int mHitCount, mMissCount, mEvictionCount;
+
+    TrackCache(long maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    static long getDefaultMaxSize() {
+        return Runtime.getRuntime().maxMemory() / MAX_SIZE_FRACTION_OF_HEAP;
+    }
+
+    @Nullable
+    synchronized TrackData get(@NonNull Key key) {
+        TrackData trackData = mEntries.get(key);
+        if (trackData != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return trackData;
+    }
+
+    @Nullable
+    synchronized TrackData peek(@NonNull Key key) {
+        return mEntries.get(key);
+    }
+
+    synchronized void put(@NonNull Key key, @NonNull TrackData trackData) {
+        TrackData previous = mEntries.put(key, trackData);
+        if (previous != null) {
+            mSize -= sizeOf(previous);
+        }
+        mSize += sizeOf(trackData);
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * removes the least recently used tracks until the cache is not larger than maxSize
+     */
+    synchronized void trimToSize(long maxSize) {
+        Iterator<Map.Entry<Key, TrackData>> iterator = mEntries.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            mSize -= sizeOf(iterator.next().getValue());
+            iterator.remove();
+            mEvictionCount++;
+        }
+    }
+
+    synchronized void evictAll() {
+        trimToSize(-1);
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public long maxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized int entryCount() {
+        return mEntries.size();
+    }
+
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    private static long sizeOf(@NonNull TrackData trackData) {
+        return (long) trackData.points().length * Double.BYTES + ENTRY_OVERHEAD_BYTES;
+    }
+
+    record Key(long workoutId, @NonNull Roughness roughness, @NonNull TrackType trackType) {
+    }
+}
@@ -18,9 +18,9 @@
 
 package com.atrainingtracker.trainingtracker.fragments.mapFragments;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Color;
 
 import androidx.annotation.NonNull;
@@ -33,6 +33,7 @@ import android.view.View;
 
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.TrackPyramidDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -43,8 +44,11 @@ import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Polyline;
 import com.google.android.gms.maps.model.PolylineOptions;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * Created by rainer on 29.03.16.
@@ -52,44 +56,87 @@ import java.util.HashMap;
 public class TrackOnMapHelper {
     private static final String TAG = TrackOnMapHelper.class.getName();
     private static final boolean DEBUG = TrainingApplication.getDebug(false);
-    private final EnumMap<Roughness, EnumMap<TrackType, HashMap<Long, TrackData>>> mTrackCache = new EnumMap<>(Roughness.class);
+    private final TrackCache mTrackCache = new TrackCache(TrackCache.getDefaultMaxSize());
     private final EnumMap<TrackType, HashMap<GoogleMap, Polyline>> mPolylines = new EnumMap<>(TrackType.class);
+    // the roughness that was requested last, so a level that is calculated too late does not replace it
+    private final EnumMap<TrackType, HashMap<GoogleMap, Roughness>> mRequestedRoughness = new EnumMap<>(TrackType.class);
 
     @Nullable
     public static PolylineOptions getPolylineOptions(Context context, long workoutId, @NonNull Roughness roughness, @NonNull TrackType trackType) {
+        double[] points = getTrackPoints(context, workoutId, roughness, trackType);
+        return points == null ? null : getPolylineOptions(points, trackType);
+    }
+
+    @NonNull
+    public static PolylineOptions getPolylineOptions(@NonNull double[] points, @NonNull TrackType trackType) {
+        List<LatLng> latLngs = new ArrayList<>(points.length / 2);
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            latLngs.add(new LatLng(points[i], points[i + 1]));
+        }
+
+        return new PolylineOptions()
+                .color(trackType.color)
+                .zIndex(5)
+                .addAll(latLngs);
+    }
+
+    /**
+     * @return the packed points of the track (latitude and longitude of the first point, latitude and longitude of the second point, ...)
+     * or null when the workout does not exist.
+     */
+    @Nullable
+    public static double[] getTrackPoints(Context context, long workoutId, @NonNull Roughness roughness, @NonNull TrackType trackType) {
         String baseFileName = WorkoutSummariesDatabaseManager.getInstance(context).getBaseFileName(workoutId);
         if (baseFileName == null) {
             return null;
         }
 
-        PolylineOptions polylineOptions = new PolylineOptions()
-                .color(trackType.color)
-                .zIndex(5);
+        // when the workout is finished, the simplified track is available
+        if (roughness.tolerance_m > 0) {
+            double[] points = TrackPyramidDatabaseManager.getInstance(context).getTrack(baseFileName, trackType.getLatitudeName(), roughness.tolerance_m);
+            if (points != null) {
+                return points;
+            }
+        }
 
+        // otherwise, we use every stepSize-th sample
         WorkoutSamplesDatabaseManager databaseManager = WorkoutSamplesDatabaseManager.getInstance(context);
-        SQLiteDatabase db = databaseManager.getDatabase();
-        Cursor cursor = db.query(WorkoutSamplesDatabaseManager.getTableName(baseFileName),          // TODO: on some devices, an exception is thrown here
-                null,
-                null,
-                null,
-                null,
-                null,
-                null);  // sorting?
+        Cursor cursor = databaseManager.getSamplesCursor(baseFileName,          // TODO: on some devices, an exception is thrown here
+                new String[]{trackType.getLatitudeName(), trackType.getLongitudeName()});
 
-        LatLng latLng;
+        double[] points = new double[2 * Math.max(cursor.getCount() / roughness.stepSize + 1, 1)];
+        int size = 0;
 
         while (cursor.move(roughness.stepSize)) {
             if (dataValid(cursor, trackType.getLatitudeName()) && dataValid(cursor, trackType.getLongitudeName())) {
-                // get latitude and longitude from the database and create new LatLng object
-                latLng = new LatLng(cursor.getDouble(cursor.getColumnIndex(trackType.getLatitudeName())),
-                        cursor.getDouble(cursor.getColumnIndex(trackType.getLongitudeName())));
-                polylineOptions.add(latLng);
+                if (size + 2 > points.length) {
+                    points = Arrays.copyOf(points, 2 * points.length);
+                }
+                points[size++] = cursor.getDouble(cursor.getColumnIndex(trackType.getLatitudeName()));
+                points[size++] = cursor.getDouble(cursor.getColumnIndex(trackType.getLongitudeName()));
             }
         }
 
         cursor.close();
 
-        return polylineOptions;
+        return Arrays.copyOf(points, size);
+    }
+
+    @Nullable
+    public static LatLngBounds getLatLngBounds(@NonNull double[] points) {
+        if (points.length < 2) {
+            return null;
+        }
+
+        double minLatitude = Double.MAX_VALUE, maxLatitude = -Double.MAX_VALUE;
+        double minLongitude = Double.MAX_VALUE, maxLongitude = -Double.MAX_VALUE;
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            minLatitude = Math.min(minLatitude, points[i]);
+            maxLatitude = Math.max(maxLatitude, points[i]);
+            minLongitude = Math.min(minLongitude, points[i + 1]);
+            maxLongitude = Math.max(maxLongitude, points[i + 1]);
+        }
+        return new LatLngBounds(new LatLng(minLatitude, minLongitude), new LatLng(maxLatitude, maxLongitude));
     }
 
     @Nullable
@@ -124,6 +171,11 @@ public class TrackOnMapHelper {
         if (DEBUG)
             Log.i(TAG, "showTrackOnMap for workoutId=" + workoutId + ", roughness=" + roughness.name() + ", trackType=" + trackType.name());
 
+        if (!mRequestedRoughness.containsKey(trackType)) {
+            mRequestedRoughness.put(trackType, new HashMap<>());
+        }
+        mRequestedRoughness.get(trackType).put(map, roughness);
+
         Roughness roughness_tmp = roughness;
 
         TrackData trackData = getCachedTrackData(workoutId, roughness_tmp, trackType);
@@ -131,8 +183,14 @@ public class TrackOnMapHelper {
         if (trackData != null) {
             calcTrackData = false;
         } else {
-            roughness_tmp = Roughness.MEDIUM;
-            trackData = getCachedTrackData(workoutId, roughness_tmp, trackType);
+            // meanwhile, show any other level that is already available
+            for (Roughness cachedRoughness : Roughness.values()) {
+                trackData = mTrackCache.peek(new TrackCache.Key(workoutId, cachedRoughness, trackType));
+                if (trackData != null) {
+                    roughness_tmp = cachedRoughness;
+                    break;
+                }
+            }
             calcTrackData = true;
         }
 
@@ -154,7 +212,7 @@ public class TrackOnMapHelper {
             mPolylines.get(trackType).get(map).remove();
         }
 
-        final TrackData trackData = getCachedTrackData(workoutId, roughness, trackType);
+        final TrackData trackData = mTrackCache.peek(new TrackCache.Key(workoutId, roughness, trackType));
         if (DEBUG) Log.i(TAG, "trackData=" + trackData);
         if (trackData == null                                  // when there is no data
                 & mapView != null) {       // and it is 'only' an embedded MapView
@@ -165,7 +223,8 @@ public class TrackOnMapHelper {
             return;
         }
 
-        Polyline polyline = map.addPolyline(trackData.polylineOptions);
+        // the LatLng objects are only created for the map
+        Polyline polyline = map.addPolyline(getPolylineOptions(trackData.points, trackType));
 
         if (!mPolylines.containsKey(trackType)) {
             mPolylines.put(trackType, new HashMap<>());
@@ -193,13 +252,7 @@ public class TrackOnMapHelper {
         if (DEBUG)
             Log.i(TAG, "getCachedTrackData for workoutId=" + workoutId + ", roughness=" + roughness.name() + ", trackType=" + trackType.name());
 
-        TrackData trackData = null;
-
-        if (mTrackCache.containsKey(roughness)
-                && mTrackCache.get(roughness).containsKey(trackType)
-                && mTrackCache.get(roughness).get(trackType).containsKey(workoutId)) {
-            trackData = mTrackCache.get(roughness).get(trackType).get(workoutId);
-        }
+        TrackData trackData = mTrackCache.get(new TrackCache.Key(workoutId, roughness, trackType));
 
         if (DEBUG) Log.i(TAG, "trackData=" + trackData);
 
@@ -211,21 +264,33 @@ public class TrackOnMapHelper {
             Log.i(TAG, "calcTrackData for workoutId=" + workoutId + ", roughness=" + roughness.name() + ", trackType=" + trackType.name());
         if (DEBUG) Log.i(TAG, "sensorTypeLatitude=" + trackType.getLatitudeName());
 
-        PolylineOptions polylineOptions = getPolylineOptions(context, workoutId, roughness, trackType);
+        double[] points = getTrackPoints(context, workoutId, roughness, trackType);
 
-        if (polylineOptions != null && !polylineOptions.getPoints().isEmpty()) {
-            if (!mTrackCache.containsKey(roughness)) {
-                mTrackCache.put(roughness, new EnumMap<>(TrackType.class));
-            }
-            if (!mTrackCache.get(roughness).containsKey(trackType)) {
-                mTrackCache.get(roughness).put(trackType, new HashMap<>());
-            }
-
-            mTrackCache.get(roughness).get(trackType).put(workoutId, new TrackData(polylineOptions, getLatLngBounds(polylineOptions)));
+        if (points != null && points.length > 0) {
+            mTrackCache.put(new TrackCache.Key(workoutId, roughness, trackType), new TrackData(points, getLatLngBounds(points)));
         }
 
     }
 
+    @NonNull
+    public TrackCache getTrackCache() {
+        return mTrackCache;
+    }
+
+    /**
+     * frees the cached tracks when the system is running low on memory
+     */
+    public void onTrimMemory(int level) {
+        if (DEBUG) Log.i(TAG, "onTrimMemory: level=" + level);
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            mTrackCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mTrackCache.trimToSize(mTrackCache.size() / 2);
+        }
+    }
+
     public enum TrackType {
         BEST(Color.BLUE, null),
         GPS(Color.GREEN, "gps"),
@@ -264,7 +329,8 @@ public class TrackOnMapHelper {
 
     }
 
-    private record TrackData(PolylineOptions polylineOptions, LatLngBounds latLngBounds) {
+    // the points are packed as in getTrackPoints()
+    record TrackData(double[] points, LatLngBounds latLngBounds) {
     }
     private class TrackOnMapThread extends Thread {
         final Context context;
@@ -297,6 +363,11 @@ public class TrackOnMapHelper {
             new Handler(Looper.getMainLooper()).post(() -> {
                 if (DEBUG)
                     Log.i(TAG, "onPostExecute workoutId=" + workoutId);
+                if (mRequestedRoughness.containsKey(trackType)
+                        && mRequestedRoughness.get(trackType).get(map) != roughness) {
+                    if (DEBUG) Log.i(TAG, "meanwhile, another roughness was requested");
+                    return;
+                }
                 plotTrackOnMap(mapView, map, workoutId, roughness, trackType, zoomToMap, animateZoom);
             });
         }
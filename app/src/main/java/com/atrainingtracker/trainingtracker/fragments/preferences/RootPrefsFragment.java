@@ -31,12 +31,18 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.PreferenceManager;
 import android.util.Log;
+import android.widget.Toast;
 
 import com.atrainingtracker.R;
+import com.atrainingtracker.banalservice.TickScheduler;
 import com.atrainingtracker.trainingtracker.activities.ZonesSettingsActivity;
 import com.atrainingtracker.trainingtracker.exporter.FileFormat;
+import com.atrainingtracker.trainingtracker.fragments.TrackingFragment;
+import com.atrainingtracker.trainingtracker.fragments.mapFragments.TrackCache;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.helpers.GeoTileIndexWorker;
 import com.atrainingtracker.trainingtracker.settings.SettingsDataStore;
+import com.atrainingtracker.trainingtracker.tracker.SampleWriter;
 
 
 public class RootPrefsFragment extends PreferenceFragmentCompat
@@ -50,7 +56,7 @@ public class RootPrefsFragment extends PreferenceFragmentCompat
     @Nullable
     private ListPreference mUnitPref;
     @Nullable
-    private Preference mTrainingZonesPref, mExport, mPebble, mCloudUpload;
+    private Preference mTrainingZonesPref, mExport, mPebble, mCloudUpload, mTrackCacheStatisticsPref, mTickSchedulerStatisticsPref, mDisplayUpdateStatisticsPref, mSampleWriterStatisticsPref;
 
     private SharedPreferences mSharedPreferences;
     private SettingsDataStore mSettingsDataStore;
@@ -74,6 +80,47 @@ public class RootPrefsFragment extends PreferenceFragmentCompat
                 return true;
             });
         }
+        Preference rebuildLocationIndexPref = getPreferenceScreen().findPreference("rebuildLocationIndex");
+        if (rebuildLocationIndexPref != null) {
+            rebuildLocationIndexPref.setOnPreferenceClickListener(preference -> {
+                GeoTileIndexWorker.enqueueRebuild(requireContext());
+                Toast.makeText(getActivity(), R.string.rebuilding_location_index, Toast.LENGTH_SHORT).show();
+                return true;
+            });
+        }
+        // the statistics of the track cache are only interesting for debugging
+        mTrackCacheStatisticsPref = getPreferenceScreen().findPreference("trackCacheStatistics");
+        if (mTrackCacheStatisticsPref != null) {
+            mTrackCacheStatisticsPref.setVisible(TrainingApplication.getDebug(true));
+            mTrackCacheStatisticsPref.setOnPreferenceClickListener(preference -> {
+                updateTrackCacheStatisticsSummary();
+                return true;
+            });
+        }
+        mTickSchedulerStatisticsPref = getPreferenceScreen().findPreference("tickSchedulerStatistics");
+        if (mTickSchedulerStatisticsPref != null) {
+            mTickSchedulerStatisticsPref.setVisible(TrainingApplication.getDebug(true));
+            mTickSchedulerStatisticsPref.setOnPreferenceClickListener(preference -> {
+                updateTickSchedulerStatisticsSummary();
+                return true;
+            });
+        }
+        mDisplayUpdateStatisticsPref = getPreferenceScreen().findPreference("displayUpdateStatistics");
+        if (mDisplayUpdateStatisticsPref != null) {
+            mDisplayUpdateStatisticsPref.setVisible(TrainingApplication.getDebug(true));
+            mDisplayUpdateStatisticsPref.setOnPreferenceClickListener(preference -> {
+                updateDisplayUpdateStatisticsSummary();
+                return true;
+            });
+        }
+        mSampleWriterStatisticsPref = getPreferenceScreen().findPreference("sampleWriterStatistics");
+        if (mSampleWriterStatisticsPref != null) {
+            mSampleWriterStatisticsPref.setVisible(TrainingApplication.getDebug(true));
+            mSampleWriterStatisticsPref.setOnPreferenceClickListener(preference -> {
+                updateSampleWriterStatisticsSummary();
+                return true;
+            });
+        }
         mSearchRoundsPref = getPreferenceScreen().findPreference(TrainingApplication.SP_NUMBER_OF_SEARCH_TRIES);
 
         mExport = this.getPreferenceScreen().findPreference(TrainingApplication.FILE_EXPORT);
@@ -100,6 +147,10 @@ public class RootPrefsFragment extends PreferenceFragmentCompat
         mPebble.setSummary(pebbleSummary());
 
         updateTrainingZonesSummary();
+        updateTrackCacheStatisticsSummary();
+        updateTickSchedulerStatisticsSummary();
+        updateDisplayUpdateStatisticsSummary();
+        updateSampleWriterStatisticsSummary();
 
         mSearchRoundsPref.setSummary(TrainingApplication.getNumberOfSearchTries() + "");
 
@@ -126,6 +177,68 @@ public class RootPrefsFragment extends PreferenceFragmentCompat
         }
     }
 
+    private void updateTrackCacheStatisticsSummary() {
+        if (mTrackCacheStatisticsPref != null && mTrackCacheStatisticsPref.isVisible()) {
+            TrackCache trackCache = ((TrainingApplication) requireActivity().getApplication()).trackOnMapHelper.getTrackCache();
+            mTrackCacheStatisticsPref.setSummary(getString(R.string.track_cache_statistics_summary,
+                    trackCache.entryCount(),
+                    trackCache.size() / 1024,
+                    trackCache.maxSize() / 1024,
+                    trackCache.hitCount(),
+                    trackCache.missCount(),
+                    trackCache.evictionCount()));
+        }
+    }
+
+    private void updateTickSchedulerStatisticsSummary() {
+        if (mTickSchedulerStatisticsPref != null && mTickSchedulerStatisticsPref.isVisible()) {
+            TickScheduler tickScheduler = TickScheduler.getInstance();
+            StringBuilder summary = new StringBuilder(getString(R.string.tick_scheduler_statistics_summary,
+                    tickScheduler.getTicks(),
+                    tickScheduler.getMissedTicks(),
+                    tickScheduler.getMeanJitter_ms(),
+                    tickScheduler.getMaxJitter_ms()));
+            for (TickScheduler.Phase phase : TickScheduler.Phase.values()) {
+                summary.append("\n").append(getString(R.string.tick_scheduler_phase_summary,
+                        phase.name(),
+                        tickScheduler.getMeanDuration_ms(phase),
+                        tickScheduler.getMaxDuration_ms(phase)));
+            }
+            mTickSchedulerStatisticsPref.setSummary(summary.toString());
+        }
+    }
+
+    private void updateDisplayUpdateStatisticsSummary() {
+        if (mDisplayUpdateStatisticsPref != null && mDisplayUpdateStatisticsPref.isVisible()) {
+            TrackingFragment.DisplayUpdateStats stats = TrackingFragment.getDisplayUpdateStats();
+            mDisplayUpdateStatisticsPref.setSummary(getString(R.string.display_update_statistics_summary,
+                    stats.displayUpdates(),
+                    stats.getAverageDisplayUpdateTime_ms(),
+                    stats.maxDisplayUpdateTime_ns() / 1e6,
+                    stats.fieldsChecked(),
+                    stats.fieldsUpdated(),
+                    stats.getAverageFieldsUpdated()));
+        }
+    }
+
+    private void updateSampleWriterStatisticsSummary() {
+        if (mSampleWriterStatisticsPref != null && mSampleWriterStatisticsPref.isVisible()) {
+            SampleWriter.FlushStatistics statistics = SampleWriter.getLatestFlushStatistics();
+            if (statistics == null) {
+                mSampleWriterStatisticsPref.setSummary(R.string.sample_writer_statistics_none);
+                return;
+            }
+            mSampleWriterStatisticsPref.setSummary(getString(R.string.sample_writer_statistics_summary,
+                    statistics.numberOfFlushes,
+                    statistics.numberOfFlushedRows,
+                    statistics.getAverageRowsPerCommit(),
+                    statistics.numberOfDroppedRows,
+                    statistics.lastFlushLatency_ms,
+                    statistics.averageFlushLatency_ms,
+                    statistics.maxFlushLatency_ms));
+        }
+    }
+
     @Override
     public void onPause() {
         super.onPause();
@@ -154,7 +267,8 @@ public class RootPrefsFragment extends PreferenceFragmentCompat
         if (TrainingApplication.SP_EXPORT_TO_CSV.equals(key)
                 || TrainingApplication.SP_EXPORT_TO_TCX.equals(key)
                 || TrainingApplication.SP_EXPORT_TO_GPX.equals(key)
-                || TrainingApplication.SP_EXPORT_TO_GC_JSON.equals(key)) {
+                || TrainingApplication.SP_EXPORT_TO_GC_JSON.equals(key)
+                || TrainingApplication.SP_EXPORT_TO_FIT.equals(key)) {
             String exportSummary = exportSummary();
             Log.i(TAG, "updating exportSummary to " + exportSummary);
             mExport.setSummary(exportSummary);
@@ -189,6 +303,10 @@ public class RootPrefsFragment extends PreferenceFragmentCompat
             exportTo = incString(exportTo);
             exportTo += getString(R.string.GPX);
         }
+        if (TrainingApplication.exportToFIT()) {
+            exportTo = incString(exportTo);
+            exportTo += getString(R.string.FIT);
+        }
         if (TrainingApplication.exportToGCJson()) {
             exportTo = incString(exportTo);
             exportTo += getString(R.string.GC);
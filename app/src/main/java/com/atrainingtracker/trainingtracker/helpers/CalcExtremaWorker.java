@@ -2,12 +2,11 @@ package com.atrainingtracker.trainingtracker.helpers;
 
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.Intent;
-import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.work.Worker;
 import androidx.work.Data;
 import androidx.work.WorkerParameters;
@@ -16,19 +15,18 @@ import com.atrainingtracker.R;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.ExtremaAccumulator.ExtremaValue;
 import com.atrainingtracker.trainingtracker.database.ExtremaType;
 import com.atrainingtracker.trainingtracker.database.KnownLocationsDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.KnownLocationsDatabaseManager.MyLocation;
+import com.atrainingtracker.trainingtracker.database.WorkoutExtrema;
 import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
 import com.google.android.gms.maps.model.LatLng;
 
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 
 public class CalcExtremaWorker extends Worker {
@@ -42,6 +40,10 @@ public class CalcExtremaWorker extends Worker {
     private int progressCounter = 0;
     public static final String KEY_PROGRESS_SEQUENCE = "PROGRESS_SEQUENCE";
 
+    // fraction of the already scanned samples, between 0 and 1
+    private int mLastPublishedPercent = -1;
+    public static final String KEY_PROGRESS_FRACTION = "PROGRESS_FRACTION";
+
     public static final String KEY_STARTING_MESSAGE = "STARTING_MESSAGE";
 
 
@@ -52,23 +54,6 @@ public class CalcExtremaWorker extends Worker {
 
 
 
-    // Same sensor types from the old thread
-    private static final List<SensorType> IMPORTANT_SENSOR_TYPES = Arrays.asList(
-            SensorType.ALTITUDE,
-            SensorType.CADENCE,
-            SensorType.HR,
-            SensorType.PACE_spm,
-            SensorType.PEDAL_POWER_BALANCE,
-            SensorType.PEDAL_SMOOTHNESS_L,
-            SensorType.PEDAL_SMOOTHNESS_R,
-            SensorType.POWER,
-            SensorType.SPEED_mps,
-            SensorType.TEMPERATURE,
-            SensorType.TORQUE,
-            SensorType.TORQUE_EFFECTIVENESS_L,
-            SensorType.TORQUE_EFFECTIVENESS_R
-    );
-
     public CalcExtremaWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
     }
@@ -96,6 +81,26 @@ public class CalcExtremaWorker extends Worker {
 
 
 
+    /**
+     * publishes the progress of the scan over the samples.  To avoid flooding the observers, only every full percent is published.
+     */
+    private void publishScanProgress(Context context, float fraction) {
+        int percent = (int) (fraction * 100);
+        if (percent <= mLastPublishedPercent) {
+            return;
+        }
+        mLastPublishedPercent = percent;
+
+        progressCounter++;
+        Data progressData = new Data.Builder()
+                .putString(KEY_STARTING_MESSAGE, context.getString(R.string.calculating_extrema_values_progress, percent))
+                .putFloat(KEY_PROGRESS_FRACTION, fraction)
+                .putInt(KEY_PROGRESS_SEQUENCE, progressCounter)
+                .build();
+
+        setProgressAsync(progressData);
+    }
+
     @NonNull
     @Override
     public Result doWork() {
@@ -111,34 +116,25 @@ public class CalcExtremaWorker extends Worker {
             if (DEBUG) Log.d(TAG, "Starting extrema calculation for workout " + workoutId);
             publishStarting(context.getString(R.string.initializing));
 
-            String baseFileName = WorkoutSummariesDatabaseManager.getInstance(context).getBaseFileName(workoutId);
+            WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(context);
+            String baseFileName = workoutSummariesDatabaseManager.getBaseFileName(workoutId);
 
-            calcAndSaveExtremaValues(context, workoutId, baseFileName, Collections.singletonList(SensorType.LINE_DISTANCE_m), Arrays.asList(ExtremaType.MAX, ExtremaType.END));
-            calcAndSaveExtremaValues(context, workoutId, baseFileName, Arrays.asList(SensorType.LATITUDE, SensorType.LONGITUDE), Arrays.asList(ExtremaType.START, ExtremaType.END));
-            calcAndSaveMaxLineDistancePosition(context, workoutId);
+            // when the extrema values were already calculated while tracking, there is nothing to do
+            if (workoutSummariesDatabaseManager.getBoolean(workoutId, WorkoutSummaries.LIVE_EXTREMA_VALUES)) {
+                if (DEBUG) Log.i(TAG, "extrema values were calculated while tracking");
+            } else {
+                calcAndSaveExtremaValues(context, workoutSummariesDatabaseManager, workoutId, baseFileName);
+            }
+            publishFinished(FINISHED_EXTREMA_VALE);
 
             calcFancyName(context, workoutId);
 
             guessCommuteAndTrainer(context, workoutId);
 
-            // -- calc min, mean, and max values --
-            // first, we need the accumulated sensors of this workout
-            Set<SensorType> accumulatedSensorTypes = WorkoutSummariesDatabaseManager.getInstance(context).getAccumulatedSensorTypes(workoutId);
-
-            // if there are no sensors stored (due to upgrading from DB version 3 to 4, we use all important sensors
-            if (accumulatedSensorTypes.isEmpty()) {
-                accumulatedSensorTypes = new HashSet<>(IMPORTANT_SENSOR_TYPES);
-            } else {
-                // otherwise, we use the intersection of the available ones and the important ones
-                accumulatedSensorTypes.retainAll(IMPORTANT_SENSOR_TYPES);
-            }
-            // now, calc the values for all interesting available sensors
-            calcAndSaveExtremaValues(context, workoutId, baseFileName, accumulatedSensorTypes, Arrays.asList(ExtremaType.MIN, ExtremaType.AVG, ExtremaType.MAX));
-
             // finally, store that the extrema values are calculated TODO: do not use the database, delegate to the database manager, instead.
             ContentValues values = new ContentValues();
             values.put(WorkoutSummaries.EXTREMA_VALUES_CALCULATED, 1);
-            WorkoutSummariesDatabaseManager.getInstance(context).getDatabase().update(WorkoutSummaries.TABLE, values, WorkoutSummaries.C_ID + "=?", new String[]{Long.toString(workoutId)});
+            workoutSummariesDatabaseManager.getDatabase().update(WorkoutSummaries.TABLE, values, WorkoutSummaries.C_ID + "=?", new String[]{Long.toString(workoutId)});
 
 
             if (DEBUG) Log.d(TAG, "Successfully finished extrema calculations for workout " + workoutId);
@@ -152,63 +148,22 @@ public class CalcExtremaWorker extends Worker {
     }
 
 
-    // --- Helper Methods (Copied from CalcExtremaValuesThread and made non-static) ---
+    // --- Helper Methods ---
 
-    public void calcAndSaveMaxLineDistancePosition(Context context, final long workoutId) {
-        if (DEBUG) Log.i(TAG, "calcAndSaveMaxLineDistancePosition: workoutId=" + workoutId);
-        publishStarting(context.getString(R.string.calculating_extrema_value_for,
-                ExtremaType.MAX.name(),
-                context.getString(SensorType.LINE_DISTANCE_m.getShortNameId())));
+    /**
+     * calculates all extrema values within one pass over the samples and saves them within one transaction
+     */
+    private void calcAndSaveExtremaValues(Context context, WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager, long workoutId, String baseFileName) {
+        if (DEBUG) Log.i(TAG, "calcAndSaveExtremaValues(" + workoutId + ")");
 
-        WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(context);
-        WorkoutSamplesDatabaseManager.LatLngValue latLngValue = WorkoutSamplesDatabaseManager.getInstance(context).getExtremaPosition(workoutSummariesDatabaseManager, workoutId, SensorType.LINE_DISTANCE_m, ExtremaType.MAX);
-        if (latLngValue == null) {
-            return;
-        }  // TODO: when does this happen and what follows when we have no maxLineDistancePosition???
-
-        // save the location in the database
-        SQLiteDatabase summariesDb = WorkoutSummariesDatabaseManager.getInstance(context).getDatabase();
-        ContentValues values = new ContentValues();
-
-        // first, the latitude
-        values.put(WorkoutSummaries.WORKOUT_ID, workoutId);
-        values.put(WorkoutSummaries.EXTREMA_TYPE, ExtremaType.MAX_LINE_DISTANCE.name());
-        values.put(WorkoutSummaries.SENSOR_TYPE, SensorType.LATITUDE.name());
-        values.put(WorkoutSummaries.VALUE, latLngValue.latLng.latitude);
-
-        String whereClause = WorkoutSummaries.WORKOUT_ID + "=? AND " + WorkoutSummaries.EXTREMA_TYPE + "=? AND " + WorkoutSummaries.SENSOR_TYPE + "=?"; // selection,
-        String[] whereArgs = new String[]{Long.toString(workoutId), ExtremaType.MAX_LINE_DISTANCE.name(), SensorType.LATITUDE.name()}; // selectionArgs,
-
-        Cursor cursor = summariesDb.query(WorkoutSummaries.TABLE_EXTREMA_VALUES,
-                null, // columns
-                whereClause,
-                whereArgs,
-                null, null, null); // groupBy, having, orderBy)
-        if (cursor.getCount() == 0) { // no value yet
-            summariesDb.insert(WorkoutSummaries.TABLE_EXTREMA_VALUES, null, values);
-        } else {
-            summariesDb.update(WorkoutSummaries.TABLE_EXTREMA_VALUES, values, whereClause, whereArgs);
-        }
+        WorkoutExtrema workoutExtrema = new WorkoutExtrema(workoutSummariesDatabaseManager.getAccumulatedSensorTypes(workoutId));
+        WorkoutSamplesDatabaseManager.getInstance(context)
+                .accumulateExtrema(baseFileName, workoutExtrema.getAccumulators(), fraction -> publishScanProgress(context, fraction));
 
-        // now, the longitude
-        // values.put(WorkoutSummaries.WORKOUT_ID,    workoutId);
-        // values.put(WorkoutSummaries.EXTREMA_TYPE, ExtremaType.MAX_LINE_DISTANCE.name());
-        values.put(WorkoutSummaries.SENSOR_TYPE, SensorType.LONGITUDE.name());
-        values.put(WorkoutSummaries.VALUE, latLngValue.latLng.longitude);
-
-        // whereClause = WorkoutSummaries.WORKOUT_ID + "=? AND " + WorkoutSummaries.EXTREMA_TYPE + "=? AND " + WorkoutSummaries.SENSOR_TYPE + "=?"; // selection,
-        whereArgs = new String[]{Long.toString(workoutId), ExtremaType.MAX_LINE_DISTANCE.name(), SensorType.LONGITUDE.name()}; // selectionArgs,
-
-        cursor = summariesDb.query(WorkoutSummaries.TABLE_EXTREMA_VALUES,
-                null, // columns
-                whereClause,
-                whereArgs,
-                null, null, null); // groupBy, having, orderBy)
-        if (cursor.getCount() == 0) { // no value yet
-            summariesDb.insert(WorkoutSummaries.TABLE_EXTREMA_VALUES, null, values);
-        } else {
-            summariesDb.update(WorkoutSummaries.TABLE_EXTREMA_VALUES, values, whereClause, whereArgs);
-        }
+        List<ExtremaValue> extremaValues = workoutExtrema.getExtremaValues(
+                workoutSummariesDatabaseManager.getDouble(workoutId, WorkoutSummaries.DISTANCE_TOTAL_m),
+                workoutSummariesDatabaseManager.getInt(workoutId, WorkoutSummaries.TIME_ACTIVE_s));
+        workoutSummariesDatabaseManager.saveExtremaValues(workoutId, extremaValues);
     }
 
     private void calcFancyName(Context context, long workoutId) {
@@ -218,27 +173,15 @@ public class CalcExtremaWorker extends Worker {
         WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(context);
         KnownLocationsDatabaseManager knownLocationsDatabaseManager = KnownLocationsDatabaseManager.getInstance(context);
         SportTypeDatabaseManager sportTypeDatabaseManager = SportTypeDatabaseManager.getInstance(context);
-        MyLocation startLocation = null;
 
-        Double startLat = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LATITUDE, ExtremaType.START);
-        Double startLon = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LONGITUDE, ExtremaType.START);
-        if (startLat != null && startLon != null) {
-            startLocation = knownLocationsDatabaseManager.getMyLocation(new LatLng(startLat, startLon));
-        }
-
-        MyLocation maxLineLocation = null;
-        Double maxLineLat = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LATITUDE, ExtremaType.MAX_LINE_DISTANCE);
-        Double maxLineLon = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LONGITUDE, ExtremaType.MAX_LINE_DISTANCE);
-        if (maxLineLat != null && maxLineLon != null) {
-            maxLineLocation = knownLocationsDatabaseManager.getMyLocation(new LatLng(maxLineLat, maxLineLon));
-        }
-
-        MyLocation endLocation = null;
-        Double endLat = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LATITUDE, ExtremaType.END);
-        Double endLon = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LONGITUDE, ExtremaType.END);
-        if (endLat != null && endLon != null) {
-            endLocation = knownLocationsDatabaseManager.getMyLocation(new LatLng(endLat, endLon));
-        }
+        // resolve the start, max line distance, and end positions with one lookup
+        List<MyLocation> myLocations = knownLocationsDatabaseManager.getMyLocations(Arrays.asList(
+                getPosition(workoutSummariesDatabaseManager, workoutId, ExtremaType.START),
+                getPosition(workoutSummariesDatabaseManager, workoutId, ExtremaType.MAX_LINE_DISTANCE),
+                getPosition(workoutSummariesDatabaseManager, workoutId, ExtremaType.END)));
+        MyLocation startLocation = myLocations.get(0);
+        MyLocation maxLineLocation = myLocations.get(1);
+        MyLocation endLocation = myLocations.get(2);
 
         Long sportTypeId = workoutSummariesDatabaseManager.getLong(workoutId, WorkoutSummaries.SPORT_ID);
         if (sportTypeId == null) {
@@ -260,6 +203,13 @@ public class CalcExtremaWorker extends Worker {
         }
     }
 
+    @Nullable
+    private static LatLng getPosition(WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager, long workoutId, ExtremaType extremaType) {
+        Double lat = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LATITUDE, extremaType);
+        Double lon = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LONGITUDE, extremaType);
+        return lat != null && lon != null ? new LatLng(lat, lon) : null;
+    }
+
     private void guessCommuteAndTrainer(Context context, long workoutId) {
         if (DEBUG) Log.i(TAG, "guessCommuteAndTrainer");
         publishStarting(context.getString(R.string.guess_commute_and_trainer));
@@ -318,60 +268,4 @@ public class CalcExtremaWorker extends Worker {
         publishFinished(FINISHED_COMMUTE_AND_TRAINER);
     }
 
-    private void calcAndSaveExtremaValues(Context context, long workoutId, String baseFileName, @NonNull Iterable<SensorType> sensorTypeList, @NonNull Iterable<ExtremaType> extremaTypeList) {
-        if (DEBUG) Log.i(TAG, "calcAndSaveExtremaValues(" + workoutId + "...)");
-
-        WorkoutSamplesDatabaseManager workoutSamplesDatabaseManager = WorkoutSamplesDatabaseManager.getInstance(context);
-        WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(context);
-
-        // WorkoutSamplesDbHelper workoutSamplesDbHelper = new WorkoutSamplesDbHelper(mContext);
-        SQLiteDatabase summariesDb = workoutSummariesDatabaseManager.getDatabase();
-
-        ContentValues values = new ContentValues();
-
-        for (SensorType sensorType : sensorTypeList) {
-            for (ExtremaType extremaType : extremaTypeList) {
-                publishStarting(context.getString(R.string.calculating_extrema_value_for, extremaType.name(), context.getString(sensorType.getShortNameId())));
-
-                WorkoutSamplesDatabaseManager.getInstance(context);
-                Double value = workoutSamplesDatabaseManager.calcExtremaValue(workoutSummariesDatabaseManager, baseFileName, extremaType, sensorType);
-                if (value != null) {
-                    if (DEBUG)
-                        Log.i(TAG, "saving " + extremaType.name() + " of " + sensorType.name() + ": " + value);
-                    // TODO: create and use method of workoutSummariesDatabaseManager instead
-                    // save the value in the corresponding database
-                    values.put(WorkoutSummaries.WORKOUT_ID, workoutId);
-                    values.put(WorkoutSummaries.EXTREMA_TYPE, extremaType.name());
-                    values.put(WorkoutSummaries.SENSOR_TYPE, sensorType.name());
-                    values.put(WorkoutSummaries.VALUE, value);
-
-                    String whereClause = WorkoutSummaries.WORKOUT_ID + "=? AND " + WorkoutSummaries.EXTREMA_TYPE + "=? AND " + WorkoutSummaries.SENSOR_TYPE + "=?"; // selection,
-                    String[] whereArgs = new String[]{Long.toString(workoutId), extremaType.name(), sensorType.name()}; // selectionArgs,
-
-                    Cursor cursor = summariesDb.query(WorkoutSummaries.TABLE_EXTREMA_VALUES,
-                            null, // columns
-                            whereClause,
-                            whereArgs,
-                            null, null, null); // groupBy, having, orderBy)
-                    if (cursor.getCount() == 0) { // no value yet
-                        summariesDb.insert(WorkoutSummaries.TABLE_EXTREMA_VALUES, null, values);
-                    } else {
-                        summariesDb.update(WorkoutSummaries.TABLE_EXTREMA_VALUES, values, whereClause, whereArgs);
-                    }
-                    cursor.close();
-
-                    if (!summariesDb.isOpen()) {
-                        Log.d(TAG, "WTF: database is not open! -----------------------");
-                    }
-                } else {
-                    if (DEBUG)
-                        Log.i(TAG, "did not save " + extremaType.name() + " of " + sensorType.name() + " because its value is null");
-
-                }
-            }
-
-            publishFinished(FINISHED_EXTREMA_VALE);
-        }
-    }
-
-}
\ No newline at end of file
+}
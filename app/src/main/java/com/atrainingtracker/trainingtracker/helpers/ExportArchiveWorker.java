@@ -0,0 +1,166 @@
+package com.atrainingtracker.trainingtracker.helpers;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.exporter.BaseExporter;
+import com.atrainingtracker.trainingtracker.exporter.FileFormat;
+import com.atrainingtracker.trainingtracker.exporter.db.ExportStatusRepository;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the exported files that are older than ARCHIVE_AFTER_DAYS, the compressed archives stay on disk.
+ * This is only done when the user enabled the compression of the exports.
+ */
+public class ExportArchiveWorker extends Worker {
+    private static final String TAG = ExportArchiveWorker.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final String UNIQUE_WORK_NAME = "export_archive";
+
+    public static final String KEY_ARCHIVED = "ARCHIVED";
+    public static final String KEY_TOTAL = "TOTAL";
+
+    protected static final int ARCHIVE_AFTER_DAYS = 30;
+    private static final String TMP_FILE_ENDING = ".tmp";
+
+    public ExportArchiveWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * enqueues the archiving, it runs only when the battery and the storage are not low.
+     */
+    public static void enqueue(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(ExportArchiveWorker.class)
+                .setConstraints(constraints)
+                .addTag(UNIQUE_WORK_NAME)
+                .build();
+
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniqueWork(
+                UNIQUE_WORK_NAME,
+                ExistingWorkPolicy.KEEP,
+                workRequest
+        );
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        if (!TrainingApplication.compressExports()) {
+            if (DEBUG) Log.i(TAG, "compression of the exports is disabled");
+            return Result.success();
+        }
+
+        // first, get the old files that are not yet compressed
+        long archiveBefore = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ARCHIVE_AFTER_DAYS);
+        // the files to archive with the format of their directory
+        Map<File, FileFormat> files = new LinkedHashMap<>();
+        Set<String> dirNames = new HashSet<>();
+        for (FileFormat fileFormat : FileFormat.values()) {
+            if (!dirNames.add(fileFormat.getDirName())) {
+                continue;
+            }
+
+            File[] dirFiles = new File(BaseExporter.getBaseDirFile(getApplicationContext()), fileFormat.getDirName()).listFiles();
+            if (dirFiles == null) {
+                continue;
+            }
+            for (File file : dirFiles) {
+                String name = file.getName();
+                if (file.isFile()
+                        && file.lastModified() < archiveBefore
+                        && !name.endsWith(FileFormat.GZIP_FILE_ENDING)
+                        && !name.endsWith(TMP_FILE_ENDING)
+                        && !name.endsWith(FileFormat.FIT.getPlainFileEnding())) {
+                    files.put(file, fileFormat);
+                }
+            }
+        }
+        if (DEBUG) Log.i(TAG, files.size() + " files to archive");
+
+        ExportStatusRepository repository = ExportStatusRepository.getInstance(getApplicationContext());
+        int archived = 0;
+        for (Map.Entry<File, FileFormat> entry : files.entrySet()) {
+            File file = entry.getKey();
+            if (isStopped()) {
+                if (DEBUG) Log.i(TAG, "stopped after archiving " + archived + " files");
+                return Result.success();
+            }
+
+            try {
+                archive(file);
+                // so that the uploads and the other accesses find the archive
+                repository.fileCompressed(entry.getValue(), file.getName(), FileFormat.GZIP_FILE_ENDING);
+                archived++;
+            } catch (IOException e) {
+                // e.g. the storage is full.  The original file is kept, so we simply continue with the next one.
+                Log.e(TAG, "Error archiving " + file, e);
+            }
+
+            setProgressAsync(new Data.Builder()
+                    .putInt(KEY_ARCHIVED, archived)
+                    .putInt(KEY_TOTAL, files.size())
+                    .build());
+        }
+
+        if (DEBUG) Log.i(TAG, "archived " + archived + " of " + files.size() + " files");
+        return Result.success();
+    }
+
+    /**
+     * compresses the file into a temporary file that replaces the original one only when it is complete
+     */
+    private static void archive(@NonNull File file) throws IOException {
+        File archive = new File(file.getParentFile(), file.getName() + FileFormat.GZIP_FILE_ENDING);
+        File tmpFile = new File(file.getParentFile(), archive.getName() + TMP_FILE_ENDING);
+
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(tmpFile))) {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            throw e;
+        }
+
+        tmpFile.setLastModified(file.lastModified());
+        if (!tmpFile.renameTo(archive)) {
+            tmpFile.delete();
+            throw new IOException("could not rename " + tmpFile + " to " + archive);
+        }
+        if (!file.delete()) {
+            Log.e(TAG, "could not delete " + file);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.atrainingtracker.trainingtracker.helpers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.atrainingtracker.banalservice.sensor.SensorType;
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.ExtremaType;
+import com.atrainingtracker.trainingtracker.database.GeoTileIndexDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+import com.google.android.gms.maps.model.LatLng;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Adds all finished workouts that are not yet indexed to the geo tile index.
+ * With KEY_REBUILD, the index is cleared first, so all workouts are indexed again.
+ * In debug builds, a rebuild finally compares a query via the index with a full scan, see {@link WorkoutSamplesDatabaseManager#checkAverageAroundLocation}.
+ */
+public class GeoTileIndexWorker extends Worker {
+    private static final String TAG = GeoTileIndexWorker.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final String UNIQUE_WORK_NAME = "geo_tile_index";
+
+    public static final String KEY_REBUILD = "REBUILD";
+    public static final String KEY_INDEXED = "INDEXED";
+    public static final String KEY_TOTAL = "TOTAL";
+
+    // the radius of the check after a rebuild, same as for a new MyLocation
+    private static final double CHECK_RADIUS_m = 100;
+
+    public GeoTileIndexWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * indexes the new workouts.  When the worker is already running, this one is appended, so a just finished workout is not missed.
+     */
+    public static void enqueue(@NonNull Context context) {
+        enqueue(context, false, ExistingWorkPolicy.APPEND_OR_REPLACE);
+    }
+
+    /**
+     * drops the whole index and indexes all workouts again
+     */
+    public static void enqueueRebuild(@NonNull Context context) {
+        enqueue(context, true, ExistingWorkPolicy.REPLACE);
+    }
+
+    private static void enqueue(@NonNull Context context, boolean rebuild, @NonNull ExistingWorkPolicy existingWorkPolicy) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(GeoTileIndexWorker.class)
+                .setConstraints(constraints)
+                .setInputData(new Data.Builder().putBoolean(KEY_REBUILD, rebuild).build())
+                .addTag(UNIQUE_WORK_NAME)
+                .build();
+
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniqueWork(
+                UNIQUE_WORK_NAME,
+                existingWorkPolicy,
+                workRequest
+        );
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        GeoTileIndexDatabaseManager geoTileIndexDatabaseManager = GeoTileIndexDatabaseManager.getInstance(context);
+
+        boolean rebuild = getInputData().getBoolean(KEY_REBUILD, false);
+        if (rebuild) {
+            if (DEBUG) Log.i(TAG, "rebuilding the geo tile index");
+            geoTileIndexDatabaseManager.clear();
+        }
+
+        // first, get the finished workouts that are not yet indexed
+        Set<String> indexedWorkouts = geoTileIndexDatabaseManager.getIndexedWorkouts();
+        List<String> baseFileNames = new ArrayList<>();
+        long lastWorkoutId = -1;
+        WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(context);
+        try (Cursor cursor = workoutSummariesDatabaseManager.getDatabase().query(WorkoutSummaries.TABLE,
+                new String[]{WorkoutSummaries.FILE_BASE_NAME, WorkoutSummaries.C_ID},
+                WorkoutSummaries.FINISHED + "=1",
+                null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String baseFileName = cursor.getString(0);
+                if (baseFileName != null && !indexedWorkouts.contains(baseFileName)) {
+                    baseFileNames.add(baseFileName);
+                    lastWorkoutId = cursor.getLong(1);
+                }
+            }
+        }
+        if (DEBUG) Log.i(TAG, baseFileNames.size() + " workouts to index");
+
+        int indexed = 0;
+        for (String baseFileName : baseFileNames) {
+            if (isStopped()) {
+                if (DEBUG) Log.i(TAG, "stopped after indexing " + indexed + " workouts");
+                return Result.success();
+            }
+
+            try {
+                geoTileIndexDatabaseManager.indexWorkout(baseFileName);
+                indexed++;
+            } catch (Exception e) {
+                // e.g. the table does not exist.  There is nothing we can do, so we continue with the next one.
+                Log.e(TAG, "Error indexing the samples of " + baseFileName, e);
+            }
+
+            setProgressAsync(new Data.Builder()
+                    .putInt(KEY_INDEXED, indexed)
+                    .putInt(KEY_TOTAL, baseFileNames.size())
+                    .build());
+        }
+
+        if (DEBUG) Log.i(TAG, "indexed " + indexed + " of " + baseFileNames.size() + " workouts");
+
+        if (DEBUG && rebuild && indexed > 0) {
+            checkIndex(context, workoutSummariesDatabaseManager, lastWorkoutId);
+        }
+        return Result.success();
+    }
+
+    /**
+     * compares the average altitude around the start of a workout via the index with the full scan.  This reads all samples,
+     * so it only runs once after a rebuild.
+     */
+    private static void checkIndex(@NonNull Context context, @NonNull WorkoutSummariesDatabaseManager workoutSummariesDatabaseManager, long workoutId) {
+        Double latitude = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LATITUDE, ExtremaType.START);
+        Double longitude = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LONGITUDE, ExtremaType.START);
+        if (latitude == null || longitude == null) {
+            Log.i(TAG, "no start position of workout " + workoutId + " to check the index");
+            return;
+        }
+
+        WorkoutSamplesDatabaseManager.getInstance(context).checkAverageAroundLocation(workoutSummariesDatabaseManager,
+                new LatLng(latitude, longitude), CHECK_RADIUS_m, SensorType.ALTITUDE);
+    }
+}
@@ -0,0 +1,114 @@
+package com.atrainingtracker.trainingtracker.helpers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.MeanMaxDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Calculates the mean-maximal curves of all finished workouts that do not yet have them and adds them to the envelopes.
+ * After a workout, this worker runs right after the {@link CalcExtremaWorker}.
+ */
+public class MeanMaxWorker extends Worker {
+    private static final String TAG = MeanMaxWorker.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final String UNIQUE_WORK_NAME = "mean_max";
+
+    public static final String KEY_BUILT = "BUILT";
+    public static final String KEY_TOTAL = "TOTAL";
+
+    public MeanMaxWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * builds the curves of the new workouts.  When the worker is already running, this one is appended, so a just finished workout is not missed.
+     */
+    public static void enqueue(@NonNull Context context) {
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniqueWork(
+                UNIQUE_WORK_NAME,
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
+                createWorkRequest()
+        );
+    }
+
+    /**
+     * @return a request that can be chained after another worker, e.g. after the calculation of the extrema
+     */
+    @NonNull
+    public static OneTimeWorkRequest createWorkRequest() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        return new OneTimeWorkRequest.Builder(MeanMaxWorker.class)
+                .setConstraints(constraints)
+                .addTag(UNIQUE_WORK_NAME)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        MeanMaxDatabaseManager meanMaxDatabaseManager = MeanMaxDatabaseManager.getInstance(context);
+
+        // first, get the finished workouts that do not yet have the curves
+        Set<String> builtWorkouts = meanMaxDatabaseManager.getBuiltWorkouts();
+        List<String> baseFileNames = new ArrayList<>();
+        try (Cursor cursor = WorkoutSummariesDatabaseManager.getInstance(context).getDatabase().query(WorkoutSummaries.TABLE,
+                new String[]{WorkoutSummaries.FILE_BASE_NAME},
+                WorkoutSummaries.FINISHED + "=1",
+                null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String baseFileName = cursor.getString(0);
+                if (baseFileName != null && !builtWorkouts.contains(baseFileName)) {
+                    baseFileNames.add(baseFileName);
+                }
+            }
+        }
+        if (DEBUG) Log.i(TAG, baseFileNames.size() + " workouts without curves");
+
+        int built = 0;
+        for (String baseFileName : baseFileNames) {
+            if (isStopped()) {
+                if (DEBUG) Log.i(TAG, "stopped after " + built + " workouts");
+                return Result.success();
+            }
+
+            try {
+                meanMaxDatabaseManager.buildCurves(baseFileName);
+                built++;
+            } catch (Exception e) {
+                // e.g. the table does not exist.  There is nothing we can do, so we continue with the next one.
+                Log.e(TAG, "Error calculating the curves of " + baseFileName, e);
+            }
+
+            setProgressAsync(new Data.Builder()
+                    .putInt(KEY_BUILT, built)
+                    .putInt(KEY_TOTAL, baseFileNames.size())
+                    .build());
+        }
+
+        if (DEBUG) Log.i(TAG, "calculated the curves of " + built + " of " + baseFileNames.size() + " workouts");
+        return Result.success();
+    }
+}
@@ -0,0 +1,162 @@
+package com.atrainingtracker.trainingtracker.helpers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+import com.atrainingtracker.trainingtracker.database.columnar.ColumnarSampleStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts the sqlite sample tables of all finished workouts into the columnar sample store.
+ * Already converted workouts are skipped, so the worker can be stopped and restarted at any time.
+ * <p>
+ * The tables of the converted workouts are dropped afterwards.  A reader that started on the sqlite table before the conversion
+ * (e.g. the export right after the workout) must be able to finish, so a table is only dropped some time after its conversion.
+ */
+public class SamplesMigrationWorker extends Worker {
+    private static final String TAG = SamplesMigrationWorker.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final String UNIQUE_WORK_NAME = "samples_migration";
+
+    public static final String KEY_CONVERTED = "CONVERTED";
+    public static final String KEY_TOTAL = "TOTAL";
+
+    protected static final long DROP_TABLE_AFTER_ms = TimeUnit.HOURS.toMillis(1);
+
+    public SamplesMigrationWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * enqueues the migration, it runs only when the battery and the storage are not low.
+     */
+    public static void enqueue(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(SamplesMigrationWorker.class)
+                .setConstraints(constraints)
+                .addTag(UNIQUE_WORK_NAME)
+                .build();
+
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniqueWork(
+                UNIQUE_WORK_NAME,
+                ExistingWorkPolicy.KEEP,
+                workRequest
+        );
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        WorkoutSamplesDatabaseManager samplesDatabaseManager = WorkoutSamplesDatabaseManager.getInstance(context);
+
+        // first, get the finished workouts that are not yet converted
+        List<String> baseFileNames = new ArrayList<>();
+        List<String> convertedBaseFileNames = new ArrayList<>();
+        SQLiteDatabase summariesDb = WorkoutSummariesDatabaseManager.getInstance(context).getDatabase();
+        try (Cursor cursor = summariesDb.query(WorkoutSummaries.TABLE,
+                new String[]{WorkoutSummaries.FILE_BASE_NAME},
+                WorkoutSummaries.FINISHED + "=1",
+                null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String baseFileName = cursor.getString(0);
+                if (baseFileName == null) {
+                    continue;
+                }
+                if (samplesDatabaseManager.isColumnar(baseFileName)) {
+                    convertedBaseFileNames.add(baseFileName);
+                } else {
+                    baseFileNames.add(baseFileName);
+                }
+            }
+        }
+        if (DEBUG) Log.i(TAG, baseFileNames.size() + " workouts to convert");
+
+        int converted = 0;
+        for (String baseFileName : baseFileNames) {
+            if (isStopped()) {
+                if (DEBUG) Log.i(TAG, "stopped after converting " + converted + " workouts");
+                return Result.success();
+            }
+
+            try {
+                ColumnarSampleStore.convertFromSQLite(context, samplesDatabaseManager.getDatabase(), baseFileName);
+                converted++;
+            } catch (Exception e) {
+                // e.g. the table does not exist.  There is nothing we can do, so we continue with the next one.
+                Log.e(TAG, "Error converting the samples of " + baseFileName, e);
+            }
+
+            setProgressAsync(new Data.Builder()
+                    .putInt(KEY_CONVERTED, converted)
+                    .putInt(KEY_TOTAL, baseFileNames.size())
+                    .build());
+        }
+
+        if (DEBUG) Log.i(TAG, "converted " + converted + " of " + baseFileNames.size() + " workouts");
+
+        dropConvertedTables(samplesDatabaseManager, convertedBaseFileNames);
+        return Result.success();
+    }
+
+    /**
+     * drops the sqlite tables of the workouts that were converted at least DROP_TABLE_AFTER_ms ago and releases their space
+     */
+    private void dropConvertedTables(@NonNull WorkoutSamplesDatabaseManager samplesDatabaseManager, @NonNull List<String> convertedBaseFileNames) {
+        Context context = getApplicationContext();
+        long convertedBefore = System.currentTimeMillis() - DROP_TABLE_AFTER_ms;
+
+        int dropped = 0;
+        for (String baseFileName : convertedBaseFileNames) {
+            if (isStopped()) {
+                break;
+            }
+            if (ColumnarSampleStore.getFile(context, baseFileName).lastModified() > convertedBefore) {
+                continue;
+            }
+
+            try {
+                if (samplesDatabaseManager.dropConvertedTable(baseFileName)) {
+                    dropped++;
+                }
+            } catch (SQLException e) {
+                // e.g. the table is still locked by a reader, we try again next time
+                Log.e(TAG, "Error dropping the table of " + baseFileName, e);
+            }
+        }
+        if (DEBUG) Log.i(TAG, "dropped " + dropped + " tables");
+
+        // the database file only shrinks with a vacuum, which must not block the sample writer
+        if (dropped > 0 && !isStopped() && !TrainingApplication.isTracking()) {
+            try {
+                samplesDatabaseManager.vacuum();
+            } catch (SQLException e) {
+                Log.e(TAG, "Error vacuuming the samples database", e);
+            }
+        }
+    }
+}
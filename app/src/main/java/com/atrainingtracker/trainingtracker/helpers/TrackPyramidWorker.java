@@ -0,0 +1,113 @@
+package com.atrainingtracker.trainingtracker.helpers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.TrackPyramidDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+import com.atrainingtracker.trainingtracker.fragments.mapFragments.Roughness;
+import com.atrainingtracker.trainingtracker.fragments.mapFragments.TrackOnMapHelper.TrackType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the simplified levels of all tracks of the finished workouts that do not yet have them.
+ */
+public class TrackPyramidWorker extends Worker {
+    private static final String TAG = TrackPyramidWorker.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final String UNIQUE_WORK_NAME = "track_pyramid";
+
+    public static final String KEY_BUILT = "BUILT";
+    public static final String KEY_TOTAL = "TOTAL";
+
+    public TrackPyramidWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * builds the levels of the new workouts.  When the worker is already running, this one is appended, so a just finished workout is not missed.
+     */
+    public static void enqueue(@NonNull Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(TrackPyramidWorker.class)
+                .setConstraints(constraints)
+                .addTag(UNIQUE_WORK_NAME)
+                .build();
+
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniqueWork(
+                UNIQUE_WORK_NAME,
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
+                workRequest
+        );
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        TrackPyramidDatabaseManager trackPyramidDatabaseManager = TrackPyramidDatabaseManager.getInstance(context);
+
+        // first, get the finished workouts that do not yet have the levels
+        Set<String> builtWorkouts = trackPyramidDatabaseManager.getBuiltWorkouts();
+        List<String> baseFileNames = new ArrayList<>();
+        try (Cursor cursor = WorkoutSummariesDatabaseManager.getInstance(context).getDatabase().query(WorkoutSummaries.TABLE,
+                new String[]{WorkoutSummaries.FILE_BASE_NAME},
+                WorkoutSummaries.FINISHED + "=1",
+                null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                String baseFileName = cursor.getString(0);
+                if (baseFileName != null && !builtWorkouts.contains(baseFileName)) {
+                    baseFileNames.add(baseFileName);
+                }
+            }
+        }
+        if (DEBUG) Log.i(TAG, baseFileNames.size() + " workouts to simplify");
+
+        int[] tolerances = Roughness.getTolerances();
+        int built = 0;
+        for (String baseFileName : baseFileNames) {
+            if (isStopped()) {
+                if (DEBUG) Log.i(TAG, "stopped after simplifying " + built + " workouts");
+                return Result.success();
+            }
+
+            try {
+                for (TrackType trackType : TrackType.values()) {
+                    trackPyramidDatabaseManager.buildPyramid(baseFileName, trackType.getLatitudeName(), trackType.getLongitudeName(), tolerances);
+                }
+                trackPyramidDatabaseManager.setBuilt(baseFileName);
+                built++;
+            } catch (Exception e) {
+                // e.g. the table does not exist.  There is nothing we can do, so we continue with the next one.
+                Log.e(TAG, "Error simplifying the tracks of " + baseFileName, e);
+            }
+
+            setProgressAsync(new Data.Builder()
+                    .putInt(KEY_BUILT, built)
+                    .putInt(KEY_TOTAL, baseFileNames.size())
+                    .build());
+        }
+
+        if (DEBUG) Log.i(TAG, "simplified " + built + " of " + baseFileNames.size() + " workouts");
+        return Result.success();
+    }
+}
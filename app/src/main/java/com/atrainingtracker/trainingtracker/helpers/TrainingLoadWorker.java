@@ -0,0 +1,114 @@
+package com.atrainingtracker.trainingtracker.helpers;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.TrainingLoadDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Adds the training load of all finished workouts that are not yet added to the daily training loads.
+ * After a workout, this worker runs right after the {@link CalcExtremaWorker}.
+ */
+public class TrainingLoadWorker extends Worker {
+    private static final String TAG = TrainingLoadWorker.class.getSimpleName();
+    private static final boolean DEBUG = TrainingApplication.getDebug(true);
+
+    public static final String UNIQUE_WORK_NAME = "training_load";
+
+    public static final String KEY_ADDED = "ADDED";
+    public static final String KEY_TOTAL = "TOTAL";
+
+    public TrainingLoadWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    /**
+     * adds the load of the new workouts.  When the worker is already running, this one is appended, so a just finished workout is not missed.
+     */
+    public static void enqueue(@NonNull Context context) {
+        WorkManager.getInstance(context.getApplicationContext()).enqueueUniqueWork(
+                UNIQUE_WORK_NAME,
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
+                createWorkRequest()
+        );
+    }
+
+    /**
+     * @return a request that can be chained after another worker, e.g. after the calculation of the extrema
+     */
+    @NonNull
+    public static OneTimeWorkRequest createWorkRequest() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+
+        return new OneTimeWorkRequest.Builder(TrainingLoadWorker.class)
+                .setConstraints(constraints)
+                .addTag(UNIQUE_WORK_NAME)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        TrainingLoadDatabaseManager trainingLoadDatabaseManager = TrainingLoadDatabaseManager.getInstance(context);
+
+        // first, get the finished workouts that are not yet added
+        Set<Long> addedWorkouts = trainingLoadDatabaseManager.getAddedWorkouts();
+        List<Long> workoutIds = new ArrayList<>();
+        try (Cursor cursor = WorkoutSummariesDatabaseManager.getInstance(context).getDatabase().query(WorkoutSummaries.TABLE,
+                new String[]{WorkoutSummaries.C_ID},
+                WorkoutSummaries.FINISHED + "=1",
+                null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                long workoutId = cursor.getLong(0);
+                if (!addedWorkouts.contains(workoutId)) {
+                    workoutIds.add(workoutId);
+                }
+            }
+        }
+        if (DEBUG) Log.i(TAG, workoutIds.size() + " workouts to add");
+
+        int added = 0;
+        for (long workoutId : workoutIds) {
+            if (isStopped()) {
+                if (DEBUG) Log.i(TAG, "stopped after adding " + added + " workouts");
+                return Result.success();
+            }
+
+            try {
+                trainingLoadDatabaseManager.addWorkout(workoutId);
+                added++;
+            } catch (Exception e) {
+                // e.g. the table does not exist.  There is nothing we can do, so we continue with the next one.
+                Log.e(TAG, "Error adding the load of workout " + workoutId, e);
+            }
+
+            setProgressAsync(new Data.Builder()
+                    .putInt(KEY_ADDED, added)
+                    .putInt(KEY_TOTAL, workoutIds.size())
+                    .build());
+        }
+
+        if (DEBUG) Log.i(TAG, "added " + added + " of " + workoutIds.size() + " workouts");
+        return Result.success();
+    }
+}
@@ -223,6 +223,8 @@ public class StravaEquipmentSynchronizeThread extends Thread {
             }
         } catch (Exception e) {
             Log.e(TAG, "Error parsing equipment JSON", e);
+        } finally {
+            EquipmentDbHelper.invalidateCache();
         }
 
         return DateFormat.getDateTimeInstance().format(new Date());
@@ -33,28 +33,11 @@ public class SegmentHelper {
     private static final boolean DEBUG = TrainingApplication.getDebug(false);
 
     public static double LatitudeDegreeInMeters(@NonNull LatLng latLng) {
-        // from http://gis.stackexchange.com/questions/75528/length-of-a-degree-where-do-the-terms-in-this-formula-come-from
-        // Set up "Constants"
-        double m1 = 111132.92;     // latitude calculation term 1
-        double m2 = -559.82;       // latitude calculation term 2
-        double m3 = 1.175;         // latitude calculation term 3
-        double m4 = -0.0023;       // latitude calculation term 4
-
-        // Calculate the length of a degree of latitude and longitude in meters
-        return m1 + (m2 * Math.cos(Math.toRadians(2 * latLng.latitude))) + (m3 * Math.cos(Math.toRadians(4 * latLng.latitude))) +
-                (m4 * Math.cos(Math.toRadians(6 * latLng.latitude)));
+        return GeoMath.latitudeDegreeInMeters(latLng.latitude);
     }
 
     public static double LongitudeDegreeInMeters(@NonNull LatLng latLng) {
-        // from http://gis.stackexchange.com/questions/75528/length-of-a-degree-where-do-the-terms-in-this-formula-come-from
-        // Set up "Constants"
-        double p1 = 111412.84;     // longitude calculation term 1
-        double p2 = -93.5;         // longitude calculation term 2
-        double p3 = 0.118;         // longitude calculation term 3
-
-        // Calculate the length of a degree of latitude and longitude in meters
-        return (p1 * Math.cos(Math.toRadians(latLng.latitude))) + (p2 * Math.cos(Math.toRadians(3 * latLng.latitude))) +
-                (p3 * Math.cos(Math.toRadians(5 * latLng.latitude)));
+        return GeoMath.longitudeDegreeInMeters(latLng.latitude);
     }
 
     public enum SegmentType {NONE, RUN, BIKE, ALL}
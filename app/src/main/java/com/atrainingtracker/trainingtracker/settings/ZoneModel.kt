@@ -0,0 +1,122 @@
+package com.atrainingtracker.trainingtracker.settings
+
+import android.content.Context
+import com.atrainingtracker.banalservice.BSportType
+import com.atrainingtracker.banalservice.sensor.SensorType
+import com.atrainingtracker.trainingtracker.settings.SettingsDataStore.Zone
+import com.atrainingtracker.trainingtracker.settings.SettingsDataStore.ZoneType
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * The zone limits held in memory, so that a value can be classified without touching the DataStore.
+ *
+ * The limits are updated whenever the user changes them, until then the default values are used.
+ * Additionally, the time spent in each zone is counted while tracking.
+ */
+class ZoneModel private constructor(context: Context) {
+
+    companion object {
+        const val ZONES = 5
+
+        @Volatile
+        private var instance: ZoneModel? = null
+
+        @JvmStatic
+        fun getInstance(context: Context): ZoneModel {
+            return instance ?: synchronized(this) {
+                instance ?: ZoneModel(context.applicationContext).also { instance = it }
+            }
+        }
+
+        /**
+         * @return the zone type for the sensor and sport or null when there are no zones for this combination.
+         */
+        @JvmStatic
+        fun getZoneType(sensorType: SensorType, sportType: BSportType?): ZoneType? {
+            return when (sensorType) {
+                SensorType.HR -> when (sportType) {
+                    BSportType.RUN -> ZoneType.HR_RUN
+                    BSportType.BIKE -> ZoneType.HR_BIKE
+                    else -> null
+                }
+                SensorType.POWER -> if (sportType == BSportType.BIKE) ZoneType.PWR_BIKE else null
+                else -> null
+            }
+        }
+    }
+
+    // the maxima of zone 1 to 4, indexed by the ordinal of the zone type.  A changed zone type gets a new array, so readers never see a partial update
+    @Volatile
+    private var zoneMaxima: Array<IntArray>
+
+    private val timeInZones_s = Array(ZoneType.entries.size) { AtomicLongArray(ZONES) }
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    init {
+        val settingsDataStore = SettingsDataStore(context)
+        zoneMaxima = Array(ZoneType.entries.size) { ordinal ->
+            val zoneType = ZoneType.entries[ordinal]
+            IntArray(Zone.entries.size) { settingsDataStore.getDefaultValue(zoneType, Zone.entries[it]) }
+        }
+
+        for (zoneType in ZoneType.entries) {
+            scope.launch {
+                combine(Zone.entries.map { settingsDataStore.getZoneMaxFlow(zoneType, it) }) { it.toIntArray() }
+                    .collect { maxima ->
+                        synchronized(this@ZoneModel) {
+                            zoneMaxima = zoneMaxima.copyOf().also { it[zoneType.ordinal] = maxima }
+                        }
+                    }
+            }
+        }
+    }
+
+    /**
+     * @return the zone (1 to 5) of the value.  A value equal to the maximum of a zone still belongs to this zone.
+     */
+    fun getZone(zoneType: ZoneType, value: Double): Int {
+        val maxima = zoneMaxima[zoneType.ordinal]
+        var zone = 0
+        while (zone < maxima.size && value > maxima[zone]) {
+            zone++
+        }
+        return zone + 1
+    }
+
+    /**
+     * @return a copy of the maxima of zone 1 to 4
+     */
+    fun getZoneMaxima(zoneType: ZoneType): IntArray = zoneMaxima[zoneType.ordinal].copyOf()
+
+    /**
+     * counts one second in the zone of the value.  Values without a meaning (0 or less) are not counted.
+     */
+    fun addSecond(zoneType: ZoneType, value: Double) {
+        if (value <= 0) {
+            return
+        }
+        timeInZones_s[zoneType.ordinal].incrementAndGet(getZone(zoneType, value) - 1)
+    }
+
+    /**
+     * @return the seconds spent in zone 1 to 5 since the last reset
+     */
+    fun getTimeInZones_s(zoneType: ZoneType): LongArray {
+        val counters = timeInZones_s[zoneType.ordinal]
+        return LongArray(ZONES) { counters.get(it) }
+    }
+
+    fun resetTimeInZones() {
+        for (counters in timeInZones_s) {
+            for (zone in 0 until ZONES) {
+                counters.set(zone, 0)
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.tracker;
+
+import androidx.annotation.NonNull;
+
+import com.atrainingtracker.banalservice.sensor.SensorSnapshot;
+import com.atrainingtracker.banalservice.sensor.SensorType;
+
+import java.util.Arrays;
+
+/**
+ * Decides for the adaptive sampling whether the current values of the best sensors are worth a new sample.
+ * <p>
+ * A sample is written when one of the observed sensors moved more than its threshold since the last written sample,
+ * when a sensor appeared or disappeared, when a new lap started, or when MAX_INTERVAL_ms elapsed.
+ * All other sensors (e.g. the accumulated distance) are simply written with the next sample.
+ */
+public class ChangeDetector {
+    // even during a steady ride, we write one sample per half minute
+    public static final long MAX_INTERVAL_ms = 30_000;
+
+    private static final SensorType[] OBSERVED_SENSOR_TYPES = {
+            SensorType.HR,
+            SensorType.POWER,
+            SensorType.CADENCE,
+            SensorType.SPEED_mps,
+            SensorType.ALTITUDE,
+            SensorType.LATITUDE,
+            SensorType.LONGITUDE,
+            SensorType.LAP_NR
+    };
+    // the absolute thresholds of the sensors above, 0 means any change
+    private static final double[] THRESHOLDS = {
+            2,       // bpm
+            10,      // watts
+            2,       // rpm
+            0.3,     // m/s
+            2,       // m
+            0.00002, // about 2 m
+            0.00002,
+            0
+    };
+
+    // the values of the last written sample, NaN when there was no value
+    private final double[] mLastValues = new double[OBSERVED_SENSOR_TYPES.length];
+    private long mLastTime_ms = Long.MIN_VALUE;
+
+    public ChangeDetector() {
+        Arrays.fill(mLastValues, Double.NaN);
+    }
+
+    /**
+     * @param time_ms the current time, e.g. SystemClock.elapsedRealtime()
+     * @return true when the current values should be written.  Then, they are remembered as the last written ones.
+     */
+    public boolean isSignificant(@NonNull SensorSnapshot sensorSnapshot, long time_ms) {
+        boolean significant = mLastTime_ms == Long.MIN_VALUE || time_ms - mLastTime_ms >= MAX_INTERVAL_ms;
+
+        for (int i = 0; i < OBSERVED_SENSOR_TYPES.length && !significant; i++) {
+            double value = getValue(sensorSnapshot, OBSERVED_SENSOR_TYPES[i]);
+            if (Double.isNaN(value) != Double.isNaN(mLastValues[i])) {
+                significant = true;
+            } else if (!Double.isNaN(value)) {
+                double difference = Math.abs(value - mLastValues[i]);
+                significant = THRESHOLDS[i] == 0 ? difference > 0 : difference >= THRESHOLDS[i];
+            }
+        }
+
+        if (significant) {
+            for (int i = 0; i < OBSERVED_SENSOR_TYPES.length; i++) {
+                mLastValues[i] = getValue(sensorSnapshot, OBSERVED_SENSOR_TYPES[i]);
+            }
+            mLastTime_ms = time_ms;
+        }
+        return significant;
+    }
+
+    /**
+     * forgets the last written sample, so the next one is written in any case
+     */
+    public void reset() {
+        Arrays.fill(mLastValues, Double.NaN);
+        mLastTime_ms = Long.MIN_VALUE;
+    }
+
+    private static double getValue(@NonNull SensorSnapshot sensorSnapshot, @NonNull SensorType sensorType) {
+        int column = sensorSnapshot.getColumn(sensorType);
+        return column >= 0 && sensorSnapshot.hasValue(column) ? sensorSnapshot.getDouble(column) : Double.NaN;
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.tracker;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.atrainingtracker.banalservice.sensor.SensorValueType;
+import com.atrainingtracker.trainingtracker.TrainingApplication;
+import com.atrainingtracker.trainingtracker.database.WorkoutExtrema;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager.WorkoutSamplesDbHelper;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+/**
+ * Collects the samples of the TrackerService in a bounded ring and writes them to the samples table in one transaction.
+ * <p>
+ * The pending rows are flushed when either the flush interval elapsed or the ring is full.
+ * Thus, at most one flush window of samples is lost when the process gets killed.
+ * Since the rows are no longer inserted at the time they were sampled, the time column is set explicitly.
+ * <p>
+ * When live extrema are given, they are fed with every sample and saved together with each batch.
+ * Thus, the extrema values are already final when the workout ends.
+ * <p>
+ * All public methods are synchronized since samples are added by the tracker thread while laps, pauses,
+ * and the end of the workout are handled on the main thread.
+ */
+public class SampleWriter {
+    private static final String TAG = "SampleWriter";
+    private static final boolean DEBUG = TrainingApplication.getDebug(false);
+
+    private final Context mContext;
+    private final String mSamplesTableName;
+    private final long mWorkoutId;
+    private final long mFlushInterval_ms;
+
+    // the ring of pending rows
+    private final ContentValues[] mPendingRows;
+    private int mFirstPendingRow = 0;
+    private int mNumberOfPendingRows = 0;
+    private long mLastFlushTime_ms;
+
+    // the latest values for the summaries db, written once per flush
+    private final ContentValues mPendingSummaryValues = new ContentValues();
+
+    // the extrema values of the whole workout, might be null when they are calculated afterwards
+    @Nullable
+    private final WorkoutExtrema mWorkoutExtrema;
+    private boolean mExtremaChanged = false;
+    // needed for the average speed
+    @Nullable
+    private Double mDistanceTotal_m = null;
+    @Nullable
+    private Integer mTimeActive_s = null;
+
+    private final Map<String, SensorValueType> mColumnName2Type = new HashMap<>();
+    // precompiled insert statements, one for each set of columns
+    private final Map<String, SQLiteStatement> mInsertStatements = new HashMap<>();
+
+    // same format as CURRENT_TIMESTAMP of sqlite
+    private final SimpleDateFormat mDbTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+    // with sub-second sampling, the milliseconds are added
+    private final SimpleDateFormat mDbTimeMillisFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    private boolean mSubSecondTimes = false;
+
+    // some statistics
+    private int mNumberOfFlushes = 0;
+    private long mNumberOfFlushedRows = 0;
+    private int mLastRowsPerCommit = 0;
+    private long mLastFlushLatency_ms = 0;
+    private long mMaxFlushLatency_ms = 0;
+    private long mTotalFlushLatency_ms = 0;
+    private int mNumberOfDroppedRows = 0;
+    // the statistics of the most recent writer, shown in the debug section of the preferences
+    @Nullable
+    private static volatile FlushStatistics cLatestFlushStatistics = null;
+
+    /**
+     * @param workoutExtrema the live extrema of the workout or null when they have to be calculated after the workout
+     */
+    public SampleWriter(@NonNull Context context, String samplesTableName, long workoutId, @Nullable WorkoutExtrema workoutExtrema, int flushInterval_s, int maxPendingRows) {
+        if (DEBUG)
+            Log.i(TAG, "SampleWriter: table=" + samplesTableName + ", flushInterval_s=" + flushInterval_s + ", maxPendingRows=" + maxPendingRows);
+
+        mContext = context;
+        mSamplesTableName = samplesTableName;
+        mWorkoutId = workoutId;
+        mFlushInterval_ms = Math.max(1, flushInterval_s) * 1000L;
+        mPendingRows = new ContentValues[Math.max(1, maxPendingRows)];
+        mLastFlushTime_ms = SystemClock.elapsedRealtime();
+        mWorkoutExtrema = workoutExtrema;
+
+        mDbTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        mDbTimeMillisFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // new samples => the extrema values have to be (re)calculated.  Only the TrackerService knows when the live ones are complete
+        mPendingSummaryValues.put(WorkoutSummaries.EXTREMA_VALUES_CALCULATED, 0);
+        mPendingSummaryValues.put(WorkoutSummaries.LIVE_EXTREMA_VALUES, 0);
+    }
+
+    /**
+     * @param subSecondTimes whether the time of the following samples is written with milliseconds
+     */
+    public synchronized void setSubSecondTimes(boolean subSecondTimes) {
+        mSubSecondTimes = subSecondTimes;
+    }
+
+    /**
+     * the live extrema were modified from outside, so they are written with the next flush
+     */
+    public synchronized void onExtremaChanged() {
+        mExtremaChanged = mWorkoutExtrema != null;
+    }
+
+    /**
+     * Adds one sample to the ring and flushes when necessary.
+     *
+     * @return true when the pending rows were written to the database.
+     */
+    public synchronized boolean addSample(@NonNull ContentValues samplingValues, @NonNull Map<String, SensorValueType> sensorName2Type, @NonNull ContentValues summaryValues) {
+        samplingValues.put(WorkoutSamplesDbHelper.TIME, (mSubSecondTimes ? mDbTimeMillisFormat : mDbTimeFormat).format(new Date()));
+        mColumnName2Type.putAll(sensorName2Type);
+        mPendingSummaryValues.putAll(summaryValues);
+
+        if (mWorkoutExtrema != null) {
+            mWorkoutExtrema.addSample(samplingValues);
+            mExtremaChanged = true;
+            if (summaryValues.containsKey(WorkoutSummaries.DISTANCE_TOTAL_m)) {
+                mDistanceTotal_m = summaryValues.getAsDouble(WorkoutSummaries.DISTANCE_TOTAL_m);
+            }
+            if (summaryValues.containsKey(WorkoutSummaries.TIME_ACTIVE_s)) {
+                mTimeActive_s = summaryValues.getAsInteger(WorkoutSummaries.TIME_ACTIVE_s);
+            }
+        }
+
+        if (mNumberOfPendingRows == mPendingRows.length) {
+            // this only happens when the previous flush failed => drop the oldest row
+            Log.w(TAG, "ring of pending samples is full, dropping the oldest one");
+            mPendingRows[mFirstPendingRow] = null;
+            mFirstPendingRow = (mFirstPendingRow + 1) % mPendingRows.length;
+            mNumberOfPendingRows--;
+            mNumberOfDroppedRows++;
+        }
+        mPendingRows[(mFirstPendingRow + mNumberOfPendingRows) % mPendingRows.length] = samplingValues;
+        mNumberOfPendingRows++;
+
+        if (mNumberOfPendingRows >= mPendingRows.length
+                || SystemClock.elapsedRealtime() - mLastFlushTime_ms >= mFlushInterval_ms) {
+            return flush();
+        }
+        return false;
+    }
+
+    /**
+     * Writes all pending rows within one transaction and afterwards the latest summary values.
+     *
+     * @return true when something was written.
+     */
+    public synchronized boolean flush() {
+        mLastFlushTime_ms = SystemClock.elapsedRealtime();
+
+        if (mNumberOfPendingRows == 0 && mPendingSummaryValues.size() == 0) {
+            return false;
+        }
+
+        long startTime_ms = SystemClock.elapsedRealtime();
+        int rows = mNumberOfPendingRows;
+
+        if (rows > 0) {
+            SQLiteDatabase samplesDb = WorkoutSamplesDatabaseManager.getInstance(mContext).getDatabase();
+            samplesDb.beginTransaction();
+            try {
+                for (int i = 0; i < rows; i++) {
+                    insertRow(samplesDb, mPendingRows[(mFirstPendingRow + i) % mPendingRows.length]);
+                }
+                samplesDb.setTransactionSuccessful();
+            } catch (SQLException e) {
+                Log.e(TAG, "writing " + rows + " samples failed, keeping them for the next flush", e);
+                return false;
+            } finally {
+                samplesDb.endTransaction();
+            }
+
+            for (int i = 0; i < rows; i++) {
+                mPendingRows[(mFirstPendingRow + i) % mPendingRows.length] = null;
+            }
+            mFirstPendingRow = (mFirstPendingRow + rows) % mPendingRows.length;
+            mNumberOfPendingRows = 0;
+        }
+
+        WorkoutSummariesDatabaseManager summariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(mContext);
+        if (mPendingSummaryValues.size() > 0) {
+            summariesDatabaseManager.getDatabase().update(WorkoutSummaries.TABLE,
+                    mPendingSummaryValues,
+                    WorkoutSummaries.C_ID + "=" + mWorkoutId,
+                    null);
+            mPendingSummaryValues.clear();
+        }
+
+        // the live extrema values are written together with the samples
+        if (mWorkoutExtrema != null && mExtremaChanged) {
+            summariesDatabaseManager.saveExtremaValues(mWorkoutId, mWorkoutExtrema.getExtremaValues(mDistanceTotal_m, mTimeActive_s));
+            mExtremaChanged = false;
+        }
+
+        // update the statistics
+        mLastFlushLatency_ms = SystemClock.elapsedRealtime() - startTime_ms;
+        mLastRowsPerCommit = rows;
+        mMaxFlushLatency_ms = Math.max(mMaxFlushLatency_ms, mLastFlushLatency_ms);
+        mTotalFlushLatency_ms += mLastFlushLatency_ms;
+        mNumberOfFlushedRows += rows;
+        mNumberOfFlushes++;
+
+        cLatestFlushStatistics = getFlushStatistics();
+        if (DEBUG)
+            Log.i(TAG, "flushed " + rows + " samples in " + mLastFlushLatency_ms + " ms");
+
+        return true;
+    }
+
+    /**
+     * Flushes the remaining rows and releases the precompiled statements.
+     */
+    public synchronized void close() {
+        flush();
+
+        for (SQLiteStatement statement : mInsertStatements.values()) {
+            statement.close();
+        }
+        mInsertStatements.clear();
+
+        Log.i(TAG, "closed: " + getFlushStatistics());
+    }
+
+    @Nullable
+    public static FlushStatistics getLatestFlushStatistics() {
+        return cLatestFlushStatistics;
+    }
+
+    @NonNull
+    public synchronized FlushStatistics getFlushStatistics() {
+        return new FlushStatistics(mNumberOfFlushes, mNumberOfFlushedRows, mLastRowsPerCommit,
+                mLastFlushLatency_ms, mMaxFlushLatency_ms,
+                mNumberOfFlushes == 0 ? 0 : mTotalFlushLatency_ms / mNumberOfFlushes,
+                mNumberOfDroppedRows);
+    }
+
+    private void insertRow(@NonNull SQLiteDatabase samplesDb, @NonNull ContentValues row) {
+        SortedSet<String> columns = new TreeSet<>(row.keySet());
+        SQLiteStatement statement = getInsertStatement(samplesDb, columns);
+
+        if (statement == null) {
+            insertOneByOne(samplesDb, row);
+            return;
+        }
+
+        statement.clearBindings();
+        int index = 1;
+        for (String column : columns) {
+            Object value = row.get(column);
+            if (value == null) {
+                statement.bindNull(index);
+            } else if (value instanceof Integer || value instanceof Long) {
+                statement.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Number) {
+                statement.bindDouble(index, ((Number) value).doubleValue());
+            } else {
+                statement.bindString(index, value.toString());
+            }
+            index++;
+        }
+
+        try {
+            statement.executeInsert();
+        } catch (SQLException e) {
+            insertOneByOne(samplesDb, row);
+        }
+    }
+
+    private SQLiteStatement getInsertStatement(@NonNull SQLiteDatabase samplesDb, @NonNull SortedSet<String> columns) {
+        String key = String.join(", ", columns);
+        SQLiteStatement statement = mInsertStatements.get(key);
+        if (statement != null) {
+            return statement;
+        }
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(mSamplesTableName).append(" (").append(key).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        try {
+            statement = samplesDb.compileStatement(sql.toString());
+        } catch (SQLException e) {  // ok, probably the column is missing
+            if (DEBUG) Log.i(TAG, "SQLException.  Probably, column(s) missing");
+            addMissingColumns(samplesDb, columns);
+
+            // now, try again...
+            try {
+                statement = samplesDb.compileStatement(sql.toString());
+            } catch (SQLException retryException) {
+                Log.i(TAG, "Failed to compile the insert statement after altering the table.");
+                return null;
+            }
+        }
+
+        mInsertStatements.put(key, statement);
+        return statement;
+    }
+
+    private void addMissingColumns(@NonNull SQLiteDatabase samplesDb, @NonNull SortedSet<String> columns) {
+        Cursor cursor = samplesDb.query(mSamplesTableName, null, null, null, null, null, null, "1");
+
+        for (String key : columns) {
+            String queryKey = key.replace("'", "");
+            if (cursor.getColumnIndex(queryKey) < 0) {  // column is really missing
+                if (DEBUG) Log.i(TAG, "column " + key + " is missing.  Adding it.");
+                SensorValueType sensorValueType = mColumnName2Type.get(key);
+                String type = sensorValueType == null ? "text" : switch (sensorValueType) {
+                    case INTEGER -> "int";
+                    case DOUBLE -> "double";
+                    default -> "text";
+                };
+
+                String sqlCommand = "ALTER TABLE " + mSamplesTableName + " ADD COLUMN " + key + " " + type + " null;";
+                if (DEBUG) Log.i(TAG, "sql command: " + sqlCommand);
+
+                try {
+                    samplesDb.execSQL(sqlCommand);
+                } catch (SQLException alterException) {
+                    Log.i(TAG, "alter table, adding " + key + " column failed. (Command: " + sqlCommand + ")");
+                }
+            }
+        }
+        cursor.close();
+
+        // the schema changed, so the already compiled statements are outdated
+        for (SQLiteStatement statement : mInsertStatements.values()) {
+            statement.close();
+        }
+        mInsertStatements.clear();
+    }
+
+    // still did not work => try to insert them one by one...
+    private void insertOneByOne(@NonNull SQLiteDatabase samplesDb, @NonNull ContentValues row) {
+        Log.i(TAG, "Failed to insert the samples after altering the table.  Try to insert them one by one.");
+        for (String key : row.keySet()) {
+            ContentValues oneSamplingValue = new ContentValues();
+            oneSamplingValue.put(WorkoutSamplesDbHelper.TIME, row.getAsString(WorkoutSamplesDbHelper.TIME));
+            SensorValueType sensorValueType = mColumnName2Type.get(key);
+            if (sensorValueType == SensorValueType.INTEGER) {
+                oneSamplingValue.put(key, row.getAsInteger(key));
+            } else if (sensorValueType == SensorValueType.DOUBLE) {
+                oneSamplingValue.put(key, row.getAsDouble(key));
+            } else {
+                oneSamplingValue.put(key, row.getAsString(key));
+            }
+            try {
+                samplesDb.insertOrThrow(mSamplesTableName,
+                        null,
+                        oneSamplingValue);
+            } catch (SQLException retryRetryException) {
+                Log.i(TAG, "Inserting " + key + " finally failed.  Giving up for this key; still trying to save the rest.");
+            }
+        }
+    }
+
+    /**
+     * Immutable snapshot of the flush latency and the number of rows per commit.
+     */
+    public static class FlushStatistics {
+        public final int numberOfFlushes;
+        public final long numberOfFlushedRows;
+        public final int lastRowsPerCommit;
+        public final long lastFlushLatency_ms;
+        public final long maxFlushLatency_ms;
+        public final long averageFlushLatency_ms;
+        public final int numberOfDroppedRows;
+
+        public FlushStatistics(int numberOfFlushes, long numberOfFlushedRows, int lastRowsPerCommit,
+                               long lastFlushLatency_ms, long maxFlushLatency_ms, long averageFlushLatency_ms,
+                               int numberOfDroppedRows) {
+            this.numberOfFlushes = numberOfFlushes;
+            this.numberOfFlushedRows = numberOfFlushedRows;
+            this.lastRowsPerCommit = lastRowsPerCommit;
+            this.lastFlushLatency_ms = lastFlushLatency_ms;
+            this.maxFlushLatency_ms = maxFlushLatency_ms;
+            this.averageFlushLatency_ms = averageFlushLatency_ms;
+            this.numberOfDroppedRows = numberOfDroppedRows;
+        }
+
+        public double getAverageRowsPerCommit() {
+            return numberOfFlushes == 0 ? 0 : (double) numberOfFlushedRows / numberOfFlushes;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "flushes=" + numberOfFlushes
+                    + ", rows=" + numberOfFlushedRows
+                    + ", rows/commit=" + getAverageRowsPerCommit()
+                    + ", lastLatency_ms=" + lastFlushLatency_ms
+                    + ", avgLatency_ms=" + averageFlushLatency_ms
+                    + ", maxLatency_ms=" + maxFlushLatency_ms
+                    + ", dropped=" + numberOfDroppedRows;
+        }
+    }
+}
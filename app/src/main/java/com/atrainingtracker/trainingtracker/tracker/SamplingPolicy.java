@@ -0,0 +1,47 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.tracker;
+
+import com.atrainingtracker.R;
+
+/**
+ * How often the TrackerService writes a sample, configured per sport.
+ */
+public enum SamplingPolicy {
+    // one sample per second, as always
+    FIXED_1HZ(R.string.sampling_policy_fixed_1hz),
+    // four samples per second, e.g. for indoor power sessions.  The time stamps get milliseconds
+    FIXED_4HZ(R.string.sampling_policy_fixed_4hz),
+    // checked once per second, but only written when a value changed significantly
+    ADAPTIVE(R.string.sampling_policy_adaptive);
+
+    private final int nameId;
+
+    SamplingPolicy(int nameId) {
+        this.nameId = nameId;
+    }
+
+    public int getNameId() {
+        return nameId;
+    }
+
+    public boolean isSubSecond() {
+        return this == FIXED_4HZ;
+    }
+}
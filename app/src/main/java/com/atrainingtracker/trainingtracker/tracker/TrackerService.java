@@ -27,9 +27,9 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.database.Cursor;
-import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -39,9 +39,12 @@ import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.atrainingtracker.banalservice.BANALService;
 import com.atrainingtracker.banalservice.BANALService.BANALServiceComm;
+import com.atrainingtracker.banalservice.BSportType;
+import com.atrainingtracker.banalservice.TickScheduler;
 import com.atrainingtracker.banalservice.devices.AltitudeFromPressureDevice;
 import com.atrainingtracker.banalservice.sensor.MySensorManager;
 import com.atrainingtracker.banalservice.sensor.SensorData;
+import com.atrainingtracker.banalservice.sensor.SensorSnapshot;
 import com.atrainingtracker.banalservice.sensor.SensorType;
 import com.atrainingtracker.banalservice.sensor.SensorValueType;
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager;
@@ -50,9 +53,12 @@ import com.atrainingtracker.trainingtracker.TrainingApplication;
 import com.atrainingtracker.trainingtracker.database.ActiveDevicesDbHelper;
 import com.atrainingtracker.trainingtracker.database.ActiveDevicesDbHelper.ActiveDevices;
 import com.atrainingtracker.trainingtracker.database.LapsDatabaseManager;
+import com.atrainingtracker.trainingtracker.database.WorkoutExtrema;
 import com.atrainingtracker.trainingtracker.database.WorkoutSamplesDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager;
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries;
+import com.atrainingtracker.trainingtracker.settings.SettingsDataStore.ZoneType;
+import com.atrainingtracker.trainingtracker.settings.ZoneModel;
 
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
@@ -60,12 +66,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 public class TrackerService extends Service {
     // TODO: probably, we also have to remove this and use the keywords of WorkoutSummaries directly.
@@ -86,7 +86,6 @@ public class TrackerService extends Service {
 
     // protected ContentValues mValues        = new ContentValues();
     // protected ContentValues mSummaryValues = new ContentValues();
-    private final ScheduledExecutorService mScheduler = Executors.newScheduledThreadPool(1);
     // we assume that we start while the BANAL Service is searching
     protected boolean mSearching = true;
     protected boolean mCreateNewLapWhenConnectedToBanalService = false;
@@ -95,7 +94,31 @@ public class TrackerService extends Service {
     @Nullable
     BANALServiceComm mBanalService;
     private TrainingApplication mTrainingApplication;
-    private ScheduledFuture mTrackerHandle;
+    // the sampling runs on the tick thread, while the main thread takes the final sample, flushes, and closes the writer.
+    // So, the sample writer, the sensor snapshot, and the change detector are only accessed while holding this lock
+    private final Object mSamplerLock = new Object();
+    // writes the samples in batches instead of one transaction per second
+    @Nullable
+    private SampleWriter mSampleWriter;
+    // set when the workout ended, so that a tick that is still running does not create a new writer
+    private boolean mSampleWriterClosed = false;
+    // the extrema values calculated while tracking, null when the workout was resumed
+    @Nullable
+    private WorkoutExtrema mWorkoutExtrema;
+    // the values of all sensors, reused for every sample
+    private final SensorSnapshot mSensorSnapshot = new SensorSnapshot();
+    // the names and types of the columns of the samples table, indexed by the column ids of the snapshot
+    private String[] mColumnNames = new String[0];
+    private final Map<String, SensorValueType> mColumnName2Type = new HashMap<>();
+    // how often the samples are written, depends on the sport.  null until the tracker is registered
+    @Nullable
+    private volatile SamplingPolicy mSamplingPolicy = null;
+    // decides for the adaptive sampling which samples are written
+    private final ChangeDetector mChangeDetector = new ChangeDetector();
+    // the base sport of the current sport type, used to count the time in the zones.  null until the tracker is registered
+    @Nullable
+    private volatile BSportType mBSportType = null;
+    private ZoneModel mZoneModel;
     // int            mCalories        = 0;
     // double         mSpeedAverage_mps = 0.0;
 
@@ -132,12 +155,25 @@ public class TrackerService extends Service {
                 Log.i(TAG, "updating all previous altitude measurements by " + altitudeCorrection);
             String operator = altitudeCorrection >= 0 ? " + " : " - ";
 
-            WorkoutSamplesDatabaseManager databaseManager = WorkoutSamplesDatabaseManager.getInstance(TrackerService.this);
-            SQLiteDatabase samplesDb = databaseManager.getDatabase();
-            samplesDb.execSQL("UPDATE " + mSamplesTableName
-                    + " set " + SensorType.ALTITUDE.name() + " = " + SensorType.ALTITUDE.name() + operator + Math.abs(altitudeCorrection));
-            // + " where " + Keys.Key_SKU + " = " + SKU + " and " + Keys.Key_STATUS + " = 0");
-            // no where statement required because we want to update all previous ones.
+            synchronized (mSamplerLock) {
+                // the pending samples shall also be corrected
+                flushSamples();
+
+                WorkoutSamplesDatabaseManager databaseManager = WorkoutSamplesDatabaseManager.getInstance(TrackerService.this);
+                SQLiteDatabase samplesDb = databaseManager.getDatabase();
+                samplesDb.execSQL("UPDATE " + mSamplesTableName
+                        + " set " + SensorType.ALTITUDE.name() + " = " + SensorType.ALTITUDE.name() + operator + Math.abs(altitudeCorrection));
+                // + " where " + Keys.Key_SKU + " = " + SKU + " and " + Keys.Key_STATUS + " = 0");
+                // no where statement required because we want to update all previous ones.
+
+                // the live extrema contain all previous samples, so they are corrected the same way.  Otherwise, the uncorrected values would be saved
+                if (mWorkoutExtrema != null) {
+                    mWorkoutExtrema.addOffset(SensorType.ALTITUDE, altitudeCorrection);
+                    if (mSampleWriter != null) {
+                        mSampleWriter.onExtremaChanged();
+                    }
+                }
+            }
         }
     };
     // private long   mLapNr           = BANALService.INIT_LAP_NR-1;
@@ -154,6 +190,13 @@ public class TrackerService extends Service {
         }
     };
 
+    private final BroadcastReceiver mPauseTrackingReceiver = new BroadcastReceiver() {
+        public void onReceive(Context context, Intent intent) {
+            if (DEBUG) Log.d(TAG, "pause tracking => flushing the samples");
+            flushSamples();
+        }
+    };
+
     private final BroadcastReceiver mUserSelectedSportTypeChangedReceiver = new BroadcastReceiver() {
         public void onReceive(Context context, Intent intent) {
             if (DEBUG) Log.d(TAG, "user selected sport type changed");
@@ -169,19 +212,34 @@ public class TrackerService extends Service {
             }
 
             if (mBanalService != null) {
-
                 sampleAndWriteToDb();
-
-                // update notification
+            }
+        }
+    };
+    // the notification is updated after all sensor values of this tick are sampled
+    final Runnable notificationUpdater = new Runnable() {
+        public void run() {
+            BANALServiceComm banalService = mBanalService;
+            if (banalService != null) {
                 if (DEBUG) Log.i(TAG, "updating notification");
-                mTrainingApplication.updateTimeAndDistanceToNotification(mBanalService.getBestSensorData(SensorType.TIME_ACTIVE),
-                        mBanalService.getBestSensorData(SensorType.DISTANCE_m),
-                        SportTypeDatabaseManager.getInstance(TrackerService.this).getUIName(mBanalService.getSportTypeId()));
+                mTrainingApplication.updateTimeAndDistanceToNotification(banalService.getBestSensorData(SensorType.TIME_ACTIVE),
+                        banalService.getBestSensorData(SensorType.DISTANCE_m),
+                        SportTypeDatabaseManager.getInstance(TrackerService.this).getUIName(banalService.getSportTypeId()));
                 if (DEBUG) Log.i(TAG, "updated notification");
-
             }
         }
     };
+    // counts the time in the heart rate and power zones, once per second
+    final Runnable timeInZonesCounter = new Runnable() {
+        public void run() {
+            BANALServiceComm banalService = mBanalService;
+            if (banalService == null || TrainingApplication.isPaused()) {
+                return;
+            }
+            addSecondToZone(banalService, SensorType.HR);
+            addSecondToZone(banalService, SensorType.POWER);
+        }
+    };
     // class BANALConnection implements ServiceConnection
     private final ServiceConnection mBanalConnection = new ServiceConnection() {
         public void onServiceConnected(ComponentName name, IBinder service) {
@@ -225,6 +283,7 @@ public class TrackerService extends Service {
         }
 
         mTrainingApplication = (TrainingApplication) getApplication();
+        mZoneModel = ZoneModel.getInstance(this);
 
         // request bind to the BANAL Service
         bindService(new Intent(this, BANALService.class), mBanalConnection, Context.BIND_AUTO_CREATE);
@@ -233,6 +292,7 @@ public class TrackerService extends Service {
         ContextCompat.registerReceiver(this, mAltitudeCorrectionReceiver, mAltitudeCorrectionFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
         ContextCompat.registerReceiver(this, mLapSummaryReceiver, mLapSummaryFilter, ContextCompat.RECEIVER_NOT_EXPORTED);
         ContextCompat.registerReceiver(this, mUserSelectedSportTypeChangedReceiver, new IntentFilter(BANALService.SPORT_TYPE_CHANGED_BY_USER_INTENT), ContextCompat.RECEIVER_NOT_EXPORTED);
+        ContextCompat.registerReceiver(this, mPauseTrackingReceiver, new IntentFilter(TrainingApplication.REQUEST_PAUSE_TRACKING), ContextCompat.RECEIVER_NOT_EXPORTED);
     }
 
     @Override
@@ -254,11 +314,14 @@ public class TrackerService extends Service {
                 // The workout name is just the date+time
                 mBaseFileName = (new SimpleDateFormat("yyyy-MM-dd_HHmmss", Locale.US)).format(new Date());
                 mWorkoutID = createNewWorkout();
+                mWorkoutExtrema = new WorkoutExtrema();
+                mZoneModel.resetTimeInZones();
                 WorkoutSamplesDatabaseManager.getInstance(this).createNewTable(mBaseFileName, Arrays.asList(SensorType.values()));       // create a new table with a column for each possible sensor
                 break;
 
             case RESUME_BY_USER:
                 Log.d(TAG, "resuming by user request");
+                mWorkoutExtrema = null;  // the samples before resuming are not known, so the extrema are calculated afterwards
                 if (mBanalService != null) {
                     recreateValuesWhenResuming();
                     // mBanalService.resumeFromPaused();  already started by broadcast?
@@ -269,6 +332,7 @@ public class TrackerService extends Service {
 
             case RESUME_SERVICE_RECREATION:
                 Log.d(TAG, "resuming after killed service");
+                mWorkoutExtrema = null;
                 mTrainingApplication.setTracking();
                 if (mBanalService != null) {
                     recreateValuesWhenResuming();
@@ -280,15 +344,22 @@ public class TrackerService extends Service {
         }
 
         mSamplesTableName = WorkoutSamplesDatabaseManager.getTableName(mBaseFileName);
+        synchronized (mSamplerLock) {
+            if (mSampleWriter != null) {  // the writer is recreated with the next sample
+                mSampleWriter.close();
+                mSampleWriter = null;
+            }
+            mSampleWriterClosed = false;
+        }
 
         if (mBanalService != null && !BANALService.isSearching()) {
             onSearchingFinished();
         }
 
         // start tracking
-        mTrackerHandle = mScheduler.scheduleAtFixedRate(tracker, 0, // initial delay
-                1, // sampling time
-                TimeUnit.SECONDS);
+        TickScheduler.getInstance().register(TickScheduler.Phase.NOTIFICATION, notificationUpdater);
+        updateSamplingPolicy();
+        TickScheduler.getInstance().register(TickScheduler.Phase.SAMPLER, timeInZonesCounter);
 
         // notify others
         Intent trackingStartedIntent = new Intent(TRACKING_STARTED_INTENT)
@@ -316,10 +387,10 @@ public class TrackerService extends Service {
         super.onDestroy();
         if (DEBUG) Log.d(TAG, "onDestroy");
 
-        // first of all, stop the trackerHandle
-        if (mTrackerHandle != null) {
-            mTrackerHandle.cancel(true);
-        }
+        // first of all, stop the tracking
+        TickScheduler.getInstance().unregister(tracker);
+        TickScheduler.getInstance().unregister(notificationUpdater);
+        TickScheduler.getInstance().unregister(timeInZonesCounter);
 
         // mTrainingApplication.setTracking(false);
         endWorkout();
@@ -332,6 +403,7 @@ public class TrackerService extends Service {
         unregisterReceiver(mAltitudeCorrectionReceiver);
         unregisterReceiver(mLapSummaryReceiver);
         unregisterReceiver(mUserSelectedSportTypeChangedReceiver);
+        unregisterReceiver(mPauseTrackingReceiver);
     }
 
     private void recreateValuesWhenResuming() {
@@ -405,6 +477,9 @@ public class TrackerService extends Service {
         if (DEBUG)
             Log.i(TAG, "saveLap: lapNr=" + lapNr + ", lapTime=" + lapTime + ", lapDistance=" + lapDistance + ", averageSpeed=" + averageSpeed);
 
+        // make sure that all samples of the lap are stored
+        flushSamples();
+
         LapsDatabaseManager.getInstance(this).saveLap(mWorkoutID, lapNr, lapTime, lapDistance, averageSpeed);
     }
 
@@ -479,6 +554,8 @@ public class TrackerService extends Service {
                 values,
                 WorkoutSummaries.C_ID + "=?",
                 new String[]{Long.toString(mWorkoutID)});
+
+        updateSamplingPolicy();
     }
 
     private void onUserSelectedSportTypeChanged() {
@@ -495,6 +572,37 @@ public class TrackerService extends Service {
                 values,
                 WorkoutSummaries.C_ID + "=?",
                 new String[]{Long.toString(mWorkoutID)});
+
+        updateSamplingPolicy();
+    }
+
+    /**
+     * (re)registers the tracker according to the sampling policy of the current sport
+     */
+    private void updateSamplingPolicy() {
+        BSportType bSportType = SportTypeDatabaseManager.getInstance(this).getBSportType(getSportTypeId());
+        mBSportType = bSportType;
+        SamplingPolicy samplingPolicy = TrainingApplication.getSamplingPolicy(bSportType);
+        if (samplingPolicy == mSamplingPolicy) {
+            return;
+        }
+        if (DEBUG) Log.i(TAG, "sampling policy: " + mSamplingPolicy + " -> " + samplingPolicy);
+        mSamplingPolicy = samplingPolicy;
+
+        TickScheduler tickScheduler = TickScheduler.getInstance();
+        tickScheduler.unregister(tracker);
+        if (samplingPolicy.isSubSecond()) {
+            tickScheduler.registerSubTick(tracker);
+        } else {
+            tickScheduler.register(TickScheduler.Phase.SAMPLER, tracker);
+        }
+
+        synchronized (mSamplerLock) {
+            mChangeDetector.reset();
+            if (mSampleWriter != null) {
+                mSampleWriter.setSubSecondTimes(samplingPolicy.isSubSecond());
+            }
+        }
     }
 
 
@@ -509,6 +617,21 @@ public class TrackerService extends Service {
 
         createNewLap();
 
+        synchronized (mSamplerLock) {
+            // with the adaptive sampling, the latest values are not necessarily written yet
+            if (mSamplingPolicy == SamplingPolicy.ADAPTIVE && mBanalService != null) {
+                mChangeDetector.reset();
+                sampleAndWriteToDb();
+            }
+
+            // write the remaining samples
+            if (mSampleWriter != null) {
+                mSampleWriter.close();
+                mSampleWriter = null;
+            }
+            mSampleWriterClosed = true;
+        }
+
         // store the ANT Devices that were active during the workout
         // TODO: store at very start and end of ANT (or BTLE) searching
         if (DEBUG) Log.d(TAG, "storing active device list");
@@ -530,6 +653,8 @@ public class TrackerService extends Service {
         ContentValues summaryValues = new ContentValues();
 
         summaryValues.put(WorkoutSummaries.FINISHED, 1);  // remove this line for testing
+        // the live extrema values were written together with the last samples, so the CalcExtremaWorker does not have to calculate them again
+        summaryValues.put(WorkoutSummaries.LIVE_EXTREMA_VALUES, mWorkoutExtrema != null ? 1 : 0);
         // WTF, when the service crashes, not only the flag is not set but the whole method is not executed.
         // Thus, use a return statement at the very beginning for debugging
 
@@ -554,173 +679,166 @@ public class TrackerService extends Service {
     }
 
     private void sampleAndWriteToDb() {
-        if (DEBUG) Log.d(TAG, "sampleAndWriteToDb()");
+        synchronized (mSamplerLock) {
+            if (DEBUG) Log.d(TAG, "sampleAndWriteToDb()");
 
-        // if (TrainingApplication.isPaused()) {  // when we are pause, nothing is sampled and written.  TODO: is this the correct behaviour?
-        //     return;
-        // }
+            // if (TrainingApplication.isPaused()) {  // when we are pause, nothing is sampled and written.  TODO: is this the correct behaviour?
+            //     return;
+            // }
 
-        ContentValues samplingValues = new ContentValues();
-        ContentValues summaryValues = new ContentValues();
+            // the workout already ended, e.g. this tick was still running while the workout was finished
+            if (mSampleWriterClosed) {
+                if (DEBUG) Log.d(TAG, "the workout already ended, nothing sampled");
+                return;
+            }
 
-        Map<String, SensorValueType> sensorName2Type = new HashMap<>();
+            ContentValues samplingValues = new ContentValues();
+            ContentValues summaryValues = new ContentValues();
 
-        // sample
-        for (SensorData<Number> sensorData : mBanalService.getAllSensorData()) {
-            if (sensorData == null) {
-                Log.d(TAG, "WTF: sensorData == null!");
-                continue;
-            }
-            if (sensorData.getValue() == null) {
-                if (DEBUG)
-                    Log.d(TAG, "sensorData.getValue() == null for " + sensorData.getSensorType().name());
-                continue;
+            // sample
+            mBanalService.updateSensorSnapshot(mSensorSnapshot);
+            if (mSamplingPolicy == SamplingPolicy.ADAPTIVE && !mChangeDetector.isSignificant(mSensorSnapshot, SystemClock.elapsedRealtime())) {
+                if (DEBUG) Log.d(TAG, "no significant change, nothing written");
+                return;
             }
+            for (int column = 0; column < mSensorSnapshot.getColumnCount(); column++) {
+                if (!mSensorSnapshot.hasValue(column)) {
+                    if (DEBUG)
+                        Log.d(TAG, "no value for " + mSensorSnapshot.getSensorType(column).name());
+                    continue;
+                }
 
+                SensorType sensorType = mSensorSnapshot.getSensorType(column);
+                String sensorName = getColumnName(column);
+                SensorValueType type = sensorType.getSensorValueType();
+
+                switch (type) {
+                    case INTEGER:
+                        if (DEBUG)
+                            Log.d(TAG, "tracking INTEGER data for " + sensorName + ": " + mSensorSnapshot.getInt(column));
+                        samplingValues.put(sensorName, mSensorSnapshot.getInt(column));
+                        break;
+                    case DOUBLE:
+                        if (DEBUG)
+                            Log.d(TAG, "tracking DOUBLE data for " + sensorName + ": " + mSensorSnapshot.getDouble(column));
+                        samplingValues.put(sensorName, mSensorSnapshot.getDouble(column));
+                        break;
+                    default:
+                        if (DEBUG)
+                            Log.i(TAG, "tracking STRING for " + sensorName + ": " + mSensorSnapshot.getStringValue(column));
+                        samplingValues.put(sensorName, mSensorSnapshot.getStringValue(column));
+                        // if (DEBUG) Log.d(TAG, "neither INTEGER nor DOUBLE for " + sensorType.name() + " => ignoring");
+                }
 
-            SensorType sensorType = sensorData.getSensorType();
-            String sensorName = sensorType.name();
-            String deviceName = sensorData.getDeviceName();
-            if (deviceName != null) {                                       // when it is not the best sensor (or the clock, or...), we add the the name of the source device
-                if (deviceName.equals("gps") || deviceName.equals("network") || deviceName.equals("google_fused")) {  // for the location related stuff, we want to be compatible with pre 3.8
-                    sensorName += "_" + deviceName;                                                                   // this is especially important for track on map views and so on...
-                } else {
-                    sensorName += " (" + deviceName + ")";  // the name of the device is added
-                    sensorName = "'" + sensorName + "'";
+                // for some sensors, we also write the summary values.  Only the best sensors are relevant for these
+                if (mSensorSnapshot.getDeviceName(column) != null) {
+                    continue;
+                }
+                switch (sensorType) {
+                    case TIME_TOTAL:
+                        summaryValues.put(WorkoutSummaries.TIME_TOTAL_s, mSensorSnapshot.getInt(column));
+                        break;
+                    case TIME_ACTIVE:
+                        mTimeActive_s = mSensorSnapshot.getInt(column);
+                        summaryValues.put(WorkoutSummaries.TIME_ACTIVE_s, mTimeActive_s);
+                        break;
+                    case DISTANCE_m:
+                        mDistanceTotal_m = mSensorSnapshot.getDouble(column);
+                        summaryValues.put(WorkoutSummaries.DISTANCE_TOTAL_m, mDistanceTotal_m);
+                        break;
+                    case CALORIES:
+                        summaryValues.put(WorkoutSummaries.CALORIES, mSensorSnapshot.getInt(column));
+                        break;
+                    case LAP_NR:
+                        summaryValues.put(WorkoutSummaries.LAPS, mSensorSnapshot.getInt(column));
+                        break;
+                    case ASCENT:
+                        summaryValues.put(WorkoutSummaries.ASCENDING, mSensorSnapshot.getDouble(column));
+                        break;
+                    case DESCENT:
+                        summaryValues.put(WorkoutSummaries.DESCENDING, mSensorSnapshot.getDouble(column));
+                        break;
                 }
-            }
-            SensorValueType type = sensorType.getSensorValueType();
-            sensorName2Type.put(sensorName, type);
 
-            switch (type) {
-                case INTEGER:
-                    if (DEBUG)
-                        Log.d(TAG, "tracking INTEGER data for " + sensorName + ": " + sensorData.getValue().intValue());
-                    samplingValues.put(sensorName, sensorData.getValue().intValue());
-                    break;
-                case DOUBLE:
-                    if (DEBUG)
-                        Log.d(TAG, "tracking DOUBLE data for " + sensorName + ": " + sensorData.getValue().doubleValue());
-                    samplingValues.put(sensorName, sensorData.getValue().doubleValue());
-                    break;
-                default:
-                    if (DEBUG)
-                        Log.i(TAG, "tracking STRING for " + sensorName + ": " + sensorData.getStringValue());
-                    samplingValues.put(sensorName, sensorData.getStringValue());
-                    // if (DEBUG) Log.d(TAG, "neither INTEGER nor DOUBLE for " + sensorType.name() + " => ignoring");
             }
+            if (DEBUG) Log.d(TAG, "end of sampling, next: hand over to the sample writer");
 
-            // for some sensors, we also write the summary values.
-            switch (sensorType) {
-                case TIME_TOTAL:
-                    summaryValues.put(WorkoutSummaries.TIME_TOTAL_s, sensorData.getValue().intValue());
-                    break;
-                case TIME_ACTIVE:
-                    mTimeActive_s = sensorData.getValue().intValue();
-                    summaryValues.put(WorkoutSummaries.TIME_ACTIVE_s, mTimeActive_s);
-                    break;
-                case DISTANCE_m:
-                    mDistanceTotal_m = sensorData.getValue().doubleValue();
-                    summaryValues.put(WorkoutSummaries.DISTANCE_TOTAL_m, mDistanceTotal_m);
-                    break;
-                case CALORIES:
-                    summaryValues.put(WorkoutSummaries.CALORIES, sensorData.getValue().intValue());
-                    break;
-                case LAP_NR:
-                    summaryValues.put(WorkoutSummaries.LAPS, sensorData.getValue().intValue());
-                    break;
-                case ASCENT:
-                    summaryValues.put(WorkoutSummaries.ASCENDING, sensorData.getValue().doubleValue());
-                    break;
-                case DESCENT:
-                    summaryValues.put(WorkoutSummaries.DESCENDING, sensorData.getValue().doubleValue());
-                    break;
+
+            // Update the summary data
+            if (averageSpeedCalculateable()) {
+                summaryValues.put(WorkoutSummaries.SPEED_AVERAGE_mps, getAverageSpeed());
             }
 
+            // hand the samples over to the writer, they are written to the database in batches
+            if (mSampleWriter == null) {
+                mSampleWriter = new SampleWriter(this, mSamplesTableName, mWorkoutID, mWorkoutExtrema,
+                        TrainingApplication.getSamplesFlushInterval_s(),
+                        TrainingApplication.getSamplesFlushMaxRows());
+                SamplingPolicy samplingPolicy = mSamplingPolicy;
+                mSampleWriter.setSubSecondTimes(samplingPolicy != null && samplingPolicy.isSubSecond());
+            }
+            if (mSampleWriter.addSample(samplingValues, mColumnName2Type, summaryValues)) {
+                notifyWorkoutUpdated();
+            }
         }
-        if (DEBUG) Log.d(TAG, "end of sampling, next: write to db");
-
-
-        // write the samples to the database
-        WorkoutSamplesDatabaseManager samplesDatabaseManager = WorkoutSamplesDatabaseManager.getInstance(this);
-        SQLiteDatabase samplesDb = samplesDatabaseManager.getDatabase();
-
-        try {
-            samplesDb.insertOrThrow(mSamplesTableName,
-                    null,
-                    samplingValues);
-        } catch (SQLException e) {  // ok, probably the column is missing
-            if (DEBUG) Log.i(TAG, "SQLException.  Probably, column(s) missing");
-            Cursor cursor = samplesDb.query(mSamplesTableName, null, null, null, null, null, null, "1");
-
-            SortedSet<String> keys = new TreeSet<>(samplingValues.keySet());
-            for (String key : keys) {
-                String queryKey = key.replace("'", "");
-                if (cursor.getColumnIndex(queryKey) < 0) {  // column is really missing
-                    if (DEBUG) Log.i(TAG, "column " + key + " is missing.  Adding it.");
-                    String type = switch (sensorName2Type.get(key)) {
-                        case INTEGER -> "int";
-                        case DOUBLE -> "double";
-                        default -> "text";
-                    };
+    }
 
-                    String sqlCommand = "ALTER TABLE " + mSamplesTableName + " ADD COLUMN " + key + " " + type + " null;";
-                    if (DEBUG) Log.i(TAG, "sql command: " + sqlCommand);
+    private void addSecondToZone(@NonNull BANALServiceComm banalService, @NonNull SensorType sensorType) {
+        ZoneType zoneType = ZoneModel.getZoneType(sensorType, mBSportType);
+        if (zoneType == null) {
+            return;
+        }
+        SensorData sensorData = banalService.getBestSensorData(sensorType);
+        if (sensorData != null && sensorData.getValue() instanceof Number value) {
+            mZoneModel.addSecond(zoneType, value.doubleValue());
+        }
+    }
 
-                    try {
-                        samplesDb.execSQL(sqlCommand);
-                    } catch (SQLException alterException) {
-                        Log.i(TAG, "alter table, adding " + key + " column failed. (Command: " + sqlCommand + ")");
-                    }
-                }
-            }
+    /**
+     * @return the name of the column in the samples table for the given column of the sensor snapshot.
+     * The names are derived only once per column.
+     */
+    private String getColumnName(int column) {
+        if (column >= mColumnNames.length) {
+            mColumnNames = Arrays.copyOf(mColumnNames, mSensorSnapshot.getColumnCount());
+        }
+        if (mColumnNames[column] != null) {
+            return mColumnNames[column];
+        }
 
-            // now, try again...
-            try {
-                samplesDb.insertOrThrow(mSamplesTableName,
-                        null,
-                        samplingValues);
-            } catch (SQLException retryException) {  //  still did not work => try to insert them one by one...
-                Log.i(TAG, "Failed to insert the samples after altering the table.  Try to insert them one by one.");
-                for (String key : samplingValues.keySet()) {
-                    ContentValues oneSamplingValue = new ContentValues();
-                    switch (sensorName2Type.get(key)) {
-                        case INTEGER:
-                            oneSamplingValue.put(key, samplingValues.getAsInteger(key));
-                            break;
-                        case DOUBLE:
-                            oneSamplingValue.put(key, samplingValues.getAsDouble(key));
-                            break;
-                        default:
-                            oneSamplingValue.put(key, samplingValues.getAsString(key));
-                    }
-                    try {
-                        samplesDb.insertOrThrow(mSamplesTableName,
-                                null,
-                                oneSamplingValue);
-                    } catch (SQLException retryRetryException) {
-                        Log.i(TAG, "Inserting " + key + " finally failed.  Giving up for this key; still trying to save the rest.");
-                    }
-                }
+        SensorType sensorType = mSensorSnapshot.getSensorType(column);
+        String sensorName = sensorType.name();
+        String deviceName = mSensorSnapshot.getDeviceName(column);
+        if (deviceName != null) {                                       // when it is not the best sensor (or the clock, or...), we add the the name of the source device
+            if (deviceName.equals("gps") || deviceName.equals("network") || deviceName.equals("google_fused")) {  // for the location related stuff, we want to be compatible with pre 3.8
+                sensorName += "_" + deviceName;                                                                   // this is especially important for track on map views and so on...
+            } else {
+                sensorName += " (" + deviceName + ")";  // the name of the device is added
+                sensorName = "'" + sensorName + "'";
             }
         }
 
-        // Update the summary data
-        if (DEBUG) Log.d(TAG, "writing to Summaries db");
-        summaryValues.put(WorkoutSummaries.EXTREMA_VALUES_CALCULATED, 0);    // force recalculation of the extrema values in the case that they have been calculated
-        if (averageSpeedCalculateable()) {
-            summaryValues.put(WorkoutSummaries.SPEED_AVERAGE_mps, getAverageSpeed());
-        }
+        mColumnNames[column] = sensorName;
+        mColumnName2Type.put(sensorName, sensorType.getSensorValueType());
+        return sensorName;
+    }
 
-        WorkoutSummariesDatabaseManager summariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(this);
-        SQLiteDatabase summariesDb = summariesDatabaseManager.getDatabase();
-        summariesDb.update(WorkoutSummaries.TABLE,
-                summaryValues,
-                WorkoutSummaries.C_ID + "=" + mWorkoutID,
-                null);
+    /**
+     * writes the pending samples to the database, e.g., when a new lap is started or the workout is paused.
+     */
+    private void flushSamples() {
+        boolean written;
+        synchronized (mSamplerLock) {
+            written = mSampleWriter != null && mSampleWriter.flush();
+        }
+        if (written) {
+            notifyWorkoutUpdated();
+        }
+    }
 
+    private void notifyWorkoutUpdated() {
         // After successfully saving to the DB, we send a broadcast to notify the UI.
-        Log.d(TAG, "Database updated. Sending WORKOUT_UPDATED_INTENT broadcast.");
+        if (DEBUG) Log.d(TAG, "Database updated. Sending WORKOUT_UPDATED_INTENT broadcast.");
         Intent intent = new Intent(WORKOUT_UPDATED_INTENT);
         intent.putExtra("WORKOUT_ID", mWorkoutID);
         LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
@@ -1,19 +1,16 @@
 package com.atrainingtracker.trainingtracker.ui.aftermath
 
 import android.database.Cursor
-import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries
 
-class SportDataProvider(
-    private val sportTypeDatabaseManager: SportTypeDatabaseManager
-) {
+class SportDataProvider {
 
-    fun getSportData(cursor: Cursor): SportData {
+    fun getSportData(cursor: Cursor, lookups: WorkoutPageLookups): SportData {
         val sportId = cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSummaries.SPORT_ID))
         val avgSpeed = cursor.getFloat(cursor.getColumnIndexOrThrow(WorkoutSummaries.SPEED_AVERAGE_mps))
 
-        val bSportType = sportTypeDatabaseManager.getBSportType(sportId)
-        val sportName = sportTypeDatabaseManager.getUIName(sportId)
+        val bSportType = lookups.getBSportType(sportId)
+        val sportName = lookups.getSportName(sportId)
 
         return SportData(
             sportId = sportId,
@@ -43,6 +43,7 @@ class TrackOnMapAftermathActivity : AppCompatActivity(), OnMapReadyCallback {
     private var googleMap: GoogleMap? = null
 
     private var workoutId: Long = -1L
+    private var roughness: Roughness? = null
     private val trackOnMapHelper by lazy { (application as TrainingApplication).trackOnMapHelper }
 
     private val extremaSensorTypes = arrayOf(
@@ -107,6 +108,9 @@ class TrackOnMapAftermathActivity : AppCompatActivity(), OnMapReadyCallback {
         map.uiSettings.isZoomControlsEnabled = true
         map.uiSettings.isMyLocationButtonEnabled = false // Location is static aftermath
 
+        // show the level of detail that matches the zoom
+        map.setOnCameraIdleListener { showTrackOnMap(zoomToShowTrack = false) }
+
         drawTrackAndMarkers()
     }
 
@@ -119,16 +123,23 @@ class TrackOnMapAftermathActivity : AppCompatActivity(), OnMapReadyCallback {
     }
 
     private fun showTrackOnMap(zoomToShowTrack: Boolean) {
-        googleMap ?: return // Don't proceed if the map isn't ready
-        if (DEBUG) Log.i(TAG, "showTrackOnMap for workoutID=$workoutId")
+        val map = googleMap ?: return // Don't proceed if the map isn't ready
+
+        val cameraPosition = map.cameraPosition
+        val newRoughness = Roughness.forZoom(cameraPosition.zoom, cameraPosition.target.latitude)
+        if (!zoomToShowTrack && newRoughness == roughness) {
+            return
+        }
+        roughness = newRoughness
+        if (DEBUG) Log.i(TAG, "showTrackOnMap for workoutID=$workoutId, roughness=$newRoughness")
 
         // showing all location sources
-        trackOnMapHelper.showTrackOnMap(this, null, googleMap, workoutId, Roughness.ALL, TrackOnMapHelper.TrackType.GPS, false, false)
-        trackOnMapHelper.showTrackOnMap(this, null, googleMap, workoutId, Roughness.ALL, TrackOnMapHelper.TrackType.NETWORK, false, false)
-        trackOnMapHelper.showTrackOnMap(this, null, googleMap, workoutId, Roughness.ALL, TrackOnMapHelper.TrackType.FUSED, false, false)
+        trackOnMapHelper.showTrackOnMap(this, null, map, workoutId, newRoughness, TrackOnMapHelper.TrackType.GPS, false, false)
+        trackOnMapHelper.showTrackOnMap(this, null, map, workoutId, newRoughness, TrackOnMapHelper.TrackType.NETWORK, false, false)
+        trackOnMapHelper.showTrackOnMap(this, null, map, workoutId, newRoughness, TrackOnMapHelper.TrackType.FUSED, false, false)
 
         // Draw the main track
-        trackOnMapHelper.showTrackOnMap(this, null, googleMap, workoutId, Roughness.ALL, TrackOnMapHelper.TrackType.BEST, zoomToShowTrack, true);
+        trackOnMapHelper.showTrackOnMap(this, null, map, workoutId, newRoughness, TrackOnMapHelper.TrackType.BEST, zoomToShowTrack, true)
     }
 
     /**
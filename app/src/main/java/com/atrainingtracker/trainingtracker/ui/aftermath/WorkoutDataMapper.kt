@@ -26,17 +26,18 @@ class WorkoutDataMapper(
      * Creates a WorkoutData object from the current position of a cursor.
      *
      * @param cursor The cursor, already positioned at the desired row.
+     * @param lookups The sport types, equipment names, and extrema values of the workouts of the cursor.
      * @return A new WorkoutData object.
      */
-    fun fromCursor(cursor: Cursor): WorkoutData {
+    fun fromCursor(cursor: Cursor, lookups: WorkoutPageLookups): WorkoutData {
 
         // Use the injected providers to create parts of the WorkoutData object
-        val sportData = sportDataProvider.getSportData(cursor)
-        val equipmentData = equipmentDataProvider.getEquipmentData(cursor)
-        val headerData = headerDataProvider.createWorkoutHeaderData(cursor)
-        val detailsData = detailsDataProvider.getWorkoutDetailsData(cursor)
+        val sportData = sportDataProvider.getSportData(cursor, lookups)
+        val equipmentData = equipmentDataProvider.getEquipmentData(cursor, lookups)
+        val headerData = headerDataProvider.createWorkoutHeaderData(cursor, lookups)
+        val detailsData = detailsDataProvider.getWorkoutDetailsData(cursor, lookups)
         val descriptionData = descriptionDataProvider.createDescriptionData(cursor)
-        val extremaData = extremaDataProvider.getExtremaData(cursor)
+        val extremaData = extremaDataProvider.getExtremaData(cursor, lookups)
 
         // The mapper is responsible for assembling the final object from its constituent parts.
         return WorkoutData(
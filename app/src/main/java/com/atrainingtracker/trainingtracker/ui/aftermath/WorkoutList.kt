@@ -0,0 +1,83 @@
+package com.atrainingtracker.trainingtracker.ui.aftermath
+
+/**
+ * An immutable list of workouts, stored in the pages in which they were loaded.
+ *
+ * Finding a workout by its id is a hash lookup.  Replacing a single workout copies only its page and the small page table,
+ * all other pages and the index are shared with the previous version.  Since a version is never modified, a ListAdapter
+ * can safely diff it against the next one while the repository already creates a newer version.
+ */
+class WorkoutList private constructor(
+    private val pages: Array<Array<WorkoutData>>,
+    // the index of the first workout of each page
+    private val pageStarts: IntArray,
+    // the position of each workout in the whole list
+    private val positions: Map<Long, Int>,
+    override val size: Int
+) : AbstractList<WorkoutData>() {
+
+    companion object {
+        val EMPTY = WorkoutList(emptyArray(), IntArray(0), emptyMap(), 0)
+    }
+
+    override fun get(index: Int): WorkoutData {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("index: $index, size: $size")
+        val page = findPage(index)
+        return pages[page][index - pageStarts[page]]
+    }
+
+    fun findById(id: Long): WorkoutData? = positions[id]?.let { get(it) }
+
+    /**
+     * @return a new list with the workouts of the page appended
+     */
+    fun plusPage(workouts: List<WorkoutData>): WorkoutList {
+        if (workouts.isEmpty()) return this
+
+        val newPositions = HashMap<Long, Int>(positions)
+        workouts.forEachIndexed { i, workout -> newPositions[workout.id] = size + i }
+
+        return WorkoutList(
+            pages + arrayOf(workouts.toTypedArray()),
+            pageStarts + size,
+            newPositions,
+            size + workouts.size
+        )
+    }
+
+    /**
+     * @return a new list where the workout with the same id is replaced or this list when there is no such workout
+     */
+    fun replace(workout: WorkoutData): WorkoutList {
+        val position = positions[workout.id] ?: return this
+        val page = findPage(position)
+
+        val newPage = pages[page].copyOf()
+        newPage[position - pageStarts[page]] = workout
+        val newPages = pages.copyOf()
+        newPages[page] = newPage
+
+        return WorkoutList(newPages, pageStarts, positions, size)
+    }
+
+    /**
+     * @return a new list without the workout.  The positions of all following workouts change, so the index is rebuilt.
+     */
+    fun minus(id: Long): WorkoutList {
+        if (!positions.containsKey(id)) return this
+
+        var result = EMPTY
+        for (page in pages) {
+            result = result.plusPage(page.filter { it.id != id })
+        }
+        return result
+    }
+
+    private fun findPage(index: Int): Int {
+        var page = pageStarts.binarySearch(index)
+        if (page < 0) {
+            page = -page - 2
+        }
+        return page
+    }
+}
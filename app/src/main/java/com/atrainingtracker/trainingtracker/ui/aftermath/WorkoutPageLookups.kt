@@ -0,0 +1,102 @@
+package com.atrainingtracker.trainingtracker.ui.aftermath
+
+import android.content.Context
+import android.database.Cursor
+import com.atrainingtracker.banalservice.BSportType
+import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager
+import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager.SportType
+import com.atrainingtracker.banalservice.sensor.SensorType
+import com.atrainingtracker.trainingtracker.database.EquipmentDbHelper
+import com.atrainingtracker.trainingtracker.database.ExtremaType
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries
+
+/**
+ * The sport types, equipment names, and extrema values of a page of workouts.
+ * Each of them is fetched with a single query for the whole page, so the data providers do not have to query the databases
+ * for every single workout.
+ */
+class WorkoutPageLookups private constructor(
+    private val bSportTypes: Map<Long, BSportType>,
+    private val sportNames: Map<Long, String>,
+    private val equipmentNames: Map<Int, String?>,
+    private val extremaValues: Map<ExtremaKey, Double>
+) {
+
+    private data class ExtremaKey(val workoutId: Long, val sensorType: String, val extremaType: String)
+
+    fun getBSportType(sportId: Long): BSportType = bSportTypes[sportId] ?: BSportType.UNKNOWN
+
+    fun getSportName(sportId: Long): String = sportNames[sportId] ?: ""
+
+    fun getEquipmentName(equipmentId: Int): String? = equipmentNames[equipmentId]
+
+    fun getExtremaValue(workoutId: Long, sensorType: SensorType, extremaType: ExtremaType): Double? =
+        extremaValues[ExtremaKey(workoutId, sensorType.name, extremaType.name)]
+
+    companion object {
+
+        /**
+         * Collects the ids of all rows of the cursor and fetches their data.  Afterwards, the cursor is positioned before the first row.
+         */
+        fun create(context: Context, equipmentDbHelper: EquipmentDbHelper, cursor: Cursor): WorkoutPageLookups {
+            val workoutIds = mutableSetOf<Long>()
+            val sportIds = mutableSetOf<Long>()
+            val equipmentIds = mutableSetOf<Int>()
+            cursor.moveToPosition(-1)
+            while (cursor.moveToNext()) {
+                workoutIds.add(cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSummaries.C_ID)))
+                sportIds.add(cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSummaries.SPORT_ID)))
+                equipmentIds.add(cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSummaries.EQUIPMENT_ID)))
+            }
+            cursor.moveToPosition(-1)
+
+            val bSportTypes = mutableMapOf<Long, BSportType>()
+            val sportNames = mutableMapOf<Long, String>()
+            if (sportIds.isNotEmpty()) {
+                SportTypeDatabaseManager.getInstance(context).database.query(
+                    SportType.TABLE,
+                    arrayOf(SportType.C_ID, SportType.UI_NAME, SportType.BASE_SPORT_TYPE),
+                    "${SportType.C_ID} IN (${sportIds.joinToString(",")})",
+                    null, null, null, null
+                ).use { c ->
+                    while (c.moveToNext()) {
+                        val sportId = c.getLong(0)
+                        sportNames[sportId] = c.getString(1) ?: ""
+                        bSportTypes[sportId] = try {
+                            BSportType.valueOf(c.getString(2))
+                        } catch (e: Exception) {
+                            BSportType.UNKNOWN
+                        }
+                    }
+                }
+            }
+
+            val equipmentNames = mutableMapOf<Int, String?>()
+            if (equipmentIds.isNotEmpty()) {
+                equipmentDbHelper.readableDatabase.query(
+                    EquipmentDbHelper.EQUIPMENT,
+                    arrayOf(EquipmentDbHelper.C_ID, EquipmentDbHelper.NAME),
+                    "${EquipmentDbHelper.C_ID} IN (${equipmentIds.joinToString(",")})",
+                    null, null, null, null
+                ).use { c ->
+                    while (c.moveToNext()) {
+                        equipmentNames[c.getInt(0)] = c.getString(1)
+                    }
+                }
+            }
+
+            val extremaValues = mutableMapOf<ExtremaKey, Double>()
+            if (workoutIds.isNotEmpty()) {
+                WorkoutSummariesDatabaseManager.getInstance(context).getExtremaValuesCursor(workoutIds).use { c ->
+                    while (c.moveToNext()) {
+                        // like getExtremaValue(), the first value wins
+                        extremaValues.putIfAbsent(ExtremaKey(c.getLong(0), c.getString(1), c.getString(2)), c.getDouble(3))
+                    }
+                }
+            }
+
+            return WorkoutPageLookups(bSportTypes, sportNames, equipmentNames, extremaValues)
+        }
+    }
+}
@@ -17,6 +17,7 @@ import com.atrainingtracker.banalservice.BSportType
 import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager
 import com.atrainingtracker.trainingtracker.TrainingApplication
 import com.atrainingtracker.trainingtracker.database.EquipmentDbHelper
+import com.atrainingtracker.trainingtracker.database.TrainingLoadDatabaseManager
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 
@@ -24,6 +25,7 @@ import kotlinx.coroutines.withContext
 
 import com.atrainingtracker.trainingtracker.database.WorkoutDeletionHelper
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager
+import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries
 import com.atrainingtracker.trainingtracker.exporter.ExportManager
 import com.atrainingtracker.trainingtracker.exporter.FileFormat
 import com.atrainingtracker.trainingtracker.helpers.CalcExtremaWorker
@@ -48,6 +50,9 @@ class WorkoutRepository private constructor(private val application: Application
         private val TAG = WorkoutRepository::class.java.simpleName
         private val DEBUG = TrainingApplication.getDebug(true)
 
+        // the number of workouts that are loaded at once
+        private const val PAGE_SIZE = 50
+
         // The single, volatile instance of the repository.
         // @Volatile guarantees that writes to this field are immediately visible to other threads.
         @Volatile
@@ -86,8 +91,8 @@ class WorkoutRepository private constructor(private val application: Application
 
     private val mapper by lazy {
         // Create instances of the required providers
-        val sportDataProvider = SportDataProvider(sportTypeDatabaseManager)
-        val equipmentDataProvider = EquipmentDataProvider(equipmentDbHelper, sportTypeDatabaseManager)
+        val sportDataProvider = SportDataProvider()
+        val equipmentDataProvider = EquipmentDataProvider()
         val headerProvider = WorkoutHeaderDataProvider(application, equipmentDbHelper, sportTypeDatabaseManager)
         val detailsProvider = WorkoutDetailsDataProvider(application)
         val extremaProvider = ExtremaDataProvider(application)
@@ -100,8 +105,14 @@ class WorkoutRepository private constructor(private val application: Application
     // --- LiveData for Data and Progress ---
 
     // LiveData for all workouts
-    private val _allWorkouts = MutableLiveData<List<WorkoutData>>()
-    val allWorkouts: LiveData<List<WorkoutData>> = _allWorkouts
+    private val _allWorkouts = MutableLiveData<WorkoutList>()
+    val allWorkouts: LiveData<WorkoutList> = _allWorkouts
+
+    // The latest version of the list.  LiveData.value lags behind postValue(), so all updates are based on this one.
+    private val workoutsLock = Any()
+    private var workouts = WorkoutList.EMPTY
+    // incremented by each (re)load, so the pages of an outdated load are dropped
+    private var loadGeneration = 0
 
     /**
      * Returns a LiveData object that contains only the workout with the specified ID.
@@ -109,7 +120,19 @@ class WorkoutRepository private constructor(private val application: Application
      */
     fun getWorkoutById(id: Long): LiveData<WorkoutData?> {
         return allWorkouts.map { list ->
-            list.find { it.id == id }
+            list.findById(id)
+        }
+    }
+
+    private fun findWorkout(id: Long): WorkoutData? = synchronized(workoutsLock) { workouts.findById(id) }
+
+    /**
+     * Applies the update to the latest version of the list and posts the result.
+     */
+    private fun updateWorkouts(update: (WorkoutList) -> WorkoutList) {
+        synchronized(workoutsLock) {
+            workouts = update(workouts)
+            _allWorkouts.postValue(workouts)
         }
     }
 
@@ -166,7 +189,7 @@ class WorkoutRepository private constructor(private val application: Application
                     // --- When finished, clear the calculation message, reload the data, and remove the observer.
 
                     // Find the current workout in the list.
-                    val workout = _allWorkouts.value?.find { it.id == workoutId }
+                    val workout = findWorkout(workoutId)
                     // If it has a calculation message, clear it.
                     if (workout != null && workout.extremaData.calculationMessage != null) {
                         val updatedExtrema = workout.extremaData.copy(calculationMessage = null)
@@ -187,7 +210,7 @@ class WorkoutRepository private constructor(private val application: Application
                         val message = workInfo.progress.getString(CalcExtremaWorker.KEY_STARTING_MESSAGE)
                         if (message != null) {
                             // update the message in the list
-                            val workoutToUpdate = _allWorkouts.value?.find { it.id == workoutId }
+                            val workoutToUpdate = findWorkout(workoutId)
                             if (workoutToUpdate != null) {
                                 // Create a new ExtremaData with the updated message.
                                 val updatedExtrema = workoutToUpdate.extremaData.copy(calculationMessage = message)
@@ -239,9 +262,13 @@ class WorkoutRepository private constructor(private val application: Application
     suspend fun loadWorkout(id: Long) {
         withContext(Dispatchers.IO) {
             summariesManager.getWorkoutCursor(id).use { cursor ->
-                if (cursor?.moveToFirst() == true) {
-                    val workout = mapper.fromCursor(cursor)
-                    _allWorkouts.postValue(listOf(workout))
+                val lookups = WorkoutPageLookups.create(application, equipmentDbHelper, cursor)
+                if (cursor.moveToFirst()) {
+                    val workout = mapper.fromCursor(cursor, lookups)
+                    updateWorkouts {
+                        loadGeneration++
+                        WorkoutList.EMPTY.plusPage(listOf(workout))
+                    }
                     _initialWorkoutLoaded.postValue(workout)
 
                     // eventually, observe the extrema calculation
@@ -250,58 +277,78 @@ class WorkoutRepository private constructor(private val application: Application
                         observeExtremaCalculation(id)
                     }
                 } else {
-                    _allWorkouts.postValue(emptyList())
+                    updateWorkouts {
+                        loadGeneration++
+                        WorkoutList.EMPTY
+                    }
                 }
             }
         }
     }
 
 
+    /**
+     * Loads all workouts page by page, the newest first.  Each page is posted as soon as it is loaded,
+     * so the list appears immediately and grows while the older workouts are loaded.
+     */
     suspend fun loadAllWorkouts() {
         withContext(Dispatchers.IO) {
-            val summaryList = mutableListOf<WorkoutData>()
-            val cursor = summariesManager.getCursorForAllWorkouts()
-            // Safely iterate through the cursor and convert each row to a data object
-            cursor.use { c ->
-                if (c.moveToFirst()) {
-                    do {
-                        val data = mapper.fromCursor(c)
-                        summaryList.add( data)
-                    } while (c.moveToNext())
+            val generation = synchronized(workoutsLock) { ++loadGeneration }
+
+            // keyset paging: the next page starts after the last workout of the previous one
+            var afterTimeStart: String? = null
+            var afterId = 0L
+            var isFirstPage = true
+            do {
+                val page = mutableListOf<WorkoutData>()
+                summariesManager.getWorkoutListCursor(afterTimeStart, afterId, PAGE_SIZE).use { cursor ->
+                    val lookups = WorkoutPageLookups.create(application, equipmentDbHelper, cursor)
+                    while (cursor.moveToNext()) {
+                        val data = mapper.fromCursor(cursor, lookups)
+                        page.add(data)
+                        afterTimeStart = cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSummaries.TIME_START))
+                        afterId = data.id
+                    }
                 }
-            }
-            cursor.close()
 
-            // Post the final list to the LiveData. This will update the UI on the main thread.
-            _allWorkouts.postValue(summaryList)
-        }
+                var isOutdated = false
+                val replace = isFirstPage
+                updateWorkouts { current ->
+                    if (generation != loadGeneration) {
+                        isOutdated = true
+                        current
+                    } else {
+                        (if (replace) WorkoutList.EMPTY else current).plusPage(page)
+                    }
+                }
+                if (isOutdated) {
+                    if (DEBUG) Log.d(TAG, "loadAllWorkouts: a newer load was started")
+                    return@withContext
+                }
+                isFirstPage = false
 
-        // After the initial list is loaded and posted, check for any ongoing calculations.
-        allWorkouts.value?.forEach { workoutData ->
-            if (workoutData.extremaData.isCalculating) {
-                observeExtremaCalculation(workoutData.id)
-            }
+                // check for any ongoing calculations.
+                page.filter { it.extremaData.isCalculating }
+                    .forEach { observeExtremaCalculation(it.id) }
+            } while (page.size == PAGE_SIZE)
         }
     }
 
     private fun updateWorkoutInList(workoutId: Long, updatedWorkout: WorkoutData) {
-        val currentList = _allWorkouts.value ?: return
-        val updatedList = currentList.map {
-            if (it.id == workoutId) updatedWorkout else it
-        }
-        _allWorkouts.postValue(updatedList)
+        updateWorkouts { it.replace(updatedWorkout) }
     }
 
     // Function to update the workout data from the database but keep the calculationMessage of the extrema data and the workout name if it has changed
     private fun reloadWorkoutData(workoutId: Long) {
         launch(Dispatchers.IO) {
             summariesManager.getWorkoutCursor(workoutId).use { cursor ->
-                if (cursor?.moveToFirst() == true) {
+                val lookups = WorkoutPageLookups.create(application, equipmentDbHelper, cursor)
+                if (cursor.moveToFirst()) {
                     // Get the completely fresh data from the database.
-                    val freshWorkoutData = mapper.fromCursor(cursor)
+                    val freshWorkoutData = mapper.fromCursor(cursor, lookups)
 
                     // Get the current in-memory version of the workout to check its state.
-                    val currentWorkoutInMemory = allWorkouts.value?.find { it.id == workoutId }
+                    val currentWorkoutInMemory = findWorkout(workoutId)
                     val currentMessage = currentWorkoutInMemory?.extremaData?.calculationMessage
 
                     // Calculate the new workout name
@@ -335,8 +382,7 @@ class WorkoutRepository private constructor(private val application: Application
 
     // Function to update the workout name of one workout
     fun updateWorkoutName(workoutId: Long, newName: String) {
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (newName == workoutToUpdate.headerData.workoutName) return
 
         val updatedWorkout = workoutToUpdate.copy(
@@ -346,8 +392,7 @@ class WorkoutRepository private constructor(private val application: Application
     }
 
     fun updateSportAndEquipment(workoutId: Long, newSportName: String, newSportId: Long, newBSportType: BSportType, newEquipmentName: String?) {
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (newSportName == workoutToUpdate.sportData.sportName) return
 
         // update the workout.  Thereby, we have to update the sport, equipment, header, and details...
@@ -375,8 +420,7 @@ class WorkoutRepository private constructor(private val application: Application
 
     fun updateEquipmentName(workoutId: Long, newEquipmentName: String?) {
         if (newEquipmentName == null) return
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (newEquipmentName == workoutToUpdate.equipmentData.equipmentName) return
 
         // update the workout.  Thereby, we have to update the sportAndEquipment and header ...
@@ -391,8 +435,7 @@ class WorkoutRepository private constructor(private val application: Application
     }
 
     fun updateDescription(workoutId: Long, newDescription: String) {
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (newDescription == workoutToUpdate.descriptionData.description) return
 
         val updatedWorkout = workoutToUpdate.copy(
@@ -402,8 +445,7 @@ class WorkoutRepository private constructor(private val application: Application
     }
 
     fun updateGoal(workoutId: Long, newGoal: String) {
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (newGoal == workoutToUpdate.descriptionData.goal) return
 
         val updatedWorkout = workoutToUpdate.copy(
@@ -413,8 +455,7 @@ class WorkoutRepository private constructor(private val application: Application
     }
 
     fun updateMethod(workoutId: Long, newMethod: String) {
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (newMethod == workoutToUpdate.descriptionData.method) return
 
         val updatedWorkout = workoutToUpdate.copy(
@@ -424,8 +465,7 @@ class WorkoutRepository private constructor(private val application: Application
     }
 
     fun updateIsCommute(workoutId: Long, isChecked: Boolean) {
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (isChecked == workoutToUpdate.headerData.commute) return
 
         val updatedWorkout = workoutToUpdate.copy(
@@ -435,8 +475,7 @@ class WorkoutRepository private constructor(private val application: Application
     }
 
     fun updateIsTrainer(workoutId: Long, isChecked: Boolean) {
-        val currentList = _allWorkouts.value ?: return
-        val workoutToUpdate = currentList.find { it.id == workoutId } ?: return
+        val workoutToUpdate = findWorkout(workoutId) ?: return
         if (isChecked == workoutToUpdate.headerData.trainer) return
 
         val updatedWorkout = workoutToUpdate.copy(
@@ -450,7 +489,7 @@ class WorkoutRepository private constructor(private val application: Application
      */
     fun saveWorkout(workoutId: Long) {
         // Get the most recent state from the LiveData. If it's null, there's nothing to save.
-        val dataToSave = allWorkouts.value?.find { it.id == workoutId } ?: return
+        val dataToSave = findWorkout(workoutId) ?: return
 
         // Launch a coroutine in the IO dispatcher to perform database operations off the main thread.
         launch(Dispatchers.IO) {
@@ -469,6 +508,8 @@ class WorkoutRepository private constructor(private val application: Application
                 dataToSave.sportData.sportId,
                 equipmentId
             )
+            // the zones depend on the sport, so the training load might change
+            TrainingLoadDatabaseManager.getInstance(application).updateSport(workoutId, dataToSave.sportData.sportId)
 
             // Update Commute and Trainer flags
             summariesManager.updateCommuteAndTrainerFlag(
@@ -504,7 +545,7 @@ class WorkoutRepository private constructor(private val application: Application
     fun deleteWorkout(id: Long) {
         launch(Dispatchers.IO) {
             // Find the workout name *before* deleting it.
-            val workout = _allWorkouts.value?.find { it.id == id }
+            val workout = findWorkout(id)
             val workoutName = workout?.headerData?.workoutName ?: "Workout ID: $id"
 
             // --- START PROGRESS ---
@@ -515,9 +556,7 @@ class WorkoutRepository private constructor(private val application: Application
             val success = deletionHelper.deleteWorkout(id)
             if (success) {
                 // Now, update the in-memory LiveData list
-                val currentList = _allWorkouts.value ?: emptyList()
-                val updatedList = currentList.filterNot { it.id == id }
-                _allWorkouts.postValue(updatedList)
+                updateWorkouts { it.minus(id) }
 
                 // Post event for UI to react (e.g., close screen)
                 deleteFinishedEvent.postValue(Pair(id, true))
@@ -537,7 +576,7 @@ class WorkoutRepository private constructor(private val application: Application
                 // The callback lambda that will be executed inside the helper.
                 val progressCallback: (Long) -> Unit = { workoutId ->
                     // Find the workout name from the current list to display it.
-                    val workout = allWorkouts.value?.find { it.id == workoutId }
+                    val workout = findWorkout(workoutId)
                     val workoutName = workout?.headerData?.workoutName ?: "Workout ID: $workoutId"
 
                     // Post the detailed progress to the LiveData.
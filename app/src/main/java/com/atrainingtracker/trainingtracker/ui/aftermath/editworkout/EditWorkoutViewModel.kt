@@ -67,7 +67,7 @@ class EditWorkoutViewModel(application: Application, private val workoutId: Long
 
         // Observe the single source of truth from the repository.
         repository.allWorkouts.observeForever { list ->
-            val newWorkoutState = list.find { it.id == workoutId }
+            val newWorkoutState = list.findById(workoutId)
 
             // If we have both old and new state, perform a diff.
             if (currentWorkoutState != null && newWorkoutState != null) {
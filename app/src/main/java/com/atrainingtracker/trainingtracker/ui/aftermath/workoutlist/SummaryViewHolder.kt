@@ -126,6 +126,10 @@ class SummaryViewHolder(
                         viewModel.onExportWorkoutClicked(workoutSummary.id, FileFormat.GPX)
                         true
                     }
+                    R.id.fitWrite -> {
+                        viewModel.onExportWorkoutClicked(workoutSummary.id, FileFormat.FIT)
+                        true
+                    }
                     R.id.csvWrite -> {
                         viewModel.onExportWorkoutClicked(workoutSummary.id, FileFormat.CSV)
                         true
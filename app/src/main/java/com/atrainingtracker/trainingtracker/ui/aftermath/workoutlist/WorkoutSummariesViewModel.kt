@@ -7,7 +7,7 @@ import androidx.lifecycle.viewModelScope
 import com.atrainingtracker.trainingtracker.ui.util.SingleLiveEvent
 import com.atrainingtracker.trainingtracker.exporter.FileFormat
 import com.atrainingtracker.trainingtracker.ui.aftermath.DeletionProgress
-import com.atrainingtracker.trainingtracker.ui.aftermath.WorkoutData
+import com.atrainingtracker.trainingtracker.ui.aftermath.WorkoutList
 import com.atrainingtracker.trainingtracker.ui.aftermath.WorkoutRepository
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
@@ -17,7 +17,7 @@ class WorkoutSummariesViewModel(application: Application) : AndroidViewModel(app
 
     private val repository = WorkoutRepository.getInstance(application)
 
-    val workouts: LiveData<List<WorkoutData>> = repository.allWorkouts
+    val workouts: LiveData<WorkoutList> = repository.allWorkouts
 
     //
     // LiveData to trigger showing the "Delete Old Workouts" dialog
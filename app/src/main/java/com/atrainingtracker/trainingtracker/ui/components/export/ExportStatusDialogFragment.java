@@ -153,6 +153,9 @@ public class ExportStatusDialogFragment extends DialogFragment {
                 tv.setPadding(padding_scaled, padding_scaled, padding_scaled, padding_scaled);
 
                 ExportStatus exportStatus = exportStatusTable.get(exportType).get(fileFormat);
+                if (exportStatus == null) {  // workouts from before the file format was added
+                    exportStatus = ExportStatus.UNWANTED;
+                }
                 switch (exportStatus) {
                     case UNWANTED:
                         iv.setImageResource(R.drawable.ic_not_interested_black_24dp);
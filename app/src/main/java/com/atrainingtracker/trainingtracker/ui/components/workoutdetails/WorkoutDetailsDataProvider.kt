@@ -2,11 +2,10 @@ package com.atrainingtracker.trainingtracker.ui.components.workoutdetails
 
 import android.content.Context
 import android.database.Cursor
-import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager
 import com.atrainingtracker.banalservice.sensor.SensorType
 import com.atrainingtracker.trainingtracker.database.ExtremaType
-import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries
+import com.atrainingtracker.trainingtracker.ui.aftermath.WorkoutPageLookups
 
 /**
  * A provider class responsible for fetching all data needed by the WorkoutDetailsViewHolder.
@@ -20,10 +19,10 @@ class WorkoutDetailsDataProvider(private val context: Context) {
      * then constructs and returns a WorkoutDetailsData object.
      *
      * @param cursor The database cursor, positioned at the correct row for the workout.
-     * @param workoutId The ID of the workout to fetch extra details for.
+     * @param lookups The sport types and extrema values of the workouts of the cursor.
      * @return A populated WorkoutDetailsData object.
      */
-    fun getWorkoutDetailsData(cursor: Cursor): WorkoutDetailsData {
+    fun getWorkoutDetailsData(cursor: Cursor, lookups: WorkoutPageLookups): WorkoutDetailsData {
         // 1. Get data from the main cursor
         val workoutId = cursor.getLong(cursor.getColumnIndex(WorkoutSummaries.C_ID))
         val totalDistance = cursor.getDouble(cursor.getColumnIndexOrThrow(WorkoutSummaries.DISTANCE_TOTAL_m))
@@ -33,13 +32,12 @@ class WorkoutDetailsDataProvider(private val context: Context) {
         val ascent = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSummaries.ASCENDING))
         val descent = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSummaries.DESCENDING))
         val sportId = cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSummaries.SPORT_ID))
-        val bSportType = SportTypeDatabaseManager.getInstance(context).getBSportType(sportId)
+        val bSportType = lookups.getBSportType(sportId)
 
-        // 2. Fetch the extra data from the database manager
-        val workoutSummariesDatabaseManager = WorkoutSummariesDatabaseManager.getInstance(context)
-        val maxDisplacement = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.LINE_DISTANCE_m, ExtremaType.MAX)
-        val minAlt = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.ALTITUDE, ExtremaType.MIN)
-        val maxAlt = workoutSummariesDatabaseManager.getExtremaValue(workoutId, SensorType.ALTITUDE, ExtremaType.MAX)
+        // 2. Get the extra data from the lookups
+        val maxDisplacement = lookups.getExtremaValue(workoutId, SensorType.LINE_DISTANCE_m, ExtremaType.MAX)
+        val minAlt = lookups.getExtremaValue(workoutId, SensorType.ALTITUDE, ExtremaType.MIN)
+        val maxAlt = lookups.getExtremaValue(workoutId, SensorType.ALTITUDE, ExtremaType.MAX)
 
         // 3. Create and return the clean data object
         return WorkoutDetailsData(
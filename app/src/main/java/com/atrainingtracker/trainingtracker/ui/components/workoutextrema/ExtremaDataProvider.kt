@@ -5,13 +5,12 @@ import android.content.Context
 import android.database.Cursor
 import android.util.Log
 import com.atrainingtracker.banalservice.BSportType
-import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager
 import com.atrainingtracker.banalservice.sensor.SensorType
 import com.atrainingtracker.trainingtracker.MyHelper
 import com.atrainingtracker.trainingtracker.TrainingApplication
 import com.atrainingtracker.trainingtracker.database.ExtremaType
-import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries
+import com.atrainingtracker.trainingtracker.ui.aftermath.WorkoutPageLookups
 
 
 /**
@@ -32,7 +31,7 @@ class ExtremaDataProvider(context: Context) {
     /**
      * Fetches and prepares a list of ExtremaData for a given workout.
      */
-    fun getExtremaData(cursor: Cursor): ExtremaData {
+    fun getExtremaData(cursor: Cursor, lookups: WorkoutPageLookups): ExtremaData {
         if (DEBUG) Log.d(TAG, "getExtremaDataList()")
 
         // Define all sensors to check
@@ -54,7 +53,7 @@ class ExtremaDataProvider(context: Context) {
         // get the workoutId and the bSportType from the cursor
         val workoutId = cursor.getLong(cursor.getColumnIndex(WorkoutSummaries.C_ID))
         val sportId = cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSummaries.SPORT_ID))
-        val bSportType = SportTypeDatabaseManager.getInstance(appContext).getBSportType(sportId)
+        val bSportType = lookups.getBSportType(sportId)
         val isCalculating = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSummaries.EXTREMA_VALUES_CALCULATED)) == 0
 
         // Use Kotlin's functional style to build the list
@@ -68,9 +67,9 @@ class ExtremaDataProvider(context: Context) {
                 return@mapNotNull null // Skip this sensor
             }
 
-            val min = getFormattedValue(workoutId, sensorType, ExtremaType.MIN)
-            val avg = getFormattedValue(workoutId, sensorType, ExtremaType.AVG)
-            val max = getFormattedValue(workoutId, sensorType, ExtremaType.MAX)
+            val min = getFormattedValue(lookups, workoutId, sensorType, ExtremaType.MIN)
+            val avg = getFormattedValue(lookups, workoutId, sensorType, ExtremaType.AVG)
+            val max = getFormattedValue(lookups, workoutId, sensorType, ExtremaType.MAX)
 
             val data = ExtremaDataRow(
                 sensorLabel = appContext.getString(sensorType.shortNameId),
@@ -87,8 +86,8 @@ class ExtremaDataProvider(context: Context) {
         return ExtremaData(workoutId = workoutId, isCalculating = isCalculating, dataRows = rows)
     }
 
-    private fun getFormattedValue(workoutId: Long, sensorType: SensorType, extremaType: ExtremaType): String? {
-        val value = WorkoutSummariesDatabaseManager.getInstance(appContext).getExtremaValue(workoutId, sensorType, extremaType)
+    private fun getFormattedValue(lookups: WorkoutPageLookups, workoutId: Long, sensorType: SensorType, extremaType: ExtremaType): String? {
+        val value = lookups.getExtremaValue(workoutId, sensorType, extremaType)
         if (DEBUG) Log.d(TAG, "${sensorType.name} ${extremaType.name} extremaValue=$value")
         // Use Kotlin's scope function 'let' for safe handling of nullable values
         return value?.let { sensorType.myFormatter.format(it) }
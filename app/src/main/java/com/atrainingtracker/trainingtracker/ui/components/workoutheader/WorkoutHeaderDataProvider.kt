@@ -8,6 +8,7 @@ import com.atrainingtracker.banalservice.database.SportTypeDatabaseManager
 import com.atrainingtracker.trainingtracker.database.EquipmentDbHelper
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager
 import com.atrainingtracker.trainingtracker.database.WorkoutSummariesDatabaseManager.WorkoutSummaries
+import com.atrainingtracker.trainingtracker.ui.aftermath.WorkoutPageLookups
 import java.text.ParseException
 import java.text.SimpleDateFormat
 import java.util.Date
@@ -31,26 +32,26 @@ class WorkoutHeaderDataProvider(
             arrayOf<String>(workoutId.toString()),
              null, null, null
         )
-        if (cursor.moveToFirst()) {
-            return createWorkoutHeaderData(cursor)
+        cursor.use {
+            val lookups = WorkoutPageLookups.create(context, equipmentDbHelper, cursor)
+            if (cursor.moveToFirst()) {
+                return createWorkoutHeaderData(cursor, lookups)
+            }
         }
-        // cursor.close()
-        // WorkoutSummariesDatabaseManager.getInstance().closeDatabase()
 
         return null
     }
 
-    fun createWorkoutHeaderData(cursor: Cursor): WorkoutHeaderData {
+    fun createWorkoutHeaderData(cursor: Cursor, lookups: WorkoutPageLookups): WorkoutHeaderData {
         val workoutName = cursor.getString(cursor.getColumnIndexOrThrow(WorkoutSummaries.WORKOUT_NAME))
         val sportId = cursor.getLong(cursor.getColumnIndexOrThrow(WorkoutSummaries.SPORT_ID))
         val equipmentId = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSummaries.EQUIPMENT_ID))
 
         val (date, time) = formatDateTime(cursor)
 
-        val sportTypeDatabaseManager = SportTypeDatabaseManager.getInstance(context)
-        val bSportType = sportTypeDatabaseManager.getBSportType(sportId)
-        val sportName = sportTypeDatabaseManager.getUIName(sportId)
-        val equipmentName = equipmentDbHelper.getEquipmentNameFromId(equipmentId)
+        val bSportType = lookups.getBSportType(sportId)
+        val sportName = lookups.getSportName(sportId)
+        val equipmentName = lookups.getEquipmentName(equipmentId)
 
         val commute = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSummaries.COMMUTE)) == 1
         val trainer = cursor.getInt(cursor.getColumnIndexOrThrow(WorkoutSummaries.TRAINER)) == 1
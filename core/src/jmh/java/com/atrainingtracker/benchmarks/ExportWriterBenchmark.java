@@ -0,0 +1,186 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.benchmarks;
+
+import com.atrainingtracker.trainingtracker.database.TrackSimplifier;
+import com.atrainingtracker.trainingtracker.exporter.writer.ElapsedTime;
+import com.atrainingtracker.trainingtracker.exporter.writer.FitEncoder;
+import com.atrainingtracker.trainingtracker.exporter.writer.SampleTimeFormat;
+import com.atrainingtracker.trainingtracker.exporter.writer.Trackpoint;
+import com.atrainingtracker.trainingtracker.exporter.writer.TrackpointFormat;
+import com.atrainingtracker.trainingtracker.segments.GeoMath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import au.com.bytecode.opencsv.CSVWriter;
+
+/**
+ * The formatting done by the export writers (CSV, the trackpoints of TCX and GPX, and the FIT records) and the track geometry.
+ * The output goes to memory, so the storage is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExportWriterBenchmark {
+    // the tolerances used for the tracks on the map
+    private static final double SMALL_TOLERANCE_m = 2;
+    private static final double LARGE_TOLERANCE_m = 50;
+    // the local message type of the FIT records
+    private static final int LOCAL_RECORD = 1;
+    private static final int MESG_RECORD = 20;
+
+    @Param({"4"})
+    public int hours;
+
+    private SyntheticWorkout mWorkout;
+    private float[] mSignificance;
+
+    @Setup
+    public void setup() {
+        mWorkout = new SyntheticWorkout(hours);
+        mSignificance = TrackSimplifier.getSignificance(mWorkout.track);
+    }
+
+    @Benchmark
+    public int csvWriter() throws IOException, ParseException {
+        StringWriter stringWriter = new StringWriter();
+        ElapsedTime elapsedTime = new ElapsedTime();
+        try (CSVWriter csvWriter = new CSVWriter(stringWriter)) {
+            csvWriter.writeNext(new String[]{"time", "elapsed_time_s", "HR", "POWER", "CADENCE", "SPEED_mps", "DISTANCE_m", "LATITUDE", "LONGITUDE"});
+            for (int i = 0; i < mWorkout.samples; i++) {
+                csvWriter.writeNext(new String[]{
+                        SampleTimeFormat.dbTime2XMLTime(mWorkout.dbTimes[i]),
+                        Double.toString(elapsedTime.getElapsedTime_s(i, mWorkout.dbTimes[i])),
+                        format(mWorkout.hr[i]),
+                        format(mWorkout.power[i]),
+                        format(mWorkout.cadence[i]),
+                        format(mWorkout.speed_mps[i]),
+                        format(mWorkout.distance_m[i]),
+                        Double.toString(mWorkout.latitude[i]),
+                        Double.toString(mWorkout.longitude[i])});
+            }
+        }
+        return stringWriter.getBuffer().length();
+    }
+
+    @Benchmark
+    public int tcxTrackpoints() throws IOException, ParseException {
+        return writeTrackpoints(TrackpointFormat.TCX);
+    }
+
+    @Benchmark
+    public int gpxTrackpoints() throws IOException, ParseException {
+        return writeTrackpoints(TrackpointFormat.GPX);
+    }
+
+    /**
+     * the records of a FIT file with the same fields as the FITFileWriter, followed by the CRC over all of them
+     */
+    @Benchmark
+    public int fitRecords() throws IOException, ParseException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        FitEncoder encoder = new FitEncoder();
+
+        encoder.startDefinition(LOCAL_RECORD, MESG_RECORD, 8);
+        encoder.addField(253, 4, FitEncoder.UINT32);  // timestamp
+        encoder.addField(0, 4, FitEncoder.SINT32);    // position lat
+        encoder.addField(1, 4, FitEncoder.SINT32);    // position long
+        encoder.addField(5, 4, FitEncoder.UINT32);    // distance
+        encoder.addField(6, 2, FitEncoder.UINT16);    // speed
+        encoder.addField(3, 1, FitEncoder.UINT8);     // heart rate
+        encoder.addField(4, 1, FitEncoder.UINT8);     // cadence
+        encoder.addField(7, 2, FitEncoder.UINT16);    // power
+        encoder.writeMessage(outputStream);
+
+        for (int i = 0; i < mWorkout.samples; i++) {
+            encoder.startData(LOCAL_RECORD);
+            encoder.putUInt32(SampleTimeFormat.dbTime2FitTime(mWorkout.dbTimes[i]));
+            encoder.putUInt32(Math.round(mWorkout.latitude[i] * FitEncoder.SEMICIRCLES_PER_DEGREE));
+            encoder.putUInt32(Math.round(mWorkout.longitude[i] * FitEncoder.SEMICIRCLES_PER_DEGREE));
+            encoder.putUInt32(Double.isNaN(mWorkout.distance_m[i]) ? 0xFFFFFFFFL : FitEncoder.scale(mWorkout.distance_m[i], 100, 0, 0xFFFFFFFEL));
+            encoder.putUInt16(Double.isNaN(mWorkout.speed_mps[i]) ? 0xFFFF : FitEncoder.scale(mWorkout.speed_mps[i], 1000, 0, 0xFFFE));
+            encoder.putUInt8(Double.isNaN(mWorkout.hr[i]) ? 0xFF : FitEncoder.scale(mWorkout.hr[i], 1, 0, 0xFE));
+            encoder.putUInt8(Double.isNaN(mWorkout.cadence[i]) ? 0xFF : FitEncoder.scale(mWorkout.cadence[i], 1, 0, 0xFE));
+            encoder.putUInt16(Double.isNaN(mWorkout.power[i]) ? 0xFFFF : FitEncoder.scale(mWorkout.power[i], 1, 0, 0xFFFE));
+            encoder.writeMessage(outputStream);
+        }
+
+        byte[] header = FitEncoder.createHeader(encoder.getDataSize());
+        int crc = FitEncoder.updateCrc(0, header, 0, header.length);
+        byte[] data = outputStream.toByteArray();
+        return FitEncoder.updateCrc(crc, data, 0, data.length);
+    }
+
+    @Benchmark
+    public float[] trackSignificance() {
+        return TrackSimplifier.getSignificance(mWorkout.track);
+    }
+
+    @Benchmark
+    public int trackSimplify() {
+        return TrackSimplifier.simplify(mWorkout.track, mSignificance, SMALL_TOLERANCE_m).length
+                + TrackSimplifier.simplify(mWorkout.track, mSignificance, LARGE_TOLERANCE_m).length;
+    }
+
+    @Benchmark
+    public double derivedPositions() {
+        double result = 0;
+        for (int i = 0; i < mWorkout.samples; i++) {
+            double[] position = GeoMath.derivedPosition(mWorkout.latitude[i], mWorkout.longitude[i], 100, 90 * (i % 4));
+            result += position[0] + position[1];
+        }
+        return result;
+    }
+
+    private int writeTrackpoints(TrackpointFormat trackpointFormat) throws IOException, ParseException {
+        StringWriter stringWriter = new StringWriter();
+        Trackpoint trackpoint = new Trackpoint();
+        for (int i = 0; i < mWorkout.samples; i++) {
+            trackpoint.clear();
+            trackpoint.time = SampleTimeFormat.dbTime2XMLTime(mWorkout.dbTimes[i]);
+            trackpoint.latitude = mWorkout.latitude[i];
+            trackpoint.longitude = mWorkout.longitude[i];
+            trackpoint.distance_m = mWorkout.distance_m[i];
+            trackpoint.hr = mWorkout.hr[i];
+            trackpoint.bikeCadence = mWorkout.cadence[i];
+            trackpoint.speed_mps = mWorkout.speed_mps[i];
+            trackpoint.power = mWorkout.power[i];
+            trackpointFormat.write(stringWriter, trackpoint);
+        }
+        return stringWriter.getBuffer().length();
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.US, "%.1f", value);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.benchmarks;
+
+import com.atrainingtracker.trainingtracker.database.MeanMaxCurve;
+import com.atrainingtracker.trainingtracker.database.SampleExtrema;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The scans over the samples of a finished workout: the extrema of the sensors and the mean max power curve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExtremaScanBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int hours;
+
+    private SyntheticWorkout mWorkout;
+
+    @Setup
+    public void setup() {
+        mWorkout = new SyntheticWorkout(hours);
+    }
+
+    @Benchmark
+    public double sampleExtrema() {
+        double[][] sensors = {mWorkout.hr, mWorkout.power, mWorkout.cadence, mWorkout.speed_mps};
+        double result = 0;
+        for (double[] values : sensors) {
+            SampleExtrema extrema = new SampleExtrema();
+            for (int i = 0; i < mWorkout.samples; i++) {
+                if (!Double.isNaN(values[i])) {
+                    extrema.add(values[i], mWorkout.times_ms[i], mWorkout.latitude[i], mWorkout.longitude[i]);
+                }
+            }
+            result += extrema.getMax() + extrema.getMaxLatitude() + extrema.getAverage();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public float[] meanMaxCurve() {
+        double[] resampled = MeanMaxCurve.resample(mWorkout.times_ms, mWorkout.power, mWorkout.samples, SampleExtrema.MAX_HOLD_ms);
+        return MeanMaxCurve.calculate(resampled);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.benchmarks;
+
+import com.atrainingtracker.banalservice.filters.ListMovingAverages;
+import com.atrainingtracker.banalservice.filters.NumberedMovingAverage;
+import com.atrainingtracker.banalservice.filters.TimedMovingAverage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds the power of a whole workout through the moving average filters, reading the filtered value after each sample like the display does.
+ * <p>
+ * The former list based filters are measured as well.  FilterEquivalenceTest verifies that both give the same values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FilterBenchmark {
+
+    @Param({"4"})
+    public int hours;
+
+    @Param({"3", "30", "600"})
+    public int filterConstant;
+
+    private SyntheticWorkout mWorkout;
+
+    @Setup
+    public void setup() {
+        mWorkout = new SyntheticWorkout(hours);
+    }
+
+    @Benchmark
+    public double timedMovingAverage() {
+        TimedMovingAverage movingAverage = new TimedMovingAverage(filterConstant);
+        double sum = 0;
+        for (int i = 0; i < mWorkout.samples; i++) {
+            // a dropout means that the sensor did not deliver a value, so the filter only gets older
+            if (!Double.isNaN(mWorkout.power[i])) {
+                movingAverage.add(mWorkout.times_ms[i], mWorkout.power[i]);
+            }
+            movingAverage.trim(mWorkout.times_ms[i]);
+            sum += movingAverage.getAverage();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double numberedMovingAverage() {
+        NumberedMovingAverage movingAverage = new NumberedMovingAverage(filterConstant);
+        double sum = 0;
+        for (int i = 0; i < mWorkout.samples; i++) {
+            if (!Double.isNaN(mWorkout.power[i])) {
+                movingAverage.add(mWorkout.power[i]);
+            }
+            sum += movingAverage.getAverage();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double timedMovingAverageList() {
+        ListMovingAverages.Timed movingAverage = new ListMovingAverages.Timed(filterConstant);
+        double sum = 0;
+        for (int i = 0; i < mWorkout.samples; i++) {
+            if (!Double.isNaN(mWorkout.power[i])) {
+                movingAverage.newValue(mWorkout.times_ms[i], mWorkout.power[i]);
+            }
+            Number value = movingAverage.getFilteredValue(mWorkout.times_ms[i]);
+            if (value != null) {
+                sum += value.doubleValue();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double numberedMovingAverageList() {
+        ListMovingAverages.Numbered movingAverage = new ListMovingAverages.Numbered(filterConstant);
+        double sum = 0;
+        for (int i = 0; i < mWorkout.samples; i++) {
+            if (!Double.isNaN(mWorkout.power[i])) {
+                movingAverage.newValue(mWorkout.power[i]);
+            }
+            Number value = movingAverage.getFilteredValue();
+            if (value != null) {
+                sum += value.doubleValue();
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.benchmarks;
+
+import com.atrainingtracker.trainingtracker.database.columnar.ColumnarSampleWriter;
+import com.atrainingtracker.trainingtracker.exporter.writer.SampleTimeFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the sample rows of a whole workout into the columnar format, like the ColumnarSampleStore does when a workout is finished.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SampleEncodingBenchmark {
+    // the same as the ColumnarSampleStore
+    private static final int ROWS_PER_BLOCK = 1024;
+
+    @Param({"4"})
+    public int hours;
+
+    private SyntheticWorkout mWorkout;
+    private File mFile;
+
+    @Setup
+    public void setup() throws IOException {
+        mWorkout = new SyntheticWorkout(hours);
+        mFile = File.createTempFile("samples", ".ttcs");
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public long columnarSampleWriter() throws IOException, ParseException {
+        mFile.delete();
+        ColumnarSampleWriter writer = new ColumnarSampleWriter(mFile);
+        try {
+            for (int i = 0; i < mWorkout.samples; i++) {
+                writer.putLong("time", SampleTimeFormat.dbTime2EpochMillis(mWorkout.dbTimes[i]));
+                putIfValid(writer, "HR", mWorkout.hr[i]);
+                putIfValid(writer, "POWER", mWorkout.power[i]);
+                writer.putDouble("CADENCE", mWorkout.cadence[i]);
+                writer.putDouble("SPEED_mps", mWorkout.speed_mps[i]);
+                writer.putDouble("DISTANCE_m", mWorkout.distance_m[i]);
+                writer.putDouble("LATITUDE", mWorkout.latitude[i]);
+                writer.putDouble("LONGITUDE", mWorkout.longitude[i]);
+                writer.endRow();
+
+                if (writer.getPendingRowCount() >= ROWS_PER_BLOCK) {
+                    writer.writeBlock();
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return mFile.length();
+    }
+
+    @Benchmark
+    public long sampleTimeFormat() throws ParseException {
+        long length = 0;
+        for (int i = 0; i < mWorkout.samples; i++) {
+            length += SampleTimeFormat.dbTime2XMLTime(mWorkout.dbTimes[i]).length();
+            length += SampleTimeFormat.dbTime2FitTime(mWorkout.dbTimes[i]);
+        }
+        return length;
+    }
+
+    private static void putIfValid(ColumnarSampleWriter writer, String column, double value) {
+        // a dropout is stored as null
+        if (!Double.isNaN(value)) {
+            writer.putDouble(column, value);
+        }
+    }
+}
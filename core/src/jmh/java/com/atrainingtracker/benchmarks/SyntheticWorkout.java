@@ -0,0 +1,111 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.benchmarks;
+
+import androidx.annotation.NonNull;
+
+import java.util.Random;
+
+/**
+ * A reproducible bike workout with one sample per second, riding eastwards with some noise.
+ * <p>
+ * The sensors drop out from time to time, the values are then NaN like in a real recording.
+ */
+public final class SyntheticWorkout {
+    // Wed, 1 May 2024 08:00:00 UTC
+    private static final long START_TIME_ms = 1_714_550_400_000L;
+    private static final double START_LATITUDE = 47.6779;
+    private static final double START_LONGITUDE = 9.1732;
+    // roughly 1 m in degrees of latitude
+    private static final double METER_IN_DEGREES = 1 / 111_200.0;
+    private static final double DROPOUT_PROBABILITY = 0.002;
+
+    public final int samples;
+    public final long[] times_ms;
+    public final String[] dbTimes;
+    public final double[] hr;
+    public final double[] power;
+    public final double[] cadence;
+    public final double[] speed_mps;
+    public final double[] distance_m;
+    public final double[] latitude;
+    public final double[] longitude;
+    // latitude and longitude of each sample, as used by the TrackSimplifier
+    public final double[] track;
+
+    public SyntheticWorkout(int hours) {
+        samples = hours * 60 * 60;
+        times_ms = new long[samples];
+        dbTimes = new String[samples];
+        hr = new double[samples];
+        power = new double[samples];
+        cadence = new double[samples];
+        speed_mps = new double[samples];
+        distance_m = new double[samples];
+        latitude = new double[samples];
+        longitude = new double[samples];
+        track = new double[2 * samples];
+
+        Random random = new Random(42);
+        double distance = 0;
+        double lat = START_LATITUDE;
+        double lon = START_LONGITUDE;
+        double heading = 0;
+        for (int i = 0; i < samples; i++) {
+            times_ms[i] = START_TIME_ms + i * 1000L;
+            dbTimes[i] = toDbTime(i);
+
+            // intervals of 10 minutes, alternating between endurance and threshold
+            boolean hard = (i / 600) % 2 == 1;
+            power[i] = Math.max(0, (hard ? 280 : 180) + 25 * random.nextGaussian());
+            hr[i] = (hard ? 160 : 135) + 10 * Math.sin(i / 300.0) + 2 * random.nextGaussian();
+            cadence[i] = 88 + 5 * random.nextGaussian();
+            speed_mps[i] = Math.max(0, (hard ? 10.5 : 8.5) + random.nextGaussian());
+
+            distance += speed_mps[i];
+            distance_m[i] = distance;
+
+            heading += 0.05 * random.nextGaussian();
+            lat += speed_mps[i] * Math.sin(heading) * METER_IN_DEGREES;
+            lon += speed_mps[i] * Math.cos(heading) * METER_IN_DEGREES / Math.cos(Math.toRadians(lat));
+            latitude[i] = lat;
+            longitude[i] = lon;
+            track[2 * i] = lat;
+            track[2 * i + 1] = lon;
+
+            if (random.nextDouble() < DROPOUT_PROBABILITY) {
+                hr[i] = Double.NaN;
+            }
+            if (random.nextDouble() < DROPOUT_PROBABILITY) {
+                power[i] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * @return the time of the sample in the format of the database, e.g. "2024-05-01 08:00:05"
+     */
+    @NonNull
+    private static String toDbTime(int second) {
+        int hours = 8 + second / 3600;
+        int minutes = (second / 60) % 60;
+        int seconds = second % 60;
+        return String.format("2024-05-%02d %02d:%02d:%02d", 1 + hours / 24, hours % 24, minutes, seconds);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.banalservice.filters;
+
+/**
+ * Moving average over the last size values, the arithmetic of the NumberedMovingAverageFilter.
+ * <p>
+ * The values are kept in a primitive ring buffer together with a running sum, so adding a value does not allocate and
+ * getting the average is O(1).  Not thread safe, the filter synchronizes the access.
+ */
+public final class NumberedMovingAverage {
+    // to avoid the accumulation of rounding errors, the running sum is calculated from scratch after this number of values
+    static final int RESUM_INTERVAL = 4096;
+
+    private final int mSize;
+    private final double[] mValues;
+    private int mIndex;   // where the next value is written
+    private int mCount;
+    private double mSum;
+    private int mValuesSinceResum;
+
+    public NumberedMovingAverage(int size) {
+        mSize = Math.max(1, size);
+        mValues = new double[mSize];
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    public void add(double value) {
+        if (mCount == mSize) {
+            mSum -= mValues[mIndex];
+        } else {
+            mCount++;
+        }
+        mValues[mIndex] = value;
+        mSum += value;
+        mIndex = (mIndex + 1) % mSize;
+
+        if (++mValuesSinceResum >= RESUM_INTERVAL) {
+            double sum = 0;
+            for (int i = 0; i < mCount; i++) {
+                sum += mValues[i];
+            }
+            mSum = sum;
+            mValuesSinceResum = 0;
+        }
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * @return the average or NaN when there is no value
+     */
+    public double getAverage() {
+        return mCount == 0 ? Double.NaN : mSum / mCount;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.banalservice.filters;
+
+/**
+ * Moving average over the values of the last seconds, the arithmetic of the TimedMovingAverageFilter.
+ * <p>
+ * The values are kept in primitive ring buffers together with a running sum, so adding a value does not allocate and
+ * getting the average is O(1).  The buffers only grow when the sampling rate is higher than ever before.
+ * Not thread safe, the filter synchronizes the access.
+ */
+public final class TimedMovingAverage {
+    // sensors typically deliver up to 4 values per second, so this should be large enough for most cases
+    static final int INITIAL_VALUES_PER_SECOND = 4;
+    // to avoid the accumulation of rounding errors, the running sum is calculated from scratch after this number of values
+    static final int RESUM_INTERVAL = 4096;
+
+    private final long mSeconds;
+
+    private long[] mTimestamps;
+    private double[] mValues;
+    private int mHead;    // index of the oldest value
+    private int mCount;
+    private double mSum;
+    private int mValuesSinceResum;
+
+    public TimedMovingAverage(long seconds) {
+        mSeconds = seconds;
+
+        int capacity = (int) Math.max(16, Math.min(1 << 16, INITIAL_VALUES_PER_SECOND * (seconds + 1)));
+        mTimestamps = new long[capacity];
+        mValues = new double[capacity];
+    }
+
+    public long getSeconds() {
+        return mSeconds;
+    }
+
+    /**
+     * adds a value with the given timestamp.  The timestamps must not decrease.
+     */
+    public void add(long timestamp, double value) {
+        trim(timestamp);
+
+        if (mCount == mValues.length) {
+            grow();
+        }
+        int tail = (mHead + mCount) % mValues.length;
+        mTimestamps[tail] = timestamp;
+        mValues[tail] = value;
+        mCount++;
+        mSum += value;
+
+        if (++mValuesSinceResum >= RESUM_INTERVAL) {
+            resum();
+        }
+    }
+
+    /**
+     * removes the values that are older than the window
+     *
+     * @return the number of removed values
+     */
+    public int trim(long currentTimeMillis) {
+        long threshold = currentTimeMillis - 1000 * mSeconds;
+        int removed = 0;
+        while (mCount > 0 && mTimestamps[mHead] < threshold) {
+            mSum -= mValues[mHead];
+            mHead = (mHead + 1) % mValues.length;
+            mCount--;
+            removed++;
+        }
+        if (mCount == 0) {
+            mSum = 0;
+        }
+        return removed;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * @return the average of the values within the window when it was last trimmed or NaN when there is no value
+     */
+    public double getAverage() {
+        return mCount == 0 ? Double.NaN : mSum / mCount;
+    }
+
+    private void grow() {
+        int capacity = mValues.length * 2;
+
+        long[] timestamps = new long[capacity];
+        double[] values = new double[capacity];
+        for (int i = 0; i < mCount; i++) {
+            int index = (mHead + i) % mValues.length;
+            timestamps[i] = mTimestamps[index];
+            values[i] = mValues[index];
+        }
+        mTimestamps = timestamps;
+        mValues = values;
+        mHead = 0;
+    }
+
+    private void resum() {
+        double sum = 0;
+        for (int i = 0; i < mCount; i++) {
+            sum += mValues[(mHead + i) % mValues.length];
+        }
+        mSum = sum;
+        mValuesSinceResum = 0;
+    }
+}
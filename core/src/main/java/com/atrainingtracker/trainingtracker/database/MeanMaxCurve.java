@@ -0,0 +1,175 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Mean-maximal curves: for each duration, the best average of a sensor over any interval of this duration.
+ * <p>
+ * Calculating the best average for each single second up to the length of the workout would need O(n^2) operations.
+ * Instead, the curve is calculated for a fixed grid of durations: every second up to DENSE_DURATIONS_s and then
+ * durations that grow by GROWTH_FACTOR.  The grid has O(log n) durations and each of them is a single pass over the
+ * prefix sums, so a curve needs O(n log n) operations.  Since the curve is non-increasing, the value of any duration
+ * between two grid points is bounded by its neighbours, see {@link #getValue}.
+ * <p>
+ * All curves share the same grid, so they can be compared and combined point by point.  Hence, a curve ends at the longest
+ * grid duration that fits into the workout: the average over the full length of the workout is left out unless the length
+ * happens to be on the grid, since a point at any other duration would break the index of the grid (e.g. the durationIndex
+ * of the stored curves).  The average of the whole workout is available as AVG of the extrema values anyway.
+ */
+public final class MeanMaxCurve {
+    // the longest duration of the grid, longer workouts are truncated
+    public static final int MAX_DURATION_s = 24 * 60 * 60;
+    private static final int DENSE_DURATIONS_s = 20;
+    private static final double GROWTH_FACTOR = 1.05;
+
+    private static final int[] DURATIONS_s = createDurations();
+
+    private MeanMaxCurve() {
+    }
+
+    private static int[] createDurations() {
+        int[] durations = new int[256];
+        int size = 0;
+        for (int duration = 1; duration <= DENSE_DURATIONS_s; duration++) {
+            durations[size++] = duration;
+        }
+        int duration = DENSE_DURATIONS_s;
+        while (duration < MAX_DURATION_s) {
+            duration = Math.min(Math.max(duration + 1, (int) Math.round(duration * GROWTH_FACTOR)), MAX_DURATION_s);
+            durations[size++] = duration;
+        }
+        return Arrays.copyOf(durations, size);
+    }
+
+    /**
+     * @return the durations of the grid in seconds, ascending.  Do not modify.
+     */
+    @NonNull
+    public static int[] getDurations() {
+        return DURATIONS_s;
+    }
+
+    /**
+     * Converts the samples into one value per second: the average of the samples within this second, so that sub-second
+     * samples are not dropped.  A second without a sample holds the value of the preceding sample, but at most for maxHold_ms.
+     * Seconds without a value (e.g. during a gap in the recording) are 0, so they never improve an average.
+     *
+     * @param times_ms the times of the samples, ascending
+     * @param values   the values of the samples, NaN when there was no value
+     * @param count    the number of samples
+     * @return the values of the seconds from the first sample on, at most MAX_DURATION_s of them
+     */
+    @NonNull
+    public static double[] resample(@NonNull long[] times_ms, @NonNull double[] values, int count, long maxHold_ms) {
+        if (count == 0) {
+            return new double[0];
+        }
+
+        long startTime_ms = times_ms[0];
+        int seconds = (int) Math.min((times_ms[count - 1] - startTime_ms) / 1000 + 1, MAX_DURATION_s);
+        double[] resampled = new double[seconds];
+
+        int sample = 0;
+        for (int second = 0; second < seconds; second++) {
+            long time_ms = startTime_ms + second * 1000L;
+            double sum = 0;
+            int valid = 0;
+            while (sample < count && times_ms[sample] < time_ms + 1000) {
+                if (!Double.isNaN(values[sample])) {
+                    sum += values[sample];
+                    valid++;
+                }
+                sample++;
+            }
+
+            if (valid > 0) {
+                resampled[second] = sum / valid;
+            } else {
+                // the first sample is always within the first second, so there is a preceding sample
+                double value = values[sample - 1];
+                resampled[second] = !Double.isNaN(value) && time_ms - times_ms[sample - 1] <= maxHold_ms ? value : 0;
+            }
+        }
+        return resampled;
+    }
+
+    /**
+     * @param values one value per second
+     * @return the best averages for the durations of the grid that are not longer than the values.  The average over all
+     * values is only contained when their number is a duration of the grid.
+     */
+    @NonNull
+    public static float[] calculate(@NonNull double[] values) {
+        int n = values.length;
+
+        double[] prefixSums = new double[n + 1];
+        for (int i = 0; i < n; i++) {
+            prefixSums[i + 1] = prefixSums[i] + values[i];
+        }
+
+        int size = 0;
+        while (size < DURATIONS_s.length && DURATIONS_s[size] <= n) {
+            size++;
+        }
+
+        float[] curve = new float[size];
+        for (int d = 0; d < size; d++) {
+            int duration = DURATIONS_s[d];
+            double maxSum = Double.NEGATIVE_INFINITY;
+            for (int end = duration; end <= n; end++) {
+                double sum = prefixSums[end] - prefixSums[end - duration];
+                if (sum > maxSum) {
+                    maxSum = sum;
+                }
+            }
+            curve[d] = (float) (maxSum / duration);
+        }
+        return curve;
+    }
+
+    /**
+     * @return the value of the curve for any duration: the value of the next longer grid duration, which is a lower bound of the
+     * best average.  NaN when the curve is shorter than the duration.
+     */
+    public static float getValue(@NonNull float[] curve, int duration_s) {
+        int index = Arrays.binarySearch(DURATIONS_s, 0, curve.length, duration_s);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < curve.length ? curve[index] : Float.NaN;
+    }
+
+    /**
+     * @return the point by point maximum of both curves, as long as the longer one
+     */
+    @NonNull
+    public static float[] max(@NonNull float[] curve1, @NonNull float[] curve2) {
+        float[] longer = curve1.length >= curve2.length ? curve1 : curve2;
+        float[] shorter = longer == curve1 ? curve2 : curve1;
+        float[] result = longer.clone();
+        for (int i = 0; i < shorter.length; i++) {
+            result[i] = Math.max(result[i], shorter[i]);
+        }
+        return result;
+    }
+}
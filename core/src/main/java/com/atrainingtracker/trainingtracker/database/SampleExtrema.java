@@ -0,0 +1,195 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database;
+
+/**
+ * Accumulates min, max, sum, count, start, and end of a series of values together with the positions where they occurred.
+ * <p>
+ * All values are kept in primitives, so feeding one sample does not allocate anything.
+ * Positions are NaN when the sample had no valid location.
+ * <p>
+ * The samples are not necessarily equidistant (sub-second or adaptive sampling).
+ * So, when the time of the samples is known, the average is weighted by time: each value holds until the next sample, at most MAX_HOLD_ms.
+ * For equidistant samples, this is the same as the plain mean.
+ */
+public class SampleExtrema {
+    // used when the time of a sample is not known
+    public static final long NO_TIME = Long.MIN_VALUE;
+    // a value does not count longer than this, e.g. after a gap in the recording
+    public static final long MAX_HOLD_ms = 30_000;
+
+    private long mCount = 0;
+    private double mSum = 0;
+
+    // the time weighted sum without the last value, only valid as long as all samples had a time
+    private boolean mTimeWeighted = true;
+    private double mWeightedSum = 0;
+    private long mTotalWeight_ms = 0;
+    private long mLastTime_ms = NO_TIME;
+    private long mLastWeight_ms = 0;
+
+    private double mMin = Double.NaN, mMinLatitude = Double.NaN, mMinLongitude = Double.NaN;
+    private double mMax = Double.NaN, mMaxLatitude = Double.NaN, mMaxLongitude = Double.NaN;
+    private double mStart = Double.NaN, mStartLatitude = Double.NaN, mStartLongitude = Double.NaN;
+    private double mEnd = Double.NaN, mEndLatitude = Double.NaN, mEndLongitude = Double.NaN;
+
+    /**
+     * adds a sample without time, the average is then the plain mean of all samples
+     *
+     * @param latitude  the latitude of the sample or NaN
+     * @param longitude the longitude of the sample or NaN
+     */
+    public void add(double value, double latitude, double longitude) {
+        add(value, NO_TIME, latitude, longitude);
+    }
+
+    /**
+     * @param time_ms   the time of the sample in milliseconds or NO_TIME
+     * @param latitude  the latitude of the sample or NaN
+     * @param longitude the longitude of the sample or NaN
+     */
+    public void add(double value, long time_ms, double latitude, double longitude) {
+        if (time_ms == NO_TIME) {
+            mTimeWeighted = false;
+        } else if (mTimeWeighted && mCount > 0) {
+            // the previous value holds until now
+            mLastWeight_ms = Math.max(0, Math.min(time_ms - mLastTime_ms, MAX_HOLD_ms));
+            mWeightedSum += mEnd * mLastWeight_ms;
+            mTotalWeight_ms += mLastWeight_ms;
+        }
+        mLastTime_ms = time_ms;
+
+        boolean validPosition = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+
+        if (mCount == 0) {
+            mStart = value;
+            mStartLatitude = latitude;
+            mStartLongitude = longitude;
+        }
+
+        // for equal values, we prefer the first one with a valid position
+        if (mCount == 0 || value < mMin || (value == mMin && validPosition && Double.isNaN(mMinLatitude))) {
+            mMin = value;
+            mMinLatitude = latitude;
+            mMinLongitude = longitude;
+        }
+        if (mCount == 0 || value > mMax || (value == mMax && validPosition && Double.isNaN(mMaxLatitude))) {
+            mMax = value;
+            mMaxLatitude = latitude;
+            mMaxLongitude = longitude;
+        }
+
+        mEnd = value;
+        mEndLatitude = latitude;
+        mEndLongitude = longitude;
+
+        mSum += value;
+        mCount++;
+    }
+
+    /**
+     * adds the offset to all values added so far, e.g. when the altitude was corrected afterwards.
+     * The result is the same as if the corrected values had been added.
+     */
+    public void addOffset(double offset) {
+        mMin += offset;
+        mMax += offset;
+        mStart += offset;
+        mEnd += offset;
+        mSum += mCount * offset;
+        mWeightedSum += mTotalWeight_ms * offset;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public double getSum() {
+        return mSum;
+    }
+
+    public boolean hasValues() {
+        return mCount > 0;
+    }
+
+    /**
+     * @return the time weighted average when all samples had a time, otherwise the plain mean.
+     * The last value is weighted like the interval before it.  NaN when there was no sample.
+     */
+    public double getAverage() {
+        if (mCount == 0) {
+            return Double.NaN;
+        }
+        long totalWeight_ms = mTotalWeight_ms + mLastWeight_ms;
+        if (!mTimeWeighted || totalWeight_ms == 0) {
+            return mSum / mCount;
+        }
+        return (mWeightedSum + mEnd * mLastWeight_ms) / totalWeight_ms;
+    }
+
+    // the values and their positions, all NaN when there was no sample
+
+    public double getMin() {
+        return mMin;
+    }
+
+    public double getMinLatitude() {
+        return mMinLatitude;
+    }
+
+    public double getMinLongitude() {
+        return mMinLongitude;
+    }
+
+    public double getMax() {
+        return mMax;
+    }
+
+    public double getMaxLatitude() {
+        return mMaxLatitude;
+    }
+
+    public double getMaxLongitude() {
+        return mMaxLongitude;
+    }
+
+    public double getStart() {
+        return mStart;
+    }
+
+    public double getStartLatitude() {
+        return mStartLatitude;
+    }
+
+    public double getStartLongitude() {
+        return mStartLongitude;
+    }
+
+    public double getEnd() {
+        return mEnd;
+    }
+
+    public double getEndLatitude() {
+        return mEndLatitude;
+    }
+
+    public double getEndLongitude() {
+        return mEndLongitude;
+    }
+}
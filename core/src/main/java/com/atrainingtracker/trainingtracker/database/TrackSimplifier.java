@@ -0,0 +1,159 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Douglas-Peucker simplification of a track.
+ * <p>
+ * Instead of simplifying the track once per tolerance, {@link #getSignificance} runs the algorithm once with tolerance 0 and
+ * stores for each point the largest tolerance at which it is still kept.
+ * The simplification for any tolerance is then simply the set of points whose significance exceeds the tolerance, see {@link #simplify}.
+ * Thus, all levels of detail are consistent: a coarser level is always a subset of the finer ones.
+ * <p>
+ * The distances are calculated in meters within a local equirectangular projection, which is accurate enough for the extent of a workout.
+ */
+public final class TrackSimplifier {
+    private static final double METERS_PER_DEGREE = 111320;
+
+    private TrackSimplifier() {
+    }
+
+    /**
+     * @param track the packed track: latitude and longitude of the first point, latitude and longitude of the second point, ...
+     * @return the significance in meters for each point.  The first and last point are always kept, so their significance is infinite.
+     */
+    @NonNull
+    public static float[] getSignificance(@NonNull double[] track) {
+        int n = track.length / 2;
+        float[] significance = new float[n];
+        if (n == 0) {
+            return significance;
+        }
+
+        // project the points once
+        double cosLat = Math.cos(Math.toRadians(track[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = track[2 * i + 1] * METERS_PER_DEGREE * cosLat;
+            y[i] = track[2 * i] * METERS_PER_DEGREE;
+        }
+
+        significance[0] = Float.POSITIVE_INFINITY;
+        significance[n - 1] = Float.POSITIVE_INFINITY;
+
+        // iterative instead of recursive, long tracks would overflow the stack.  Each entry: first, last
+        int[] stack = new int[64];
+        float[] stackSignificance = new float[32];
+        int top = 0;
+        stack[0] = 0;
+        stack[1] = n - 1;
+        stackSignificance[0] = Float.POSITIVE_INFINITY;
+        top++;
+
+        while (top > 0) {
+            top--;
+            int first = stack[2 * top];
+            int last = stack[2 * top + 1];
+            float parentSignificance = stackSignificance[top];
+            if (last - first < 2) {
+                continue;
+            }
+
+            int maxIndex = first + 1;
+            double maxDistance = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = getSegmentDistanceSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    maxIndex = i;
+                }
+            }
+
+            // a point can not be more significant than the point that split its segment
+            float pointSignificance = (float) Math.min(Math.sqrt(maxDistance), parentSignificance);
+            significance[maxIndex] = pointSignificance;
+
+            if (2 * (top + 2) > stack.length) {
+                int[] newStack = new int[2 * stack.length];
+                System.arraycopy(stack, 0, newStack, 0, 2 * top);
+                stack = newStack;
+                float[] newStackSignificance = new float[2 * stackSignificance.length];
+                System.arraycopy(stackSignificance, 0, newStackSignificance, 0, top);
+                stackSignificance = newStackSignificance;
+            }
+            stack[2 * top] = first;
+            stack[2 * top + 1] = maxIndex;
+            stackSignificance[top] = pointSignificance;
+            top++;
+            stack[2 * top] = maxIndex;
+            stack[2 * top + 1] = last;
+            stackSignificance[top] = pointSignificance;
+            top++;
+        }
+
+        return significance;
+    }
+
+    /**
+     * @return the packed points of the track whose significance is larger than the tolerance
+     */
+    @NonNull
+    public static double[] simplify(@NonNull double[] track, @NonNull float[] significance, double tolerance_m) {
+        int count = 0;
+        for (float value : significance) {
+            if (value > tolerance_m) {
+                count++;
+            }
+        }
+
+        double[] result = new double[2 * count];
+        int j = 0;
+        for (int i = 0; i < significance.length; i++) {
+            if (significance[i] > tolerance_m) {
+                result[j++] = track[2 * i];
+                result[j++] = track[2 * i + 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * squared distance between the point (px, py) and the segment from (ax, ay) to (bx, by).
+     * In contrast to the distance to the line, this also works for closed loops where both ends are identical.
+     */
+    private static double getSegmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
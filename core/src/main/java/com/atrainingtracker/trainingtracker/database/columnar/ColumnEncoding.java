@@ -0,0 +1,144 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database.columnar;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The encodings of one column within a block of the columnar sample store.
+ * <p>
+ * Integer columns and the time are stored as zigzag varints of the difference to the previous value.
+ * Distances and positions are stored the same way after converting them to fixed point numbers.
+ * All other doubles are stored as they are.
+ */
+public enum ColumnEncoding {
+    LONG_DELTA(1, 0),
+    MILLI_DELTA(2, 3),      // e.g. distances: 1 mm resolution
+    DECI_MICRO_DELTA(3, 7), // latitude and longitude: 1e-7 degrees, approx. 1 cm
+    DOUBLE(4, 0),
+    STRING(5, 0);
+
+    // the names of the columns with a special encoding, i.e., the names of the SensorTypes and WorkoutSamplesDbHelper.TIME.
+    // ColumnEncodingTest checks them.
+    private static final String TIME = "time";
+    private static final String LATITUDE = "LATITUDE";
+    private static final String LONGITUDE = "LONGITUDE";
+    private static final String DISTANCE_m = "DISTANCE_m";
+    private static final String LINE_DISTANCE_m = "LINE_DISTANCE_m";
+
+    public final byte id;
+    private final double mScale;
+
+    ColumnEncoding(int id, int decimalDigits) {
+        this.id = (byte) id;
+        this.mScale = Math.pow(10, decimalDigits);
+    }
+
+    @NonNull
+    public static ColumnEncoding fromId(byte id) {
+        for (ColumnEncoding encoding : values()) {
+            if (encoding.id == id) {
+                return encoding;
+            }
+        }
+        throw new IllegalArgumentException("unknown column encoding: " + id);
+    }
+
+    /**
+     * the encoding for a column with double values.
+     * Note that the name might contain the source, e.g., LATITUDE_gps or 'DISTANCE_m (my footpod)'.
+     */
+    @NonNull
+    public static ColumnEncoding forDoubleColumn(@NonNull String columnName) {
+        String name = columnName.replace("'", "");
+        if (name.startsWith(LATITUDE)
+                || name.startsWith(LONGITUDE)) {
+            return DECI_MICRO_DELTA;
+        } else if (name.startsWith(DISTANCE_m)
+                || name.startsWith(LINE_DISTANCE_m)) {
+            return MILLI_DELTA;
+        }
+        return DOUBLE;
+    }
+
+    public static boolean isTimeColumn(@NonNull String columnName) {
+        return TIME.equals(columnName);
+    }
+
+    public boolean isScaled() {
+        return this == MILLI_DELTA || this == DECI_MICRO_DELTA;
+    }
+
+    public boolean canEncode(double value) {
+        return !isScaled() || (Double.isFinite(value) && Math.abs(value * mScale) < Long.MAX_VALUE);
+    }
+
+    public long toFixedPoint(double value) {
+        return Math.round(value * mScale);
+    }
+
+    public double fromFixedPoint(long value) {
+        return value / mScale;
+    }
+
+    // --- varint helpers ---
+
+    public static void writeVarLong(@NonNull ByteArrayOutputStream out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.write((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.write((int) zigzag);
+    }
+
+    public static long readVarLong(@NonNull ByteBuffer in) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    // --- string helpers ---
+
+    /**
+     * counterpart of DataOutputStream.writeUTF: the strings are stored in modified UTF-8, which differs from standard UTF-8
+     * for NUL and the characters outside of the BMP (e.g. emoji).
+     */
+    @NonNull
+    public static String readUTF(@NonNull ByteBuffer in) throws IOException {
+        int length = in.getShort() & 0xFFFF;
+        byte[] bytes = new byte[2 + length];
+        bytes[0] = (byte) (length >> 8);
+        bytes[1] = (byte) length;
+        in.get(bytes, 2, length);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+}
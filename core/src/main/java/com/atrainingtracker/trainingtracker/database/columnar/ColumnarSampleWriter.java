@@ -0,0 +1,322 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.database.columnar;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Appends rows of samples to a columnar sample file.
+ * <p>
+ * The rows are collected in memory and written as one block by {@link #writeBlock()}.
+ * A block only contains the columns that have at least one value within this block.
+ * <p>
+ * File layout:
+ * <pre>
+ * header: MAGIC (int), VERSION (byte)
+ * block:  payload length (int), row count (int), column count (short),
+ *         for each column: name (UTF), encoding (byte), data length (int),
+ *         followed by the data of all columns: presence bitmap + encoded values of the present rows
+ * </pre>
+ * Since the length of each column is stored in the block header, readers can skip the columns they are not interested in.
+ * A block that was not completely written (e.g. because the app was killed) is ignored by the reader.
+ */
+public class ColumnarSampleWriter {
+    public static final int MAGIC = 0x54544353;  // "TTCS"
+    public static final byte VERSION = 1;
+    protected static final int INITIAL_CAPACITY = 64;
+
+    private final FileOutputStream mFileOutputStream;
+    private final DataOutputStream mOutputStream;
+    private final Map<String, ColumnBuffer> mColumns = new LinkedHashMap<>();
+    private int mRowCount = 0;
+
+    public ColumnarSampleWriter(@NonNull File file) throws IOException {
+        boolean writeHeader = !file.exists() || file.length() == 0;
+        mFileOutputStream = new FileOutputStream(file, true);
+        mOutputStream = new DataOutputStream(mFileOutputStream);
+        if (writeHeader) {
+            mOutputStream.writeInt(MAGIC);
+            mOutputStream.writeByte(VERSION);
+            mOutputStream.flush();
+        }
+    }
+
+    public void putLong(@NonNull String column, long value) {
+        getColumnBuffer(column).putLong(mRowCount, value);
+    }
+
+    public void putDouble(@NonNull String column, double value) {
+        getColumnBuffer(column).putDouble(mRowCount, value);
+    }
+
+    public void putString(@NonNull String column, @NonNull String value) {
+        getColumnBuffer(column).putString(mRowCount, value);
+    }
+
+    /**
+     * finishes the current row, all columns without a value are null within this row.
+     */
+    public void endRow() {
+        mRowCount++;
+    }
+
+    public int getPendingRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * appends all finished rows as one block and syncs the file
+     */
+    public void writeBlock() throws IOException {
+        if (mRowCount == 0) {
+            return;
+        }
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        int columnCount = 0;
+        for (ColumnBuffer column : mColumns.values()) {
+            if (column.hasValues(mRowCount)) {
+                columnCount++;
+            }
+        }
+
+        header.writeInt(mRowCount);
+        header.writeShort(columnCount);
+        for (ColumnBuffer column : mColumns.values()) {
+            if (!column.hasValues(mRowCount)) {
+                continue;
+            }
+            byte[] columnData = column.encode(mRowCount);
+            header.writeUTF(column.name);
+            header.writeByte(column.getEncoding(mRowCount).id);
+            header.writeInt(columnData.length);
+            data.write(columnData);
+        }
+        header.flush();
+
+        mOutputStream.writeInt(headerBytes.size() + data.size());
+        headerBytes.writeTo(mOutputStream);
+        data.writeTo(mOutputStream);
+        mOutputStream.flush();
+        mFileOutputStream.getFD().sync();
+
+        // reset for the next block
+        for (ColumnBuffer column : mColumns.values()) {
+            column.clear();
+        }
+        mRowCount = 0;
+    }
+
+    public void close() throws IOException {
+        writeBlock();
+        mOutputStream.close();
+    }
+
+    @NonNull
+    private ColumnBuffer getColumnBuffer(@NonNull String column) {
+        ColumnBuffer columnBuffer = mColumns.get(column);
+        if (columnBuffer == null) {
+            columnBuffer = new ColumnBuffer(column);
+            mColumns.put(column, columnBuffer);
+        }
+        return columnBuffer;
+    }
+
+    /**
+     * the values of one column within the current block
+     */
+    private static class ColumnBuffer {
+        final String name;
+        // the type of the values, defined by the first value
+        ColumnEncoding type = null;
+        boolean[] present = new boolean[INITIAL_CAPACITY];
+        long[] longs;
+        double[] doubles;
+        String[] strings;
+
+        ColumnBuffer(@NonNull String name) {
+            this.name = name;
+        }
+
+        void putLong(int row, long value) {
+            if (type == null) {
+                type = ColumnEncoding.LONG_DELTA;
+            }
+            if (type == ColumnEncoding.STRING) {
+                putString(row, Long.toString(value));
+                return;
+            }
+            ensureCapacity(row);
+            if (type == ColumnEncoding.LONG_DELTA) {
+                longs[row] = value;
+            } else {
+                doubles[row] = value;
+            }
+            present[row] = true;
+        }
+
+        void putDouble(int row, double value) {
+            if (type == null) {
+                type = ColumnEncoding.DOUBLE;
+            } else if (type == ColumnEncoding.LONG_DELTA) {
+                promoteToDouble();
+            } else if (type == ColumnEncoding.STRING) {
+                putString(row, Double.toString(value));
+                return;
+            }
+            ensureCapacity(row);
+            doubles[row] = value;
+            present[row] = true;
+        }
+
+        void putString(int row, @NonNull String value) {
+            if (type == null) {
+                type = ColumnEncoding.STRING;
+            }
+            if (type != ColumnEncoding.STRING) {
+                // mixed types within a column do not happen in practice, so we simply ignore the string
+                return;
+            }
+            ensureCapacity(row);
+            strings[row] = value;
+            present[row] = true;
+        }
+
+        boolean hasValues(int rowCount) {
+            for (int row = 0; row < rowCount && row < present.length; row++) {
+                if (present[row]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @NonNull
+        ColumnEncoding getEncoding(int rowCount) {
+            if (type != ColumnEncoding.DOUBLE) {
+                return type;
+            }
+            ColumnEncoding encoding = ColumnEncoding.forDoubleColumn(name);
+            for (int row = 0; row < rowCount; row++) {
+                if (present[row] && !encoding.canEncode(doubles[row])) {
+                    return ColumnEncoding.DOUBLE;
+                }
+            }
+            return encoding;
+        }
+
+        @NonNull
+        byte[] encode(int rowCount) throws IOException {
+            ColumnEncoding encoding = getEncoding(rowCount);
+            ensureCapacity(rowCount - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            // first, the presence bitmap
+            byte[] bitmap = new byte[(rowCount + 7) / 8];
+            for (int row = 0; row < rowCount; row++) {
+                if (present[row]) {
+                    bitmap[row >> 3] |= (byte) (1 << (row & 7));
+                }
+            }
+            out.write(bitmap);
+
+            // then, the values of the present rows
+            DataOutputStream dataOut = new DataOutputStream(out);
+            long previous = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (!present[row]) {
+                    continue;
+                }
+                switch (encoding) {
+                    case LONG_DELTA:
+                        ColumnEncoding.writeVarLong(out, longs[row] - previous);
+                        previous = longs[row];
+                        break;
+                    case MILLI_DELTA:
+                    case DECI_MICRO_DELTA:
+                        long fixedPoint = encoding.toFixedPoint(doubles[row]);
+                        ColumnEncoding.writeVarLong(out, fixedPoint - previous);
+                        previous = fixedPoint;
+                        break;
+                    case DOUBLE:
+                        dataOut.writeDouble(doubles[row]);
+                        break;
+                    case STRING:
+                        dataOut.writeUTF(strings[row]);
+                        break;
+                }
+            }
+            dataOut.flush();
+
+            return out.toByteArray();
+        }
+
+        void clear() {
+            Arrays.fill(present, false);
+            if (strings != null) {
+                Arrays.fill(strings, null);
+            }
+        }
+
+        private void promoteToDouble() {
+            type = ColumnEncoding.DOUBLE;
+            doubles = new double[present.length];
+            if (longs != null) {
+                for (int row = 0; row < longs.length; row++) {
+                    doubles[row] = longs[row];
+                }
+            }
+            longs = null;
+        }
+
+        private void ensureCapacity(int row) {
+            int capacity = present.length;
+            while (row >= capacity) {
+                capacity *= 2;
+            }
+            if (capacity != present.length) {
+                present = Arrays.copyOf(present, capacity);
+            }
+
+            switch (type) {
+                case LONG_DELTA:
+                    longs = longs == null ? new long[capacity] : (longs.length < capacity ? Arrays.copyOf(longs, capacity) : longs);
+                    break;
+                case STRING:
+                    strings = strings == null ? new String[capacity] : (strings.length < capacity ? Arrays.copyOf(strings, capacity) : strings);
+                    break;
+                default:
+                    doubles = doubles == null ? new double[capacity] : (doubles.length < capacity ? Arrays.copyOf(doubles, capacity) : doubles);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import androidx.annotation.NonNull;
+
+import java.text.ParseException;
+
+/**
+ * Derives the elapsed time with sub-second resolution from the TIME_TOTAL column, which only counts full seconds.
+ * <p>
+ * With sub-second sampling, several consecutive rows have the same TIME_TOTAL.
+ * The fraction is the time since the first row of this second, taken from the time stamps of the rows.
+ * The rows have to be fed in their order.
+ */
+public final class ElapsedTime {
+    private int mTimeTotal_s = Integer.MIN_VALUE;
+    private long mSecondStartTime_ms;
+
+    /**
+     * @param timeTotal_s the value of the TIME_TOTAL column of the row
+     * @param dbTime      the time stamp of the row
+     * @return the elapsed time of the row in seconds, equal to TIME_TOTAL for the first row of each second
+     */
+    public double getElapsedTime_s(int timeTotal_s, @NonNull String dbTime) throws ParseException {
+        long time_ms = SampleTimeFormat.dbTime2EpochMillis(dbTime);
+        if (timeTotal_s != mTimeTotal_s) {
+            mTimeTotal_s = timeTotal_s;
+            mSecondStartTime_ms = time_ms;
+            return timeTotal_s;
+        }
+
+        // keep the rows of this second within this second
+        double fraction_s = Math.min((time_ms - mSecondStartTime_ms) / 1000.0, 0.999);
+        return timeTotal_s + Math.max(0, fraction_s);
+    }
+}
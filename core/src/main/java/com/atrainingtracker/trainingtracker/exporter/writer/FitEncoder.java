@@ -0,0 +1,151 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The binary encoding of FIT files: definition and data messages, the file header, and the CRC.
+ * <p>
+ * A message is built in an internal buffer (startDefinition() or startData() followed by the fields) and then written
+ * with writeMessage(), which also counts the size of the data for the header.  All values are little endian.
+ * Not thread safe, each file needs its own encoder.
+ */
+public final class FitEncoder {
+    public static final double SEMICIRCLES_PER_DEGREE = (1L << 31) / 180.0;
+
+    public static final int HEADER_SIZE = 14;
+    private static final int PROTOCOL_VERSION = 0x20;  // 2.0
+    private static final int PROFILE_VERSION = 2132;   // 21.32
+
+    // the base types
+    public static final int ENUM = 0x00;
+    public static final int SINT32 = 0x85;
+    public static final int UINT8 = 0x02;
+    public static final int UINT16 = 0x84;
+    public static final int UINT32 = 0x86;
+    public static final int UINT32Z = 0x8C;
+
+    private static final int[] CRC_TABLE = {
+            0x0000, 0xCC01, 0xD801, 0x1400, 0xF001, 0x3C00, 0x2800, 0xE401,
+            0xA001, 0x6C00, 0x7800, 0xB401, 0x5000, 0x9C01, 0x8801, 0x4400};
+
+    private final byte[] mMessage = new byte[256];
+    private int mMessageSize;
+    private long mDataSize;
+
+    /**
+     * @return the number of bytes written by writeMessage() so far
+     */
+    public long getDataSize() {
+        return mDataSize;
+    }
+
+    public void startDefinition(int localType, int globalMessageNumber, int numFields) {
+        mMessageSize = 0;
+        putUInt8(0x40 | localType);
+        putUInt8(0);  // reserved
+        putUInt8(0);  // little endian
+        putUInt16(globalMessageNumber);
+        putUInt8(numFields);
+    }
+
+    public void addField(int fieldNumber, int size, int baseType) {
+        putUInt8(fieldNumber);
+        putUInt8(size);
+        putUInt8(baseType);
+    }
+
+    public void startData(int localType) {
+        mMessageSize = 0;
+        putUInt8(localType);
+    }
+
+    public void putUInt8(long value) {
+        mMessage[mMessageSize++] = (byte) value;
+    }
+
+    public void putUInt16(long value) {
+        mMessage[mMessageSize++] = (byte) value;
+        mMessage[mMessageSize++] = (byte) (value >> 8);
+    }
+
+    public void putUInt32(long value) {
+        mMessage[mMessageSize++] = (byte) value;
+        mMessage[mMessageSize++] = (byte) (value >> 8);
+        mMessage[mMessageSize++] = (byte) (value >> 16);
+        mMessage[mMessageSize++] = (byte) (value >> 24);
+    }
+
+    public void writeMessage(@NonNull OutputStream outputStream) throws IOException {
+        outputStream.write(mMessage, 0, mMessageSize);
+        mDataSize += mMessageSize;
+    }
+
+    /**
+     * @return the header for the given size of the data, including its own CRC
+     */
+    @NonNull
+    public static byte[] createHeader(long dataSize) {
+        byte[] header = new byte[HEADER_SIZE];
+        header[0] = HEADER_SIZE;
+        header[1] = PROTOCOL_VERSION;
+        header[2] = (byte) PROFILE_VERSION;
+        header[3] = (byte) (PROFILE_VERSION >> 8);
+        for (int i = 0; i < 4; i++) {
+            header[4 + i] = (byte) (dataSize >> (8 * i));
+        }
+        header[8] = '.';
+        header[9] = 'F';
+        header[10] = 'I';
+        header[11] = 'T';
+        int headerCrc = updateCrc(0, header, 0, 12);
+        header[12] = (byte) headerCrc;
+        header[13] = (byte) (headerCrc >> 8);
+        return header;
+    }
+
+    /**
+     * the CRC of the FIT protocol (CRC-16 with the polynomial 0xA001), four bits at a time
+     */
+    public static int updateCrc(int crc, @NonNull byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            int b = bytes[i];
+            int tmp = CRC_TABLE[crc & 0xF];
+            crc = (crc >> 4) & 0x0FFF;
+            crc = crc ^ tmp ^ CRC_TABLE[b & 0xF];
+
+            tmp = CRC_TABLE[crc & 0xF];
+            crc = (crc >> 4) & 0x0FFF;
+            crc = crc ^ tmp ^ CRC_TABLE[(b >> 4) & 0xF];
+        }
+        return crc;
+    }
+
+    /**
+     * @return (value + offset) * scale, limited to 0..max
+     */
+    public static long scale(double value, int scale, int offset, long max) {
+        return Math.max(0, Math.min(max, Math.round((value + offset) * scale)));
+    }
+}
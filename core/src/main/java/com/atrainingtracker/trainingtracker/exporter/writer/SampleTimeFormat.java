@@ -0,0 +1,144 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import androidx.annotation.NonNull;
+
+import java.text.ParseException;
+
+/**
+ * Converts the time stamps of the database ("2012-03-29 16:23:05", UTC) into the formats of the file writers.
+ * Workouts recorded with sub-second sampling have an additional fraction ("2012-03-29 16:23:05.250").
+ * Only the XML time keeps it, all other formats are truncated to full seconds.
+ * <p>
+ * The database format has fixed positions, so the conversions simply copy and replace characters instead of parsing and
+ * formatting the date with a SimpleDateFormat.  There is no shared state, so all methods are thread safe.
+ */
+public final class SampleTimeFormat {
+    // seconds between the unix epoch and the FIT epoch (1989-12-31 00:00:00 UTC)
+    public static final long FIT_EPOCH_OFFSET_s = 631065600L;
+
+    private static final int DB_TIME_LENGTH = 19;
+    private static final int DB_TIME_MILLIS_LENGTH = 23;
+    private static final String[] DAYS_OF_WEEK = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private SampleTimeFormat() {
+    }
+
+    /**
+     * converts from "2012-03-29 16:23:05" to "2012-03-29T16:23:05Z" and from "2012-03-29 16:23:05.250" to "2012-03-29T16:23:05.250Z"
+     */
+    @NonNull
+    public static String dbTime2XMLTime(@NonNull String dbTime) throws ParseException {
+        check(dbTime);
+        int length = hasMillis(dbTime) ? DB_TIME_MILLIS_LENGTH : DB_TIME_LENGTH;
+        char[] chars = new char[length + 1];
+        dbTime.getChars(0, length, chars, 0);
+        chars[10] = 'T';
+        chars[length] = 'Z';
+        return new String(chars);
+    }
+
+    /**
+     * converts from "2012-03-29 16:23:05" to "2012/03/29 16:23:05"
+     */
+    @NonNull
+    public static String dbTime2GCTime(@NonNull String dbTime) throws ParseException {
+        check(dbTime);
+        char[] chars = new char[DB_TIME_LENGTH];
+        dbTime.getChars(0, DB_TIME_LENGTH, chars, 0);
+        chars[4] = '/';
+        chars[7] = '/';
+        return new String(chars);
+    }
+
+    /**
+     * converts from "2012-03-29 16:23:05" to "Thu, 29 Mar 2012 16:23:05"
+     */
+    @NonNull
+    public static String dbTime2RKTime(@NonNull String dbTime) throws ParseException {
+        check(dbTime);
+        long epochDay = epochDay(parse(dbTime, 0, 4), parse(dbTime, 5, 7), parse(dbTime, 8, 10));
+        // 1970-01-01 was a Thursday
+        String dayOfWeek = DAYS_OF_WEEK[(int) Math.floorMod(epochDay + 3, 7L)];
+        return dayOfWeek + ", " + dbTime.substring(8, 10) + " " + MONTHS[parse(dbTime, 5, 7) - 1] + " " + dbTime.substring(0, 4) + " " + dbTime.substring(11, DB_TIME_LENGTH);
+    }
+
+    /**
+     * @return the seconds since 1970-01-01 00:00:00 UTC
+     */
+    public static long dbTime2EpochSeconds(@NonNull String dbTime) throws ParseException {
+        check(dbTime);
+        return epochDay(parse(dbTime, 0, 4), parse(dbTime, 5, 7), parse(dbTime, 8, 10)) * 86400
+                + parse(dbTime, 11, 13) * 3600L + parse(dbTime, 14, 16) * 60L + parse(dbTime, 17, 19);
+    }
+
+    /**
+     * @return the milliseconds since 1970-01-01 00:00:00 UTC including the fraction of the sub-second samples
+     */
+    public static long dbTime2EpochMillis(@NonNull String dbTime) throws ParseException {
+        return dbTime2EpochSeconds(dbTime) * 1000 + (hasMillis(dbTime) ? parse(dbTime, 20, DB_TIME_MILLIS_LENGTH) : 0);
+    }
+
+    /**
+     * @return the seconds since the FIT epoch
+     */
+    public static long dbTime2FitTime(@NonNull String dbTime) throws ParseException {
+        return dbTime2EpochSeconds(dbTime) - FIT_EPOCH_OFFSET_s;
+    }
+
+    private static void check(@NonNull String dbTime) throws ParseException {
+        if (dbTime.length() < DB_TIME_LENGTH
+                || dbTime.charAt(4) != '-' || dbTime.charAt(7) != '-' || dbTime.charAt(10) != ' '
+                || dbTime.charAt(13) != ':' || dbTime.charAt(16) != ':') {
+            throw new ParseException("Unparseable date: \"" + dbTime + "\"", 0);
+        }
+    }
+
+    private static boolean hasMillis(@NonNull String dbTime) {
+        return dbTime.length() >= DB_TIME_MILLIS_LENGTH && dbTime.charAt(DB_TIME_LENGTH) == '.';
+    }
+
+    private static int parse(@NonNull String string, int start, int end) throws ParseException {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = string.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ParseException("Unparseable date: \"" + string + "\"", i);
+            }
+            result = 10 * result + digit;
+        }
+        return result;
+    }
+
+    /**
+     * the days since 1970-01-01 of the given date, same as LocalDate.toEpochDay() but without creating an object
+     */
+    private static long epochDay(int year, int month, int day) {
+        // shift the year to start in march, so the leap day is the last day of the year
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
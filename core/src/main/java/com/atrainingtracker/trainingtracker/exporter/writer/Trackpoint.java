@@ -0,0 +1,70 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * The values of one sample as the XML writers need them, see {@link TrackpointFormat}.
+ * A value that is NaN is not written, e.g. because the sensor was not available or the value is invalid.
+ * The writers reuse one instance for all samples.
+ */
+public final class Trackpoint {
+    @Nullable
+    public String time;
+    public double latitude, longitude;
+    public double altitude_m;
+    public double distance_m;
+    public double hr;
+    public double bikeCadence, runCadence;
+    public double speed_mps;
+    public double power;
+
+    public Trackpoint() {
+        clear();
+    }
+
+    /**
+     * sets all values to NaN, i.e., nothing is written
+     */
+    public void clear() {
+        time = null;
+        latitude = longitude = Double.NaN;
+        altitude_m = Double.NaN;
+        distance_m = Double.NaN;
+        hr = Double.NaN;
+        bikeCadence = runCadence = Double.NaN;
+        speed_mps = Double.NaN;
+        power = Double.NaN;
+    }
+
+    public boolean hasPosition() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    @NonNull
+    String getTime() {
+        if (time == null) {
+            throw new IllegalStateException("the time of the trackpoint is not set");
+        }
+        return time;
+    }
+}
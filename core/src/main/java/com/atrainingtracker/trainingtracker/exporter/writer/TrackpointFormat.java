@@ -0,0 +1,104 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Formats a single {@link Trackpoint} of the XML file formats.  The header, the laps, and the tail are written by the file writers.
+ * <p>
+ * The elements are written piece by piece instead of concatenating them, since this is done for every sample of the workout.
+ */
+public enum TrackpointFormat {
+    TCX {
+        @Override
+        public void write(@NonNull Writer writer, @NonNull Trackpoint trackpoint) throws IOException {
+            writer.write("          <Trackpoint>\n");
+            writeElement(writer, "            <Time>", trackpoint.getTime(), "</Time>\n");
+
+            if (trackpoint.hasPosition()) {
+                writer.write("            <Position>\n");
+                writeElement(writer, "              <LatitudeDegrees>", trackpoint.latitude, "</LatitudeDegrees>\n");
+                writeElement(writer, "              <LongitudeDegrees>", trackpoint.longitude, "</LongitudeDegrees>\n");
+                writer.write("            </Position>\n");
+            }
+            writeElement(writer, "            <AltitudeMeters>", trackpoint.altitude_m, "</AltitudeMeters>\n");
+            writeElement(writer, "            <DistanceMeters>", trackpoint.distance_m, "</DistanceMeters>\n");
+            if (!Double.isNaN(trackpoint.hr)) {
+                writer.write("            <HeartRateBpm xsi:type=\"HeartRateInBeatsPerMinute_t\">\n");
+                writeElement(writer, "              <Value>", Integer.toString((int) trackpoint.hr), "</Value>\n");
+                writer.write("            </HeartRateBpm>\n");
+            }
+            writeElement(writer, "            <Cadence>", trackpoint.bikeCadence, "</Cadence>\n");
+
+            if (!Double.isNaN(trackpoint.speed_mps) || !Double.isNaN(trackpoint.power) || !Double.isNaN(trackpoint.runCadence)) {
+                writer.write("            <Extensions>\n");
+                writer.write("              <TPX xmlns=\"http://www.garmin.com/xmlschemas/ActivityExtension/v2\">\n");
+                writeElement(writer, "            <Speed>", trackpoint.speed_mps, "</Speed>\n");
+                writeElement(writer, "            <Watts>", trackpoint.power, "</Watts>\n");
+                writeElement(writer, "            <RunCadence>", trackpoint.runCadence, "</RunCadence>\n");
+                writer.write("              </TPX>\n");
+                writer.write("            </Extensions>\n");
+            }
+            writer.write("          </Trackpoint>\n");
+        }
+    },
+
+    /**
+     * only the points with a position, GPX has no other points
+     */
+    GPX {
+        @Override
+        public void write(@NonNull Writer writer, @NonNull Trackpoint trackpoint) throws IOException {
+            if (!trackpoint.hasPosition()) {
+                return;
+            }
+
+            writer.write("   <trkpt lat=\"");
+            writer.write(Double.toString(trackpoint.latitude));
+            writer.write("\" lon=\"");
+            writer.write(Double.toString(trackpoint.longitude));
+            writer.write("\">\n");
+            writeElement(writer, "    <ele>", trackpoint.altitude_m, "</ele>\n");
+            writeElement(writer, "    <time>", trackpoint.getTime(), "</time>\n");
+            writer.write("   </trkpt>\n");
+        }
+    };
+
+    /**
+     * writes the trackpoint with all values that are not NaN
+     */
+    public abstract void write(@NonNull Writer writer, @NonNull Trackpoint trackpoint) throws IOException;
+
+    private static void writeElement(@NonNull Writer writer, @NonNull String start, double value, @NonNull String end) throws IOException {
+        if (!Double.isNaN(value)) {
+            writeElement(writer, start, Double.toString(value), end);
+        }
+    }
+
+    private static void writeElement(@NonNull Writer writer, @NonNull String start, @NonNull String value, @NonNull String end) throws IOException {
+        writer.write(start);
+        writer.write(value);
+        writer.write(end);
+    }
+}
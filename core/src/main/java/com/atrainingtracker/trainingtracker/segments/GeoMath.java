@@ -0,0 +1,81 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.trainingtracker.segments;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The geometry used for the segments and the tracks, without depending on the map classes.
+ */
+public final class GeoMath {
+    public static final double EARTH_RADIUS_m = 6371000;
+
+    private GeoMath() {
+    }
+
+    public static double latitudeDegreeInMeters(double latitude) {
+        // from http://gis.stackexchange.com/questions/75528/length-of-a-degree-where-do-the-terms-in-this-formula-come-from
+        // Set up "Constants"
+        double m1 = 111132.92;     // latitude calculation term 1
+        double m2 = -559.82;       // latitude calculation term 2
+        double m3 = 1.175;         // latitude calculation term 3
+        double m4 = -0.0023;       // latitude calculation term 4
+
+        return m1 + (m2 * Math.cos(Math.toRadians(2 * latitude))) + (m3 * Math.cos(Math.toRadians(4 * latitude))) +
+                (m4 * Math.cos(Math.toRadians(6 * latitude)));
+    }
+
+    public static double longitudeDegreeInMeters(double latitude) {
+        // from http://gis.stackexchange.com/questions/75528/length-of-a-degree-where-do-the-terms-in-this-formula-come-from
+        // Set up "Constants"
+        double p1 = 111412.84;     // longitude calculation term 1
+        double p2 = -93.5;         // longitude calculation term 2
+        double p3 = 0.118;         // longitude calculation term 3
+
+        return (p1 * Math.cos(Math.toRadians(latitude))) + (p2 * Math.cos(Math.toRadians(3 * latitude))) +
+                (p3 * Math.cos(Math.toRadians(5 * latitude)));
+    }
+
+    /**
+     * Calculates the end-point from a given source at a given range (meters) and bearing (degrees).
+     *
+     * @return the latitude and longitude of the end-point
+     */
+    @NonNull
+    public static double[] derivedPosition(double latitude, double longitude, double range, double bearing) {
+        double latA = Math.toRadians(latitude);
+        double lonA = Math.toRadians(longitude);
+        double angularDistance = range / EARTH_RADIUS_m;
+        double trueCourse = Math.toRadians(bearing);
+
+        double lat = Math.asin(
+                Math.sin(latA) * Math.cos(angularDistance) +
+                        Math.cos(latA) * Math.sin(angularDistance)
+                                * Math.cos(trueCourse));
+
+        double dlon = Math.atan2(
+                Math.sin(trueCourse) * Math.sin(angularDistance)
+                        * Math.cos(latA),
+                Math.cos(angularDistance) - Math.sin(latA) * Math.sin(lat));
+
+        double lon = ((lonA + dlon + Math.PI) % (Math.PI * 2)) - Math.PI;
+
+        return new double[]{Math.toDegrees(lat), Math.toDegrees(lon)};
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.banalservice.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Compares the ring buffers with the former list based filters, see {@link ListMovingAverages}.
+ */
+public class FilterEquivalenceTest {
+    // the running sums add up the values in a different order than the lists, so the results may differ by rounding
+    private static final double EPSILON = 1e-9;
+    // the display reads the value some time after the sensor delivered it
+    private static final long READ_DELAY_ms = 100;
+    // several times the interval of the re-summation
+    private static final int SAMPLES = 5 * TimedMovingAverage.RESUM_INTERVAL;
+
+    /**
+     * The values arrive with an irregular timing (like the sensors deliver them), with dropouts and pauses, and are read in
+     * between (like the display does).
+     */
+    @Test
+    public void timedMovingAverage() {
+        for (int filterConstant : new int[]{1, 3, 30, 600}) {
+            Random random = new Random(filterConstant);
+            TimedMovingAverage timed = new TimedMovingAverage(filterConstant);
+            ListMovingAverages.Timed timedList = new ListMovingAverages.Timed(filterConstant);
+
+            long time_ms = 0;
+            for (int i = 0; i < SAMPLES; i++) {
+                time_ms += nextInterval_ms(random, i);
+
+                // a dropout means that the sensor did not deliver a value
+                if (random.nextInt(20) != 0) {
+                    double value = 250 + 100 * random.nextGaussian();
+                    timed.add(time_ms, value);
+                    timedList.newValue(time_ms, value);
+                }
+
+                // like the TimedMovingAverageFilter: null when empty, otherwise trim and average
+                long readTime_ms = time_ms + READ_DELAY_ms;
+                Double timedValue = null;
+                if (!timed.isEmpty()) {
+                    timed.trim(readTime_ms);
+                    timedValue = timed.getAverage();
+                }
+                assertSameAverage("TimedMovingAverage(" + filterConstant + ") at sample " + i, timedList.getFilteredValue(readTime_ms), timedValue);
+            }
+        }
+    }
+
+    @Test
+    public void numberedMovingAverage() {
+        for (int filterConstant : new int[]{1, 3, 30, 600}) {
+            Random random = new Random(filterConstant);
+            NumberedMovingAverage numbered = new NumberedMovingAverage(filterConstant);
+            ListMovingAverages.Numbered numberedList = new ListMovingAverages.Numbered(filterConstant);
+
+            assertNull(numberedList.getFilteredValue());
+            assertTrue(numbered.isEmpty());
+
+            for (int i = 0; i < SAMPLES; i++) {
+                double value = 250 + 100 * random.nextGaussian();
+                numbered.add(value);
+                numberedList.newValue(value);
+                assertSameAverage("NumberedMovingAverage(" + filterConstant + ") at sample " + i, numberedList.getFilteredValue(), numbered.getAverage());
+            }
+        }
+    }
+
+    @Test
+    public void windowExpires() {
+        TimedMovingAverage timed = new TimedMovingAverage(3);
+        timed.add(0, 100);
+        timed.add(1000, 200);
+        timed.add(2000, 300);
+
+        assertEquals(0, timed.trim(3000));
+        assertEquals(200, timed.getAverage(), 0);
+        // the value of 0 ms is older than 3 s
+        assertEquals(1, timed.trim(3001));
+        assertEquals(250, timed.getAverage(), 0);
+
+        // a pause: everything expires and the next value starts from scratch
+        assertEquals(2, timed.trim(60000));
+        assertTrue(timed.isEmpty());
+        assertTrue(Double.isNaN(timed.getAverage()));
+        timed.add(60000, 42);
+        assertEquals(42, timed.getAverage(), 0);
+    }
+
+    @Test
+    public void bufferGrows() {
+        // far more values per second than the initial capacity
+        TimedMovingAverage timed = new TimedMovingAverage(2);
+        ListMovingAverages.Timed timedList = new ListMovingAverages.Timed(2);
+        for (int i = 0; i < 10000; i++) {
+            long time_ms = i * 5L;
+            timed.add(time_ms, i);
+            timedList.newValue(time_ms, i);
+            timed.trim(time_ms);
+            assertSameAverage("at sample " + i, timedList.getFilteredValue(time_ms), timed.getAverage());
+        }
+    }
+
+    /**
+     * Adding a huge value to the running sum loses the small ones, so the sum is wrong even after the huge value is removed.
+     * The re-summation repairs it.
+     */
+    @Test
+    public void timedResumRepairsRoundingErrors() {
+        TimedMovingAverage timed = new TimedMovingAverage(1);
+        timed.add(0, 1e17);
+        int i = 1;
+        for (; i < TimedMovingAverage.RESUM_INTERVAL - 1; i++) {
+            timed.add(i * 1000L, 1);
+        }
+        timed.trim(i * 1000L);
+        assertTrue(timed.getAverage() != 1);
+
+        timed.add(i * 1000L, 1);
+        assertEquals(1, timed.getAverage(), 0);
+    }
+
+    @Test
+    public void numberedResumRepairsRoundingErrors() {
+        NumberedMovingAverage numbered = new NumberedMovingAverage(4);
+        numbered.add(1e17);
+        int i = 1;
+        for (; i < NumberedMovingAverage.RESUM_INTERVAL - 1; i++) {
+            numbered.add(1);
+        }
+        assertTrue(numbered.getAverage() != 1);
+
+        numbered.add(1);
+        assertEquals(1, numbered.getAverage(), 0);
+    }
+
+    /**
+     * mostly 1 s with up to 0.7 s jitter, sometimes a burst of 4 Hz, sometimes a pause that empties the window
+     */
+    private static long nextInterval_ms(Random random, int sample) {
+        if (sample % 1000 == 999) {
+            return 15 * 60 * 1000;
+        } else if (sample % 100 < 20) {
+            return 250;
+        }
+        return 650 + random.nextInt(700);
+    }
+
+    private static void assertSameAverage(String message, Number expected, Double value) {
+        if (value == null || expected == null) {
+            assertEquals(message, expected, value);
+            return;
+        }
+
+        double expectedValue = expected.doubleValue();
+        if (Double.isNaN(value) && Double.isNaN(expectedValue)) {
+            return;
+        }
+        assertEquals(message, expectedValue, value, EPSILON * Math.max(1, Math.abs(expectedValue)));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+package com.atrainingtracker.banalservice.filters;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * The moving averages as the filters calculated them before they used primitive ring buffers.
+ * They are only kept as a reference for the results (see FilterEquivalenceTest) and the throughput (see FilterBenchmark)
+ * of the current implementations.
+ */
+public final class ListMovingAverages {
+
+    private ListMovingAverages() {
+    }
+
+    /**
+     * the former TimedMovingAverageFilter: a linked list of timestamped values, summed up on every read
+     */
+    public static final class Timed {
+        private final long mSeconds;
+        private final LinkedList<TimestampedValue> mTimestampedValues = new LinkedList<>();
+
+        public Timed(long seconds) {
+            mSeconds = seconds;
+        }
+
+        public void newValue(long currentTimeMillis, Number value) {
+            mTimestampedValues.add(new TimestampedValue(currentTimeMillis, value));
+            trimValues(currentTimeMillis);
+        }
+
+        /**
+         * @return the average or null when there was no value since the last trim
+         */
+        public Number getFilteredValue(long currentTimeMillis) {
+            if (mTimestampedValues.size() == 0) {
+                return null;
+            }
+
+            trimValues(currentTimeMillis);
+
+            double sum = 0;
+            for (TimestampedValue timestampedValue : mTimestampedValues) {
+                sum += timestampedValue.value == null ? 0 : timestampedValue.value.doubleValue();
+            }
+            return sum / mTimestampedValues.size();
+        }
+
+        private void trimValues(long currentTimeMillis) {
+            long threshold = currentTimeMillis - 1000 * mSeconds;
+            while (mTimestampedValues.peek() != null
+                    && mTimestampedValues.peek().timestamp < threshold) {
+                mTimestampedValues.poll();
+            }
+        }
+
+        private record TimestampedValue(long timestamp, Number value) {
+        }
+    }
+
+    /**
+     * the former NumberedMovingAverageFilter.  It used add(index, value), which inserted instead of replacing,
+     * so this reference uses set(index, value) as it was intended.
+     */
+    public static final class Numbered {
+        private final int mSize;
+        private int mIndex;
+        private final List<Number> mValues = new ArrayList<>();
+
+        public Numbered(int size) {
+            mSize = size;
+        }
+
+        public void newValue(Number value) {
+            if (mValues.size() < mSize) {
+                mValues.add(value);
+            } else {
+                mValues.set(mIndex, value);
+            }
+            mIndex = (mIndex + 1) % mSize;
+        }
+
+        /**
+         * @return the average or null when there was no value
+         */
+        public Number getFilteredValue() {
+            if (mValues.size() == 0) {
+                return null;
+            }
+
+            double sum = 0;
+            for (Number value : mValues) {
+                sum += value.doubleValue();
+            }
+            return sum / mValues.size();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class MeanMaxCurveTest {
+
+    @Test
+    public void durations() {
+        int[] durations = MeanMaxCurve.getDurations();
+        assertEquals(1, durations[0]);
+        assertEquals(MeanMaxCurve.MAX_DURATION_s, durations[durations.length - 1]);
+        for (int i = 1; i < durations.length; i++) {
+            assertTrue(durations[i] > durations[i - 1]);
+        }
+        // the grid is meant to be small
+        assertTrue(durations.length < 256);
+    }
+
+    @Test
+    public void sameAsBruteForce() {
+        Random random = new Random(42);
+        double[] values = new double[3600];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 200 + 100 * Math.sin(i / 60.0) + 50 * random.nextGaussian();
+        }
+
+        float[] curve = MeanMaxCurve.calculate(values);
+        int[] durations = MeanMaxCurve.getDurations();
+        for (int d = 0; d < curve.length; d++) {
+            int duration = durations[d];
+            double best = Double.NEGATIVE_INFINITY;
+            for (int start = 0; start + duration <= values.length; start++) {
+                double sum = 0;
+                for (int i = start; i < start + duration; i++) {
+                    sum += values[i];
+                }
+                best = Math.max(best, sum / duration);
+            }
+            assertEquals("duration " + duration, best, curve[d], 1e-3);
+        }
+    }
+
+    @Test
+    public void curveEndsAtLastGridDuration() {
+        int[] durations = MeanMaxCurve.getDurations();
+        int index = 0;
+        while (durations[index + 1] == durations[index] + 1) {
+            index++;
+        }
+        // a workout that is one second longer than a grid duration: the full length is not on the grid and left out
+        double[] values = new double[durations[index] + 1];
+        float[] curve = MeanMaxCurve.calculate(values);
+        assertEquals(index + 1, curve.length);
+        assertEquals(Float.NaN, MeanMaxCurve.getValue(curve, values.length), 0);
+
+        assertEquals(0, MeanMaxCurve.calculate(new double[0]).length);
+    }
+
+    @Test
+    public void getValue() {
+        float[] curve = MeanMaxCurve.calculate(new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23});
+        int[] durations = MeanMaxCurve.getDurations();
+        assertEquals(23, curve[0], 1e-6);
+        assertEquals(22.5, MeanMaxCurve.getValue(curve, 2), 1e-6);
+        // between two grid durations: the value of the next longer one
+        assertEquals(curve[21], MeanMaxCurve.getValue(curve, durations[20] + 1), 0);
+        assertEquals(Float.NaN, MeanMaxCurve.getValue(curve, 3600), 0);
+    }
+
+    @Test
+    public void max() {
+        float[] curve1 = {5, 4, 3};
+        float[] curve2 = {6, 2};
+        assertArrayEquals(new float[]{6, 4, 3}, MeanMaxCurve.max(curve1, curve2), 0);
+        assertArrayEquals(new float[]{6, 4, 3}, MeanMaxCurve.max(curve2, curve1), 0);
+    }
+
+    @Test
+    public void resampleAveragesSubSecondSamples() {
+        long[] times_ms = {0, 250, 500, 750, 1000, 1500};
+        double[] values = {100, 200, 300, 400, 10, 20};
+        assertArrayEquals(new double[]{250, 15}, MeanMaxCurve.resample(times_ms, values, times_ms.length, 3000), 1e-9);
+    }
+
+    @Test
+    public void resampleHoldsValues() {
+        long[] times_ms = {0, 10000};
+        double[] values = {100, 50};
+        double[] resampled = MeanMaxCurve.resample(times_ms, values, times_ms.length, 3000);
+        assertEquals(11, resampled.length);
+        // held for at most 3 s, then a gap
+        assertArrayEquals(new double[]{100, 100, 100, 100, 0, 0, 0, 0, 0, 0, 50}, resampled, 1e-9);
+    }
+
+    @Test
+    public void resampleSkipsNaN() {
+        long[] times_ms = {0, 500, 1000, 3000};
+        double[] values = {100, Double.NaN, Double.NaN, 80};
+        assertArrayEquals(new double[]{100, 0, 0, 80}, MeanMaxCurve.resample(times_ms, values, times_ms.length, 3000), 1e-9);
+        assertEquals(0, MeanMaxCurve.resample(times_ms, values, 0, 3000).length);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.database;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TrackSimplifierTest {
+    // approx. 1 m in degrees latitude
+    private static final double METER = 1 / 111320.0;
+
+    @Test
+    public void endpointsAreAlwaysKept() {
+        double[] track = {47.0, 8.0, 47.0 + 10 * METER, 8.0, 47.0 + 20 * METER, 8.0};
+        float[] significance = TrackSimplifier.getSignificance(track);
+        assertEquals(Float.POSITIVE_INFINITY, significance[0], 0);
+        assertEquals(Float.POSITIVE_INFINITY, significance[2], 0);
+        // on the straight line
+        assertEquals(0, significance[1], 1e-3);
+
+        assertArrayEquals(new double[]{47.0, 8.0, 47.0 + 20 * METER, 8.0}, TrackSimplifier.simplify(track, significance, 1), 0);
+    }
+
+    @Test
+    public void significanceIsTheDistance() {
+        // a detour of 5 m to the north in the middle of a track along the equator
+        double[] track = {0, 0, 5 * METER, 50 * METER, 0, 100 * METER};
+        float[] significance = TrackSimplifier.getSignificance(track);
+        assertEquals(5, significance[1], 0.01);
+
+        assertEquals(6, TrackSimplifier.simplify(track, significance, 4).length);
+        assertEquals(4, TrackSimplifier.simplify(track, significance, 6).length);
+    }
+
+    @Test
+    public void coarserLevelsAreSubsets() {
+        int n = 2000;
+        double[] track = new double[2 * n];
+        for (int i = 0; i < n; i++) {
+            track[2 * i] = 47.0 + 0.001 * Math.sin(i / 50.0) + 0.0001 * Math.sin(i / 3.0);
+            track[2 * i + 1] = 8.0 + 0.00005 * i;
+        }
+        float[] significance = TrackSimplifier.getSignificance(track);
+
+        double[] tolerances_m = {0, 1, 5, 20, 100};
+        int previousCount = Integer.MAX_VALUE;
+        for (double tolerance_m : tolerances_m) {
+            double[] simplified = TrackSimplifier.simplify(track, significance, tolerance_m);
+            assertTrue(simplified.length <= previousCount);
+            previousCount = simplified.length;
+            assertEquals(track[0], simplified[0], 0);
+            assertEquals(track[2 * n - 1], simplified[simplified.length - 1], 0);
+        }
+        // a point can not be more significant than the point that split its segment, so the significance only drops
+        // along the recursion, but every point got one
+        for (float value : significance) {
+            assertTrue(value >= 0);
+        }
+    }
+
+    @Test
+    public void closedLoop() {
+        // start and end are identical, the distance to the segment is the distance to this point
+        double[] track = {0, 0, 0, 10 * METER, 10 * METER, 10 * METER, 0, 0};
+        float[] significance = TrackSimplifier.getSignificance(track);
+        assertEquals(Math.sqrt(200), significance[2], 0.05);
+        assertEquals(Math.sqrt(50), significance[1], 0.05);
+        assertEquals(8, TrackSimplifier.simplify(track, significance, 1).length);
+        assertEquals(6, TrackSimplifier.simplify(track, significance, 10).length);
+    }
+
+    @Test
+    public void emptyTrack() {
+        assertEquals(0, TrackSimplifier.getSignificance(new double[0]).length);
+        assertEquals(0, TrackSimplifier.simplify(new double[0], new float[0], 0).length);
+    }
+}
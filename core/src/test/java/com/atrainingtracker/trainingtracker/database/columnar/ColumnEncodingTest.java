@@ -0,0 +1,152 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.database.columnar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class ColumnEncodingTest {
+
+    // ColumnEncoding can not see the SensorTypes and WorkoutSamplesDbHelper of the app, so it copies their names.
+    // These are the names as they are used for the columns of the samples.
+    private static final String TIME = "time";                        // WorkoutSamplesDbHelper.TIME
+    private static final String LATITUDE = "LATITUDE";                // SensorType.LATITUDE.name()
+    private static final String LONGITUDE = "LONGITUDE";              // SensorType.LONGITUDE.name()
+    private static final String DISTANCE_m = "DISTANCE_m";            // SensorType.DISTANCE_m.name()
+    private static final String LINE_DISTANCE_m = "LINE_DISTANCE_m";  // SensorType.LINE_DISTANCE_m.name()
+
+    @Test
+    public void timeColumn() {
+        assertTrue(ColumnEncoding.isTimeColumn(TIME));
+        assertFalse(ColumnEncoding.isTimeColumn("TIME_ACTIVE_s"));
+        assertFalse(ColumnEncoding.isTimeColumn(LATITUDE));
+    }
+
+    @Test
+    public void positionColumns() {
+        assertSame(ColumnEncoding.DECI_MICRO_DELTA, ColumnEncoding.forDoubleColumn(LATITUDE));
+        assertSame(ColumnEncoding.DECI_MICRO_DELTA, ColumnEncoding.forDoubleColumn(LONGITUDE));
+        // the columns of other sources
+        assertSame(ColumnEncoding.DECI_MICRO_DELTA, ColumnEncoding.forDoubleColumn(LATITUDE + "_gps"));
+        assertSame(ColumnEncoding.DECI_MICRO_DELTA, ColumnEncoding.forDoubleColumn("'" + LONGITUDE + " (network)'"));
+    }
+
+    @Test
+    public void distanceColumns() {
+        assertSame(ColumnEncoding.MILLI_DELTA, ColumnEncoding.forDoubleColumn(DISTANCE_m));
+        assertSame(ColumnEncoding.MILLI_DELTA, ColumnEncoding.forDoubleColumn(LINE_DISTANCE_m));
+        assertSame(ColumnEncoding.MILLI_DELTA, ColumnEncoding.forDoubleColumn("'" + DISTANCE_m + " (my footpod)'"));
+    }
+
+    @Test
+    public void otherColumns() {
+        assertSame(ColumnEncoding.DOUBLE, ColumnEncoding.forDoubleColumn("SPEED_mps"));
+        assertSame(ColumnEncoding.DOUBLE, ColumnEncoding.forDoubleColumn("ALTITUDE"));
+    }
+
+    @Test
+    public void fromId() {
+        for (ColumnEncoding encoding : ColumnEncoding.values()) {
+            assertSame(encoding, ColumnEncoding.fromId(encoding.id));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromUnknownId() {
+        ColumnEncoding.fromId((byte) 0);
+    }
+
+    @Test
+    public void varLongRoundTrip() {
+        long[] values = {0, 1, -1, 63, -64, 64, -65, 1_000_000, -1_000_000, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            ColumnEncoding.writeVarLong(out, value);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        for (long value : values) {
+            assertEquals(value, ColumnEncoding.readVarLong(in));
+        }
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void smallDeltasNeedOneByte() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnEncoding.writeVarLong(out, -64);
+        ColumnEncoding.writeVarLong(out, 63);
+        assertEquals(2, out.size());
+    }
+
+    @Test
+    public void fixedPointRoundTrip() {
+        double[] positions = {47.3769, 8.5417, -33.8688, 151.2093, 179.9999999, -180};
+        for (double position : positions) {
+            long fixedPoint = ColumnEncoding.DECI_MICRO_DELTA.toFixedPoint(position);
+            assertEquals(position, ColumnEncoding.DECI_MICRO_DELTA.fromFixedPoint(fixedPoint), 0.5e-7);
+        }
+
+        double[] distances = {0, 0.001, 1234.5678, 42195.0, 1e9};
+        for (double distance : distances) {
+            long fixedPoint = ColumnEncoding.MILLI_DELTA.toFixedPoint(distance);
+            assertEquals(distance, ColumnEncoding.MILLI_DELTA.fromFixedPoint(fixedPoint), 0.5e-3);
+        }
+    }
+
+    @Test
+    public void canEncode() {
+        assertTrue(ColumnEncoding.MILLI_DELTA.canEncode(42195.0));
+        assertFalse(ColumnEncoding.MILLI_DELTA.canEncode(Double.NaN));
+        assertFalse(ColumnEncoding.MILLI_DELTA.canEncode(Double.POSITIVE_INFINITY));
+        assertFalse(ColumnEncoding.DECI_MICRO_DELTA.canEncode(1e15));
+        // the unscaled doubles are stored as they are
+        assertTrue(ColumnEncoding.DOUBLE.canEncode(Double.NaN));
+    }
+
+    @Test
+    public void utfRoundTrip() throws IOException {
+        // NUL and the characters outside of the BMP differ between modified and standard UTF-8
+        String[] strings = {"", "Polar H10", "Müller", "nul\u0000byte", "bike 🚴"};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        out.flush();
+
+        ByteBuffer in = ByteBuffer.wrap(bytes.toByteArray());
+        for (String string : strings) {
+            assertEquals(string, ColumnEncoding.readUTF(in));
+        }
+        assertFalse(in.hasRemaining());
+    }
+}
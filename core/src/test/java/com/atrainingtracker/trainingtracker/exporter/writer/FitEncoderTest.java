@@ -0,0 +1,84 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class FitEncoderTest {
+
+    @Test
+    public void crc() {
+        // the CRC of the FIT protocol is the CRC-16/ARC, this is its check value
+        byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xBB3D, FitEncoder.updateCrc(0, bytes, 0, bytes.length));
+
+        // the CRC can be calculated in pieces
+        int crc = FitEncoder.updateCrc(0, bytes, 0, 4);
+        assertEquals(0xBB3D, FitEncoder.updateCrc(crc, bytes, 4, bytes.length - 4));
+    }
+
+    @Test
+    public void header() {
+        byte[] header = FitEncoder.createHeader(0x01020304);
+        assertEquals(FitEncoder.HEADER_SIZE, header.length);
+        assertEquals(FitEncoder.HEADER_SIZE, header[0]);
+        assertArrayEquals(new byte[]{0x04, 0x03, 0x02, 0x01}, new byte[]{header[4], header[5], header[6], header[7]});
+        assertEquals(".FIT", new String(header, 8, 4, StandardCharsets.US_ASCII));
+
+        // the CRC of the header is part of the header, so the CRC over all of it is 0
+        assertEquals(0, FitEncoder.updateCrc(0, header, 0, header.length));
+    }
+
+    @Test
+    public void messages() throws IOException {
+        FitEncoder encoder = new FitEncoder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        encoder.startDefinition(1, 20, 2);
+        encoder.addField(253, 4, FitEncoder.UINT32);
+        encoder.addField(7, 2, FitEncoder.UINT16);
+        encoder.writeMessage(out);
+        assertArrayEquals(new byte[]{0x41, 0, 0, 20, 0, 2, (byte) 253, 4, (byte) 0x86, 7, 2, (byte) 0x84}, out.toByteArray());
+
+        out.reset();
+        encoder.startData(1);
+        encoder.putUInt32(0x12345678L);
+        encoder.putUInt16(250);
+        encoder.writeMessage(out);
+        assertArrayEquals(new byte[]{1, 0x78, 0x56, 0x34, 0x12, (byte) 250, 0}, out.toByteArray());
+
+        assertEquals(12 + 7, encoder.getDataSize());
+    }
+
+    @Test
+    public void scale() {
+        // e.g. the altitude: (value + 500) * 5
+        assertEquals(2750, FitEncoder.scale(50, 5, 500, 0xFFFE));
+        assertEquals(0, FitEncoder.scale(-1000, 5, 500, 0xFFFE));
+        assertEquals(0xFFFE, FitEncoder.scale(1e6, 5, 500, 0xFFFE));
+    }
+}
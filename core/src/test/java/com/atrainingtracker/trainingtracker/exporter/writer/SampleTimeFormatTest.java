@@ -0,0 +1,98 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class SampleTimeFormatTest {
+
+    @Test
+    public void xmlTime() throws ParseException {
+        assertEquals("2012-03-29T16:23:05Z", SampleTimeFormat.dbTime2XMLTime("2012-03-29 16:23:05"));
+        assertEquals("2012-03-29T16:23:05.250Z", SampleTimeFormat.dbTime2XMLTime("2012-03-29 16:23:05.250"));
+    }
+
+    @Test
+    public void gcTime() throws ParseException {
+        assertEquals("2012/03/29 16:23:05", SampleTimeFormat.dbTime2GCTime("2012-03-29 16:23:05"));
+        assertEquals("2012/03/29 16:23:05", SampleTimeFormat.dbTime2GCTime("2012-03-29 16:23:05.250"));
+    }
+
+    @Test
+    public void rkTime() throws ParseException {
+        assertEquals("Thu, 29 Mar 2012 16:23:05", SampleTimeFormat.dbTime2RKTime("2012-03-29 16:23:05"));
+        assertEquals("Sat, 01 Jan 2000 00:00:00", SampleTimeFormat.dbTime2RKTime("2000-01-01 00:00:00"));
+        assertEquals("Thu, 29 Feb 2024 23:59:59", SampleTimeFormat.dbTime2RKTime("2024-02-29 23:59:59"));
+    }
+
+    @Test
+    public void epochTime() throws ParseException {
+        assertEquals(0, SampleTimeFormat.dbTime2EpochSeconds("1970-01-01 00:00:00"));
+        assertEquals(1333038185L, SampleTimeFormat.dbTime2EpochSeconds("2012-03-29 16:23:05"));
+        assertEquals(1333038185250L, SampleTimeFormat.dbTime2EpochMillis("2012-03-29 16:23:05.250"));
+        assertEquals(1333038185000L, SampleTimeFormat.dbTime2EpochMillis("2012-03-29 16:23:05"));
+    }
+
+    @Test
+    public void fitTime() throws ParseException {
+        assertEquals(0, SampleTimeFormat.dbTime2FitTime("1989-12-31 00:00:00"));
+        assertEquals(1333038185L - SampleTimeFormat.FIT_EPOCH_OFFSET_s, SampleTimeFormat.dbTime2FitTime("2012-03-29 16:23:05"));
+    }
+
+    /**
+     * the conversions replaced SimpleDateFormats, so they must still give the same results
+     */
+    @Test
+    public void sameAsSimpleDateFormat() throws ParseException {
+        SimpleDateFormat dbFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        dbFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        SimpleDateFormat rkFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss", Locale.US);
+        rkFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        // every 7 hours and some seconds over several years including leap years
+        for (long time_s = 946684800L; time_s < 1800000000L; time_s += 7 * 3600 + 13) {
+            String dbTime = dbFormat.format(time_s * 1000);
+            assertEquals(time_s, SampleTimeFormat.dbTime2EpochSeconds(dbTime));
+            assertEquals(rkFormat.format(time_s * 1000), SampleTimeFormat.dbTime2RKTime(dbTime));
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void tooShort() throws ParseException {
+        SampleTimeFormat.dbTime2XMLTime("2012-03-29");
+    }
+
+    @Test(expected = ParseException.class)
+    public void wrongSeparator() throws ParseException {
+        SampleTimeFormat.dbTime2GCTime("2012/03/29 16:23:05");
+    }
+
+    @Test(expected = ParseException.class)
+    public void notANumber() throws ParseException {
+        SampleTimeFormat.dbTime2EpochSeconds("2012-03-2x 16:23:05");
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * aTrainingTracker (ANT+ BTLE)
+ * Copyright (C) 2011 - 2019 Rainer Blind <rainer.blind@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see https://www.gnu.org/licenses/gpl-3.0
+ */
+
+
+package com.atrainingtracker.trainingtracker.exporter.writer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class TrackpointFormatTest {
+
+    @Test
+    public void tcxWithAllValues() throws IOException {
+        Trackpoint trackpoint = new Trackpoint();
+        trackpoint.time = "2012-03-29T16:23:05Z";
+        trackpoint.latitude = 47.5;
+        trackpoint.longitude = 8.25;
+        trackpoint.altitude_m = 420.0;
+        trackpoint.distance_m = 1234.5;
+        trackpoint.hr = 142;
+        trackpoint.bikeCadence = 90.0;
+        trackpoint.speed_mps = 8.5;
+        trackpoint.power = 250.0;
+
+        assertEquals("          <Trackpoint>\n"
+                + "            <Time>2012-03-29T16:23:05Z</Time>\n"
+                + "            <Position>\n"
+                + "              <LatitudeDegrees>47.5</LatitudeDegrees>\n"
+                + "              <LongitudeDegrees>8.25</LongitudeDegrees>\n"
+                + "            </Position>\n"
+                + "            <AltitudeMeters>420.0</AltitudeMeters>\n"
+                + "            <DistanceMeters>1234.5</DistanceMeters>\n"
+                + "            <HeartRateBpm xsi:type=\"HeartRateInBeatsPerMinute_t\">\n"
+                + "              <Value>142</Value>\n"
+                + "            </HeartRateBpm>\n"
+                + "            <Cadence>90.0</Cadence>\n"
+                + "            <Extensions>\n"
+                + "              <TPX xmlns=\"http://www.garmin.com/xmlschemas/ActivityExtension/v2\">\n"
+                + "            <Speed>8.5</Speed>\n"
+                + "            <Watts>250.0</Watts>\n"
+                + "              </TPX>\n"
+                + "            </Extensions>\n"
+                + "          </Trackpoint>\n", format(TrackpointFormat.TCX, trackpoint));
+    }
+
+    @Test
+    public void tcxWithTimeOnly() throws IOException {
+        Trackpoint trackpoint = new Trackpoint();
+        trackpoint.time = "2012-03-29T16:23:05.250Z";
+        // a position needs both coordinates
+        trackpoint.latitude = 47.5;
+
+        assertEquals("          <Trackpoint>\n"
+                + "            <Time>2012-03-29T16:23:05.250Z</Time>\n"
+                + "          </Trackpoint>\n", format(TrackpointFormat.TCX, trackpoint));
+    }
+
+    @Test
+    public void tcxRunCadence() throws IOException {
+        Trackpoint trackpoint = new Trackpoint();
+        trackpoint.time = "2012-03-29T16:23:05Z";
+        trackpoint.runCadence = 88.0;
+
+        assertEquals("          <Trackpoint>\n"
+                + "            <Time>2012-03-29T16:23:05Z</Time>\n"
+                + "            <Extensions>\n"
+                + "              <TPX xmlns=\"http://www.garmin.com/xmlschemas/ActivityExtension/v2\">\n"
+                + "            <RunCadence>88.0</RunCadence>\n"
+                + "              </TPX>\n"
+                + "            </Extensions>\n"
+                + "          </Trackpoint>\n", format(TrackpointFormat.TCX, trackpoint));
+    }
+
+    @Test
+    public void gpx() throws IOException {
+        Trackpoint trackpoint = new Trackpoint();
+        trackpoint.time = "2012-03-29T16:23:05Z";
+        trackpoint.latitude = 47.5;
+        trackpoint.longitude = 8.25;
+        trackpoint.altitude_m = 420.0;
+        // GPX has no heart rate
+        trackpoint.hr = 142;
+
+        assertEquals("   <trkpt lat=\"47.5\" lon=\"8.25\">\n"
+                + "    <ele>420.0</ele>\n"
+                + "    <time>2012-03-29T16:23:05Z</time>\n"
+                + "   </trkpt>\n", format(TrackpointFormat.GPX, trackpoint));
+
+        // without a position, there is no point
+        trackpoint.clear();
+        trackpoint.time = "2012-03-29T16:23:05Z";
+        assertEquals("", format(TrackpointFormat.GPX, trackpoint));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void timeIsRequired() throws IOException {
+        format(TrackpointFormat.TCX, new Trackpoint());
+    }
+
+    private static String format(TrackpointFormat trackpointFormat, Trackpoint trackpoint) throws IOException {
+        StringWriter writer = new StringWriter();
+        trackpointFormat.write(writer, trackpoint);
+        return writer.toString();
+    }
+}